@@ -46,13 +46,19 @@ public interface DianneCoordinator {
 	
 	Promise<AgentResult> act(String dataset, Map<String, String> config, NeuralNetworkDTO... nn);
 	
+	Promise<SearchResult> search(String dataset, Map<String, String> config, String... nnName);
+	
+	Promise<SearchResult> search(String dataset, Map<String, String> config, NeuralNetworkDTO... nn);
+	
 	LearnResult getLearnResult(UUID jobId); // if still running, this contains partial progress results
 	
 	EvaluationResult getEvaluationResult(UUID jobId);  // if still running, this contains partial progress results
 	
 	AgentResult getAgentResult(UUID jobId);  // if still running, this contains partial progress results
 	
-	void stop(UUID jobId) throws Exception; // stop running job or cancel submitted job
+	SearchResult getSearchResult(UUID searchId);  // if still running, this contains the trials so far
+	
+	void stop(UUID jobId) throws Exception; // stop running job or cancel submitted job, or stop a hyperparameter search
 	
 	Job getJob(UUID jobId);
 	
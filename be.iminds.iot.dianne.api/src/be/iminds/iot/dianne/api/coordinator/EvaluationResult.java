@@ -36,7 +36,15 @@ public class EvaluationResult {
 
 	public final Map<UUID, Evaluation> evaluations;
 	
+	// in case the dataset was sharded over the evaluators, the merged result on the whole dataset
+	public final Evaluation merged;
+	
 	public EvaluationResult(Map<UUID, Evaluation> evaluations){
+		this(evaluations, null);
+	}
+	
+	public EvaluationResult(Map<UUID, Evaluation> evaluations, Evaluation merged){
 		this.evaluations = evaluations;
+		this.merged = merged;
 	}
 }
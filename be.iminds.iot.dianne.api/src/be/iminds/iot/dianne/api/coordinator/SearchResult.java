@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.coordinator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Summarizes the results of a hyperparameter search
+ * 
+ * @author tverbele
+ *
+ */
+public class SearchResult {
+
+	public List<Trial> trials = new ArrayList<>();
+	
+	/**
+	 * @return the trial with the lowest validation loss, or null if no trial was validated
+	 */
+	public Trial best(){
+		Trial best = null;
+		for(Trial t : trials){
+			if(Float.isNaN(t.loss))
+				continue;
+			
+			if(best == null || t.loss < best.loss)
+				best = t;
+		}
+		return best;
+	}
+	
+	/**
+	 * A single learn job launched by the search
+	 */
+	public static class Trial {
+		
+		// the learn job of this trial
+		public UUID jobId;
+		// the tag under which the parameters of this trial are stored
+		public String tag;
+		// the sampled hyperparameters
+		public Map<String, String> config = new HashMap<>();
+		// in case of population based training, the trial this one was started from
+		public UUID parent;
+		
+		// number of iterations trained
+		public long iterations;
+		// last validation loss
+		public float loss = Float.NaN;
+		
+		// stopped early by the search
+		public boolean stopped = false;
+		// the learn job failed
+		public boolean failed = false;
+		
+		@Override
+		public String toString(){
+			return jobId+" "+config+" - Loss: "+loss+" after "+iterations+" iterations"+(stopped ? " (stopped)" : failed ? " (failed)" : "");
+		}
+	}
+}
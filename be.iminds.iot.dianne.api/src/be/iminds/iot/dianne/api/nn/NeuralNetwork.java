@@ -414,4 +414,12 @@ public interface NeuralNetwork {
 	default void resetMemory(){
 		resetMemory(0);
 	}
+	
+	/**
+	 * Keep the current memory state, but stop gradients of a next backward pass from 
+	 * flowing back into the previous sequence (i.e. for truncated back propagation through time)
+	 */
+	default void detachMemory(){
+		throw new UnsupportedOperationException("Detaching the memory is not supported by this neural network");
+	}
 }
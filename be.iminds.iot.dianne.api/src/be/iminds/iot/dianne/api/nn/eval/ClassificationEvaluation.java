@@ -23,6 +23,7 @@
 package be.iminds.iot.dianne.api.nn.eval;
 
 import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorOps;
 
 /**
  * Result of the evaluation of a classification Dataset, provides access to the confusion matrix.
@@ -42,6 +43,28 @@ public class ClassificationEvaluation extends ErrorEvaluation {
 		return confusionMatrix.toString();
 	}
 	
+	@Override
+	public void merge(Evaluation other){
+		if(other instanceof ClassificationEvaluation){
+			ClassificationEvaluation c = (ClassificationEvaluation) other;
+			if(confusionMatrix == null){
+				confusionMatrix = c.confusionMatrix;
+			} else if(c.confusionMatrix != null){
+				confusionMatrix = TensorOps.add(null, confusionMatrix, c.confusionMatrix);
+			}
+			
+			if(rankings == null){
+				rankings = c.rankings;
+			} else if(c.rankings != null){
+				int[] merged = new int[rankings.length + c.rankings.length];
+				System.arraycopy(rankings, 0, merged, 0, rankings.length);
+				System.arraycopy(c.rankings, 0, merged, rankings.length, c.rankings.length);
+				rankings = merged;
+			}
+		}
+		super.merge(other);
+	}
+	
 	/**
 	 * @return the confusion matrix
 	 */
@@ -22,6 +22,7 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.api.nn.eval;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -36,6 +37,8 @@ public class ErrorEvaluation extends Evaluation {
 
 	// the actual outputs 
 	public List<Tensor> outputs;
+	// handle to the outputs in case these were streamed to file
+	public EvaluationOutputs outputsFile;
 	// average forward time
 	public float forwardTime;
 	
@@ -58,10 +61,20 @@ public class ErrorEvaluation extends Evaluation {
 		return outputs;
 	}
 	
+	/**
+	 * @return handle to the outputs in case these were streamed to file instead of kept in memory
+	 */
+	public EvaluationOutputs outputsFile(){
+		return outputsFile;
+	}
+	
 	/**
 	 * @return the output the evaluated neural network generated for sample index
 	 */
 	public Tensor output(int index){
+		if(outputs == null && outputsFile != null)
+			return outputsFile.get(index);
+		
 		return outputs.get(index);
 	}
 	
@@ -71,5 +84,37 @@ public class ErrorEvaluation extends Evaluation {
 	public float error() {
 		return metric;
 	}
+	
+	@Override
+	public void merge(Evaluation other){
+		if(other instanceof ErrorEvaluation){
+			ErrorEvaluation e = (ErrorEvaluation) other;
+			long total = size + e.size;
+			if(total > 0)
+				forwardTime = (forwardTime*size + e.forwardTime*e.size)/total;
+			
+			if(size == 0 && outputs == null){
+				outputs = e.outputs;
+			} else if(outputs != null && e.outputs != null){
+				outputs = new ArrayList<>(outputs);
+				outputs.addAll(e.outputs);
+			} else {
+				outputs = null;
+			}
+			
+			if(size == 0 && outputsFile == null){
+				// copy, as merging more outputs should not modify the other evaluation
+				if(e.outputsFile != null){
+					outputsFile = new EvaluationOutputs();
+					outputsFile.merge(e.outputsFile);
+				}
+			} else if(outputsFile != null && e.outputsFile != null){
+				outputsFile.merge(e.outputsFile);
+			} else {
+				outputsFile = null;
+			}
+		}
+		super.merge(other);
+	}
 
 }
@@ -60,5 +60,22 @@ public class Evaluation {
 	public float metric() {
 		return metric;
 	}
+	
+	/**
+	 * Merge the result of an evaluation on another (disjoint) part of the dataset into 
+	 * this one. Partial results should be merged in dataset order.
+	 * 
+	 * The metric is averaged weighted by size, the time is the max as the parts are 
+	 * expected to be evaluated in parallel.
+	 * 
+	 * @param other evaluation of another part of the dataset
+	 */
+	public void merge(Evaluation other){
+		long total = size + other.size;
+		if(total > 0)
+			metric = (metric*size + other.metric*other.size)/total;
+		size = total;
+		time = Math.max(time, other.time);
+	}
 
 }
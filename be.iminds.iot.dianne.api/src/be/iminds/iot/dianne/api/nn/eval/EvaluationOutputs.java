@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.nn.eval;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Handle to the raw outputs of an evaluation that were streamed to disk instead
+ * of kept in memory, together with some summary statistics.
+ * 
+ * The outputs are stored in one or more files (one per evaluated shard, in dataset order),
+ * each file starts with the number of dimensions and the dimensions of a single output, 
+ * followed by the float data of all outputs (big endian). The files are local to the 
+ * runtime that executed the evaluation.
+ * 
+ * @author tverbele
+ *
+ */
+public class EvaluationOutputs {
+
+	// the files containing the outputs, in dataset order
+	public List<String> files = new ArrayList<>();
+	// number of outputs per file
+	public List<Long> counts = new ArrayList<>();
+	// dimensions of a single output
+	public int[] dims;
+	
+	// summary statistics over all output values
+	public long count;
+	public float min = Float.MAX_VALUE;
+	public float max = -Float.MAX_VALUE;
+	public float mean;
+	
+	@Override
+	public String toString(){
+		return count+" outputs "+Arrays.toString(dims)+" in "+files;
+	}
+	
+	/**
+	 * @return total number of outputs
+	 */
+	public long count(){
+		return count;
+	}
+	
+	/**
+	 * @return dimensions of a single output
+	 */
+	public int[] dims(){
+		return dims;
+	}
+	
+	/**
+	 * @return the files containing the outputs
+	 */
+	public List<String> files(){
+		return files;
+	}
+	
+	/**
+	 * Name of the file to which one shard of a sharded evaluation streams its outputs, 
+	 * used both for shards on different evaluators and for replicas of a single evaluator
+	 * 
+	 * @param file the outputFile configured for the whole evaluation
+	 * @param shard index of the shard
+	 * @return the output file of the shard
+	 */
+	public static String shardFile(String file, int shard){
+		return file+".shard"+shard;
+	}
+	
+	/**
+	 * Read back a single output from disk
+	 * 
+	 * @param index the sample index
+	 * @return the output the evaluated neural network generated for sample index
+	 */
+	public Tensor get(long index){
+		if(index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("No output "+index+", only "+count+" outputs available");
+		
+		int f = 0;
+		while(index >= counts.get(f)){
+			index -= counts.get(f++);
+		}
+		
+		int size = 1;
+		for(int d : dims)
+			size *= d;
+		
+		try(RandomAccessFile raf = new RandomAccessFile(files.get(f), "r")){
+			byte[] bytes = new byte[4*size];
+			raf.seek(4*(1+dims.length) + index*bytes.length);
+			raf.readFully(bytes);
+			
+			float[] data = new float[size];
+			ByteBuffer.wrap(bytes).asFloatBuffer().get(data);
+			return new Tensor(data, dims);
+		} catch(IOException e){
+			throw new RuntimeException("Failed to read output "+index+" from "+files.get(f), e);
+		}
+	}
+	
+	/**
+	 * Append the outputs of an evaluation on the next part of the dataset
+	 */
+	public void merge(EvaluationOutputs other){
+		if(dims == null)
+			dims = other.dims;
+		
+		long total = count + other.count;
+		if(total > 0)
+			mean = (float)(((double)mean*count + (double)other.mean*other.count)/total);
+		count = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		
+		files.addAll(other.files);
+		counts.addAll(other.counts);
+	}
+	
+	/**
+	 * Writes outputs to a file as they are generated, only keeping a reusable 
+	 * buffer of a single batch in memory.
+	 */
+	public static class Writer implements AutoCloseable {
+		
+		private final String file;
+		private DataOutputStream out;
+		
+		private final EvaluationOutputs outputs = new EvaluationOutputs();
+		private double sum = 0;
+		private long values = 0;
+		
+		private ByteBuffer buffer;
+		
+		public Writer(String file) throws IOException {
+			this.file = file;
+			File f = new File(file);
+			if(f.getParentFile() != null)
+				f.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+		}
+		
+		/**
+		 * Write a batch of outputs, the first dimension is the batch dimension
+		 */
+		public void writeBatch(Tensor batch) throws IOException {
+			int[] d = batch.dims();
+			write(batch, d[0], Arrays.copyOfRange(d, 1, d.length));
+		}
+		
+		/**
+		 * Write a single output
+		 */
+		public void write(Tensor output) throws IOException {
+			write(output, 1, output.dims());
+		}
+		
+		private void write(Tensor t, int n, int[] dims) throws IOException {
+			if(outputs.dims == null){
+				outputs.dims = dims;
+				out.writeInt(dims.length);
+				for(int d : dims)
+					out.writeInt(d);
+			} else if(!Arrays.equals(outputs.dims, dims)){
+				throw new IOException("Output dimensions changed from "+Arrays.toString(outputs.dims)+" to "+Arrays.toString(dims));
+			}
+			
+			// fetch all data of the batch at once and write it as a single block
+			float[] data = t.get();
+			int size = data.length;
+			if(buffer == null || buffer.capacity() < 4*size)
+				buffer = ByteBuffer.allocate(4*size);
+			buffer.clear();
+			buffer.asFloatBuffer().put(data);
+			out.write(buffer.array(), 0, 4*size);
+			
+			for(int i=0;i<size;i++){
+				float v = data[i];
+				sum += v;
+				if(v < outputs.min)
+					outputs.min = v;
+				if(v > outputs.max)
+					outputs.max = v;
+			}
+			values += size;
+			outputs.count += n;
+		}
+		
+		/**
+		 * Close the file and return the handle to the outputs written
+		 */
+		@Override
+		public void close() throws IOException {
+			if(out == null)
+				return;
+			
+			out.close();
+			out = null;
+			
+			outputs.mean = values == 0 ? 0 : (float)(sum/values);
+			outputs.files.add(file);
+			outputs.counts.add(outputs.count);
+		}
+		
+		/**
+		 * @return the handle to the outputs written, only complete after close
+		 */
+		public EvaluationOutputs outputs(){
+			return outputs;
+		}
+	}
+}
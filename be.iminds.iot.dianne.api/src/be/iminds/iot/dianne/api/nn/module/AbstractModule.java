@@ -32,6 +32,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -87,10 +88,17 @@ public abstract class AbstractModule implements Module {
 	// Can be used to either skip or block here
 	protected AtomicBoolean nextBusy = new AtomicBoolean();
 	
+	// Always-on metrics of this module instance
+	protected final ModuleMetrics metrics = new ModuleMetrics();
+	
+	// Default JVM-wide executors, used when no ModuleScheduler is configured for this module
+	private static final ExecutorService defaultRunExecutor = Executors.newCachedThreadPool();
+	private static final ExecutorService defaultListenerExecutor = Executors.newSingleThreadExecutor();
+	
 	// Thread executor to perform calculations on
-	protected static ExecutorService runExecutor = Executors.newCachedThreadPool();
+	protected volatile ExecutorService runExecutor = defaultRunExecutor;
 	// Thread executor to notify listeners
-	protected static ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+	protected volatile ExecutorService listenerExecutor = defaultListenerExecutor;
 
 	
 	// Listeners
@@ -119,6 +127,26 @@ public abstract class AbstractModule implements Module {
 		return id;
 	}
 	
+	/**
+	 * Set the executors this module uses to dispatch calls to next/previous modules 
+	 * and to notify listeners. This is configured by the runtime according to the 
+	 * ModuleScheduler selected for the neural network instance.
+	 * 
+	 * @param runExecutor executor for forward/backward dispatching, null for the default
+	 * @param listenerExecutor executor for listener notification, null for the default
+	 */
+	public void setExecutors(ExecutorService runExecutor, ExecutorService listenerExecutor) {
+		this.runExecutor = runExecutor == null ? defaultRunExecutor : runExecutor;
+		this.listenerExecutor = listenerExecutor == null ? defaultListenerExecutor : listenerExecutor;
+	}
+	
+	/**
+	 * @return the metrics collected by this module instance
+	 */
+	public ModuleMetrics getMetrics() {
+		return metrics;
+	}
+	
 	protected void callNext(){
 		synchronized(nextBusy){
 			nextBusy.set(true);
@@ -158,17 +186,22 @@ public abstract class AbstractModule implements Module {
 				// next is busy, either block or skip
 				if(mode.contains(Mode.SKIP)){
 					System.out.println("Module "+id+" skipped input");
+					metrics.skipped();
 					return;
 				} else {
 					// default mode BLOCKING
+					long w = System.nanoTime();
 					try {
-						nextBusy.wait();
+						await(nextBusy);
 					} catch (InterruptedException e) {
 					}
+					metrics.waited(System.nanoTime()-w);
 				}
 			}
 		}
 		
+		long start = System.nanoTime();
+		
 		this.input = input;
 		this.tags = tags;
 		this.exception = ex;
@@ -190,12 +223,15 @@ public abstract class AbstractModule implements Module {
 			} catch(Exception e){
 				exception = new ModuleException(this.id, this.getClass().getName(), true, e);
 			}
+			metrics.output(output);
 		} 
 
 		// notify listeners
 		if(fwdListeners.size()>0)
 			notifyForwardListeners();
 		
+		metrics.forward(System.nanoTime()-start);
+		
 		if(TRACE){
 			t2 = System.nanoTime();
 			System.out.println("FORWARD "+this.id+" ("+this.getClass().getName()+") DONE in "+(t2-t1)+" ns");
@@ -226,6 +262,8 @@ public abstract class AbstractModule implements Module {
 			t1 = System.nanoTime();
 		}
 		
+		long start = System.nanoTime();
+		
 		// backward is called, mark train true
 		this.train = true;
 		
@@ -246,6 +284,8 @@ public abstract class AbstractModule implements Module {
 		if(bwListeners.size()>0)
 			notifyBackwardListeners();
 		
+		metrics.backward(System.nanoTime()-start);
+		
 		if(TRACE){
 			t2 = System.nanoTime();
 			System.out.println("BACKWARD "+this.id+" ("+this.getClass().getName()+") DONE in "+(t2-t1)+" ns");
@@ -289,7 +329,7 @@ public abstract class AbstractModule implements Module {
 					return;
 				} else {
 					try {
-						fwdListeners.wait();
+						await(fwdListeners);
 					} catch (InterruptedException e) {}
 				}
 			}
@@ -351,7 +391,7 @@ public abstract class AbstractModule implements Module {
 					return;
 				} else {
 					try {
-						bwListeners.wait();
+						await(bwListeners);
 					} catch (InterruptedException e) {}
 				}
 			}
@@ -402,6 +442,7 @@ public abstract class AbstractModule implements Module {
 		private final String[] tags;
 		private final Tensor tensor;
 		private final ModuleException ex;
+		private final long queued = System.nanoTime();
 		
 		public ForwardRunnable(Module m, Tensor tensor, String[] tags){
 			this.m = m;
@@ -418,6 +459,7 @@ public abstract class AbstractModule implements Module {
 		}
 		
 		public void run(){
+			metrics.queued(System.nanoTime()-queued);
 			try {
 				if(ex==null){
 					m.forward(id, tensor, tags);
@@ -441,6 +483,7 @@ public abstract class AbstractModule implements Module {
 		private final String[] tags;
 		private final Tensor tensor;
 		private final ModuleException ex;
+		private final long queued = System.nanoTime();
 		
 		public BackwardRunnable(Module m, Tensor tensor, String[] tags){
 			this.m = m;
@@ -457,6 +500,7 @@ public abstract class AbstractModule implements Module {
 		}
 		
 		public void run(){
+			metrics.queued(System.nanoTime()-queued);
 			try {
 				if(ex==null){
 					m.backward(id, tensor, tags);
@@ -471,6 +515,30 @@ public abstract class AbstractModule implements Module {
 		}
 	}
 	
+	/**
+	 * Wait on the monitor of lock, which should be held by the caller. When called from 
+	 * a ForkJoinPool worker, the pool is notified so it can compensate for the blocked thread
+	 * (up to the maximum size of the pool), which avoids deadlocks of modules waiting for each 
+	 * other on a bounded scheduler.
+	 */
+	protected static void await(final Object lock) throws InterruptedException {
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+			private boolean done = false;
+			
+			@Override
+			public boolean block() throws InterruptedException {
+				lock.wait();
+				done = true;
+				return true;
+			}
+			
+			@Override
+			public boolean isReleasable() {
+				return done;
+			}
+		});
+	}
+	
 	public void setProperty(String key, Object val){
 		throw new UnsupportedOperationException("Key "+key+" cannot be set for module "+id);
 	}
@@ -62,6 +62,7 @@ public abstract class AbstractTrainableModule extends AbstractModule implements
 	@Override
 	public void randomizeParameters(){
 		if(!fixed){
+			unshareParameters();
 			randomize();
 		}
 	}
@@ -74,6 +75,7 @@ public abstract class AbstractTrainableModule extends AbstractModule implements
 			if(TRACE){
 				System.out.println("UPDATE PARAMETERS "+this.id+" ("+this.getClass().getName()+")  "+deltaParameters);
 			}
+			unshareParameters();
 			TensorOps.add(parameters, parameters, deltaParameters);
 		}
 	}
@@ -81,6 +83,7 @@ public abstract class AbstractTrainableModule extends AbstractModule implements
 	@Override
 	public void updateParameters(float scale) {
 		if(!fixed){
+			unshareParameters();
 			TensorOps.add(parameters, parameters, scale, deltaParameters);
 		}
 	}
@@ -99,14 +102,25 @@ public abstract class AbstractTrainableModule extends AbstractModule implements
 	
 	@Override
 	public Tensor getParameters(){
+		// callers might change the returned reference, so no longer share it
+		unshareParameters();
 		return parameters;
 	}
 	
 	@Override
 	public void setParameters(Tensor params){
+		unshareParameters();
 		params.copyInto(parameters);
 	}
 	
+	/**
+	 * Parameters might be shared with other instances of the same module (copy-on-write),
+	 * call this before modifying the parameters to get a private copy.
+	 */
+	protected void unshareParameters(){
+		parameters.unshare();
+	}
+	
 	@Override
 	public void setFixed(boolean fixed){
 		this.fixed = fixed;
@@ -130,17 +130,22 @@ public abstract class Fork extends AbstractModule {
 				// next is busy, either block or skip
 				if(mode.contains(Mode.SKIP)){
 					System.out.println("Module "+id+" skipped input");
+					metrics.skipped();
 					return;
 				} else {
 					// default mode BLOCKING
+					long w = System.nanoTime();
 					try {
-						nextsBusy.wait();
+						await(nextsBusy);
 					} catch (InterruptedException e) {
 					}
+					metrics.waited(System.nanoTime()-w);
 				}
 			}
 		}
 		
+		long start = System.nanoTime();
+		
 		this.input = input;
 		this.tags = tags;
 		this.exception = ex;
@@ -162,11 +167,14 @@ public abstract class Fork extends AbstractModule {
 			} catch(Exception e){
 				exception = new ModuleException(this.id, this.getClass().getName(), true, e);
 			}
+			outputs.values().forEach(metrics::output);
 		}
 
 		if(fwdListeners.size()>0)
 			notifyForwardListeners();
 		
+		metrics.forward(System.nanoTime()-start);
+		
 		if(next!=null)
 			callNext();
 		
@@ -201,6 +209,8 @@ public abstract class Fork extends AbstractModule {
 			}
 		}
 		
+		long start = System.nanoTime();
+		
 		if(exception == null){
 			try {
 				backward();
@@ -212,6 +222,8 @@ public abstract class Fork extends AbstractModule {
 		if(bwListeners.size()>0)
 			notifyBackwardListeners();
 		
+		metrics.backward(System.nanoTime()-start);
+		
 		// backward on separate thread
 		if(prev!=null)
 			callPrevious();
@@ -248,6 +260,7 @@ public abstract class Fork extends AbstractModule {
 		private final String[] tags;
 		private final Tensor tensor;
 		private final ModuleException ex;
+		private final long queued = System.nanoTime();
 		
 		public ForwardForkRunnable(Module m, Tensor tensor, String[] tags){
 			this.m = m;
@@ -264,6 +277,7 @@ public abstract class Fork extends AbstractModule {
 		}
 		
 		public void run(){
+			metrics.queued(System.nanoTime()-queued);
 			if(ex==null){
 				m.forward(id, tensor, tags);
 			} else {
@@ -296,7 +310,7 @@ public abstract class Fork extends AbstractModule {
 					return;
 				} else {
 					try {
-						fwdListeners.wait();
+						await(fwdListeners);
 					} catch (InterruptedException e) {}
 				}
 			}
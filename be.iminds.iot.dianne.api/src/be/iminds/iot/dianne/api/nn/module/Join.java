@@ -125,17 +125,22 @@ public abstract class Join extends AbstractModule {
 				// next is busy, either block or skip
 				if(mode.contains(Mode.SKIP)){
 					System.out.println("Module "+id+" skipped input");
+					metrics.skipped();
 					return;
 				} else {
 					// default mode BLOCKING
+					long w = System.nanoTime();
 					try {
-						nextBusy.wait();
+						await(nextBusy);
 					} catch (InterruptedException e) {
 					}
+					metrics.waited(System.nanoTime()-w);
 				}
 			}
 		}
 		
+		long start = System.nanoTime();
+		
 		this.inputs.put(moduleId, input);
 		this.inputTags.put(moduleId, tags);
 		this.exception = ex;
@@ -167,12 +172,15 @@ public abstract class Join extends AbstractModule {
 			} catch(Exception e){
 				this.exception = new ModuleException(this.id, this.getClass().getName(), true, e);
 			}
+			metrics.output(output);
 		
 		} 
 
 		if(fwdListeners.size()>0)
 			notifyForwardListeners();
 		
+		metrics.forward(System.nanoTime()-start);
+		
 		if(next!=null)
 			callNext();
 	
@@ -211,7 +219,7 @@ public abstract class Join extends AbstractModule {
 					return;
 				} else {
 					try {
-						bwListeners.wait();
+						await(bwListeners);
 					} catch (InterruptedException e) {}
 				}
 			}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.nn.module;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO.LatencyDTO;
+
+/**
+ * Lock-free histogram of nanosecond latencies with log-linear buckets (in the
+ * spirit of HdrHistogram). Each power of two is split in 8 sub buckets, which
+ * bounds the relative error on the reported percentiles to 12.5%. Values above
+ * 2^40 ns (~18 minutes) are clamped to the last bucket.
+ *
+ * Recording is a handful of uncontended atomic increments, so it can be
+ * kept on in the forward/backward hot path.
+ *
+ * @author tverbele
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final long MAX_VALUE = (1L << 40) - 1;
+	private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Record a single value
+	 * @param ns latency in nanoseconds
+	 */
+	public void record(long ns){
+		if(ns < 0)
+			ns = 0;
+
+		counts.incrementAndGet(index(ns > MAX_VALUE ? MAX_VALUE : ns));
+		count.increment();
+		total.add(ns);
+		min.accumulate(ns);
+		max.accumulate(ns);
+	}
+
+	/**
+	 * @return the number of values recorded
+	 */
+	public long count(){
+		return count.sum();
+	}
+
+	/**
+	 * Clear all recorded values
+	 */
+	public void reset(){
+		for(int i=0;i<BUCKETS;i++){
+			counts.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		min.reset();
+		max.reset();
+	}
+
+	/**
+	 * Take a snapshot of the current distribution. Concurrent recordings are not
+	 * blocked, so the snapshot might be off by the values recorded meanwhile.
+	 */
+	public LatencyDTO snapshot(){
+		long[] c = new long[BUCKETS];
+		long n = 0;
+		for(int i=0;i<BUCKETS;i++){
+			c[i] = counts.get(i);
+			n += c[i];
+		}
+
+		long sum = total.sum();
+		long mn = n == 0 ? 0 : min.get();
+		long mx = max.get();
+		double mean = n == 0 ? 0 : (double)sum/n;
+
+		return new LatencyDTO(n, sum, mn, mx, mean,
+				percentile(c, n, 0.5, mx),
+				percentile(c, n, 0.9, mx),
+				percentile(c, n, 0.99, mx),
+				percentile(c, n, 0.999, mx));
+	}
+
+	private static long percentile(long[] c, long n, double p, long max){
+		if(n == 0)
+			return 0;
+
+		long target = (long)Math.ceil(p*n);
+		long seen = 0;
+		for(int i=0;i<c.length;i++){
+			seen += c[i];
+			if(seen >= target){
+				// report the middle of the bucket, but never above the observed max
+				long v = (lowerBound(i) + lowerBound(i+1) - 1)/2;
+				return v > max ? max : v;
+			}
+		}
+		return max;
+	}
+
+	static int index(long v){
+		if(v < SUB_BUCKETS)
+			return (int)v;
+
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int shift = exp - SUB_BUCKET_BITS;
+		return (shift << SUB_BUCKET_BITS) + (int)(v >>> shift);
+	}
+
+	static long lowerBound(int index){
+		if(index < SUB_BUCKETS)
+			return index;
+
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long top = SUB_BUCKETS + (index & (SUB_BUCKETS-1));
+		return top << shift;
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.nn.module;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Always-on counters of a single module instance. These are updated by
+ * AbstractModule (and Fork/Join/Mimo) on each forward/backward pass and can
+ * be read out by the DianneRuntime as a ModuleMetricsDTO snapshot.
+ *
+ * @author tverbele
+ *
+ */
+public class ModuleMetrics {
+
+	private final LatencyHistogram forward = new LatencyHistogram();
+	private final LatencyHistogram backward = new LatencyHistogram();
+	private final LatencyHistogram queue = new LatencyHistogram();
+
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder waited = new LongAdder();
+	private final LongAdder outputBytes = new LongAdder();
+
+	// keep track of native address and capacity of the output tensors to detect (re)allocations
+	// only accessed from within the (synchronized) forward of the module
+	private final Map<Tensor, long[]> outputs = new IdentityHashMap<>();
+
+	public void forward(long ns){
+		forward.record(ns);
+	}
+
+	public void backward(long ns){
+		backward.record(ns);
+	}
+
+	public void queued(long ns){
+		queue.record(ns);
+	}
+
+	public void waited(long ns){
+		waited.add(ns);
+	}
+
+	public void skipped(){
+		skipped.increment();
+	}
+
+	/**
+	 * Check whether the output tensor was (re)allocated in the last forward
+	 */
+	public void output(Tensor output){
+		if(output == null)
+			return;
+
+		long[] seen = outputs.get(output);
+		if(seen == null){
+			if(outputs.size() > 64){
+				// stale output tensors of e.g. a Fork that changed next
+				outputs.clear();
+			}
+			seen = new long[]{0, 0};
+			outputs.put(output, seen);
+		}
+
+		int size = output.size();
+		if(seen[0] != output.address || size > seen[1]){
+			outputBytes.add(4L*size);
+			seen[0] = output.address;
+			seen[1] = size;
+		}
+	}
+
+	public long forwardCount(){
+		return forward.count();
+	}
+
+	public long backwardCount(){
+		return backward.count();
+	}
+
+	public void reset(){
+		forward.reset();
+		backward.reset();
+		queue.reset();
+		skipped.reset();
+		waited.reset();
+		outputBytes.reset();
+	}
+
+	public ModuleMetricsDTO snapshot(UUID moduleId, UUID nnId){
+		return new ModuleMetricsDTO(moduleId, nnId,
+				skipped.sum(), waited.sum(), outputBytes.sum(),
+				forward.snapshot(), backward.snapshot(), queue.snapshot());
+	}
+}
@@ -88,7 +88,8 @@ public interface Trainable extends Module {
 	 * Return the current parameters
 	 * 
 	 * Attention: at the moment this returns a reference to the parameters,
-	 * only use and change if you know what you are doing.
+	 * only use and change if you know what you are doing. In case the parameters 
+	 * were shared with other instances of this module, these are copied first.
 	 * 
 	 * @return the parameters
 	 */
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.nn.module.dto;
+
+import java.util.UUID;
+
+/**
+ * Snapshot of the runtime metrics of a single module instance.
+ *
+ * All times are expressed in nanoseconds, counters are cumulative since
+ * the module instance was deployed (or since the last reset).
+ *
+ * @author tverbele
+ *
+ */
+public class ModuleMetricsDTO {
+
+	// Module UUID of this module
+	public final UUID moduleId;
+
+	// UUID of the Neural Network this instance belongs to
+	public final UUID nnId;
+
+	// time at which this snapshot was taken
+	public final long timestamp;
+
+	// number of inputs skipped because next was busy (SKIP mode only)
+	public final long skipCount;
+
+	// total time blocked waiting for next module(s) to become available
+	public final long waitTime;
+
+	// bytes allocated for output tensors
+	public final long outputBytes;
+
+	// latency distribution of forward/backward calls, count is the number of calls processed
+	public final LatencyDTO forward;
+	public final LatencyDTO backward;
+
+	// delay between dispatching to next/previous and the call actually being executed
+	public final LatencyDTO queue;
+
+	public ModuleMetricsDTO(UUID moduleId, UUID nnId,
+			long skipCount, long waitTime, long outputBytes,
+			LatencyDTO forward, LatencyDTO backward, LatencyDTO queue){
+		this.moduleId = moduleId;
+		this.nnId = nnId;
+		this.timestamp = System.currentTimeMillis();
+		this.skipCount = skipCount;
+		this.waitTime = waitTime;
+		this.outputBytes = outputBytes;
+		this.forward = forward;
+		this.backward = backward;
+		this.queue = queue;
+	}
+
+	/**
+	 * Summary of a latency distribution
+	 */
+	public static class LatencyDTO {
+
+		public final long count;
+		public final long total;
+		public final long min;
+		public final long max;
+		public final double mean;
+
+		public final long p50;
+		public final long p90;
+		public final long p99;
+		public final long p999;
+
+		public LatencyDTO(long count, long total, long min, long max, double mean,
+				long p50, long p90, long p99, long p999){
+			this.count = count;
+			this.total = total;
+			this.min = min;
+			this.max = max;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+		}
+
+		@Override
+		public String toString(){
+			return "n="+count+" mean="+(long)mean+" p50="+p50+" p99="+p99+" max="+max;
+		}
+	}
+
+	@Override
+	public String toString(){
+		return moduleId+" fwd["+forward+"] bwd["+backward+"] queue["+queue+"] wait="+waitTime+" skip="+skipCount+" out="+outputBytes+"B";
+	}
+}
@@ -95,6 +95,17 @@ public interface DiannePlatform {
 	NeuralNetworkInstanceDTO deployNeuralNetwork(NeuralNetworkDTO nn, String description, UUID runtimeId, Map<UUID, UUID> deployment, String... tags) throws InstantiationException;
 
 
+	/**
+	 * Prefetch the parameters of a neural network on a given runtime, so that a later deployment of
+	 * this neural network with the same tags on this runtime does not fetch the parameters from the repository
+	 * 
+	 * @param name name of the neural network
+	 * @param runtimeId identifier of the Dianne runtime to prefetch the parameters, the local runtime if null
+	 * @param tags tags of the weights to prefetch
+	 * @throws InstantiationException thrown when the neural network or runtime is not available
+	 */
+	void prefetchNeuralNetwork(String name, UUID runtimeId, String... tags) throws InstantiationException;
+	
 	/**
 	 * Undeploy a neural network instance
 	 * 
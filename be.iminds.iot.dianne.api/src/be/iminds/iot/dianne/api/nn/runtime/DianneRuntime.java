@@ -22,11 +22,14 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.api.nn.runtime;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleDTO;
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO;
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleTypeDTO;
 import be.iminds.iot.dianne.tensor.Tensor;
 
@@ -75,6 +78,28 @@ public interface DianneRuntime {
 	 */
 	ModuleInstanceDTO deployModule(ModuleDTO dto, UUID nnId, Tensor parameters);
 	
+	/**
+	 * Deploy a batch of Modules of a neural network instance on this runtime. The parameters 
+	 * are loaded and the modules are instantiated in parallel, and the modules are connected
+	 * with each other directly instead of waiting for each module service to be registered.
+	 * 
+	 * @param dtos the ModuleDTOs describing which Modules to deploy
+	 * @param nnId the neural network instance these module instances will belong to
+	 * @param tags the tags of parameters to load for these modules
+	 * @return the ModuleInstanceDTOs of the deployed modules, in the same order
+	 */
+	List<ModuleInstanceDTO> deployModules(List<ModuleDTO> dtos, UUID nnId, String... tags);
+	
+	/**
+	 * Deploy a batch of Modules of a neural network instance on this runtime and provide parameters
+	 * 
+	 * @param dtos the ModuleDTOs describing which Modules to deploy
+	 * @param nnId the neural network instance these module instances will belong to
+	 * @param parameters the parameters to initialize the modules with, mapped by module id
+	 * @return the ModuleInstanceDTOs of the deployed modules, in the same order
+	 */
+	List<ModuleInstanceDTO> deployModules(List<ModuleDTO> dtos, UUID nnId, Map<UUID, Tensor> parameters);
+	
 	/**
 	 * Undeploy a single ModuleInstance on this runtime
 	 * 
@@ -110,6 +135,32 @@ public interface DianneRuntime {
 	 */
 	void loadModuleParameters(ModuleInstanceDTO module, String... tags);
 	
+	/**
+	 * Fetch the parameters of these modules in the local parameter cache of this runtime (if enabled), 
+	 * so deploying these modules later on does not need to transfer the parameters from the repository
+	 * 
+	 * @param moduleIds the modules to fetch the parameters for
+	 * @param tags the tags of the parameters
+	 */
+	void prefetchParameters(Collection<UUID> moduleIds, String... tags);
+	
+	/**
+	 * Get the metrics of the module instances of a neural network instance 
+	 * that are deployed on this runtime
+	 * 
+	 * @param nnId the neural network instance id
+	 * @return metrics snapshot for each local module instance, mapped by module id
+	 */
+	Map<UUID, ModuleMetricsDTO> getModuleMetrics(UUID nnId);
+	
+	/**
+	 * Reset the metrics of the module instances of a neural network instance 
+	 * that are deployed on this runtime
+	 * 
+	 * @param nnId the neural network instance id
+	 */
+	void resetModuleMetrics(UUID nnId);
+	
 	/**
 	 * Get a list of supported module types that this runtime can deploy. 
 	 * 
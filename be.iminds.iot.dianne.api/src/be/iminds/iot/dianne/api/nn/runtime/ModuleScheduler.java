@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.nn.runtime;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A ModuleScheduler provides the threads on which the modules of a neural network 
+ * instance dispatch their forward/backward calls and notify their listeners.
+ * 
+ * ModuleSchedulers are registered as services with a "scheduler" service property, 
+ * and are selected per neural network instance by providing scheduler=<name> 
+ * in the deploy properties. Additional scheduler options can be passed as 
+ * scheduler.<option>=<value>.
+ * 
+ * @author tverbele
+ *
+ */
+public interface ModuleScheduler {
+
+	/**
+	 * Get the executor that modules of a neural network instance use for forwarding
+	 * to next and backwarding to previous modules.
+	 * 
+	 * @param nnId the neural network instance
+	 * @param config the deploy properties of the module
+	 * @return the executor to use
+	 */
+	ExecutorService getRunExecutor(UUID nnId, Map<String, String> config);
+	
+	/**
+	 * Get the executor that modules of a neural network instance use to notify
+	 * their forward/backward listeners.
+	 * 
+	 * @param nnId the neural network instance
+	 * @param config the deploy properties of the module
+	 * @return the executor to use
+	 */
+	ExecutorService getListenerExecutor(UUID nnId, Map<String, String> config);
+	
+	/**
+	 * Release all resources allocated for a neural network instance, called when 
+	 * the last module of this instance is undeployed from a runtime.
+	 * 
+	 * @param nnId the neural network instance
+	 */
+	void release(UUID nnId);
+}
@@ -89,6 +89,17 @@ public interface DianneRepository {
 	 */
 	Map<UUID, Tensor> loadParameters(String nnName, String... tag) throws Exception;
 	
+	/**
+	 * Get the version of the parameters for a given moduleId, which changes each time 
+	 * the parameters are stored. This allows to cheaply check whether a locally cached 
+	 * copy of the parameters is still up to date.
+	 * 
+	 * @param moduleId moduleId of the parameters
+	 * @param tag optional tags for the parameters
+	 * @return the version of the parameters, or -1 if no parameters are available
+	 */
+	long parametersVersion(UUID moduleId, String... tag);
+	
 	/**
 	 * Store parameters for a given moduleId
 	 *
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.repository;
+
+import java.util.Map;
+import java.util.UUID;
+
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Subscriber to parameter snapshots that are pushed by a learner each time it syncs, 
+ * instead of having to load them again from the Repository.
+ * 
+ * Subscribers are registered with the same String[] targets service property as a 
+ * RepositoryListener, i.e. {":tag"} subscribes to all parameters published with tag "tag".
+ * 
+ * The pushed parameter Tensors are shared by all subscribers and should not be modified.
+ * 
+ * @author tverbele
+ *
+ */
+public interface ParameterSubscriber {
+
+	/**
+	 * Notify the subscriber of a new parameter snapshot
+	 * 
+	 * @param nnId the nn instance these parameters originate from
+	 * @param version version of the parameters, increasing for each push of the same nn instance
+	 * @param parameters the parameters of the published modules
+	 * @param tag optional tags
+	 */
+	public void onParameters(UUID nnId, long version, Map<UUID, Tensor> parameters, String... tag);
+	
+}
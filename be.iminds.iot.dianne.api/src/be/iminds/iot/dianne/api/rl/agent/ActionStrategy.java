@@ -30,8 +30,50 @@ import be.iminds.iot.dianne.tensor.Tensor;
 
 public interface ActionStrategy {
 
-	void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception;
+	/**
+	 * Setup the strategy for acting on an environment
+	 * 
+	 * @param config strategy configuration
+	 * @param observationDims dimensions of a single observation of the environment
+	 * @param actionDims dimensions of a single action of the environment
+	 * @param nns neural networks used by the strategy
+	 */
+	void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception;
+	
+	/**
+	 * Setup the strategy for acting on an environment
+	 * 
+	 * @deprecated the strategy only needs the dimensions of the environment, use 
+	 * {@link #setup(Map, int[], int[], NeuralNetwork...)} instead
+	 */
+	@Deprecated
+	default void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+		setup(config, env.observationDims(), env.actionDims(), nns);
+	}
 	
 	Tensor processIteration(long s, long i, Tensor state) throws Exception;
 	
+	/**
+	 * Select actions for a batch of states, e.g. when acting on a VectorEnvironment. 
+	 * 
+	 * Strategies that use a neural network should override this to select all actions 
+	 * with a single batched forward pass, by default processIteration is called for each state.
+	 * 
+	 * @param s sequence number for each state
+	 * @param i iteration within the sequence for each state
+	 * @param states batch of states, dim 0 is the batch dimension
+	 * @return batch of actions
+	 */
+	default Tensor processIteration(long[] s, long[] i, Tensor states) throws Exception {
+		Tensor actions = null;
+		for(int k=0;k<s.length;k++){
+			Tensor action = processIteration(s[k], i[k], states.select(0, k));
+			if(actions == null){
+				actions = new Tensor(s.length, action.dims());
+			}
+			action.copyInto(actions.select(0, k));
+		}
+		return actions;
+	}
+	
 }
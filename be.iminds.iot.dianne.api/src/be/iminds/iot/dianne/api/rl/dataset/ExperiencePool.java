@@ -25,11 +25,13 @@ package be.iminds.iot.dianne.api.rl.dataset;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import be.iminds.iot.dianne.api.dataset.RawBatchedSequence;
 import be.iminds.iot.dianne.api.dataset.RawSequence;
 import be.iminds.iot.dianne.api.dataset.Sequence;
 import be.iminds.iot.dianne.api.dataset.SequenceDataset;
+import be.iminds.iot.dianne.tensor.Tensor;
 
 /**
  * An ExperiencePool is a special kind of SequenceDataset with some extra functionality 
@@ -107,6 +109,56 @@ public interface ExperiencePool extends SequenceDataset<ExperiencePoolSample, Ex
 	}
 	
 	
+	/**
+	 * Get a batch sampled proportional to the priority of the samples (prioritized experience replay).
+	 * 
+	 * The indices of the returned batch are set to the sampled positions and the stamps to the 
+	 * generation of the samples at these positions, which should be used to update the 
+	 * priorities later on. The weights of the returned batch are set to the 
+	 * importance-sampling weights, normalized so that the largest possible weight is 1. 
+	 * 
+	 * Pools that do not keep track of priorities sample uniformly with all weights 1.
+	 * 
+	 * @param b provided batch to copy the data into, will be created in case of null
+	 * @param size the batch size
+	 * @param alpha priority exponent, 0 is uniform sampling
+	 * @param beta importance-sampling exponent, 1 is full correction for the non-uniform sampling
+	 * @return the batch containing the sampled samples with their indices and weights
+	 */
+	default ExperiencePoolBatch getPrioritizedBatch(ExperiencePoolBatch b, final int size, final float alpha, final float beta){
+		int[] indices = new int[size];
+		for(int i=0;i<size;i++){
+			indices[i] = ThreadLocalRandom.current().nextInt(size());
+		}
+		b = getBatch(b, indices);
+		b.indices = indices;
+		if(b.weights == null){
+			b.weights = new Tensor(size);
+		}
+		b.weights.fill(1.0f);
+		return b;
+	}
+	
+	default RawExperiencePoolBatch getRawPrioritizedBatch(final int size, final float alpha, final float beta){
+		ExperiencePoolBatch b = getPrioritizedBatch(null, size, alpha, beta);
+		RawExperiencePoolBatch raw = new RawExperiencePoolBatch(b.input.dims(), b.target.dims(), 
+				b.input.get(), b.target.get(), b.nextState.get(), b.reward.get(), b.terminal.get());
+		raw.indices = b.indices;
+		raw.stamps = b.stamps;
+		raw.weights = b.weights.get();
+		return raw;
+	}
+	
+	/**
+	 * Update the priorities of samples previously returned by getPrioritizedBatch. Positions 
+	 * that were evicted or refilled with a new sample in the mean time are ignored.
+	 * 
+	 * @param indices the indices of a prioritized batch
+	 * @param stamps the stamps of a prioritized batch
+	 * @param priorities the new priorities (e.g. absolute TD errors), should be larger than 0
+	 */
+	default void updatePriorities(final int[] indices, final long[] stamps, final float[] priorities){}
+	
 	/**
 	 * Get a (part of) a sequence with start index and length
 	 * @param s provided sequence to copy the data into, will be created in case of null or elements will be added if s.size() < length
@@ -39,6 +39,12 @@ public class ExperiencePoolBatch extends Batch {
 	
 	public ExperiencePoolSample[] samples;
 	
+	// only set in case of prioritized sampling: the sampled pool positions, the 
+	// generation of the sample at each position and the importance-sampling weight of each sample
+	public int[] indices;
+	public long[] stamps;
+	public Tensor weights;
+	
 	protected ExperiencePoolBatch(){};
 	
 	public ExperiencePoolBatch(int batchSize, int[] stateDims, int[] actionDims){
@@ -161,6 +167,11 @@ public class ExperiencePoolBatch extends Batch {
 		other.reward = reward.copyInto(other.reward);
 		other.nextState = nextState.copyInto(other.nextState);
 		other.terminal = terminal.copyInto(other.terminal);
+		if(indices != null){
+			other.indices = indices.clone();
+			other.stamps = stamps == null ? null : stamps.clone();
+			other.weights = weights.copyInto(other.weights);
+		}
 		other.init(samples.length);
 		return other;
 	}
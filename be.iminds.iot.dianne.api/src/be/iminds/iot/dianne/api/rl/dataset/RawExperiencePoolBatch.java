@@ -37,6 +37,10 @@ public class RawExperiencePoolBatch extends RawBatch {
 	public float[] reward;
 	public float[] terminal;
 	
+	public int[] indices;
+	public long[] stamps;
+	public float[] weights;
+	
 	public RawExperiencePoolBatch(int[] stateDims, int[] actionDims,
 			float[] state, float[] action, float[] nextState, float[] reward, float[] terminal){
 		super(stateDims, state, actionDims, action);
@@ -47,15 +51,25 @@ public class RawExperiencePoolBatch extends RawBatch {
 	
 	public ExperiencePoolBatch copyInto(ExperiencePoolBatch b){
 		if(b == null){
-			return new ExperiencePoolBatch(new Tensor(input, inputDims), new Tensor(target, targetDims), new Tensor(reward), new Tensor(nextState, inputDims), new Tensor(terminal));
+			b = new ExperiencePoolBatch(new Tensor(input, inputDims), new Tensor(target, targetDims), new Tensor(reward), new Tensor(nextState, inputDims), new Tensor(terminal));
 		} else {
 			b.input.set(input);
 			b.target.set(target);
 			b.nextState.set(nextState);
 			b.reward.set(reward);
 			b.terminal.set(terminal);
-			return b;
 		}
+		
+		if(indices != null){
+			b.indices = indices;
+			b.stamps = stamps;
+			if(b.weights == null){
+				b.weights = new Tensor(weights, weights.length);
+			} else {
+				b.weights.set(weights);
+			}
+		}
+		return b;
 	}
 	
 }
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.rl.dataset;
+
+/**
+ * A TrajectoryQueue is an ExperiencePool that is consumed instead of sampled from. 
+ * 
+ * Agents stream (chunks of) trajectories into the queue using addSequence, and a learner 
+ * takes these out in the order they were added, so each transition is only used once. 
+ * When the agents produce faster than the learner consumes, the oldest trajectories 
+ * that are not yet taken are dropped, which bounds both memory and policy lag.
+ * 
+ * @author tverbele
+ *
+ */
+public interface TrajectoryQueue extends ExperiencePool {
+
+	/**
+	 * Take a number of trajectories out of the queue, blocking until these are available. 
+	 * 
+	 * Trajectories longer than length are split, the remainder is returned by a next take.
+	 * Each sample still contains the next state, so a learner can bootstrap at the end
+	 * of a trajectory that did not terminate. 
+	 * 
+	 * @param trajectories the sequences to fill in, can be null or contain null entries
+	 * @param count the number of trajectories to take
+	 * @param length the max number of samples of each trajectory
+	 * @return the trajectories taken
+	 * @throws InterruptedException when interrupted while waiting for trajectories 
+	 */
+	ExperiencePoolSequence[] take(ExperiencePoolSequence[] trajectories, int count, int length) throws InterruptedException;
+	
+}
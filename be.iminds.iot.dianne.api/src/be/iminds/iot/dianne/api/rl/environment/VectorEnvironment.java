@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.rl.environment;
+
+import java.util.Map;
+
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * A VectorEnvironment runs a number of Environment instances side by side, so 
+ * that an Agent can select the actions for all instances with a single batched 
+ * forward pass and step them all at once.
+ * 
+ * All observation, action and reward Tensors are batched, with dim 0 the 
+ * index of the environment instance.
+ * 
+ * Instances are reset individually once they reach a terminal state, so sequences 
+ * of different instances start and end independently.
+ * 
+ * @author tverbele
+ *
+ */
+public interface VectorEnvironment {
+
+	/**
+	 * @return the number of environment instances
+	 */
+	int size();
+	
+	/**
+	 * @return dimensions of an observation of a single instance
+	 */
+	int[] observationDims();
+	
+	/**
+	 * @return dimensions of an action of a single instance
+	 */
+	int[] actionDims();
+	
+	/**
+	 * Perform an action on each of the environment instances
+	 * 
+	 * @param actions batch of actions, one for each instance
+	 * @param rewards a tensor to copy the rewards into - in case null is passed a new Tensor is created
+	 * @return the reward of each instance
+	 */
+	Tensor performActions(final Tensor actions, Tensor rewards);
+	
+	/**
+	 * Get an observation of the current state of each environment instance.
+	 * 
+	 * @param t a tensor to copy the observations into - in case null is passed a new Tensor is created
+	 * @param terminal array that is filled in with whether each instance is in a terminal state, 
+	 *  the observation of a terminal instance is undefined
+	 * @return batch of observations
+	 */
+	Tensor getObservations(Tensor t, boolean[] terminal);
+	
+	/**
+	 * Reset a single environment instance. 
+	 * 
+	 * This might happen asynchronously, the next call to getObservations will return 
+	 * the observation after the reset.
+	 * 
+	 * @param index the environment instance to reset
+	 */
+	void reset(int index);
+	
+	/**
+	 * Set up all environment instances... should be called first before one can perform actions
+	 * @param config
+	 */
+	void setup(Map<String, String> config);
+	
+	/**
+	 * Cleanup the environment instances when you no longer require them
+	 */
+	void cleanup();
+	
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.api.nn.module;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO.LatencyDTO;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBucketBoundaries() {
+		// values below the number of sub buckets are exact
+		for(long v=0;v<8;v++){
+			Assert.assertEquals(v, LatencyHistogram.index(v));
+			Assert.assertEquals(v, LatencyHistogram.lowerBound((int)v));
+		}
+		
+		// each power of two starts a new bucket
+		for(int exp=3;exp<40;exp++){
+			long v = 1L << exp;
+			Assert.assertEquals(v, LatencyHistogram.lowerBound(LatencyHistogram.index(v)));
+			Assert.assertEquals(LatencyHistogram.index(v-1)+1, LatencyHistogram.index(v));
+		}
+		
+		int last = -1;
+		for(long v=0;v<100000;v++){
+			int i = LatencyHistogram.index(v);
+			// buckets are contiguous and contain their values
+			Assert.assertTrue(i == last || i == last+1);
+			Assert.assertTrue(LatencyHistogram.lowerBound(i) <= v);
+			Assert.assertTrue(v < LatencyHistogram.lowerBound(i+1));
+			// bucket width is at most 1/8 of its lower bound
+			long width = LatencyHistogram.lowerBound(i+1) - LatencyHistogram.lowerBound(i);
+			Assert.assertTrue(v < 8 || width*8 <= LatencyHistogram.lowerBound(i));
+			last = i;
+		}
+	}
+	
+	@Test
+	public void testClamp() {
+		LatencyHistogram h = new LatencyHistogram();
+		h.record(-5);
+		h.record(1L << 50);
+		
+		LatencyDTO l = h.snapshot();
+		Assert.assertEquals(2, l.count);
+		Assert.assertEquals(0, l.min);
+		Assert.assertEquals(1L << 50, l.max);
+		// out of range values end up in the last bucket
+		Assert.assertTrue(l.p999 >= LatencyHistogram.lowerBound(LatencyHistogram.index((1L << 40)-1)));
+	}
+	
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(long v=1;v<=1000;v++){
+			h.record(v);
+		}
+		
+		LatencyDTO l = h.snapshot();
+		Assert.assertEquals(1000, l.count);
+		Assert.assertEquals(500500, l.total);
+		Assert.assertEquals(500.5, l.mean, 0.0001);
+		Assert.assertEquals(1, l.min);
+		Assert.assertEquals(1000, l.max);
+		
+		assertWithin(500, l.p50);
+		assertWithin(900, l.p90);
+		assertWithin(990, l.p99);
+		assertWithin(999, l.p999);
+		
+		Assert.assertTrue(l.p50 <= l.p90);
+		Assert.assertTrue(l.p90 <= l.p99);
+		Assert.assertTrue(l.p99 <= l.p999);
+		Assert.assertTrue(l.p999 <= l.max);
+	}
+	
+	@Test
+	public void testExactPercentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(int i=0;i<99;i++){
+			h.record(5);
+		}
+		h.record(7);
+		
+		LatencyDTO l = h.snapshot();
+		Assert.assertEquals(5, l.p50);
+		Assert.assertEquals(5, l.p90);
+		Assert.assertEquals(5, l.p99);
+		Assert.assertEquals(7, l.p999);
+	}
+	
+	@Test
+	public void testPercentileBelowMax() {
+		// middle of the bucket [96, 104) is 99, but should not exceed the observed max
+		LatencyHistogram h = new LatencyHistogram();
+		h.record(97);
+		
+		LatencyDTO l = h.snapshot();
+		Assert.assertEquals(97, l.p50);
+		Assert.assertEquals(97, l.p999);
+	}
+	
+	@Test
+	public void testReset() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(long v=1000;v<2000;v++){
+			h.record(v);
+		}
+		h.reset();
+		
+		Assert.assertEquals(0, h.count());
+		LatencyDTO l = h.snapshot();
+		Assert.assertEquals(0, l.count);
+		Assert.assertEquals(0, l.total);
+		Assert.assertEquals(0, l.min);
+		Assert.assertEquals(0, l.max);
+		Assert.assertEquals(0, l.mean, 0);
+		Assert.assertEquals(0, l.p50);
+		Assert.assertEquals(0, l.p999);
+		
+		// min and max start over after a reset
+		h.record(10);
+		l = h.snapshot();
+		Assert.assertEquals(1, l.count);
+		Assert.assertEquals(10, l.min);
+		Assert.assertEquals(10, l.max);
+		Assert.assertEquals(10, l.p50);
+	}
+	
+	private void assertWithin(long expected, long actual){
+		Assert.assertEquals(expected, actual, expected*0.125);
+	}
+}
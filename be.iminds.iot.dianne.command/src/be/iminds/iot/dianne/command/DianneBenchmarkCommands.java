@@ -25,27 +25,35 @@ package be.iminds.iot.dianne.command;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.felix.service.command.Descriptor;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 
 import be.iminds.iot.dianne.api.nn.Dianne;
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.nn.module.AbstractModule;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO;
 import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
 import be.iminds.iot.dianne.api.nn.platform.DiannePlatform;
+import be.iminds.iot.dianne.api.nn.runtime.DianneRuntime;
 import be.iminds.iot.dianne.tensor.Tensor;
 
 @Component(
 		service=Object.class,
 		property={"osgi.command.scope=dianne",
 				  "osgi.command.function=benchmark",
-				  "osgi.command.function=trace"},
+				  "osgi.command.function=trace",
+				  "osgi.command.function=metrics"},
 		immediate=true)
 public class DianneBenchmarkCommands {
 
@@ -58,6 +66,7 @@ public class DianneBenchmarkCommands {
 	// Dianne components
 	Dianne dianne;
 	DiannePlatform platform;
+	Map<UUID, DianneRuntime> runtimes = new ConcurrentHashMap<>();
 	
 	@Activate
 	public void activate(BundleContext context){
@@ -221,6 +230,38 @@ public class DianneBenchmarkCommands {
 		trace(nnName, input, false);
 	}
 	
+	@Descriptor("Print the metrics of each module of a deployed neural network instance.")
+	public void metrics(
+			@Descriptor("neural network instance id")
+			String nnId){
+		NeuralNetworkInstanceDTO nni = null;
+		try {
+			nni = platform.getNeuralNetworkInstance(UUID.fromString(nnId));
+		} catch(IllegalArgumentException e){
+		}
+		if(nni == null){
+			System.out.println("No neural network instance "+nnId);
+			return;
+		}
+		
+		System.out.println("Metrics "+nni.name+" ("+nni.id+") - times in us:");
+		System.out.println("module\t\t\t\t\ttype\t\tfwd\tfwd mean\tfwd p99\tbwd\tbwd mean\tbwd p99\tqueue p99\twait\toutput (B)");
+		for(ModuleInstanceDTO mi : nni.modules.values()){
+			DianneRuntime runtime = runtimes.get(mi.runtimeId);
+			if(runtime == null)
+				continue;
+			
+			ModuleMetricsDTO m = runtime.getModuleMetrics(nni.id).get(mi.moduleId);
+			if(m == null)
+				continue;
+			
+			System.out.println(mi.moduleId+"\t"+mi.module.type+"\t\t"
+					+m.forward.count+"\t"+df.format(m.forward.mean/1000)+"\t\t"+df.format(m.forward.p99/1000.0)+"\t"
+					+m.backward.count+"\t"+df.format(m.backward.mean/1000)+"\t\t"+df.format(m.backward.p99/1000.0)+"\t"
+					+df.format(m.queue.p99/1000.0)+"\t\t"+df.format(m.waitTime/1000.0)+"\t"+m.outputBytes);
+		}
+	}
+	
 	private double run(NeuralNetwork nn, Tensor input, int times, boolean backward) throws Exception {
 		long t1 = System.nanoTime();
 		Tensor result = null;
@@ -256,5 +297,15 @@ public class DianneBenchmarkCommands {
 	void setDianne(Dianne d){
 		dianne = d;
 	}
+	
+	@Reference(cardinality=ReferenceCardinality.MULTIPLE, 
+			policy=ReferencePolicy.DYNAMIC)
+	void addDianneRuntime(DianneRuntime r){
+		runtimes.put(r.getRuntimeId(), r);
+	}
+	
+	void removeDianneRuntime(DianneRuntime r){
+		runtimes.values().remove(r);
+	}
 
 }
@@ -36,6 +36,7 @@ import be.iminds.iot.dianne.api.coordinator.DianneCoordinator;
 import be.iminds.iot.dianne.api.coordinator.EvaluationResult;
 import be.iminds.iot.dianne.api.coordinator.Job;
 import be.iminds.iot.dianne.api.coordinator.LearnResult;
+import be.iminds.iot.dianne.api.coordinator.SearchResult;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
 
 /**
@@ -50,6 +51,7 @@ import be.iminds.iot.dianne.api.nn.eval.Evaluation;
 				  "osgi.command.function=act",
 				  "osgi.command.function=rl",
 				  "osgi.command.function=bptt",
+				  "osgi.command.function=search",
 				  "osgi.command.function=running",
 				  "osgi.command.function=queued",
 				  "osgi.command.function=finished",
@@ -345,6 +347,35 @@ public class DianneCoordinatorCommands {
 		});
 	}
 
+	@Descriptor("Search the hyperparameters of a learn job, specify the search space as search.key=values with values "
+			+ "a comma separated list of choices, min:max, log:min:max or int:min:max")
+	public void search(
+			@Descriptor("Neural network name (use comma-separated list if multiple instances are required, e.g. for RL)")
+			String nnName, 
+			@Descriptor("Dataset to train on")
+			String dataset, 
+			@Descriptor("Additional properties, specified as key1=value1 key2=value2 ...")
+			String... properties){
+		try {
+			Map<String, String> defaults = new HashMap<>();
+			defaults.put("strategy", "FeedForwardLearningStrategy");
+			
+			Map<String, String> config = createConfig(defaults, properties);
+		
+			coordinator.search(dataset, config, nnName.split(",")).then(p -> {
+				System.out.println("Hyperparameter search done!");
+				SearchResult result = p.getValue();
+				result.trials.stream().forEach(trial -> System.out.println(trial));
+				System.out.println("Best: "+result.best());
+				return null;
+			}, p -> {
+				System.out.println("Hyperparameter search failed: "+p.getFailure().getMessage());
+				p.getFailure().printStackTrace();
+			});
+		} catch(Exception e){
+			e.printStackTrace();
+		}
+	}
 	
 	private Map<String, String> createConfig(Map<String, String> defaults, String[] properties){
 		Map<String, String> config = new HashMap<String, String>(defaults);
@@ -58,6 +58,7 @@ import be.iminds.iot.dianne.tensor.Tensor;
 				  "osgi.command.function=models",
 				  "osgi.command.function=deploy",
 				  "osgi.command.function=undeploy",
+				  "osgi.command.function=prefetch",
 				  "osgi.command.function=size",
 				  "osgi.command.function=gc"},
 		immediate=true)
@@ -242,6 +243,23 @@ public class DiannePlatformCommands {
 		return null;
 	}
 	
+	@Descriptor("Prefetch the weights of a neural network with a specific tag in the parameter cache of a runtime.")
+	public void prefetch(
+			@Descriptor("name of the neural network")
+			String name, 
+			@Descriptor("index of the target runtime (from the runtimes command output)")
+			int index, 
+			@Descriptor("tags of the weights to prefetch")
+			String... tags){
+		List<UUID> runtimes = new ArrayList<UUID>(platform.getRuntimes().keySet());
+		try {
+			platform.prefetchNeuralNetwork(name, runtimes.get(index), tags);
+			System.out.println("Prefetched "+name+" on runtime "+runtimes.get(index));
+		} catch (InstantiationException e) {
+			System.out.println("Error prefetching "+name+": "+e.getMessage());
+		}
+	}
+	
 	@Descriptor("Undeploy a neural network.")
 	public void undeploy(
 			@Descriptor("uuid of the neural network instance")
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 
+import org.osgi.framework.Filter;
 import org.osgi.util.promise.Deferred;
 import org.osgi.util.promise.Promise;
 
@@ -62,6 +63,20 @@ public abstract class AbstractJob<T> implements Runnable {
 	protected long started = 0;
 	protected long stopped = 0;
 	
+	// scheduling requirements
+	protected int priority = 0;
+	protected long deadline = Long.MAX_VALUE;
+	protected boolean preemptible = true;
+	protected List<UUID> requiredTargets = null;
+	protected int targetCount = 1;
+	protected Filter targetFilter = null;
+	protected boolean forceFree = false;
+	
+	// set by the scheduler
+	protected long sequence = 0;
+	protected String waiting = null;
+	protected volatile boolean preempted = false;
+	
 	public AbstractJob(DianneCoordinatorImpl coord,
 			Type type,
 			String d,
@@ -92,6 +107,44 @@ public abstract class AbstractJob<T> implements Runnable {
 		this.config = c;
 		
 		this.submitted = System.currentTimeMillis();
+		
+		if(c.containsKey("priority")){
+			this.priority = Integer.parseInt(c.get("priority"));
+		}
+		
+		// deadline in seconds after submission, jobs with an earlier deadline are scheduled first
+		if(c.containsKey("deadline")){
+			this.deadline = submitted + (long)(Double.parseDouble(c.get("deadline"))*1000);
+		}
+		
+		if(c.containsKey("preemptible")){
+			this.preemptible = Boolean.parseBoolean(c.get("preemptible"));
+		}
+		
+		// check in case a target list is given as comma separated uuids
+		String t = c.get("targets");
+		if(t!=null){
+			try {
+				requiredTargets = new ArrayList<>();
+				for(String tt : t.split(",")){
+					requiredTargets.add(UUID.fromString(tt.trim()));
+				}
+			} catch(Exception e){
+				e.printStackTrace();
+				requiredTargets = null;
+			}
+		}
+		
+		if(c.containsKey("targetCount")){
+			targetCount = Integer.parseInt(c.get("targetCount"));
+		} else if(requiredTargets!=null){
+			// if no count given but targets is, use all of them
+			targetCount = requiredTargets.size();
+		}
+		
+		if(c.containsKey("forceFree")){
+			forceFree = Boolean.parseBoolean(c.get("forceFree"));
+		}
 	}
 	
 	public void run(){
@@ -30,8 +30,6 @@ import java.io.PrintStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,17 +39,13 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
 
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.Filter;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -59,6 +53,7 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.util.promise.Deferred;
 import org.osgi.util.promise.Promise;
 
 import com.google.gson.stream.JsonWriter;
@@ -74,7 +69,9 @@ import be.iminds.iot.dianne.api.coordinator.Job.Type;
 import be.iminds.iot.dianne.api.coordinator.LearnResult;
 import be.iminds.iot.dianne.api.coordinator.Notification;
 import be.iminds.iot.dianne.api.coordinator.Notification.Level;
+import be.iminds.iot.dianne.api.coordinator.SearchResult;
 import be.iminds.iot.dianne.api.coordinator.Status;
+import be.iminds.iot.dianne.api.dataset.Dataset;
 import be.iminds.iot.dianne.api.dataset.DianneDatasets;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
 import be.iminds.iot.dianne.api.nn.eval.Evaluator;
@@ -102,16 +99,15 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 	
 	DeviceManager deviceMgr;
 	
-	// separate queues for learn and eval jobs, 
-	// makes sure eval jobs are not blocked by big learn jobs
-	Queue<AbstractJob> queueLearn = new LinkedBlockingQueue<>();
-	Queue<AbstractJob> queueEval = new LinkedBlockingQueue<>();
-	Queue<AbstractJob> queueAct = new LinkedBlockingQueue<>();
-
+	// single priority queue for all jobs, see JobScheduler
+	JobScheduler scheduler = new JobScheduler(this);
 
 	Set<AbstractJob> running = new HashSet<>();
 	Queue<AbstractJob> finished = new CircularBlockingQueue<>(10);
 	
+	Map<UUID, HyperparameterSearch> searches = new ConcurrentHashMap<>();
+	Queue<HyperparameterSearch> finishedSearches = new CircularBlockingQueue<>(10);
+	
 	Map<UUID, Learner> learners = new ConcurrentHashMap<>();
 	Map<UUID, Evaluator> evaluators = new ConcurrentHashMap<>();
 	Map<UUID, Agent> agents = new ConcurrentHashMap<>();
@@ -138,7 +134,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 
 		
 		long spaceLeft = repository.spaceLeft();
-		Status currentStatus = new Status(queueAct.size()+queueLearn.size()+queueEval.size(), running.size(), learn, eval, act, idle, devices.size(), spaceLeft, boot);
+		Status currentStatus = new Status(scheduler.queue.size(), running.size(), learn, eval, act, idle, devices.size(), spaceLeft, boot);
 		return currentStatus;
 	}
 	
@@ -148,12 +144,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 			repository.storeNeuralNetwork(nn);
 		
 		LearnJob job = new LearnJob(this, dataset, config, nns);
-		queueLearn.add(job);
-		
-		sendNotification(job.jobId, Level.INFO, "Learn job \""+job.name+"\" submitted.");
-		
-		schedule(Type.LEARN);
-		
+		submit(job, "Learn");
 		return job.getPromise();
 	}
 
@@ -166,6 +157,43 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		return learn(dataset, config, nns);
 	}
 	
+	Promise<LearnResult> learn(LearnJob job) {
+		submit(job, "Learn");
+		return job.getPromise();
+	}
+	
+	@Override
+	public Promise<SearchResult> search(String dataset, Map<String, String> config, NeuralNetworkDTO... nns) {
+		for(NeuralNetworkDTO nn : nns)
+			repository.storeNeuralNetwork(nn);
+		
+		HyperparameterSearch search;
+		try {
+			search = new HyperparameterSearch(this, dataset, config, nns);
+		} catch(Exception e){
+			Deferred<SearchResult> failed = new Deferred<>();
+			failed.fail(e);
+			return failed.getPromise();
+		}
+		searches.put(search.searchId, search);
+		return search.start();
+	}
+	
+	@Override
+	public Promise<SearchResult> search(String dataset, Map<String, String> config, String... nnName) {
+		NeuralNetworkDTO[] nns = new NeuralNetworkDTO[nnName.length];
+		for(int i=0;i<nns.length;i++){
+			nns[i] = repository.loadNeuralNetwork(nnName[i]);
+		}
+		return search(dataset, config, nns);
+	}
+	
+	// called when a hyperparameter search is done
+	void done(HyperparameterSearch search){
+		searches.remove(search.searchId);
+		finishedSearches.add(search);
+	}
+	
 	@Override
 	public Promise<EvaluationResult> eval(String dataset, Map<String, String> config, NeuralNetworkDTO... nns) {
 		if(nns != null){
@@ -178,12 +206,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		}
 		
 		EvaluationJob job = new EvaluationJob(this, dataset, config, nns);
-		queueEval.add(job);
-		
-		sendNotification(job.jobId, Level.INFO, "Evaluation job \""+job.name+"\" submitted.");
-		
-		schedule(Type.EVALUATE);
-		
+		submit(job, "Evaluation");
 		return job.getPromise();
 	}
 	
@@ -223,14 +246,26 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 			}
 		}
 		
-		ActJob job = new ActJob(this, dataset, config, nns);
-		queueAct.add(job);
-		
-		sendNotification(job.jobId, Level.INFO, "Act job \""+job.name+"\" submitted.");
+		return act(new ActJob(this, dataset, config, nns));
+	}
+	
+	Promise<AgentResult> act(ActJob job) {
+		submit(job, "Act");
+		return job.getPromise();
+	}
+	
+	private void submit(AbstractJob<?> job, String kind){
+		try {
+			scheduler.submit(job);
+		} catch(Exception e){
+			sendNotification(job.jobId, Level.DANGER, kind+" job \""+job.name+"\" rejected: "+e.getMessage());
+			job.done(new JobFailedException(null, job.jobId, "Invalid job configuration: "+e.getMessage(), e));
+			return;
+		}
 		
-		schedule(Type.ACT);
+		sendNotification(job.jobId, Level.INFO, kind+" job \""+job.name+"\" submitted.");
 		
-		return job.getPromise();
+		scheduler.schedule();
 	}
 
 	@Override
@@ -287,8 +322,23 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		return null;
 	}
 	
+	@Override
+	public SearchResult getSearchResult(UUID searchId) {
+		HyperparameterSearch search = searches.get(searchId);
+		if(search == null){
+			search = finishedSearches.stream().filter(s -> s.searchId.equals(searchId)).findFirst().orElse(null);
+		}
+		return search == null ? null : search.getProgress();
+	}
+	
 	@Override
 	public void stop(UUID jobId) throws Exception {
+		HyperparameterSearch search = searches.get(jobId);
+		if(search!=null){
+			search.stop();
+			return;
+		}
+		
 		AbstractJob job = getAbstractJob(jobId);
 		if(job!=null){
 			job.stop();
@@ -298,13 +348,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 	private AbstractJob getAbstractJob(UUID jobId){
 		AbstractJob job = null;
 		try {
-			job = queueLearn.stream().filter(j -> j.jobId.equals(jobId)).findFirst().get();
-		} catch(NoSuchElementException e){}
-		try {
-			job = queueEval.stream().filter(j -> j.jobId.equals(jobId)).findFirst().get();
-		} catch(NoSuchElementException e){}
-		try {
-			job = queueAct.stream().filter(j -> j.jobId.equals(jobId)).findFirst().get();
+			job = scheduler.queue.stream().filter(j -> j.jobId.equals(jobId)).findFirst().get();
 		} catch(NoSuchElementException e){}
 		try {
 			job = running.stream().filter(j -> j.jobId.equals(jobId)).findFirst().get();
@@ -329,22 +373,8 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 	
 	@Override
 	public List<Job> queuedJobs() {
-		List<Job> learnJobs = queueLearn.stream().map(j -> j.get()).collect(Collectors.toList());
-		List<Job> evalJobs = queueEval.stream().map(j -> j.get()).collect(Collectors.toList());
-		List<Job> actJobs = queueAct.stream().map(j -> j.get()).collect(Collectors.toList());
-
-		
-		List<Job> allJobs = new ArrayList<>(learnJobs);
-		allJobs.addAll(evalJobs);
-		allJobs.addAll(actJobs);
-		allJobs.sort(new Comparator<Job>() {
-
-			@Override
-			public int compare(Job o1, Job o2) {
-				return (int)(o1.submitted - o2.submitted);
-			}
-		});
-		return allJobs;
+		// in the order they will be scheduled
+		return scheduler.queue.stream().map(j -> j.get()).collect(Collectors.toList());
 	}
 
 	@Override
@@ -433,181 +463,17 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 			} catch (InterruptedException e) {
 			}
 		} else {
-			// if not running, remove from any queue
-			queueLearn.remove(job);
-			queueEval.remove(job);
-			queueAct.remove(job);
+			// if not running, remove from the queue
+			scheduler.remove(job);
 			sendNotification(job.jobId, Level.WARNING, "Job \""+job.name+"\" canceled.");
 		}
 		
 		finished.add(job);
 
-		// schedule new one, check which queue has longest waiting queue item and schedule that one first
-		SortedSet<Queue<AbstractJob>> queues = new TreeSet<>(new Comparator<Queue<AbstractJob>>() {
-			@Override
-			public int compare(Queue<AbstractJob> o1, Queue<AbstractJob> o2) {
-				AbstractJob j1 = o1.peek();
-				AbstractJob j2 = o2.peek();
-				if(j1 == null){
-					if(j2 ==null){
-						return 0;
-					} else {
-						return 1;
-					}
-				} else if(j2 ==null){
-					return -1;
-				} else {
-					return (int)(j1.submitted - j2.submitted);
-				}
-			}
-		});
-		queues.add(queueLearn);
-		queues.add(queueEval);
-		queues.add(queueAct);
-		for(Queue q : queues){
-			schedule( (q==queueLearn) ? Type.LEARN : (q==queueEval) ? Type.EVALUATE : Type.ACT  );
-		}
-	}
-	
-	// try to schedule the job on top of the queue
-	synchronized void schedule(Type type){
-
-		Queue<AbstractJob> queue = null;
-		switch(type){
-		case LEARN:
-			queue = queueLearn;
-			break;
-		case EVALUATE:
-			queue = queueEval;
-			break;
-		case ACT:
-			queue = queueAct;
-			break;
-		}
-		
-		// try to schedule the next job on the queue
-		AbstractJob<?> job = queue.peek();
-		if(job==null){
-			// no more jobs...
-			return;
-		}
-		
-		// check in case a target list is given as comma separated uuids
-		List<UUID> targets = null;
-		String t = (String)job.config.get("targets");
-		if(t!=null){
-			try {
-				targets = new ArrayList<>();
-				for(String tt : t.split(",")){
-					targets.add(UUID.fromString(tt));
-				}
-			} catch(Exception e){
-				e.printStackTrace();
-				targets = null;
-			}
-		}
-		
-		// check if count/filter is specified
-		int count = 1;
-		if(job.config.containsKey("targetCount")){
-			count = Integer.parseInt((String)job.config.get("targetCount"));
-		} else if(targets!=null){
-			// if no count given but targets is, use all of them?
-			count = targets.size();
-		}
-		String filter = (String)job.config.get("targetFilter");
-		
-		boolean forceFree = false;
-		if(job.config.containsKey("forceFree")){
-			forceFree = Boolean.parseBoolean("forceFree");
-		}
-		
-		try {
-			if(targets!=null){
-				targets = findTargets(type, targets, filter, count, forceFree);
-			} else if(type==Type.EVALUATE){
-				targets = findTargets(type, evaluators.keySet(), filter, count, forceFree);
-			} else if(type==Type.LEARN){
-				targets = findTargets(type, learners.keySet(), filter, count, forceFree);
-			} else if(type==Type.ACT){
-				targets = findTargets(type, agents.keySet(), filter, count, forceFree);
-			}
-		} catch(Exception e){
-			// impossible to find targets (i.e. not enough workers (yet)) ... try to schedule next and add this one to back of queue
-			job = queue.poll();
-			sendNotification(job.jobId, Level.WARNING, "Job \""+job.name+"\" failed to start: "+e.getMessage());
-			schedule(type);
-			queue.add(job);
-			return;
-		}
-			
-		for(UUID target : targets){
-			deviceUsage.get(target).set(job.type.ordinal());
-		}
-		job = queue.poll();
-		job.start(targets, pool);
-		running.add(job);
-			
-		sendNotification(job.jobId, Level.INFO, "Job \""+job.name+"\" started.");
-
+		// schedule new ones on the freed devices
+		scheduler.schedule();
 	}
 	
-	List<UUID> findTargets(Type type, Collection<UUID> ids, String filter, int count, boolean forceFree) throws Exception {
-		List<UUID> candidates = ids.stream()
-					.map(uuid -> devices.get(uuid))
-					.filter( device -> {	// match device filter
-						if(device==null)
-							return false;  // could be an invalid uuid if given from targets property
-						
-						if(filter==null)
-							return true;
-						
-						try {
-							Filter f = context.createFilter(filter);
-							return f.matches(toMap(device));
-						} catch(Exception e){
-							e.printStackTrace();
-							return false;
-						}
-					})
-					.map(device -> device.id)
-					// discourate the use of devices that tend to cause errors :-)
-					.sorted(new Comparator<UUID>() {
-						@Override
-						public int compare(UUID o1, UUID o2) {
-							int errors1 = deviceErrors.containsKey(o1) ? deviceErrors.get(o1) : 0;
-							int errors2 = deviceErrors.containsKey(o2) ? deviceErrors.get(o2) : 0;
-							return errors1 -errors2;
-						}
-					})
-					.collect(Collectors.toList());
-		
-		// check if this is possible
-		if(candidates.size() < count)
-			throw new Exception("Insufficient infrastructure to meet the requirements of this Job");
-		
-		// check if the possible devices are currently available
-		List<UUID> targets = candidates.stream()
-			.filter(uuid -> deviceUsage.get(uuid).isEmpty()) // search for free nodes only
-			.limit(count)
-			.collect(Collectors.toList());
-		
-		// no free devices
-		// search for devices not already running this job type and co-locate? 
-		if(targets.size() != count && !forceFree){
-			targets = candidates.stream()
-					.filter(uuid -> !deviceUsage.get(uuid).get(type.ordinal())) 
-					.limit(count)
-					.collect(Collectors.toList());
-		}
-
-		if(targets.size() != count){
-			throw new Exception("Not enough free targets for this Job");
-		}
-		
-		return targets;
-	}
-
 	void sendNotification(UUID jobId, Level level, String message){
 		Notification n = new Notification(jobId, level, message);
 		
@@ -745,7 +611,8 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		
 		sendNotification(null, Level.INFO, "New Learner "+id+" is added to the system.");
 		
-		schedule(Type.LEARN);
+		scheduler.devicesChanged();
+		scheduler.schedule();
 	}
 	
 	void removeLearner(Learner learner, Map<String, Object> properties){
@@ -761,6 +628,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		}
 		
 		removeDevice(id);
+		scheduler.devicesChanged();
 		
 		sendNotification(null, Level.WARNING, "Learner "+id+" is removed from the system.");
 		
@@ -781,7 +649,8 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		
 		sendNotification(null, Level.INFO, "New Evaluator "+id+" is added to the system.");
 		
-		schedule(Type.EVALUATE);
+		scheduler.devicesChanged();
+		scheduler.schedule();
 	}
 	
 	void removeEvaluator(Evaluator evaluator, Map<String, Object> properties){
@@ -797,6 +666,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		}
 		
 		removeDevice(id);
+		scheduler.devicesChanged();
 		
 		sendNotification(null, Level.WARNING, "Evaluator "+id+" is removed from the system.");
 		
@@ -817,7 +687,8 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		
 		sendNotification(null, Level.INFO, "New Agent "+id+" is added to the system.");
 		
-		schedule(Type.ACT);
+		scheduler.devicesChanged();
+		scheduler.schedule();
 	}
 	
 	void removeAgent(Agent agent, Map<String, Object> properties){
@@ -833,6 +704,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 		}
 		
 		removeDevice(id);
+		scheduler.devicesChanged();
 		
 		sendNotification(null, Level.WARNING, "Agent "+id+" is removed from the system.");
 		
@@ -842,6 +714,24 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 			.filter(job -> job.targets.contains(target)).forEach(job -> job.done(new Exception("Job failed because executing node was killed")));
 	}
 	
+	@Reference(policy=ReferencePolicy.DYNAMIC,
+			cardinality=ReferenceCardinality.MULTIPLE)
+	void addDataset(Dataset dataset, Map<String, Object> properties){
+		String name = (String) properties.get("name");
+		if(name == null)
+			return;
+		
+		// actor-learner jobs wait for the queue of their actors
+		List<LearnJob> jobs = running.stream()
+			.filter(job -> job instanceof LearnJob)
+			.map(job -> (LearnJob)job)
+			.collect(Collectors.toList());
+		pool.execute(() -> jobs.forEach(job -> job.datasetAdded(name)));
+	}
+	
+	void removeDataset(Dataset dataset, Map<String, Object> properties){
+	}
+	
 	private AbstractJob getRunningJob(UUID jobId){
 		try {
 			return running.stream().filter(job -> job.jobId.equals(jobId)).findFirst().get();
@@ -878,7 +768,7 @@ public class DianneCoordinatorImpl implements DianneCoordinator {
 	
 	
 	// TODO use Object Conversion spec for this...
-	private Map<String, Object> toMap(Object o){
+	Map<String, Object> toMap(Object o){
 		Map<String, Object> properties = new HashMap<>();
 		for(Field f : o.getClass().getFields()){
 			try {
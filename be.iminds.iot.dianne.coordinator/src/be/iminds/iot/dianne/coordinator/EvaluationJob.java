@@ -27,10 +27,12 @@ import java.util.Map;
 import java.util.UUID;
 
 import be.iminds.iot.dianne.api.coordinator.EvaluationResult;
+import be.iminds.iot.dianne.api.dataset.Dataset;
 import be.iminds.iot.dianne.api.coordinator.Job.EvaluationCategory;
 import be.iminds.iot.dianne.api.coordinator.Job.Type;
 import be.iminds.iot.dianne.api.nn.eval.ClassificationEvaluation;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationProgress;
 import be.iminds.iot.dianne.api.nn.eval.Evaluator;
 import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkDTO;
@@ -61,14 +63,34 @@ public class EvaluationJob extends AbstractJob<EvaluationResult> {
 			evalConfig.put("range", config.get("testSet"));
 		}
 
+		// optionally split the dataset in a contiguous shard per evaluator
+		int[] range = null;
+		if(Boolean.parseBoolean(config.getOrDefault("shard", "false")) && targets.size() > 1){
+			range = range(evalConfig.get("range"));
+			if(range == null){
+				System.out.println("Cannot shard range "+evalConfig.get("range")+", evaluating the whole range on each evaluator");
+			}
+		}
+		
 		Thread[] threads = new Thread[targets.size()];
 		for(int i=0;i<targets.size();i++){
 			final UUID target = targets.get(i);
+			final Map<String, String> targetConfig = new HashMap<>(evalConfig);
+			if(range != null){
+				int size = range[1]-range[0];
+				int start = range[0] + (int)((long)size*i/targets.size());
+				int end = range[0] + (int)((long)size*(i+1)/targets.size());
+				targetConfig.put("range", start+","+end);
+				if(targetConfig.containsKey("outputFile")){
+					// evaluators on the same host should not write to the same file
+					targetConfig.put("outputFile", EvaluationOutputs.shardFile(targetConfig.get("outputFile"), i));
+				}
+			}
 			threads[i] = new Thread(new Runnable(){
 				public void run(){
 					try {
 						Evaluator evaluator = coordinator.evaluators.get(target);
-						Evaluation e = evaluator.eval(dataset, evalConfig, nnis.get(target));
+						Evaluation e = evaluator.eval(dataset, targetConfig, nnis.get(target));
 						
 						System.out.println("Evaluation result");
 						System.out.println("---");
@@ -102,10 +124,55 @@ public class EvaluationJob extends AbstractJob<EvaluationResult> {
 			}
 		}
 		
-		result = new EvaluationResult(results);
+		Evaluation merged = null;
+		if(range != null && results.size() == targets.size()){
+			merged = merge();
+			System.out.println("Merged evaluation result");
+			System.out.println("---");
+			System.out.println("Metric: "+merged.metric());
+			System.out.println("Size: "+merged.size());
+			System.out.println("---");
+		}
+		
+		result = new EvaluationResult(results, merged);
 		
 		done(result);
 	}
+	
+	/**
+	 * @return start and end index of the range to evaluate, or null if this is no contiguous range
+	 */
+	private int[] range(String range){
+		if(range == null){
+			Dataset d = coordinator.datasets.getDataset(dataset);
+			return d == null ? null : new int[]{0, d.size()};
+		}
+		
+		String[] split = range.split(",");
+		if(split.length == 1){
+			return new int[]{0, Integer.parseInt(split[0].trim())};
+		} else if(split.length == 2){
+			return new int[]{Integer.parseInt(split[0].trim()), Integer.parseInt(split[1].trim())};
+		}
+		return null;
+	}
+	
+	/**
+	 * Merge the partial results of all shards in order, without touching the partial results themselves
+	 */
+	private Evaluation merge(){
+		Evaluation first = results.get(targets.get(0));
+		Evaluation merged;
+		try {
+			merged = first.getClass().newInstance();
+		} catch(Exception e){
+			merged = new Evaluation();
+		}
+		for(UUID target : targets){
+			merged.merge(results.get(target));
+		}
+		return merged;
+	}
 
 	@Override
 	public EvaluationResult getProgress() {
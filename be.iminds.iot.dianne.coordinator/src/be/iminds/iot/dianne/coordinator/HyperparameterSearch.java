@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.coordinator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+
+import be.iminds.iot.dianne.api.coordinator.LearnResult;
+import be.iminds.iot.dianne.api.coordinator.Notification.Level;
+import be.iminds.iot.dianne.api.coordinator.SearchResult;
+import be.iminds.iot.dianne.api.coordinator.SearchResult.Trial;
+import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkDTO;
+
+/**
+ * Searches the hyperparameters of a learn job by launching a number of trials, 
+ * each a LearnJob with a configuration sampled from the search space. The validation
+ * results of the trials are used to stop unpromising trials early, either by 
+ * asynchronous successive halving (ASHA) or population based training (PBT).
+ * 
+ * The search space is given by config entries search.<key>=<values>, with values either
+ * a comma separated list of choices, min:max (uniform), log:min:max (log uniform) or 
+ * int:min:max (uniform integer).
+ * 
+ * @author tverbele
+ *
+ */
+public class HyperparameterSearch {
+
+	public enum Scheduler {
+		ASHA,
+		PBT
+	}
+	
+	private static final String PREFIX = "search.";
+	
+	final UUID searchId = UUID.randomUUID();
+	final String name;
+	
+	private final DianneCoordinatorImpl coordinator;
+	private final String dataset;
+	private final NeuralNetworkDTO[] nns;
+	
+	// config shared by all trials
+	private final Map<String, String> base = new HashMap<>();
+	private final Map<String, Param> space = new HashMap<>();
+	
+	private final Scheduler scheduler;
+	private final int trials;
+	private final int parallel;
+	private final long maxIterations;
+	private final long minIterations;
+	
+	// ASHA: keep the 1/reductionFactor best trials at each rung
+	private final int reductionFactor;
+	private final List<List<Float>> rungs = new ArrayList<>();
+	
+	// PBT: every perturbInterval, the bottom quantile trials continue from a top quantile one
+	private final long perturbInterval;
+	private final float quantile;
+	
+	private final Random random;
+	
+	private final Deferred<SearchResult> deferred = new Deferred<>();
+	private final SearchResult result = new SearchResult();
+	private final Map<LearnJob, TrialState> running = new HashMap<>();
+	private int launched = 0;
+	private boolean stopped = false;
+	
+	private static class TrialState {
+		final Trial trial;
+		// iterations trained by the trial(s) this one continues from
+		final long offset;
+		int rung = 0;
+		long nextPerturb;
+		
+		TrialState(Trial trial, long offset){
+			this.trial = trial;
+			this.offset = offset;
+		}
+	}
+	
+	public HyperparameterSearch(DianneCoordinatorImpl coordinator, String dataset, Map<String, String> config, NeuralNetworkDTO[] nns) throws Exception {
+		this.coordinator = coordinator;
+		this.dataset = dataset;
+		this.nns = nns;
+		this.name = config.containsKey("name") ? config.get("name") : searchId.toString();
+		
+		if(!config.containsKey("validationSet"))
+			throw new Exception("A hyperparameter search requires a validationSet");
+		
+		for(Map.Entry<String, String> e : config.entrySet()){
+			if(e.getKey().startsWith(PREFIX)){
+				space.put(e.getKey().substring(PREFIX.length()), new Param(e.getValue()));
+			} else {
+				base.put(e.getKey(), e.getValue());
+			}
+		}
+		if(space.isEmpty())
+			throw new Exception("No search space given, specify as "+PREFIX+"<key>=<values>");
+		
+		scheduler = Scheduler.valueOf(remove("scheduler", "ASHA").toUpperCase());
+		trials = Integer.parseInt(remove("trials", "16"));
+		parallel = Integer.parseInt(remove("parallel", ""+Math.max(1, coordinator.learners.size())));
+		reductionFactor = Integer.parseInt(remove("reductionFactor", "3"));
+		quantile = Float.parseFloat(remove("quantile", "0.25"));
+		random = base.containsKey("seed") ? new Random(Long.parseLong(base.get("seed"))) : new Random();
+		
+		maxIterations = base.containsKey("maxIterations") ? Long.parseLong(base.get("maxIterations")) : -1;
+		long validationInterval = base.containsKey("validationInterval") ? Long.parseLong(base.get("validationInterval")) : 1000;
+		minIterations = Long.parseLong(remove("minIterations", ""+validationInterval));
+		perturbInterval = Long.parseLong(remove("perturbInterval", ""+minIterations));
+		
+		if(scheduler == Scheduler.PBT && maxIterations <= 0)
+			throw new Exception("Population based training requires maxIterations");
+		
+		base.remove("name");
+		base.remove("tag");
+	}
+	
+	private String remove(String key, String defaultValue){
+		String value = base.remove(key);
+		return value == null ? defaultValue : value;
+	}
+	
+	Promise<SearchResult> start(){
+		coordinator.sendNotification(searchId, Level.INFO, "Hyperparameter search \""+name+"\" started with "+trials+" trials ("+scheduler+").");
+		launch();
+		return deferred.getPromise();
+	}
+	
+	synchronized void stop(){
+		stopped = true;
+		for(LearnJob job : new ArrayList<>(running.keySet())){
+			try {
+				job.stop();
+			} catch(Exception e){}
+		}
+		checkDone();
+	}
+	
+	// return a copy, as the trials are updated while the search is running
+	synchronized SearchResult getProgress(){
+		SearchResult progress = new SearchResult();
+		for(Trial t : result.trials){
+			Trial trial = new Trial();
+			trial.jobId = t.jobId;
+			trial.tag = t.tag;
+			trial.config = new HashMap<>(t.config);
+			trial.parent = t.parent;
+			trial.iterations = t.iterations;
+			trial.loss = t.loss;
+			trial.stopped = t.stopped;
+			trial.failed = t.failed;
+			progress.trials.add(trial);
+		}
+		return progress;
+	}
+	
+	// launch new trials until parallel trials are running
+	private synchronized void launch(){
+		while(!stopped && launched < trials && running.size() < parallel){
+			Map<String, String> sampled = new HashMap<>();
+			for(Map.Entry<String, Param> e : space.entrySet()){
+				sampled.put(e.getKey(), e.getValue().sample(random));
+			}
+			launched++;
+			launch(sampled, null, 0);
+		}
+		checkDone();
+	}
+	
+	private void launch(Map<String, String> sampled, TrialState parent, long offset){
+		Map<String, String> config = new HashMap<>(base);
+		config.putAll(sampled);
+		config.put("name", name+" trial "+result.trials.size());
+		if(parent != null){
+			config.put("initTag", parent.trial.tag);
+			config.put("maxIterations", ""+(maxIterations - offset));
+		}
+		
+		LearnJob job = new LearnJob(coordinator, dataset, config, nns);
+		job.search = this;
+		config.put("tag", job.jobId.toString());
+		
+		Trial trial = new Trial();
+		trial.jobId = job.jobId;
+		trial.tag = job.jobId.toString();
+		trial.config = sampled;
+		trial.parent = parent == null ? null : parent.trial.jobId;
+		result.trials.add(trial);
+		
+		TrialState state = new TrialState(trial, offset);
+		state.nextPerturb = offset + perturbInterval;
+		running.put(job, state);
+		
+		coordinator.learn(job).onResolve(() -> done(job));
+	}
+	
+	private synchronized void done(LearnJob job){
+		TrialState state = running.remove(job);
+		if(state == null)
+			return;
+		
+		try {
+			if(job.getPromise().getFailure() != null){
+				state.trial.failed = true;
+			}
+		} catch(InterruptedException e){}
+		
+		launch();
+	}
+	
+	private void checkDone(){
+		if(running.isEmpty() && (stopped || launched >= trials) && !deferred.getPromise().isDone()){
+			Trial best = result.best();
+			coordinator.sendNotification(searchId, Level.SUCCESS, "Hyperparameter search \""+name+"\" finished"
+					+(best == null ? "." : ", best trial "+best.config+" with loss "+best.loss));
+			deferred.resolve(result);
+			coordinator.done(this);
+		}
+	}
+	
+	/**
+	 * Called by a trial's LearnJob on each validation
+	 * 
+	 * @return whether the trial should be stopped
+	 */
+	synchronized boolean onValidation(LearnJob job, long iteration, Evaluation validation){
+		TrialState state = running.get(job);
+		if(state == null)
+			return false;
+		
+		long iterations = state.offset + iteration;
+		state.trial.iterations = iterations;
+		state.trial.loss = validation.metric;
+		
+		if(stopped)
+			return true;
+		
+		boolean stop = false;
+		switch(scheduler){
+		case ASHA:
+			stop = asha(state, iterations);
+			break;
+		case PBT:
+			stop = pbt(state, iterations);
+			break;
+		}
+		
+		if(stop){
+			state.trial.stopped = true;
+		}
+		return stop;
+	}
+	
+	private boolean asha(TrialState state, long iterations){
+		boolean stop = false;
+		// check each rung milestone passed since the last validation
+		while(!stop && iterations >= milestone(state.rung)){
+			if(maxIterations > 0 && milestone(state.rung) >= maxIterations)
+				break;
+			
+			while(rungs.size() <= state.rung){
+				rungs.add(new ArrayList<>());
+			}
+			List<Float> rung = rungs.get(state.rung);
+			rung.add(state.trial.loss);
+			
+			// only continue if in the top 1/reductionFactor of all trials that reached this rung
+			List<Float> sorted = rung.stream().sorted().collect(Collectors.toList());
+			float cutoff = sorted.get((int)Math.ceil((double)sorted.size()/reductionFactor)-1);
+			if(Float.isNaN(state.trial.loss) || state.trial.loss > cutoff){
+				stop = true;
+			}
+			state.rung++;
+		}
+		return stop;
+	}
+	
+	private long milestone(int rung){
+		return minIterations * (long)Math.pow(reductionFactor, rung);
+	}
+	
+	private boolean pbt(TrialState state, long iterations){
+		if(iterations < state.nextPerturb)
+			return false;
+		state.nextPerturb = iterations + perturbInterval;
+		
+		if(iterations >= maxIterations)
+			return false;
+		
+		List<TrialState> population = running.values().stream()
+				.filter(s -> !Float.isNaN(s.trial.loss) && !s.trial.stopped)
+				.sorted((s1, s2) -> Float.compare(s1.trial.loss, s2.trial.loss))
+				.collect(Collectors.toList());
+		if(population.size() < 2)
+			return false;
+		
+		int n = (int)Math.ceil(population.size()*quantile);
+		int rank = population.indexOf(state);
+		if(rank < population.size() - n || rank < n)
+			return false;
+		
+		// exploit: continue from one of the top trials with perturbed hyperparameters
+		TrialState donor = population.get(random.nextInt(n));
+		Map<String, String> explored = new HashMap<>();
+		for(Map.Entry<String, Param> e : space.entrySet()){
+			explored.put(e.getKey(), e.getValue().perturb(donor.trial.config.get(e.getKey()), random));
+		}
+		launch(explored, donor, donor.trial.iterations);
+		return true;
+	}
+	
+	/**
+	 * A single dimension of the search space
+	 */
+	private static class Param {
+		
+		private String[] choices;
+		private boolean log = false;
+		private boolean integer = false;
+		private double min;
+		private double max;
+		
+		Param(String values){
+			String[] parts = values.split(":");
+			if(parts.length == 1){
+				choices = values.split(",");
+				return;
+			}
+			
+			if(parts.length == 3){
+				if(parts[0].equals("log")){
+					log = true;
+				} else if(parts[0].equals("int")){
+					integer = true;
+				} else {
+					throw new IllegalArgumentException("Invalid search space "+values);
+				}
+			}
+			min = Double.parseDouble(parts[parts.length-2]);
+			max = Double.parseDouble(parts[parts.length-1]);
+			if(log && (min <= 0 || max <= 0))
+				throw new IllegalArgumentException("Log uniform range should be positive: "+values);
+		}
+		
+		String sample(Random random){
+			if(choices != null)
+				return choices[random.nextInt(choices.length)].trim();
+			
+			double v = log ? Math.exp(Math.log(min) + random.nextDouble()*(Math.log(max)-Math.log(min)))
+					: min + random.nextDouble()*(max-min);
+			return format(v);
+		}
+		
+		// move to a neighbouring value
+		String perturb(String value, Random random){
+			if(choices != null){
+				int i = 0;
+				while(i < choices.length && !choices[i].trim().equals(value))
+					i++;
+				if(i == choices.length)
+					return sample(random);
+				
+				i += random.nextBoolean() ? 1 : -1;
+				return choices[Math.max(0, Math.min(choices.length-1, i))].trim();
+			}
+			
+			double v = Double.parseDouble(value) * (random.nextBoolean() ? 1.2 : 0.8);
+			return format(Math.max(min, Math.min(max, v)));
+		}
+		
+		private String format(double v){
+			return integer ? ""+Math.round(v) : ""+(float)v;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.coordinator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.osgi.framework.Filter;
+
+import be.iminds.iot.dianne.api.coordinator.Device;
+import be.iminds.iot.dianne.api.coordinator.Job.Type;
+import be.iminds.iot.dianne.api.coordinator.Notification.Level;
+
+/**
+ * Schedules the queued jobs of the DianneCoordinator on the available devices.
+ * 
+ * All jobs are kept in a single queue ordered by priority, then deadline and then 
+ * submission order. Each scheduling pass walks the queue in that order: a job that 
+ * cannot start yet reserves the free devices it could use, so that large multi-device 
+ * jobs are not starved, while smaller jobs further down the queue are still backfilled 
+ * on the remaining devices. Running act jobs with a lower priority are preempted when 
+ * that frees enough devices for a waiting job, which starts once these are stopped.
+ * 
+ * @author tverbele
+ *
+ */
+@SuppressWarnings("rawtypes")
+class JobScheduler {
+
+	private static final Comparator<AbstractJob> ORDER = Comparator
+			.comparingInt((AbstractJob j) -> -j.priority)
+			.thenComparingLong(j -> j.deadline)
+			.thenComparingLong(j -> j.sequence);
+	
+	private final DianneCoordinatorImpl coordinator;
+	
+	// all queued jobs in scheduling order
+	final NavigableSet<AbstractJob> queue = new ConcurrentSkipListSet<>(ORDER);
+	private final AtomicLong sequence = new AtomicLong();
+	
+	// devices matching each target filter, invalidated when devices come and go
+	private final Map<String, Set<UUID>> matches = new ConcurrentHashMap<>();
+	// properties of each device to match target filters against
+	private final Map<UUID, Map<String, Object>> properties = new ConcurrentHashMap<>();
+	
+	// jobs to preempt, these are stopped after a scheduling pass releases the lock
+	private final List<AbstractJob> victims = new ArrayList<>();
+	// preempted jobs that are not yet stopped
+	private final Set<AbstractJob> stopping = new HashSet<>();
+	
+	JobScheduler(DianneCoordinatorImpl coordinator){
+		this.coordinator = coordinator;
+	}
+	
+	/**
+	 * Add a job to the queue
+	 */
+	void submit(AbstractJob<?> job) throws Exception {
+		String filter = job.config.get("targetFilter");
+		if(filter != null){
+			job.targetFilter = coordinator.context.createFilter(filter);
+		}
+		job.sequence = sequence.incrementAndGet();
+		queue.add(job);
+	}
+	
+	boolean remove(AbstractJob<?> job){
+		return queue.remove(job);
+	}
+	
+	/**
+	 * To be called when devices are added or removed, or their properties change
+	 */
+	void devicesChanged(){
+		matches.clear();
+		properties.clear();
+	}
+	
+	/**
+	 * Start as many queued jobs as possible
+	 */
+	void schedule(){
+		List<AbstractJob> preempted;
+		synchronized(this){
+			pass();
+			
+			preempted = new ArrayList<>(victims);
+			victims.clear();
+		}
+		
+		// stopping calls out to the (remote) agents, once stopped the freed devices are scheduled again
+		for(AbstractJob victim : preempted){
+			try {
+				victim.stop();
+			} catch(Exception e){
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	private void pass(){
+		// free devices promised to a waiting job with higher priority
+		Set<UUID> reserved = new HashSet<>();
+		
+		for(AbstractJob job : queue){
+			List<UUID> candidates = candidates(job);
+			if(candidates.size() < job.targetCount){
+				waiting(job, "Insufficient infrastructure to meet the requirements of this Job");
+				continue;
+			}
+			
+			List<UUID> targets = select(job, candidates, reserved);
+			if(targets == null){
+				// this job can start once the preempted jobs are stopped
+				boolean preempting = preempt(job, candidates, reserved);
+				
+				// reserve the free devices this job can use, others can only backfill around it
+				candidates.stream()
+					.filter(uuid -> !reserved.contains(uuid) && usage(uuid).isEmpty())
+					.limit(job.targetCount)
+					.forEach(reserved::add);
+				
+				waiting(job, preempting ? "Waiting for preempted jobs to stop" : "Not enough free targets for this Job");
+				continue;
+			}
+			
+			if(!queue.remove(job)){
+				// cancelled meanwhile
+				continue;
+			}
+			
+			for(UUID target : targets){
+				usage(target).set(job.type.ordinal());
+			}
+			coordinator.running.add(job);
+			job.start(targets, coordinator.pool);
+			
+			coordinator.sendNotification(job.jobId, Level.INFO, "Job \""+job.name+"\" started.");
+		}
+	}
+	
+	/**
+	 * All devices that offer the required service and match the job's requirements,
+	 * regardless of whether they are currently in use
+	 */
+	private List<UUID> candidates(AbstractJob<?> job){
+		Collection<UUID> services = null;
+		switch(job.type){
+		case LEARN:
+			services = coordinator.learners.keySet();
+			break;
+		case EVALUATE:
+			services = coordinator.evaluators.keySet();
+			break;
+		case ACT:
+			services = coordinator.agents.keySet();
+			break;
+		}
+		
+		Collection<UUID> ids = services;
+		if(job.requiredTargets != null){
+			ids = job.requiredTargets.stream().filter(services::contains).collect(Collectors.toList());
+		}
+		
+		Set<UUID> matching = job.targetFilter == null ? null : matching(job.targetFilter);
+		
+		return ids.stream()
+				.filter(uuid -> coordinator.devices.containsKey(uuid))
+				.filter(uuid -> matching == null || matching.contains(uuid))
+				// discourage the use of devices that tend to cause errors :-)
+				.sorted(Comparator.comparingInt(uuid -> coordinator.deviceErrors.getOrDefault(uuid, 0)))
+				.collect(Collectors.toList());
+	}
+	
+	private Set<UUID> matching(Filter filter){
+		return matches.computeIfAbsent(filter.toString(), f -> 
+			coordinator.devices.values().stream()
+				.filter(device -> filter.matches(properties(device)))
+				.map(device -> device.id)
+				.collect(Collectors.toSet()));
+	}
+	
+	private Map<String, Object> properties(Device device){
+		return properties.computeIfAbsent(device.id, id -> coordinator.toMap(device));
+	}
+	
+	/**
+	 * Select targets among the candidates, prefer free devices and otherwise co-locate 
+	 * with jobs of another type (unless forceFree)
+	 * 
+	 * @return the targets or null if not enough devices are available at the moment
+	 */
+	private List<UUID> select(AbstractJob<?> job, List<UUID> candidates, Set<UUID> reserved){
+		List<UUID> targets = candidates.stream()
+				.filter(uuid -> !reserved.contains(uuid) && usage(uuid).isEmpty())
+				.limit(job.targetCount)
+				.collect(Collectors.toList());
+		
+		if(targets.size() != job.targetCount && !job.forceFree){
+			targets = candidates.stream()
+					.filter(uuid -> !reserved.contains(uuid) && !usage(uuid).get(job.type.ordinal()))
+					.limit(job.targetCount)
+					.collect(Collectors.toList());
+		}
+		
+		if(targets.size() != job.targetCount){
+			return null;
+		}
+		return targets;
+	}
+	
+	/**
+	 * Preempt running act jobs with a lower priority in case this frees enough devices for this job.
+	 * The devices of the preempted jobs are reserved for this job until these are stopped.
+	 * 
+	 * @return whether enough devices are being freed for this job
+	 */
+	private boolean preempt(AbstractJob<?> job, List<UUID> candidates, Set<UUID> reserved){
+		// devices of jobs preempted earlier are freed soon
+		stopping.removeIf(j -> !coordinator.running.contains(j));
+		Set<UUID> freed = new HashSet<>();
+		stopping.stream().forEach(j -> freed.addAll(j.targets));
+		
+		List<AbstractJob> preempt = new ArrayList<>();
+		if(available(job, candidates, reserved, freed) < job.targetCount){
+			List<AbstractJob> running = coordinator.running.stream()
+					.filter(j -> j.type == Type.ACT && j.preemptible && j.priority < job.priority)
+					.filter(j -> !stopping.contains(j))
+					.filter(j -> j.targets.stream().anyMatch(candidates::contains))
+					.sorted(Comparator.comparingInt((AbstractJob j) -> j.priority))
+					.collect(Collectors.toList());
+			
+			// check which jobs need to be stopped to have enough free devices
+			for(AbstractJob victim : running){
+				preempt.add(victim);
+				freed.addAll(victim.targets);
+				if(available(job, candidates, reserved, freed) >= job.targetCount){
+					break;
+				}
+			}
+			
+			if(available(job, candidates, reserved, freed) < job.targetCount){
+				return false;
+			}
+		}
+		
+		for(AbstractJob victim : preempt){
+			coordinator.sendNotification(victim.jobId, Level.WARNING, "Job \""+victim.name+"\" preempted by job \""+job.name+"\".");
+			victim.preempted = true;
+			stopping.add(victim);
+			victims.add(victim);
+		}
+		
+		candidates.stream()
+			.filter(uuid -> freed.contains(uuid))
+			.forEach(reserved::add);
+		return true;
+	}
+	
+	// number of candidates this job could use once the freed devices no longer act 
+	private long available(AbstractJob<?> job, List<UUID> candidates, Set<UUID> reserved, Set<UUID> freed){
+		return candidates.stream()
+			.filter(uuid -> !reserved.contains(uuid))
+			.filter(uuid -> {
+				BitSet usage = (BitSet)usage(uuid).clone();
+				if(freed.contains(uuid))
+					usage.clear(Type.ACT.ordinal());
+				return job.forceFree ? usage.isEmpty() : !usage.get(job.type.ordinal());
+			}).count();
+	}
+	
+	private BitSet usage(UUID device){
+		BitSet usage = coordinator.deviceUsage.get(device);
+		return usage == null ? new BitSet() : usage;
+	}
+	
+	// only notify when the reason for waiting changes
+	private void waiting(AbstractJob<?> job, String reason){
+		if(!reason.equals(job.waiting)){
+			job.waiting = reason;
+			coordinator.sendNotification(job.jobId, Level.WARNING, "Job \""+job.name+"\" failed to start: "+reason);
+		}
+	}
+}
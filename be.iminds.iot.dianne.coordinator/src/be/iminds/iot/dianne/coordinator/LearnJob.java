@@ -68,6 +68,13 @@ public class LearnJob extends AbstractJob<LearnResult> implements LearnerListene
 	private float validationLossThreshold = -Float.MAX_VALUE;
 	private int thresholdWindow = 10;
 	
+	// in an actor-learner pipeline, the act job with the agents feeding the learners
+	private volatile ActJob actors = null;
+	private volatile boolean learning = false;
+	
+	// in case this job is a trial of a hyperparameter search
+	HyperparameterSearch search = null;
+	
 	public LearnJob(DianneCoordinatorImpl coord, 
 			String dataset,
 			Map<String, String> config,
@@ -135,6 +142,40 @@ public class LearnJob extends AbstractJob<LearnResult> implements LearnerListene
 			config.put("tag", jobId.toString());
 		}
 		
+		if(config.containsKey("actors")){
+			startActors();
+			
+			// the agents configure the queue, start learning once it is available
+			if(!coordinator.datasets.isExperiencePool(dataset)){
+				return;
+			}
+		}
+		
+		startLearners();
+	}
+	
+	/**
+	 * Called by the coordinator when a Dataset service is added, to start the learners 
+	 * once the queue configured by the actors becomes available.
+	 */
+	void datasetAdded(String name){
+		if(actors == null || !dataset.equals(name)){
+			return;
+		}
+		
+		try {
+			startLearners();
+		} catch(JobFailedException e){
+			done(e);
+		}
+	}
+	
+	private synchronized void startLearners() throws JobFailedException {
+		if(learning || deferred.getPromise().isDone()){
+			return;
+		}
+		learning = true;
+		
 		Dictionary<String, Object> props = new Hashtable<>();
 		String[] t = targets.stream().map(uuid -> uuid.toString()).collect(Collectors.toList()).toArray(new String[targets.size()]);
 		props.put("targets", t);
@@ -168,6 +209,62 @@ public class LearnJob extends AbstractJob<LearnResult> implements LearnerListene
 		}
 	}
 	
+	/**
+	 * Launch an act job with the given number of agents streaming trajectories 
+	 * into a queue, the learners are started when the queue is available. In case
+	 * the act job is preempted, it is submitted again.
+	 */
+	private void startActors() throws JobFailedException {
+		if(!config.containsKey("strategy")){
+			config.put("strategy", "VTraceLearningStrategy");
+		}
+		
+		Map<String, String> actConfig = new HashMap<>(config);
+		actConfig.remove("targets");
+		actConfig.put("name", name+" actors");
+		actConfig.put("targetCount", config.get("actors"));
+		if(!config.containsKey("type")){
+			actConfig.put("type", "TrajectoryQueue");
+		}
+		actConfig.put("strategy", config.containsKey("actionStrategy") ? config.get("actionStrategy") : "DiscreteSamplingActionStrategy");
+		actConfig.put("behaviourProbability", "true");
+		if(!config.containsKey("push")){
+			// actors get the parameters pushed by the learners
+			actConfig.put("push", "true");
+		}
+		
+		launchActors(actConfig);
+	}
+	
+	private void launchActors(Map<String, String> actConfig){
+		// agents only need the policy
+		ActJob job = new ActJob(coordinator, dataset, new HashMap<>(actConfig), new NeuralNetworkDTO[]{nns[0]});
+		actors = job;
+		job.getPromise().onResolve(() -> {
+			if(deferred.getPromise().isDone()){
+				return;
+			}
+			
+			try {
+				Throwable failure = job.getPromise().getFailure();
+				if(failure != null){
+					done(new JobFailedException(null, this.jobId, "Actors failed: "+failure.getMessage(), failure));
+				} else if(job.preempted){
+					// requeue the actors, meanwhile the learners wait for new trajectories
+					launchActors(actConfig);
+				} else if(!learning){
+					done(new JobFailedException(null, this.jobId, "Actors stopped before the learners started", null));
+				} else {
+					// actors reached their max iterations or sequences
+					stop();
+				}
+			} catch(Exception e){
+				e.printStackTrace();
+			}
+		});
+		coordinator.act(job);
+	}
+	
 	@Override
 	public void onProgress(UUID learnerId, LearnProgress progress) {
 		if(deferred.getPromise().isDone()){
@@ -255,6 +352,13 @@ public class LearnJob extends AbstractJob<LearnResult> implements LearnerListene
 				}
 			}
 			
+			// let the hyperparameter search decide whether to continue this trial
+			if(search != null && validation != null){
+				if(search.onValidation(this, progress.iteration, validation)){
+					stop = true;
+				}
+			}
+			
 			// if stop ... assemble result object and resolve
 			if(stop){
 				for(Learner learner : learners.values()){
@@ -296,6 +400,12 @@ public class LearnJob extends AbstractJob<LearnResult> implements LearnerListene
 			for(NeuralNetworkInstanceDTO nn : validationNns)
 				coordinator.platform.undeployNeuralNetwork(nn);
 		}
+		
+		if(actors != null && !actors.isDone()){
+			try {
+				actors.stop();
+			} catch(Exception e){}
+		}
 	}
 
 	@Override
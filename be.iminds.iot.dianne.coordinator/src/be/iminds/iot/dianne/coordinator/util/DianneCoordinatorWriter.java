@@ -37,6 +37,7 @@ import be.iminds.iot.dianne.api.coordinator.Job;
 import be.iminds.iot.dianne.api.coordinator.LearnResult;
 import be.iminds.iot.dianne.api.nn.eval.ClassificationEvaluation;
 import be.iminds.iot.dianne.api.nn.eval.ErrorEvaluation;
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationProgress;
 import be.iminds.iot.dianne.api.nn.learn.LearnProgress;
@@ -188,6 +189,36 @@ public class DianneCoordinatorWriter {
 						}
 						writer.endArray();
 					}
+					
+					// or the handle in case these were streamed to file
+					if(eeval.outputsFile()!=null){
+						EvaluationOutputs outputs = eeval.outputsFile();
+						writer.name("outputsFile");
+						writer.beginObject();
+						writer.name("files");
+						writer.beginArray();
+						for(String file : outputs.files()){
+							writer.value(file);
+						}
+						writer.endArray();
+						writer.name("count");
+						writer.value(outputs.count());
+						if(outputs.dims()!=null){
+							writer.name("dims");
+							writer.beginArray();
+							for(int d : outputs.dims()){
+								writer.value(d);
+							}
+							writer.endArray();
+						}
+						writer.name("min");
+						writer.value(Float.valueOf(outputs.min));
+						writer.name("max");
+						writer.value(Float.valueOf(outputs.max));
+						writer.name("mean");
+						writer.value(Float.valueOf(outputs.mean));
+						writer.endObject();
+					}
 				}
 				
 				if(eval instanceof ClassificationEvaluation){
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.coordinator;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.EventAdmin;
+
+import be.iminds.iot.dianne.api.coordinator.SearchResult;
+import be.iminds.iot.dianne.api.coordinator.SearchResult.Trial;
+import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+
+public class HyperparameterSearchTest {
+
+	private DianneCoordinatorImpl coordinator;
+	
+	@Before
+	public void setup() throws Exception {
+		// without learners all trials remain queued
+		coordinator = new DianneCoordinatorImpl();
+		coordinator.setEA((EventAdmin)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{EventAdmin.class}, (proxy, method, args) -> null));
+	}
+	
+	private Map<String, String> config(String scheduler){
+		Map<String, String> config = new HashMap<>();
+		config.put("name", "test");
+		config.put("strategy", "FeedForwardLearningStrategy");
+		config.put("validationSet", "0:100");
+		config.put("scheduler", scheduler);
+		config.put("trials", "4");
+		config.put("parallel", "4");
+		config.put("maxIterations", "100");
+		config.put("seed", "1");
+		config.put("search.learningRate", "0.001:0.1");
+		config.put("search.batchSize", "8,16,32,64");
+		return config;
+	}
+	
+	private HyperparameterSearch search(Map<String, String> config) throws Exception {
+		HyperparameterSearch search = new HyperparameterSearch(coordinator, "Test", config, null);
+		search.start();
+		return search;
+	}
+	
+	// the queued trials in launch order
+	private List<LearnJob> trials(){
+		return coordinator.scheduler.queue.stream().map(j -> (LearnJob)j).collect(Collectors.toList());
+	}
+	
+	private boolean validate(HyperparameterSearch search, LearnJob job, long iteration, float loss){
+		Evaluation validation = new Evaluation();
+		validation.metric = loss;
+		return search.onValidation(job, iteration, validation);
+	}
+	
+	private Trial trial(HyperparameterSearch search, LearnJob job){
+		return search.getProgress().trials.stream().filter(t -> t.jobId.equals(job.jobId)).findFirst().get();
+	}
+	
+	@Test
+	public void testLaunch() throws Exception {
+		HyperparameterSearch search = search(config("ASHA"));
+		
+		List<LearnJob> jobs = trials();
+		Assert.assertEquals(4, jobs.size());
+		for(LearnJob job : jobs){
+			Assert.assertSame(search, job.search);
+			Assert.assertEquals(job.jobId.toString(), job.config.get("tag"));
+			
+			float learningRate = Float.parseFloat(job.config.get("learningRate"));
+			Assert.assertTrue(learningRate >= 0.001f && learningRate <= 0.1f);
+			Assert.assertTrue(Arrays.asList("8", "16", "32", "64").contains(job.config.get("batchSize")));
+			
+			// search settings are not passed to the trials
+			Assert.assertFalse(job.config.containsKey("scheduler"));
+			Assert.assertFalse(job.config.containsKey("search.batchSize"));
+		}
+	}
+	
+	@Test
+	public void testAshaPromotion() throws Exception {
+		Map<String, String> config = config("ASHA");
+		config.put("reductionFactor", "2");
+		config.put("minIterations", "10");
+		HyperparameterSearch search = search(config);
+		
+		// rungs at 10, 20, 40 and 80 iterations, the top half of each rung is promoted
+		List<LearnJob> jobs = trials();
+		Assert.assertFalse(validate(search, jobs.get(0), 10, 1.0f));
+		Assert.assertTrue(validate(search, jobs.get(1), 10, 2.0f));
+		Assert.assertFalse(validate(search, jobs.get(2), 10, 0.5f));
+		Assert.assertTrue(validate(search, jobs.get(3), 10, 1.5f));
+		
+		Assert.assertFalse(trial(search, jobs.get(0)).stopped);
+		Assert.assertTrue(trial(search, jobs.get(1)).stopped);
+		Assert.assertEquals(1.5f, trial(search, jobs.get(3)).loss, 0.0001f);
+		Assert.assertEquals(10, trial(search, jobs.get(3)).iterations);
+		
+		// no rung reached in between
+		Assert.assertFalse(validate(search, jobs.get(0), 15, 5.0f));
+		
+		Assert.assertFalse(validate(search, jobs.get(0), 20, 0.9f));
+		// passes the rungs at 20 and 40 at once
+		Assert.assertFalse(validate(search, jobs.get(2), 45, 0.4f));
+		// worse than the trial at the rung at 40
+		Assert.assertTrue(validate(search, jobs.get(0), 40, 0.8f));
+	}
+	
+	@Test
+	public void testAshaNaN() throws Exception {
+		Map<String, String> config = config("ASHA");
+		config.put("minIterations", "10");
+		HyperparameterSearch search = search(config);
+		
+		Assert.assertTrue(validate(search, trials().get(0), 10, Float.NaN));
+	}
+	
+	@Test
+	public void testPbtExploitExplore() throws Exception {
+		Map<String, String> config = config("PBT");
+		config.put("perturbInterval", "10");
+		HyperparameterSearch search = search(config);
+		
+		List<LearnJob> jobs = trials();
+		for(int i=0;i<jobs.size();i++){
+			Assert.assertFalse(validate(search, jobs.get(i), 5, i+1));
+		}
+		
+		// only the bottom quantile is perturbed
+		Assert.assertFalse(validate(search, jobs.get(0), 10, 1.0f));
+		Assert.assertFalse(validate(search, jobs.get(1), 10, 2.0f));
+		Assert.assertTrue(validate(search, jobs.get(3), 10, 4.0f));
+		
+		SearchResult progress = search.getProgress();
+		Assert.assertEquals(5, progress.trials.size());
+		Assert.assertTrue(trial(search, jobs.get(3)).stopped);
+		
+		// exploit: the new trial continues from the best trial
+		Trial donor = trial(search, jobs.get(0));
+		Trial exploited = progress.trials.get(4);
+		Assert.assertEquals(donor.jobId, exploited.parent);
+		
+		LearnJob job = trials().stream().filter(j -> j.jobId.equals(exploited.jobId)).findFirst().get();
+		Assert.assertEquals(donor.tag, job.config.get("initTag"));
+		Assert.assertEquals("90", job.config.get("maxIterations"));
+		
+		// explore: the hyperparameters are perturbed to a neighbouring value
+		float lr = Float.parseFloat(donor.config.get("learningRate"));
+		float explored = Float.parseFloat(exploited.config.get("learningRate"));
+		Assert.assertTrue(Math.abs(explored - Math.min(0.1f, lr*1.2f)) < 0.0001f
+				|| Math.abs(explored - Math.max(0.001f, lr*0.8f)) < 0.0001f);
+		
+		List<String> batchSizes = Arrays.asList("8", "16", "32", "64");
+		int index = batchSizes.indexOf(donor.config.get("batchSize"));
+		int exploredIndex = batchSizes.indexOf(exploited.config.get("batchSize"));
+		Assert.assertTrue(Math.abs(exploredIndex - index) == 1 
+				|| (exploredIndex == index && (index == 0 || index == batchSizes.size()-1)));
+		
+		// iterations of the new trial count from the donor
+		Assert.assertFalse(validate(search, job, 3, 0.5f));
+		Assert.assertEquals(13, trial(search, job).iterations);
+	}
+	
+	@Test
+	public void testProgressSnapshot() throws Exception {
+		HyperparameterSearch search = search(config("ASHA"));
+		LearnJob job = trials().get(0);
+		
+		SearchResult progress = search.getProgress();
+		validate(search, job, 5, 1.0f);
+		
+		Trial trial = progress.trials.get(0);
+		Assert.assertTrue(Float.isNaN(trial.loss));
+		Assert.assertEquals(0, trial.iterations);
+		
+		trial.config.clear();
+		trial.stopped = true;
+		Assert.assertFalse(search.getProgress().trials.get(0).config.isEmpty());
+		Assert.assertFalse(search.getProgress().trials.get(0).stopped);
+		Assert.assertEquals(1.0f, search.getProgress().trials.get(0).loss, 0.0001f);
+	}
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.coordinator;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.EventAdmin;
+
+import be.iminds.iot.dianne.api.coordinator.Device;
+import be.iminds.iot.dianne.api.coordinator.Job.Type;
+import be.iminds.iot.dianne.api.rl.agent.Agent;
+
+public class JobSchedulerTest {
+
+	private DianneCoordinatorImpl coordinator;
+	private List<UUID> devices;
+	
+	// act job that is stopped like an ActJob, checks that it is not stopped while the scheduler is locked
+	private static class TestJob extends AbstractJob<String> {
+		
+		private boolean stoppedWhileLocked = false;
+		
+		TestJob(DianneCoordinatorImpl coordinator, Map<String, String> config){
+			super(coordinator, Type.ACT, "Test", config, null);
+		}
+		
+		@Override
+		public void execute() throws JobFailedException {
+		}
+
+		@Override
+		public String getProgress() {
+			return name;
+		}
+		
+		@Override
+		public void stop() throws Exception {
+			stoppedWhileLocked = Thread.holdsLock(coordinator.scheduler);
+			done(getProgress());
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		coordinator = new DianneCoordinatorImpl();
+		coordinator.setEA((EventAdmin)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{EventAdmin.class}, (proxy, method, args) -> null));
+		coordinator.storageDir = Files.createTempDirectory("jobs").toString();
+		
+		Agent agent = (Agent)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{Agent.class}, (proxy, method, args) -> null);
+		
+		devices = new ArrayList<>();
+		for(int i=0;i<4;i++){
+			UUID id = UUID.randomUUID();
+			devices.add(id);
+			coordinator.devices.put(id, new Device(id, "device"+i, "unknown", "unknown", "unknown"));
+			coordinator.deviceUsage.put(id, new BitSet(Type.values().length));
+			coordinator.agents.put(id, agent);
+		}
+	}
+	
+	private TestJob submit(String name, int priority, int targetCount, String... config) throws Exception {
+		Map<String, String> c = new HashMap<>();
+		c.put("name", name);
+		c.put("priority", ""+priority);
+		c.put("targetCount", ""+targetCount);
+		for(int i=0;i<config.length;i+=2){
+			c.put(config[i], config[i+1]);
+		}
+		TestJob job = new TestJob(coordinator, c);
+		coordinator.scheduler.submit(job);
+		return job;
+	}
+	
+	private boolean running(AbstractJob<?> job){
+		return coordinator.running.contains(job);
+	}
+	
+	private String targets(UUID... targets){
+		StringBuilder b = new StringBuilder();
+		for(UUID t : targets){
+			if(b.length() > 0)
+				b.append(",");
+			b.append(t);
+		}
+		return b.toString();
+	}
+	
+	@Test
+	public void testPriority() throws Exception {
+		TestJob low = submit("low", 0, 4);
+		TestJob high = submit("high", 5, 4);
+		coordinator.scheduler.schedule();
+		
+		Assert.assertTrue(running(high));
+		Assert.assertFalse(running(low));
+		
+		high.stop();
+		Assert.assertTrue(running(low));
+	}
+	
+	@Test
+	public void testDeadline() throws Exception {
+		TestJob first = submit("first", 0, 4);
+		TestJob second = submit("second", 0, 4);
+		TestJob deadline = submit("deadline", 0, 4, "deadline", "60");
+		coordinator.scheduler.schedule();
+		
+		// an earlier deadline goes first, otherwise in order of submission
+		Assert.assertTrue(running(deadline));
+		deadline.stop();
+		Assert.assertTrue(running(first));
+		Assert.assertFalse(running(second));
+		first.stop();
+		Assert.assertTrue(running(second));
+	}
+	
+	@Test
+	public void testBackfill() throws Exception {
+		TestJob busy = submit("busy", 5, 1, "targets", targets(devices.get(0)), "preemptible", "false");
+		coordinator.scheduler.schedule();
+		Assert.assertTrue(running(busy));
+		
+		// waits for the busy device, reserving the other free devices it needs
+		TestJob large = submit("large", 5, 3, "targets", targets(devices.get(0), devices.get(1), devices.get(2)));
+		// can only run on a reserved device
+		TestJob blocked = submit("blocked", 0, 1, "targets", targets(devices.get(1)));
+		// backfills on the device that the large job cannot use
+		TestJob small = submit("small", 0, 1);
+		coordinator.scheduler.schedule();
+		
+		Assert.assertFalse(running(large));
+		Assert.assertFalse(running(blocked));
+		Assert.assertTrue(running(small));
+		Assert.assertEquals(Arrays.asList(devices.get(3)), small.targets);
+		
+		busy.stop();
+		Assert.assertTrue(running(large));
+		Assert.assertFalse(running(blocked));
+		
+		large.stop();
+		Assert.assertTrue(running(blocked));
+	}
+	
+	@Test
+	public void testPreempt() throws Exception {
+		TestJob low = submit("low", 0, 4);
+		coordinator.scheduler.schedule();
+		Assert.assertTrue(running(low));
+		
+		TestJob high = submit("high", 5, 4);
+		coordinator.scheduler.schedule();
+		
+		Assert.assertTrue(low.preempted);
+		Assert.assertFalse(low.stoppedWhileLocked);
+		Assert.assertFalse(running(low));
+		Assert.assertTrue(running(high));
+	}
+	
+	@Test
+	public void testPreemptLowestPriority() throws Exception {
+		TestJob low = submit("low", 0, 1, "targets", targets(devices.get(0)));
+		TestJob mid = submit("mid", 1, 1, "targets", targets(devices.get(1)));
+		TestJob other = submit("other", 0, 2, "targets", targets(devices.get(2), devices.get(3)));
+		coordinator.scheduler.schedule();
+		
+		// only the lowest priority job needs to make room
+		TestJob high = submit("high", 5, 2, "targets", targets(devices.get(0), devices.get(1), devices.get(3)), "forceFree", "true");
+		other.stop();
+		
+		Assert.assertTrue(running(high));
+		Assert.assertTrue(running(mid));
+		Assert.assertTrue(low.preempted);
+		Assert.assertFalse(mid.preempted);
+		Assert.assertTrue(high.targets.contains(devices.get(0)));
+		Assert.assertTrue(high.targets.contains(devices.get(3)));
+	}
+	
+	@Test
+	public void testNotPreemptible() throws Exception {
+		TestJob low = submit("low", 0, 4, "preemptible", "false");
+		coordinator.scheduler.schedule();
+		
+		TestJob high = submit("high", 5, 4);
+		coordinator.scheduler.schedule();
+		
+		Assert.assertFalse(low.preempted);
+		Assert.assertTrue(running(low));
+		Assert.assertFalse(running(high));
+	}
+	
+	@Test
+	public void testNoPreemptForEqualPriority() throws Exception {
+		TestJob first = submit("first", 5, 4);
+		coordinator.scheduler.schedule();
+		
+		TestJob second = submit("second", 5, 4);
+		coordinator.scheduler.schedule();
+		
+		Assert.assertFalse(first.preempted);
+		Assert.assertTrue(running(first));
+		Assert.assertFalse(running(second));
+	}
+}
@@ -138,6 +138,12 @@ public class DatasetConfigurator implements DianneDatasets {
 				if(config.containsKey("maxSize")){
 					props.put("maxSize", config.get("maxSize"));
 				} 
+				if(config.containsKey("frameStack")){
+					props.put("frameStack", config.get("frameStack"));
+				}
+				if(config.containsKey("stateScale")){
+					props.put("stateScale", config.get("stateScale"));
+				}
 				
 				try {
 					Configuration c = ca.createFactoryConfiguration(pid, null);
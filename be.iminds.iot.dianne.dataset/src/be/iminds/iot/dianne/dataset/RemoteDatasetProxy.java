@@ -39,6 +39,7 @@ import be.iminds.iot.dianne.api.rl.dataset.RawBatchedExperiencePoolSequence;
 import be.iminds.iot.dianne.api.rl.dataset.RawExperiencePoolBatch;
 import be.iminds.iot.dianne.api.rl.dataset.RawExperiencePoolSample;
 import be.iminds.iot.dianne.api.rl.dataset.RawExperiencePoolSequence;
+import be.iminds.iot.dianne.tensor.TensorDestination;
 
 /**
  * Proxy class to optimize the behavior of querying datasets that are located on a remote machine
@@ -60,6 +61,10 @@ public class RemoteDatasetProxy implements InvocationHandler {
 				&& method.getReturnType().equals(method.getParameterTypes()[0])
 				&& !method.getReturnType().isPrimitive()
 				&& args[0] != null){
+			if(args[0] instanceof Batch){
+				return readInto(method, args);
+			}
+			
 			// get the raw data and copy it into the provided result object
 			// on the caller side
 			Class[] parameterTypes = new Class[args.length-1];
@@ -94,5 +99,47 @@ public class RemoteDatasetProxy implements InvocationHandler {
 		}
 		return method.invoke(proxied, args);
 	}
+	
+	private Object readInto(Method method, Object[] args) throws Throwable {
+		// fetch a new batch from the remote dataset, and deserialize the
+		// tensors directly into the tensors of the provided batch
+		Object[] arguments = args.clone();
+		arguments[0] = null;
+		
+		Object result;
+		try {
+			if(args[0] instanceof ExperiencePoolBatch){
+				ExperiencePoolBatch b = (ExperiencePoolBatch)args[0];
+				TensorDestination.set(b.input, b.target, b.reward, b.nextState, b.terminal, b.weights);
+			} else {
+				Batch b = (Batch)args[0];
+				TensorDestination.set(b.input, b.target);
+			}
+			result = method.invoke(proxied, arguments);
+		} finally {
+			TensorDestination.clear();
+		}
+		
+		// in case the result is not deserialized into the provided tensors 
+		// (i.e. different dims or deserialized on another thread) copy
+		if(result instanceof ExperiencePoolBatch){
+			ExperiencePoolBatch r = (ExperiencePoolBatch)result;
+			ExperiencePoolBatch b = (ExperiencePoolBatch)args[0];
+			if(r.input != b.input || r.target != b.target || r.reward != b.reward
+					|| r.nextState != b.nextState || r.terminal != b.terminal){
+				return r.copyInto(b);
+			}
+			b.indices = r.indices;
+			b.weights = r.weights;
+			return b;
+		} else {
+			Batch r = (Batch)result;
+			Batch b = (Batch)args[0];
+			if(r.input != b.input || r.target != b.target){
+				return r.copyInto(b);
+			}
+			return b;
+		}
+	}
 
 }
@@ -82,6 +82,9 @@ public class DianneSSEServlet extends HttpServlet implements EventHandler {
 		if(event.getTopic().contains("progress")){
 			// progress
 			data.add("type", new JsonPrimitive("progress"));
+		} else if(event.getTopic().startsWith("dianne/metrics")){
+			// module metrics of a deployed neural network instance
+			data.add("type", new JsonPrimitive("metrics"));
 		} else {
 			data.add("type", new JsonPrimitive("notification"));
 		}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.eval;
+
+import be.iminds.iot.dianne.api.dataset.Batch;
+import be.iminds.iot.dianne.api.dataset.Dataset;
+import be.iminds.iot.dianne.api.dataset.DatasetDTO;
+import be.iminds.iot.dianne.api.dataset.Sample;
+
+/**
+ * A contiguous part [start, end) of a Dataset, used to evaluate disjoint shards
+ * of a dataset on a number of neural network replicas in parallel.
+ * 
+ * @author tverbele
+ *
+ */
+class DatasetShard implements Dataset {
+
+	private final Dataset data;
+	private final int start;
+	private final int end;
+	
+	DatasetShard(Dataset data, int start, int end){
+		this.data = data;
+		this.start = start;
+		this.end = end;
+	}
+	
+	/**
+	 * Split a dataset in n contiguous shards of (almost) equal size
+	 * 
+	 * @param data the dataset to split
+	 * @param i index of the shard
+	 * @param n number of shards
+	 * @return the i-th shard
+	 */
+	static DatasetShard shard(Dataset data, int i, int n){
+		int size = data.size();
+		int start = (int)((long)size*i/n);
+		int end = (int)((long)size*(i+1)/n);
+		return new DatasetShard(data, start, end);
+	}
+	
+	@Override
+	public DatasetDTO getDTO() {
+		return data.getDTO();
+	}
+
+	@Override
+	public int size() {
+		return end-start;
+	}
+
+	@Override
+	public int[] inputDims() {
+		return data.inputDims();
+	}
+
+	@Override
+	public String inputType() {
+		return data.inputType();
+	}
+
+	@Override
+	public int[] targetDims() {
+		return data.targetDims();
+	}
+
+	@Override
+	public String targetType() {
+		return data.targetType();
+	}
+
+	@Override
+	public Sample getSample(Sample s, int index) {
+		return data.getSample(s, start+index);
+	}
+	
+	@Override
+	public Batch getBatch(Batch b, int... indices){
+		// delegate the batch as a whole, a (remote) dataset might fetch it more efficiently 
+		int[] shifted = new int[indices.length];
+		for(int i=0;i<indices.length;i++){
+			shifted[i] = start+indices[i];
+		}
+		return data.getBatch(b, shifted);
+	}
+
+	@Override
+	public String getName() {
+		return data.getName();
+	}
+
+	@Override
+	public String[] getLabels() {
+		return data.getLabels();
+	}
+
+}
@@ -22,10 +22,16 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.nn.eval;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -41,11 +47,13 @@ import be.iminds.iot.dianne.api.dataset.SequenceDataset;
 import be.iminds.iot.dianne.api.nn.Dianne;
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationProgress;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationStrategy;
 import be.iminds.iot.dianne.api.nn.eval.Evaluator;
 import be.iminds.iot.dianne.api.nn.eval.EvaluatorListener;
 import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
+import be.iminds.iot.dianne.api.nn.platform.DiannePlatform;
 import be.iminds.iot.dianne.api.nn.util.StrategyFactory;
 import be.iminds.iot.dianne.nn.eval.config.EvaluatorConfig;
 import be.iminds.iot.dianne.nn.eval.config.EvaluatorConfig.EvaluationGranularity;
@@ -68,6 +76,7 @@ public class EvaluatorImpl implements Evaluator {
 	private UUID evaluatorId;
 	
 	private Dianne dianne;
+	private volatile DiannePlatform platform;
 	private DianneDatasets datasets;
 	
 	private EvaluatorConfig config;
@@ -117,59 +126,60 @@ public class EvaluatorImpl implements Evaluator {
 						NeuralNetwork nn = dianne.getNeuralNetwork(dto).getValue();
 						nns[n++] = nn;
 						System.out.println("* "+dto.name);
-	
-						try {
-							if(this.config.tag==null){
-								nn.loadParameters();
-							} else {
-								nn.loadParameters(this.config.tag);
-							}
-						} catch(Exception e){
-							// ignore if no parameters found
-							System.out.println("No parameters loaded for this evaluation - network is not yet trained?");
-						}
+						loadParameters(nn);
 					}
 				}
 				System.out.println("---");
 			}
 			
-			// Create evaluation strategy
-			strategy = factory.create(this.config.strategy);
-			if(strategy == null)
-				throw new Exception("Strategy "+this.config.strategy+" not available");
-			
-			strategy.setup(config, d, nns);
-			// this allows the strategy to adapt config in setup
-			this.config = DianneConfigHandler.getConfig(config, EvaluatorConfig.class);
-			
-			int size = d.size();
-			if(this.config.granularity == EvaluationGranularity.SEQUENCE){
-				if(!(d instanceof SequenceDataset))
-					throw new Exception("Dataset "+dataset+" is not a sequence dataset, granularity SEQUENCE invalid");
-				
-				size = ((SequenceDataset<?,?>)d).sequences();
+			int replicas = this.config.replicas;
+			if(replicas > 1 && (this.config.granularity == EvaluationGranularity.SEQUENCE || nns == null || platform == null)){
+				System.out.println("Replicas only supported for sample granularity with a local DiannePlatform, evaluating on a single instance");
+				replicas = 1;
 			}
-		
+			
+			Evaluation eval;
 			tStart = System.currentTimeMillis();
-			for(long i=0; i<size;){
-				progress = strategy.processIteration(i);
+			if(replicas > 1){
+				eval = evalShards(d, config, nni, nns, replicas);
+			} else {
+				// Create evaluation strategy
+				strategy = factory.create(this.config.strategy);
+				if(strategy == null)
+					throw new Exception("Strategy "+this.config.strategy+" not available");
 				
-				long next = progress.processed;
-				if(next == i){
-					throw new RuntimeException("Strategy is not making progress...");
-				}
-				i = next;
+				strategy.setup(config, d, nns);
+				// this allows the strategy to adapt config in setup
+				this.config = DianneConfigHandler.getConfig(config, EvaluatorConfig.class);
 				
-				// TODO how frequently publish progress
-				for(EvaluatorListener l : listeners){
-					l.onProgress(evaluatorId, progress);
+				int size = d.size();
+				if(this.config.granularity == EvaluationGranularity.SEQUENCE){
+					if(!(d instanceof SequenceDataset))
+						throw new Exception("Dataset "+dataset+" is not a sequence dataset, granularity SEQUENCE invalid");
+					
+					size = ((SequenceDataset<?,?>)d).sequences();
+				}
+			
+				for(long i=0; i<size;){
+					progress = strategy.processIteration(i);
+					
+					long next = progress.processed;
+					if(next == i){
+						throw new RuntimeException("Strategy is not making progress...");
+					}
+					i = next;
+					
+					// TODO how frequently publish progress
+					for(EvaluatorListener l : listeners){
+						l.onProgress(evaluatorId, progress);
+					}
 				}
+				
+				eval = strategy.getResult();
 			}
 			tEnd = System.currentTimeMillis();
 			
 			long evaluationTime = tEnd-tStart;
-			
-			Evaluation eval = strategy.getResult();
 			eval.time = evaluationTime;
 			
 			if(eval.metric < this.config.storeIfSmallerThan){
@@ -201,6 +211,118 @@ public class EvaluatorImpl implements Evaluator {
 		}
 	}
 	
+	/**
+	 * Split the dataset in a contiguous shard per replica and evaluate all shards in parallel, 
+	 * each on its own copy of the neural network(s) and its own strategy instance.
+	 */
+	private Evaluation evalShards(Dataset d, Map<String, String> config, NeuralNetworkInstanceDTO[] nni, NeuralNetwork[] nns, int replicas) throws Exception {
+		List<NeuralNetworkInstanceDTO> deployed = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(replicas);
+		try {
+			EvaluationStrategy[] strategies = new EvaluationStrategy[replicas];
+			EvaluationProgress[] progresses = new EvaluationProgress[replicas];
+			List<Future<Evaluation>> futures = new ArrayList<>();
+			
+			for(int r=0;r<replicas;r++){
+				// first replica uses the original instances
+				NeuralNetwork[] replica = nns;
+				if(r > 0){
+					replica = new NeuralNetwork[nns.length];
+					for(int k=0;k<nns.length;k++){
+						if(nni[k] == null)
+							continue;
+						
+						NeuralNetworkInstanceDTO dto = platform.deployNeuralNetwork(nni[k].name, "Dianne Evaluator replica "+r, evaluatorId);
+						deployed.add(dto);
+						replica[k] = dianne.getNeuralNetwork(dto).getValue();
+						loadParameters(replica[k]);
+					}
+				}
+				
+				Dataset shard = DatasetShard.shard(d, r, replicas);
+				
+				strategies[r] = factory.create(this.config.strategy);
+				if(strategies[r] == null)
+					throw new Exception("Strategy "+this.config.strategy+" not available");
+				Map<String, String> shardConfig = new HashMap<>(config);
+				if(config.containsKey("outputFile")){
+					// each shard streams its outputs to its own file, merged in shard order
+					shardConfig.put("outputFile", EvaluationOutputs.shardFile(config.get("outputFile"), r));
+				}
+				strategies[r].setup(shardConfig, shard, replica);
+				progresses[r] = new EvaluationProgress(0, shard.size(), 0);
+				
+				final int index = r;
+				futures.add(executor.submit(() -> {
+					EvaluationStrategy s = strategies[index];
+					for(long i=0; i<shard.size();){
+						EvaluationProgress p = s.processIteration(i);
+						if(p.processed == i){
+							throw new RuntimeException("Strategy is not making progress...");
+						}
+						i = p.processed;
+						
+						synchronized(progresses){
+							progresses[index] = p;
+							progress = combine(progresses);
+						}
+						
+						for(EvaluatorListener l : listeners){
+							l.onProgress(evaluatorId, progress);
+						}
+					}
+					return s.getResult();
+				}));
+			}
+			
+			// merge the partial results in shard order
+			Evaluation eval = null;
+			for(Future<Evaluation> f : futures){
+				try {
+					Evaluation e = f.get();
+					if(eval == null){
+						eval = e;
+					} else {
+						eval.merge(e);
+					}
+				} catch(ExecutionException e){
+					throw new Exception("Error evaluating shard", e.getCause());
+				}
+			}
+			return eval;
+		} finally {
+			executor.shutdownNow();
+			for(NeuralNetworkInstanceDTO dto : deployed){
+				platform.undeployNeuralNetwork(dto);
+			}
+		}
+	}
+	
+	private EvaluationProgress combine(EvaluationProgress[] progresses){
+		long processed = 0;
+		long size = 0;
+		float metric = 0;
+		for(EvaluationProgress p : progresses){
+			processed += p.processed;
+			size += p.size;
+			metric += p.metric*p.processed;
+		}
+		return new EvaluationProgress(processed, size, processed == 0 ? 0 : metric/processed);
+	}
+	
+	private void loadParameters(NeuralNetwork nn){
+		try {
+			if(this.config.tag==null){
+				nn.loadParameters();
+			} else {
+				nn.loadParameters(this.config.tag);
+			}
+		} catch(Exception e){
+			// ignore if no parameters found
+			System.out.println("No parameters loaded for this evaluation - network is not yet trained?");
+		}
+	}
+	
 	public EvaluationProgress getProgress(){
 		if(!evaluating)
 			return null;
@@ -222,6 +344,17 @@ public class EvaluatorImpl implements Evaluator {
 		dianne = d;
 	}
 	
+	@Reference(cardinality=ReferenceCardinality.OPTIONAL, 
+			policy=ReferencePolicy.DYNAMIC)
+	void setDiannePlatform(DiannePlatform p){
+		platform = p;
+	}
+	
+	void unsetDiannePlatform(DiannePlatform p){
+		if(platform == p)
+			platform = null;
+	}
+	
 	@Reference
 	void setDianneDatasets(DianneDatasets d){
 		datasets = d;
@@ -39,6 +39,11 @@ public class EvaluatorConfig {
 	 */
 	public EvaluationGranularity granularity = EvaluationGranularity.SAMPLE;
 	
+	/**
+	 * Number of local copies of the neural network(s), each evaluating a disjoint shard of the dataset in parallel
+	 */
+	public int replicas = 1;
+	
 	/**
 	 * The tag under which to publish the trained parameters
 	 */
@@ -22,10 +22,14 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.nn.eval.strategy;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import be.iminds.iot.dianne.api.dataset.Batch;
 import be.iminds.iot.dianne.api.dataset.Dataset;
@@ -33,6 +37,7 @@ import be.iminds.iot.dianne.api.dataset.Sample;
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.nn.eval.ErrorEvaluation;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationProgress;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationStrategy;
 import be.iminds.iot.dianne.nn.eval.strategy.config.EvaluationStrategyConfig;
@@ -58,6 +63,14 @@ public abstract class AbstractEvaluationStrategy implements EvaluationStrategy {
 	protected long tForward = 0;
 	
 	protected List<Tensor> outputs;
+	protected EvaluationOutputs.Writer outputWriter;
+	
+	// prefetch next batch while forwarding the current one
+	private ExecutorService fetcher;
+	private Future<Batch> prefetched;
+	private long prefetchedIndex = -1;
+	private Batch[] buffers = new Batch[2];
+	private int buffer = 0;
 
 	@Override
 	public void setup(Map<String, String> config, Dataset dataset, NeuralNetwork... nns) throws Exception {
@@ -69,14 +82,47 @@ public abstract class AbstractEvaluationStrategy implements EvaluationStrategy {
 		indices = new int[this.config.batchSize];
 		total = dataset.size();
 		
-		if(this.config.includeOutputs)
+		if(this.config.outputFile != null)
+			outputWriter = new EvaluationOutputs.Writer(this.config.outputFile);
+		else if(this.config.includeOutputs)
 			outputs = new ArrayList<Tensor>();
 		
+		if(this.config.prefetch && this.config.batchSize > 1){
+			fetcher = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "dianne-eval-prefetch");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		
 		init(config);
 	}
+	
+	private Batch loadBatch(long start, Batch b){
+		int size = (int)Math.min(config.batchSize, total-start);
+		int[] index = new int[size];
+		for(int k=0;k<size;k++)
+			index[k] = (int)(start+k);
+		
+		// create a new batch in case the last one is smaller
+		if(b != null && b.input.size(0) != size)
+			b = null;
+		
+		return dataset.getBatch(b, index);
+	}
 
 	@Override
 	public EvaluationProgress processIteration(long i) throws Exception {
+		try {
+			return iteration(i);
+		} catch(Exception | Error e){
+			// getResult won't be called anymore, release the prefetch thread and output file
+			release();
+			throw e;
+		}
+	}
+	
+	private EvaluationProgress iteration(long i) throws Exception {
 		Tensor out;
 		if(config.batchSize > 1){
 			// execute in batch
@@ -86,23 +132,37 @@ public abstract class AbstractEvaluationStrategy implements EvaluationStrategy {
 			// for last batch, adjust to remaining size
 			if(i+indices.length > total){
 				indices = new int[(int)(total-i)];
-				batch = null;
 				HashMap<String, String> newConfig = new HashMap<>(configMap);
 				newConfig.put("batchSize", ""+indices.length);
 				update(newConfig);
 			}
 			
-			for(int b=0;b<indices.length;b++)
-				indices[b] = (int)(i+b);
+			if(prefetched != null && prefetchedIndex == i){
+				batch = prefetched.get();
+			} else {
+				batch = loadBatch(i, buffers[buffer]);
+			}
+			buffers[buffer] = batch;
 			
-			batch = dataset.getBatch(batch, indices);
+			// already fetch the next batch in the other buffer while forwarding this one
+			final long next = i+config.batchSize;
+			if(fetcher != null && next < total){
+				final Batch b = buffers[1-buffer];
+				prefetchedIndex = next;
+				prefetched = fetcher.submit(() -> loadBatch(next, b));
+				buffer = 1-buffer;
+			} else {
+				prefetched = null;
+			}
 			
 			long t = System.nanoTime();
 			out = nn.forward(batch.input);
 			tForward += System.nanoTime() - t;
 			
-			if(outputs!=null)
-				for(int k=0;k<this.config.batchSize;k++)
+			if(outputWriter!=null)
+				outputWriter.writeBatch(out);
+			else if(outputs!=null)
+				for(int k=0;k<indices.length;k++)
 					outputs.add(out.select(0, k).copyInto(null));
 			
 			float err = eval(out, batch.target);
@@ -116,7 +176,9 @@ public abstract class AbstractEvaluationStrategy implements EvaluationStrategy {
 			out = nn.forward(sample.input);
 			tForward += System.nanoTime() - t;
 			
-			if(outputs!=null)
+			if(outputWriter!=null)
+				outputWriter.write(out);
+			else if(outputs!=null)
 				outputs.add(out.copyInto(null));
 
 			float err = eval(out, sample.target);
@@ -128,16 +190,44 @@ public abstract class AbstractEvaluationStrategy implements EvaluationStrategy {
 
 	@Override
 	public Evaluation getResult() {
-		Evaluation eval = finish();
-		eval.size = total;
-		eval.metric = error/total;
+		try {
+			Evaluation eval = finish();
+			eval.size = total;
+			eval.metric = error/total;
+			
+			if(eval instanceof ErrorEvaluation){
+				ErrorEvaluation eeval = (ErrorEvaluation) eval;
+				eeval.forwardTime = (tForward/1000000f)/total;
+				eeval.outputs = outputs;
+				if(outputWriter!=null){
+					try {
+						outputWriter.close();
+					} catch(IOException e){
+						throw new RuntimeException("Failed to write outputs to "+config.outputFile, e);
+					}
+					eeval.outputsFile = outputWriter.outputs();
+				}
+			}
+			return eval;
+		} finally {
+			release();
+		}
+	}
+
+	private void release(){
+		if(fetcher != null){
+			fetcher.shutdownNow();
+			fetcher = null;
+		}
+		prefetched = null;
 		
-		if(eval instanceof ErrorEvaluation){
-			ErrorEvaluation eeval = (ErrorEvaluation) eval;
-			eeval.forwardTime = (tForward/1000000f)/total;
-			eeval.outputs = outputs;
+		if(outputWriter != null){
+			try {
+				outputWriter.close();
+			} catch(IOException e){
+				// already failed
+			}
 		}
-		return eval;
 	}
 
 	protected abstract float eval(Tensor output, Tensor target);
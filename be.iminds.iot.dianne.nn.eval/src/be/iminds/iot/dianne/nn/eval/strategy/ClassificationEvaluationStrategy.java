@@ -22,8 +22,6 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.nn.eval.strategy;
 
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.eval.ClassificationEvaluation;
@@ -38,76 +36,64 @@ public class ClassificationEvaluationStrategy extends AbstractEvaluationStrategy
 	
 	private int count;
 	
+	// confusion matrix is accumulated in a primitive array and copied in the Tensor when finished
+	private float[] confusionCounts;
+	private int classes;
+	
+	private Tensor predicted;
+	private Tensor real;
+	private Tensor ranks;
+	
 	protected void init(Map<String, String> config){
 		// reset
 		rankings = new int[(int)total];
 		confusion = null;
+		confusionCounts = null;
 		count = 0;
 	}
 	
 	protected float eval(Tensor output, Tensor target){
-		if(confusion==null){
-			int confusionSize = output.size();
+		if(confusionCounts==null){
+			classes = output.size();
 			if(output.dim() == 2){
-				confusionSize = output.size(1);
+				classes = output.size(1);
 			}
-			confusion = new Tensor(confusionSize, confusionSize);
-			confusion.fill(0.0f);
+			confusionCounts = new float[classes*classes];
 		}
 		
+		// works for both a single sample and a batch, classes are in the last dimension
+		int dim = output.dim()-1;
+		predicted = TensorOps.argmax(predicted, output, dim);
+		real = TensorOps.argmax(real, target, dim);
+		ranks = TensorOps.rank(ranks, output, dim, real);
+		
+		float[] p = predicted.get();
+		float[] r = real.get();
+		float[] rk = ranks.get();
+		
 		float err = 0;
-		if(output.dim() == 2){
-			// batch
-			for(int i=0;i<output.size(0);i++){
-				err += calculateError(output.select(0, i), target.select(0, i));
-			}
-		} else {
-			err += calculateError(output, target); 
+		for(int i=0;i<p.length;i++){
+			int pi = (int)p[i];
+			int ri = (int)r[i];
+			if(ri != pi)
+				err += 1.0f;
+			
+			confusionCounts[ri*classes+pi]++;
+			rankings[count++] = (int)rk[i];
 		}
 		
 		return err;
 	}
 	
-	private float calculateError(Tensor out, Tensor expected){
-		float error = 0.0f;
-		
-		int predicted = TensorOps.argmax(out);
-		int real = TensorOps.argmax(expected);
-		if(real!=predicted)
-			error = 1.0f;
-		
-		confusion.set(confusion.get(real, predicted)+1, real, predicted);
-		
-		Integer[] indices = new Integer[out.size()];
-		for(int i=0;i<out.size();i++){
-			indices[i] = i;
-		}
-		Arrays.sort(indices, new Comparator<Integer>() {
-			@Override
-			public int compare(Integer o1, Integer o2) {
-				float v1 = out.get(o1);
-				float v2 = out.get(o2);
-				// inverse order to have large->small order
-				return v1 > v2 ? -1 : (v1 < v2 ? 1 : 0);
-			}
-		});
-		int ranking = 0;
-		for(int i=0;i<indices.length;i++){
-			if(indices[i] == real){
-				break;
-			}
-			ranking++;
+	protected Evaluation finish(){
+		if(confusionCounts!=null){
+			confusion = new Tensor(classes, classes);
+			confusion.set(confusionCounts);
 		}
-		rankings[count++] = ranking;
 		
-		return error;
-	}
-	
-	protected Evaluation finish(){
 		ClassificationEvaluation eval = new ClassificationEvaluation();
 		eval.rankings = rankings;
 		eval.confusionMatrix = confusion;
 		return eval;
 	}
 }
-
@@ -22,6 +22,7 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.nn.eval.strategy;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,7 @@ import be.iminds.iot.dianne.api.dataset.Dataset;
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.nn.eval.ErrorEvaluation;
 import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationProgress;
 import be.iminds.iot.dianne.api.nn.eval.EvaluationStrategy;
 import be.iminds.iot.dianne.api.nn.learn.Criterion;
@@ -62,6 +64,7 @@ public class VariationalAutoEncoderEvaluationStrategy implements EvaluationStrat
 	protected Criterion criterion;
 	
 	protected List<Tensor> params;
+	protected EvaluationOutputs.Writer paramsWriter;
 	protected EvaluationProgress progress;
 	
 	@Override
@@ -79,7 +82,9 @@ public class VariationalAutoEncoderEvaluationStrategy implements EvaluationStrat
 		this.indices = new int[this.config.batchSize];
 		this.criterion = CriterionFactory.createCriterion(this.config.criterion, config);
 		
-		if(this.config.includeOutputs)
+		if(this.config.outputFile != null)
+			this.paramsWriter = new EvaluationOutputs.Writer(this.config.outputFile);
+		else if(this.config.includeOutputs)
 			this.params = new ArrayList<Tensor>(dataset.size());
 	}
 
@@ -108,7 +113,9 @@ public class VariationalAutoEncoderEvaluationStrategy implements EvaluationStrat
 		Tensor output = decoder.forward(latent);
 		tForward += System.nanoTime() - t;
 		
-		if(config.includeOutputs)
+		if(paramsWriter != null)
+			paramsWriter.writeBatch(latentParams);
+		else if(params != null)
 			for(int b=0; b<indices.length; b++)
 				params.add(latentParams.select(0, b).copyInto(null));
 		
@@ -119,13 +126,21 @@ public class VariationalAutoEncoderEvaluationStrategy implements EvaluationStrat
 
 	@Override
 	public Evaluation getResult() {
-		Evaluation eval = new Evaluation();
+		Evaluation eval = new ErrorEvaluation();
 		eval.size = dataset.size();
 		eval.metric = (float) (error/dataset.size());
 		
 		if(eval instanceof ErrorEvaluation){
 			ErrorEvaluation eeval = (ErrorEvaluation) eval;
 			eeval.outputs = params;
+			if(paramsWriter != null){
+				try {
+					paramsWriter.close();
+				} catch(IOException e){
+					throw new RuntimeException("Failed to write outputs to "+config.outputFile, e);
+				}
+				eeval.outputsFile = paramsWriter.outputs();
+			}
 			eeval.forwardTime = (tForward/1000000f)/dataset.size();
 		}
 		return eval;
@@ -30,12 +30,23 @@ public class EvaluationStrategyConfig {
 	 * Include all raw outputs in the evaluation results
 	 */
 	public boolean includeOutputs = false;
+	
+	/**
+	 * Stream the raw outputs to this file instead of keeping them all in memory, 
+	 * the result then only contains a handle to the file (implies includeOutputs)
+	 */
+	public String outputFile;
 
 	/**
 	 * Evaluate in batches
 	 */
 	public int batchSize = 1;
 	
+	/**
+	 * Fetch the next batch in a background thread while forwarding the current one
+	 */
+	public boolean prefetch = true;
+	
 	/**
 	 * The criterion to use to evaluate the error between output and target
 	 */
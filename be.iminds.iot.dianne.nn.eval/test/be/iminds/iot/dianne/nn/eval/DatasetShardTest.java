@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.eval;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.dataset.Dataset;
+
+public class DatasetShardTest {
+
+	// dataset of which only the size is used, records the indices requested
+	private Dataset dataset(int size, List<Integer> requested){
+		return (Dataset)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{Dataset.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "size":
+						return size;
+					case "getSample":
+						requested.add((Integer)args[1]);
+						return null;
+					case "getBatch":
+						for(int i : (int[])args[1]){
+							requested.add(i);
+						}
+						return null;
+					default:
+						return null;
+					}
+				});
+	}
+	
+	@Test
+	public void testSplit() {
+		for(int size=0;size<50;size++){
+			for(int n=1;n<8;n++){
+				Dataset d = dataset(size, new ArrayList<>());
+				int total = 0;
+				int min = Integer.MAX_VALUE;
+				int max = 0;
+				for(int i=0;i<n;i++){
+					DatasetShard shard = DatasetShard.shard(d, i, n);
+					total += shard.size();
+					min = Math.min(min, shard.size());
+					max = Math.max(max, shard.size());
+				}
+				// the shards cover the whole dataset with (almost) equal sizes
+				Assert.assertEquals(size, total);
+				Assert.assertTrue(max - min <= 1);
+			}
+		}
+	}
+	
+	@Test
+	public void testIndices() {
+		List<Integer> requested = new ArrayList<>();
+		Dataset d = dataset(10, requested);
+		
+		// each shard maps its indices onto a contiguous, disjoint part of the dataset
+		for(int i=0;i<3;i++){
+			DatasetShard shard = DatasetShard.shard(d, i, 3);
+			for(int k=0;k<shard.size();k++){
+				shard.getSample(null, k);
+			}
+		}
+		List<Integer> expected = new ArrayList<>();
+		for(int i=0;i<10;i++){
+			expected.add(i);
+		}
+		Assert.assertEquals(expected, requested);
+		
+		// batches are delegated as a whole
+		requested.clear();
+		DatasetShard shard = DatasetShard.shard(d, 2, 3);
+		Assert.assertEquals(4, shard.size());
+		shard.getBatch(null, 0, 1, 3);
+		Assert.assertEquals(Arrays.asList(6, 7, 9), requested);
+	}
+}
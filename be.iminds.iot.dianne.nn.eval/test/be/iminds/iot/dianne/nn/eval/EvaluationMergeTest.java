@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.eval;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.nn.eval.ClassificationEvaluation;
+import be.iminds.iot.dianne.api.nn.eval.ErrorEvaluation;
+import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class EvaluationMergeTest {
+
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	private static <T extends Evaluation> T evaluation(T e, long size, float metric, long time){
+		e.size = size;
+		e.metric = metric;
+		e.time = time;
+		return e;
+	}
+	
+	private static EvaluationOutputs outputs(String file, long count, float mean, float min, float max){
+		EvaluationOutputs o = new EvaluationOutputs();
+		o.dims = new int[]{2};
+		o.files.add(file);
+		o.counts.add(count);
+		o.count = count;
+		o.mean = mean;
+		o.min = min;
+		o.max = max;
+		return o;
+	}
+	
+	@Test
+	public void testMerge() {
+		Evaluation a = evaluation(new Evaluation(), 10, 0.5f, 100);
+		Evaluation b = evaluation(new Evaluation(), 30, 0.1f, 200);
+		
+		Evaluation merged = new Evaluation();
+		merged.merge(a);
+		Assert.assertEquals(10, merged.size());
+		Assert.assertEquals(0.5f, merged.metric(), 1e-6f);
+		Assert.assertEquals(100, merged.time());
+		
+		// size weighted metric, max time as shards are evaluated in parallel
+		merged.merge(b);
+		Assert.assertEquals(40, merged.size());
+		Assert.assertEquals(0.2f, merged.metric(), 1e-6f);
+		Assert.assertEquals(200, merged.time());
+		
+		// empty shards don't change the result
+		merged.merge(new Evaluation());
+		Assert.assertEquals(40, merged.size());
+		Assert.assertEquals(0.2f, merged.metric(), 1e-6f);
+	}
+	
+	@Test
+	public void testMergeOutputs() {
+		ErrorEvaluation a = evaluation(new ErrorEvaluation(), 2, 0.0f, 10);
+		a.forwardTime = 1.0f;
+		a.outputsFile = outputs("a", 2, 1.0f, 0.0f, 2.0f);
+		ErrorEvaluation b = evaluation(new ErrorEvaluation(), 3, 1.0f, 10);
+		b.forwardTime = 2.0f;
+		b.outputsFile = outputs("b", 3, 2.0f, 1.0f, 5.0f);
+		
+		ErrorEvaluation merged = new ErrorEvaluation();
+		merged.merge(a);
+		merged.merge(b);
+		Assert.assertEquals(0.6f, merged.error(), 1e-6f);
+		Assert.assertEquals(1.6f, merged.forwardTime(), 1e-6f);
+		
+		EvaluationOutputs o = merged.outputsFile();
+		Assert.assertEquals(Arrays.asList("a", "b"), o.files());
+		Assert.assertEquals(Arrays.asList(2L, 3L), o.counts);
+		Assert.assertEquals(5, o.count());
+		Assert.assertEquals(1.6f, o.mean, 1e-6f);
+		Assert.assertEquals(0.0f, o.min, 0.0f);
+		Assert.assertEquals(5.0f, o.max, 0.0f);
+		
+		// the partial results are left untouched
+		Assert.assertEquals(Arrays.asList("a"), a.outputsFile.files());
+		Assert.assertEquals(2, a.outputsFile.count());
+		
+		// outputs kept in memory are concatenated in order
+		a.outputsFile = null;
+		b.outputsFile = null;
+		a.outputs = Arrays.asList(new Tensor(new float[]{1, 2}, 2), new Tensor(new float[]{3, 4}, 2));
+		b.outputs = Arrays.asList(new Tensor(new float[]{5, 6}, 2));
+		merged = new ErrorEvaluation();
+		merged.merge(a);
+		merged.merge(b);
+		Assert.assertNull(merged.outputsFile());
+		Assert.assertEquals(3, merged.outputs().size());
+		Assert.assertEquals(new Tensor(new float[]{5, 6}, 2), merged.output(2));
+		Assert.assertEquals(2, a.outputs.size());
+	}
+	
+	@Test
+	public void testMergeClassification() {
+		ClassificationEvaluation a = evaluation(new ClassificationEvaluation(), 3, 1/3f, 10);
+		a.confusionMatrix = new Tensor(new float[]{1, 1, 0, 1}, 2, 2);
+		a.rankings = new int[]{0, 1, 0};
+		ClassificationEvaluation b = evaluation(new ClassificationEvaluation(), 2, 0.0f, 10);
+		b.confusionMatrix = new Tensor(new float[]{1, 0, 0, 1}, 2, 2);
+		b.rankings = new int[]{0, 0};
+		
+		ClassificationEvaluation merged = new ClassificationEvaluation();
+		merged.merge(a);
+		merged.merge(b);
+		Assert.assertEquals(5, merged.size());
+		Assert.assertEquals(new Tensor(new float[]{2, 1, 0, 2}, 2, 2), merged.confusionMatrix());
+		Assert.assertArrayEquals(new int[]{0, 1, 0, 0, 0}, merged.rankings);
+		Assert.assertEquals(0.8f, merged.topNaccuracy(1), 1e-6f);
+		Assert.assertEquals(0.8f, merged.accuracy(), 1e-6f);
+		
+		// the partial results are left untouched
+		Assert.assertEquals(new Tensor(new float[]{1, 1, 0, 1}, 2, 2), a.confusionMatrix);
+		Assert.assertArrayEquals(new int[]{0, 1, 0}, a.rankings);
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.eval;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.nn.eval.EvaluationOutputs;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class EvaluationOutputsTest {
+
+	private File dir;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("dianne-outputs").toFile();
+	}
+	
+	@After
+	public void teardown() {
+		for(File f : dir.listFiles()){
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		String file = new File(dir, "outputs").getAbsolutePath();
+		EvaluationOutputs o;
+		try(EvaluationOutputs.Writer writer = new EvaluationOutputs.Writer(file)){
+			writer.writeBatch(new Tensor(new float[]{1, 2, 3, 4, 5, 6}, 3, 2));
+			writer.write(new Tensor(new float[]{-1, 7}, 2));
+			o = writer.outputs();
+		}
+		
+		Assert.assertEquals(Arrays.asList(file), o.files());
+		Assert.assertEquals(Arrays.asList(4L), o.counts);
+		Assert.assertEquals(4, o.count());
+		Assert.assertArrayEquals(new int[]{2}, o.dims());
+		Assert.assertEquals(-1.0f, o.min, 0.0f);
+		Assert.assertEquals(7.0f, o.max, 0.0f);
+		Assert.assertEquals(27.0f/8, o.mean, 1e-6f);
+		
+		// header with the dimensions, followed by the raw floats
+		Assert.assertEquals(4*2 + 4*8, new File(file).length());
+		
+		Assert.assertEquals(new Tensor(new float[]{1, 2}, 2), o.get(0));
+		Assert.assertEquals(new Tensor(new float[]{5, 6}, 2), o.get(2));
+		Assert.assertEquals(new Tensor(new float[]{-1, 7}, 2), o.get(3));
+		
+		try {
+			o.get(4);
+			Assert.fail("Expected IndexOutOfBoundsException");
+		} catch(IndexOutOfBoundsException e){
+		}
+	}
+	
+	@Test
+	public void testMultiDimensional() throws Exception {
+		String file = new File(dir, "outputs").getAbsolutePath();
+		EvaluationOutputs o;
+		try(EvaluationOutputs.Writer writer = new EvaluationOutputs.Writer(file)){
+			writer.writeBatch(new Tensor(new float[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, 2, 2, 3));
+			o = writer.outputs();
+		}
+		
+		Assert.assertArrayEquals(new int[]{2, 3}, o.dims());
+		Assert.assertEquals(new Tensor(new float[]{6, 7, 8, 9, 10, 11}, 2, 3), o.get(1));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testDimsChanged() throws Exception {
+		try(EvaluationOutputs.Writer writer = new EvaluationOutputs.Writer(new File(dir, "outputs").getAbsolutePath())){
+			writer.write(new Tensor(new float[]{1, 2}, 2));
+			writer.write(new Tensor(new float[]{1, 2, 3}, 3));
+		}
+	}
+	
+	@Test
+	public void testMergeShards() throws Exception {
+		String file = new File(dir, "outputs").getAbsolutePath();
+		
+		// shards as written by the replicas of an evaluator, the second shard is empty
+		float[][] shards = new float[][]{{1, 2, 3, 4}, {}, {5, 6, 7, 8, 9, 10}};
+		List<EvaluationOutputs> partial = new ArrayList<>();
+		for(int i=0;i<shards.length;i++){
+			try(EvaluationOutputs.Writer writer = new EvaluationOutputs.Writer(EvaluationOutputs.shardFile(file, i))){
+				if(shards[i].length > 0)
+					writer.writeBatch(new Tensor(shards[i], shards[i].length/2, 2));
+				partial.add(writer.outputs());
+			}
+		}
+		
+		EvaluationOutputs merged = new EvaluationOutputs();
+		for(EvaluationOutputs o : partial){
+			merged.merge(o);
+		}
+		
+		// every shard file is found, in shard order
+		Assert.assertEquals(Arrays.asList(file+".shard0", file+".shard1", file+".shard2"), merged.files());
+		for(String f : merged.files()){
+			Assert.assertTrue(new File(f).exists());
+		}
+		Assert.assertEquals(Arrays.asList(2L, 0L, 3L), merged.counts);
+		Assert.assertEquals(5, merged.count());
+		Assert.assertArrayEquals(new int[]{2}, merged.dims());
+		Assert.assertEquals(1.0f, merged.min, 0.0f);
+		Assert.assertEquals(10.0f, merged.max, 0.0f);
+		Assert.assertEquals(5.5f, merged.mean, 1e-6f);
+		
+		// outputs are read back across shard boundaries
+		for(int i=0;i<5;i++){
+			Assert.assertEquals(new Tensor(new float[]{2*i+1, 2*i+2}, 2), merged.get(i));
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.eval.strategy;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.dataset.Batch;
+import be.iminds.iot.dianne.api.dataset.Dataset;
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.api.nn.eval.Evaluation;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class AbstractEvaluationStrategyTest {
+
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	// dataset of 8 samples, fetching a batch starting from index failing throws an exception
+	private Dataset dataset(int failing){
+		return (Dataset)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{Dataset.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "size":
+						return 8;
+					case "getBatch":
+						int[] indices = (int[])args[1];
+						if(indices[0] >= failing)
+							throw new RuntimeException("Failed to fetch batch");
+						Tensor input = new Tensor(indices.length, 2);
+						input.fill(indices[0]);
+						return new Batch(input, input.copyInto(null));
+					default:
+						return null;
+					}
+				});
+	}
+	
+	// neural network that outputs its input
+	private NeuralNetwork nn(){
+		return (NeuralNetwork)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{NeuralNetwork.class}, (proxy, method, args) -> 
+					"forward".equals(method.getName()) ? args[0] : null);
+	}
+	
+	private AbstractEvaluationStrategy strategy(){
+		return new AbstractEvaluationStrategy() {
+			
+			@Override
+			protected float eval(Tensor output, Tensor target) {
+				return output.get(0, 0);
+			}
+			
+			@Override
+			protected void init(Map<String, String> config) {
+			}
+			
+			@Override
+			protected Evaluation finish() {
+				return new Evaluation();
+			}
+		};
+	}
+	
+	private Map<String, String> config(){
+		Map<String, String> config = new HashMap<>();
+		config.put("batchSize", "2");
+		config.put("prefetch", "true");
+		return config;
+	}
+	
+	private boolean prefetching() throws InterruptedException {
+		long timeout = System.currentTimeMillis()+1000;
+		while(System.currentTimeMillis() < timeout){
+			boolean alive = Thread.getAllStackTraces().keySet().stream()
+					.anyMatch(t -> t.isAlive() && t.getName().equals("dianne-eval-prefetch"));
+			if(!alive)
+				return false;
+			Thread.sleep(10);
+		}
+		return true;
+	}
+	
+	@Test
+	public void testResult() throws Exception {
+		AbstractEvaluationStrategy strategy = strategy();
+		strategy.setup(config(), dataset(8), nn());
+		
+		for(long i=0;i<8;i+=2){
+			Assert.assertEquals(i+2, strategy.processIteration(i).processed);
+		}
+		Assert.assertTrue(prefetching());
+		
+		Evaluation eval = strategy.getResult();
+		Assert.assertEquals(8, eval.size());
+		// error is the first sample index of each batch
+		Assert.assertEquals((0+2+4+6)/8.0f, eval.metric(), 1e-6f);
+		Assert.assertFalse(prefetching());
+	}
+	
+	@Test
+	public void testFailure() throws Exception {
+		AbstractEvaluationStrategy strategy = strategy();
+		strategy.setup(config(), dataset(4), nn());
+		
+		strategy.processIteration(0);
+		strategy.processIteration(2);
+		try {
+			// the prefetched batch failed
+			strategy.processIteration(4);
+			Assert.fail();
+		} catch(ExecutionException e){
+			Assert.assertEquals("Failed to fetch batch", e.getCause().getMessage());
+		}
+		
+		// the prefetch thread is released without calling getResult
+		Assert.assertFalse(prefetching());
+	}
+}
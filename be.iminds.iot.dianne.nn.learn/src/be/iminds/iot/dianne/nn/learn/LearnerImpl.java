@@ -50,6 +50,7 @@ import be.iminds.iot.dianne.api.nn.learn.LearningStrategy;
 import be.iminds.iot.dianne.api.nn.module.Trainable;
 import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
 import be.iminds.iot.dianne.api.nn.util.StrategyFactory;
+import be.iminds.iot.dianne.api.repository.ParameterSubscriber;
 import be.iminds.iot.dianne.nn.learn.config.LearnerConfig;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -86,6 +87,9 @@ public class LearnerImpl implements Learner {
 	// Previous  parameters
 	private Map<UUID, Map<UUID, Tensor>> previousParameters;
 	
+	// Push parameters to subscribed agents
+	private final ParameterBroadcaster broadcaster = new ParameterBroadcaster();
+	
 	// Training progress
 	private volatile long i = 0;
 	private LearnProgress progress;
@@ -346,6 +350,15 @@ public class LearnerImpl implements Learner {
 		} catch(Exception e){
 			System.out.println("Failed to load parameters after publish?!");
 			e.printStackTrace();
+			return;
+		}
+		
+		// Push the loaded parameters to subscribers, these are not modified anymore 
+		// as a new map is loaded on the next publish
+		if(config.tag == null){
+			broadcaster.publish(nn.getId(), i, previousParameters.get(nn.getId()));
+		} else {
+			broadcaster.publish(nn.getId(), i, previousParameters.get(nn.getId()), config.tag);
 		}
 	}
 
@@ -408,6 +421,16 @@ public class LearnerImpl implements Learner {
 		factory = f;
 	}
 	
+	@Reference(cardinality=ReferenceCardinality.MULTIPLE, 
+			policy=ReferencePolicy.DYNAMIC)
+	void addParameterSubscriber(ParameterSubscriber s, Map<String, Object> properties){
+		broadcaster.addSubscriber(s, (String[])properties.get("targets"));
+	}
+	
+	void removeParameterSubscriber(ParameterSubscriber s){
+		broadcaster.removeSubscriber(s);
+	}
+	
 	@Reference(cardinality=ReferenceCardinality.MULTIPLE, 
 			policy=ReferencePolicy.DYNAMIC)
 	void addListener(LearnerListener listener, Map<String, Object> properties){
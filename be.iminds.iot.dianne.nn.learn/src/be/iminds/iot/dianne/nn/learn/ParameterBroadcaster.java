@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.learn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import be.iminds.iot.dianne.api.repository.ParameterSubscriber;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Pushes parameter snapshots to the subscribed agents. Each subscriber gets notified
+ * asynchronously, and in case it cannot keep up only the latest snapshot is delivered.
+ * 
+ * @author tverbele
+ *
+ */
+public class ParameterBroadcaster {
+
+	private final Map<ParameterSubscriber, Subscription> subscribers = new ConcurrentHashMap<>();
+	private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "Parameter broadcast");
+		t.setDaemon(true);
+		return t;
+	});
+	
+	public void addSubscriber(ParameterSubscriber s, String[] targets){
+		subscribers.put(s, new Subscription(s, targets == null ? null : Arrays.asList(targets)));
+	}
+	
+	public void removeSubscriber(ParameterSubscriber s){
+		subscribers.remove(s);
+	}
+	
+	/**
+	 * Push a parameter snapshot to all matching subscribers, the parameters should no longer be modified
+	 */
+	public void publish(UUID nnId, long version, Map<UUID, Tensor> parameters, String... tag){
+		if(subscribers.isEmpty() || parameters == null)
+			return;
+		
+		List<String> tags = new ArrayList<String>(tag.length+1);
+		tags.addAll(Arrays.asList(tag));
+		tags.add(nnId.toString());
+		
+		Snapshot snapshot = new Snapshot(nnId, version, parameters, tag);
+		subscribers.values().stream()
+			.filter(s -> match(s.targets, parameters.keySet(), tags))
+			.forEach(s -> s.offer(snapshot));
+	}
+	
+	// same matching as the repository does for RepositoryListeners
+	private boolean match(Collection<String> targets, Collection<UUID> moduleIds, List<String> tags){
+		// match everything if targets = null
+		if(targets==null){
+			return true;
+		}
+		
+		// targets in form  moduleId:tag
+		for(String target : targets){
+			String[] split = target.split(":");
+			if(split[0].length()!=0){
+				// moduleId provided
+				if(!moduleIds.contains(UUID.fromString(split[0]))){
+					return false;
+				}
+			}
+			
+			// some tag provided
+			for(int i=1;i<split.length;i++){
+				if(!tags.contains(split[i])){
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	private static class Snapshot {
+		final UUID nnId;
+		final long version;
+		final Map<UUID, Tensor> parameters;
+		final String[] tag;
+		
+		Snapshot(UUID nnId, long version, Map<UUID, Tensor> parameters, String[] tag){
+			this.nnId = nnId;
+			this.version = version;
+			this.parameters = parameters;
+			this.tag = tag;
+		}
+	}
+	
+	private class Subscription {
+		
+		final ParameterSubscriber subscriber;
+		final List<String> targets;
+		
+		final AtomicReference<Snapshot> pending = new AtomicReference<>();
+		final AtomicBoolean scheduled = new AtomicBoolean();
+		
+		Subscription(ParameterSubscriber subscriber, List<String> targets){
+			this.subscriber = subscriber;
+			this.targets = targets;
+		}
+		
+		void offer(Snapshot snapshot){
+			// a snapshot that is not yet delivered gets replaced by the newer one
+			pending.set(snapshot);
+			if(scheduled.compareAndSet(false, true)){
+				executor.execute(this::deliver);
+			}
+		}
+		
+		void deliver(){
+			Snapshot s;
+			while((s = pending.getAndSet(null)) != null){
+				try {
+					subscriber.onParameters(s.nnId, s.version, s.parameters, s.tag);
+				} catch(Exception e){
+					System.out.println("Failed to push parameters to subscriber: "+e.getMessage());
+				}
+			}
+			scheduled.set(false);
+			
+			// check for a snapshot offered while finishing up
+			if(pending.get() != null && scheduled.compareAndSet(false, true)){
+				executor.execute(this::deliver);
+			}
+		}
+	}
+}
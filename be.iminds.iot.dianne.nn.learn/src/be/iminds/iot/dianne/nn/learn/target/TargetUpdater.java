@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.learn.target;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.nn.learn.target.config.TargetConfig;
+import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
+import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorOps;
+
+/**
+ * Utility class that keeps a target network in sync with an online network without
+ * going through the repository. The target parameters are moved towards the online 
+ * parameters with a single lerp per module: 
+ * 
+ * target = target + tau*(online - target)
+ * 
+ * For modules deployed locally the lerp is done in place on the parameters of the target 
+ * modules. Remote modules only hand out a copy of their parameters, which is lerped and 
+ * then set on the module.
+ * 
+ * @author tverbele
+ *
+ */
+public class TargetUpdater {
+
+	private final NeuralNetwork online;
+	private final NeuralNetwork target;
+	private final TargetConfig config;
+	
+	// parameters of the target network
+	private Map<UUID, Tensor> parameters = Collections.emptyMap();
+	// modules for which parameters is a copy instead of the actual module parameters
+	private final Set<UUID> copies = new HashSet<>();
+	
+	public TargetUpdater(NeuralNetwork online, NeuralNetwork target, Map<String, String> config){
+		this.online = online;
+		this.target = target;
+		this.config = DianneConfigHandler.getConfig(config, TargetConfig.class);
+		
+		if(this.config.targetInterval > 0){
+			// start from a copy of the online network
+			target.setParameters(online.getParameters());
+			parameters = target.getParameters();
+			
+			// local modules return the same tensor each time
+			Map<UUID, Tensor> again = target.getParameters();
+			for(Map.Entry<UUID, Tensor> e : parameters.entrySet()){
+				if(again.get(e.getKey()) != e.getValue()){
+					copies.add(e.getKey());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return whether the target is updated in memory, if not the target should be synced via the repository
+	 */
+	public boolean isEnabled(){
+		return config.targetInterval > 0;
+	}
+	
+	/**
+	 * Update the target network in case iteration i is a multiple of targetInterval
+	 */
+	public void update(long i){
+		if(config.targetInterval <= 0 || i % config.targetInterval != 0)
+			return;
+		
+		Map<UUID, Tensor> onlineParameters = online.getParameters();
+		for(Map.Entry<UUID, Tensor> e : parameters.entrySet()){
+			Tensor p = onlineParameters.get(e.getKey());
+			if(p == null)
+				continue;
+			
+			if(config.tau >= 1.0f){
+				p.copyInto(e.getValue());
+			} else {
+				TensorOps.lerp(e.getValue(), e.getValue(), p, config.tau);
+			}
+			
+			if(copies.contains(e.getKey())){
+				target.setParameters(e.getKey(), e.getValue());
+			}
+		}
+	}
+}
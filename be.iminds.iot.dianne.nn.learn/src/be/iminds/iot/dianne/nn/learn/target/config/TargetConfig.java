@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.learn.target.config;
+
+public class TargetConfig {
+
+	/**
+	 * Update the target network in memory each targetInterval iterations, 
+	 * 0 leaves the target to be updated via the repository using the syncInterval option
+	 */
+	public int targetInterval = 0;
+	
+	/**
+	 * Soft update factor, each update the target parameters become tau*online + (1-tau)*target. 
+	 * Use tau = 1 for a hard copy each targetInterval iterations
+	 */
+	public float tau = 1.0f;
+	
+}
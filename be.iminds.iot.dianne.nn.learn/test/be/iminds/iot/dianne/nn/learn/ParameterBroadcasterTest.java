@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.learn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.repository.ParameterSubscriber;
+import be.iminds.iot.dianne.tensor.Tensor;
+import junit.framework.Assert;
+
+public class ParameterBroadcasterTest {
+
+	private final UUID nnId = UUID.randomUUID();
+	private final UUID moduleId = UUID.randomUUID();
+	
+	private Map<UUID, Tensor> parameters(){
+		Map<UUID, Tensor> parameters = new HashMap<>();
+		parameters.put(moduleId, null);
+		return parameters;
+	}
+	
+	@Test
+	public void testLatestWins() throws Exception {
+		CountDownLatch delivering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+		
+		ParameterBroadcaster broadcaster = new ParameterBroadcaster();
+		broadcaster.addSubscriber(new ParameterSubscriber() {
+			@Override
+			public void onParameters(UUID nnId, long version, Map<UUID, Tensor> parameters, String... tag) {
+				versions.add(version);
+				if(version == 1){
+					// block the first delivery until the others are published
+					delivering.countDown();
+					try {
+						release.await();
+					} catch(InterruptedException e){}
+				}
+				if(version == 4){
+					done.countDown();
+				}
+			}
+		}, null);
+		
+		broadcaster.publish(nnId, 1, parameters());
+		Assert.assertTrue(delivering.await(5, TimeUnit.SECONDS));
+		
+		broadcaster.publish(nnId, 2, parameters());
+		broadcaster.publish(nnId, 3, parameters());
+		broadcaster.publish(nnId, 4, parameters());
+		release.countDown();
+		
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		Assert.assertEquals(Arrays.asList(1L, 4L), versions);
+	}
+	
+	@Test
+	public void testSlowSubscriberDoesNotBlockOthers() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch fast = new CountDownLatch(3);
+		
+		ParameterBroadcaster broadcaster = new ParameterBroadcaster();
+		broadcaster.addSubscriber((nnId, version, parameters, tag) -> {
+			try {
+				release.await();
+			} catch(InterruptedException e){}
+		}, null);
+		broadcaster.addSubscriber((nnId, version, parameters, tag) -> fast.countDown(), null);
+		
+		for(int i=1;i<=3;i++){
+			broadcaster.publish(nnId, i, parameters());
+			// give each publish the time to be delivered to the fast subscriber
+			Thread.sleep(50);
+		}
+		
+		Assert.assertTrue(fast.await(5, TimeUnit.SECONDS));
+		release.countDown();
+	}
+	
+	@Test
+	public void testTargets() throws Exception {
+		Map<String, List<Long>> received = new HashMap<>();
+		ParameterBroadcaster broadcaster = new ParameterBroadcaster();
+		
+		String[][] targets = new String[][]{
+			null,
+			new String[]{":run"},
+			new String[]{":other"},
+			new String[]{moduleId.toString()},
+			new String[]{UUID.randomUUID().toString()},
+			new String[]{":"+nnId.toString()}
+		};
+		CountDownLatch done = new CountDownLatch(4);
+		for(String[] t : targets){
+			List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+			received.put(Arrays.toString(t), versions);
+			broadcaster.addSubscriber((nnId, version, parameters, tag) -> {
+				versions.add(version);
+				done.countDown();
+			}, t);
+		}
+		
+		broadcaster.publish(nnId, 1, parameters(), "run");
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		
+		Assert.assertEquals(1, received.get(Arrays.toString(targets[0])).size());
+		Assert.assertEquals(1, received.get(Arrays.toString(targets[1])).size());
+		Assert.assertEquals(0, received.get(Arrays.toString(targets[2])).size());
+		Assert.assertEquals(1, received.get(Arrays.toString(targets[3])).size());
+		Assert.assertEquals(0, received.get(Arrays.toString(targets[4])).size());
+		Assert.assertEquals(1, received.get(Arrays.toString(targets[5])).size());
+	}
+	
+	@Test
+	public void testRemoveSubscriber() throws Exception {
+		List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+		ParameterSubscriber s = (nnId, version, parameters, tag) -> versions.add(version);
+		
+		ParameterBroadcaster broadcaster = new ParameterBroadcaster();
+		broadcaster.addSubscriber(s, null);
+		broadcaster.removeSubscriber(s);
+		broadcaster.publish(nnId, 1, parameters());
+		Thread.sleep(100);
+		
+		Assert.assertTrue(versions.isEmpty());
+	}
+}
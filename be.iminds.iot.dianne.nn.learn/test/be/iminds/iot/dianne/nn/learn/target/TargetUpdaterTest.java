@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.learn.target;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+import junit.framework.Assert;
+
+public class TargetUpdaterTest {
+
+	private final UUID moduleId = UUID.randomUUID();
+	
+	// number of times setParameters is called on the target
+	private int sets = 0;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	private static Map<String, String> config(String interval, String tau){
+		Map<String, String> config = new HashMap<>();
+		config.put("targetInterval", interval);
+		config.put("tau", tau);
+		return config;
+	}
+	
+	private static Tensor tensor(float v){
+		Tensor t = new Tensor(4);
+		t.fill(v);
+		return t;
+	}
+	
+	/**
+	 * A neural network with a single module, which either hands out its actual 
+	 * parameters (local) or a copy of them (remote)
+	 */
+	@SuppressWarnings("unchecked")
+	private NeuralNetwork nn(Tensor parameters, boolean remote){
+		return (NeuralNetwork)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{NeuralNetwork.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getParameters":
+						Map<UUID, Tensor> result = new HashMap<>();
+						result.put(moduleId, remote ? parameters.copyInto(null) : parameters);
+						return result;
+					case "setParameters":
+						sets++;
+						Tensor p = args.length == 1 ? ((Map<UUID, Tensor>)args[0]).get(moduleId) : (Tensor)args[1];
+						p.copyInto(parameters);
+						return null;
+					default:
+						return null;
+					}
+				});
+	}
+	
+	@Test
+	public void testLocal() {
+		Tensor online = tensor(1.0f);
+		Tensor target = tensor(0.0f);
+		
+		TargetUpdater updater = new TargetUpdater(nn(online, false), nn(target, false), config("1", "0.5"));
+		Assert.assertTrue(updater.isEnabled());
+		// starts from a copy of the online network
+		Assert.assertEquals(tensor(1.0f), target);
+		Assert.assertNotSame(online, target);
+		
+		sets = 0;
+		online.fill(3.0f);
+		updater.update(1);
+		Assert.assertEquals(tensor(2.0f), target);
+		updater.update(2);
+		Assert.assertEquals(tensor(2.5f), target);
+		// updated in place
+		Assert.assertEquals(0, sets);
+		Assert.assertEquals(tensor(3.0f), online);
+	}
+	
+	@Test
+	public void testRemote() {
+		Tensor online = tensor(1.0f);
+		Tensor target = tensor(0.0f);
+		
+		TargetUpdater updater = new TargetUpdater(nn(online, false), nn(target, true), config("1", "0.5"));
+		Assert.assertEquals(tensor(1.0f), target);
+		
+		sets = 0;
+		online.fill(3.0f);
+		updater.update(1);
+		Assert.assertEquals(tensor(2.0f), target);
+		updater.update(2);
+		Assert.assertEquals(tensor(2.5f), target);
+		Assert.assertEquals(2, sets);
+	}
+	
+	@Test
+	public void testInterval() {
+		Tensor online = tensor(1.0f);
+		Tensor target = tensor(0.0f);
+		
+		TargetUpdater updater = new TargetUpdater(nn(online, false), nn(target, false), config("10", "1"));
+		online.fill(3.0f);
+		updater.update(5);
+		Assert.assertEquals(tensor(1.0f), target);
+		// hard copy with tau 1
+		updater.update(10);
+		Assert.assertEquals(tensor(3.0f), target);
+	}
+	
+	@Test
+	public void testDisabled() {
+		Tensor online = tensor(1.0f);
+		Tensor target = tensor(0.0f);
+		
+		TargetUpdater updater = new TargetUpdater(nn(online, false), nn(target, false), config("0", "1"));
+		Assert.assertFalse(updater.isEnabled());
+		updater.update(0);
+		Assert.assertEquals(tensor(0.0f), target);
+	}
+}
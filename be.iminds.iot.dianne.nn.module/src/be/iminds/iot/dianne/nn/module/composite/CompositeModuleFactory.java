@@ -270,16 +270,13 @@ public class CompositeModuleFactory implements ModuleFactory {
 		UUID compositeNNid = UUID.randomUUID();
 		
 		Map<UUID, ModuleInstanceDTO> deployed = new HashMap<>();
-		for(ModuleDTO m : nnDescription.modules.values()){
-			try {
-				ModuleInstanceDTO mi = runtime.deployModule(m, compositeNNid, narrowed.get(m.id));
+		try {
+			// deploy all at once, a failed batch is undeployed by the runtime
+			for(ModuleInstanceDTO mi : runtime.deployModules(new ArrayList<>(nnDescription.modules.values()), compositeNNid, narrowed)){
 				deployed.put(mi.moduleId, mi);
-			} catch(Exception e){
-				for(ModuleInstanceDTO mi : deployed.values()){
-					runtime.undeployModule(mi);
-				}
-				throw new RuntimeException("Failed to deploy composite module "+compositeNNid+": "+e.getMessage(), e);
 			}
+		} catch(Exception e){
+			throw new RuntimeException("Failed to deploy composite module "+compositeNNid+": "+e.getMessage(), e);
 		}
 		NeuralNetworkInstanceDTO nnDTO = new NeuralNetworkInstanceDTO(compositeNNid, dto.type, deployed);
 		
@@ -478,6 +475,13 @@ public class CompositeModuleFactory implements ModuleFactory {
 			}
 		}
 		
+		// composing modules run on the same scheduler as the composite itself
+		for(ModuleDTO m : nnDescription.modules.values()){
+			dto.properties.entrySet().stream()
+				.filter(e -> e.getKey().equals("scheduler") || e.getKey().startsWith("scheduler."))
+				.forEach(e -> m.properties.put(e.getKey(), e.getValue()));
+		}
+		
 		return nnDescription;
 	}
 	
@@ -132,6 +132,11 @@ public class BatchNormalization extends AbstractTrainableModule{
 			bnDims = new int[]{inputDims[0], inputDims[1], inputDims[2]*inputDims[3]*inputDims[4]};
 		}
 		
+		if(train){
+			// running mean and var are updated in train mode
+			unshareParameters();
+		}
+		
 		input.reshape(bnDims);
 		output = ModuleOps.batchnorm(output, input, weights, bias, rMean, rVar, sMean, sVar, train);
 		output.reshape(inputDims);
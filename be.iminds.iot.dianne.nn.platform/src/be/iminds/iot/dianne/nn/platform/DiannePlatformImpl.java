@@ -26,8 +26,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -154,7 +156,8 @@ public class DiannePlatformImpl implements DiannePlatform {
 		
 		UUID nnId = UUID.randomUUID();
 		
-		Map<UUID, ModuleInstanceDTO> moduleInstances = new HashMap<UUID, ModuleInstanceDTO>();
+		// group the modules per target runtime
+		Map<UUID, List<ModuleDTO>> toDeploy = new LinkedHashMap<>();
 		for(ModuleDTO module : neuralNetwork.modules.values()){
 			mergeProperties(module, properties);
 			
@@ -170,15 +173,34 @@ public class DiannePlatformImpl implements DiannePlatform {
 				targetRuntime = runtimeId;
 			}
 			
-			DianneRuntime runtime = runtimes.get(targetRuntime);
-			if(runtime==null){
-				undeployNeuralNetwork(nnId);
-				
+			if(!runtimes.containsKey(targetRuntime)){
 				throw new InstantiationException("Failed to deploy modules to runtime "+targetRuntime+": no such runtime");
 			}
 			
-			ModuleInstanceDTO instance = runtime.deployModule(module, nnId, tags);
-			moduleInstances.put(instance.moduleId, instance);
+			List<ModuleDTO> modules = toDeploy.get(targetRuntime);
+			if(modules == null){
+				modules = new ArrayList<>();
+				toDeploy.put(targetRuntime, modules);
+			}
+			modules.add(module);
+		}
+		
+		// deploy all modules of a runtime in a single batch
+		Map<UUID, ModuleInstanceDTO> moduleInstances = new HashMap<UUID, ModuleInstanceDTO>();
+		for(Entry<UUID, List<ModuleDTO>> e : toDeploy.entrySet()){
+			DianneRuntime runtime = runtimes.get(e.getKey());
+			try {
+				if(runtime==null){
+					throw new InstantiationException("Failed to deploy modules to runtime "+e.getKey()+": no such runtime");
+				}
+				
+				for(ModuleInstanceDTO instance : runtime.deployModules(e.getValue(), nnId, tags)){
+					moduleInstances.put(instance.moduleId, instance);
+				}
+			} catch(InstantiationException | RuntimeException ex){
+				undeployNeuralNetwork(nnId);
+				throw ex;
+			}
 		}
 
 		NeuralNetworkInstanceDTO nni = new NeuralNetworkInstanceDTO(nnId, name, description, moduleInstances);
@@ -292,7 +314,25 @@ public class DiannePlatformImpl implements DiannePlatform {
 			throw new InstantiationException("Failed to deploy modules to runtime "+runtimeId+": no such runtime");
 		}
 		
+		// modules that are not deployed anywhere yet are deployed in a single batch
+		List<ModuleDTO> batch = new ArrayList<>();
+		for(ModuleDTO module : modules){
+			if(!nni.modules.containsKey(module.id)){
+				batch.add(module);
+			}
+		}
+		if(!batch.isEmpty()){
+			for(ModuleInstanceDTO moduleInstance : runtime.deployModules(batch, nnId, tags)){
+				nni.modules.put(moduleInstance.moduleId, moduleInstance);
+				moduleInstances.add(moduleInstance);
+			}
+		}
+		
 		for(ModuleDTO module : modules){
+			if(batch.contains(module)){
+				continue;
+			}
+			
 			ModuleInstanceDTO old = null;
 			if(nni!=null){
 				old = nni.modules.get(module.id);
@@ -380,6 +420,26 @@ public class DiannePlatformImpl implements DiannePlatform {
 		return nni == null ? external.get(nnId) : nni;
 	}
 	
+	@Override
+	public void prefetchNeuralNetwork(String name, UUID runtimeId, String... tags) throws InstantiationException {
+		NeuralNetworkDTO neuralNetwork = null;
+		try {
+			 neuralNetwork = repository.loadNeuralNetwork(name);
+		} catch (Exception e) {
+			throw new InstantiationException("Failed to prefetch neural network "+name+": no such network");
+		}
+		
+		if(runtimeId == null){
+			runtimeId = frameworkId;
+		}
+		DianneRuntime runtime = runtimes.get(runtimeId);
+		if(runtime == null){
+			throw new InstantiationException("Failed to prefetch neural network "+name+" on runtime "+runtimeId+": no such runtime");
+		}
+		
+		runtime.prefetchParameters(new ArrayList<>(neuralNetwork.modules.keySet()), tags);
+	}
+	
 	@Override
 	public List<String> getAvailableNeuralNetworks() {
 		return repository.availableNeuralNetworks();
@@ -462,6 +522,12 @@ public class DiannePlatformImpl implements DiannePlatform {
 		
 		properties.entrySet().stream()
 			.forEach(e -> {
+				// scheduler configuration applies to all modules of the neural network instance
+				if(e.getKey().equals("scheduler") || e.getKey().startsWith("scheduler.")){
+					module.properties.put(e.getKey(), e.getValue());
+					return;
+				}
+				
 				int index = e.getKey().indexOf('.');
 				if(index < 0 )
 					return;
@@ -22,8 +22,11 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.nn.runtime;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
@@ -33,6 +36,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -44,21 +53,27 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 
+import be.iminds.iot.dianne.api.nn.module.AbstractModule;
 import be.iminds.iot.dianne.api.nn.module.BackwardListener;
 import be.iminds.iot.dianne.api.nn.module.Composite;
 import be.iminds.iot.dianne.api.nn.module.ForwardListener;
 import be.iminds.iot.dianne.api.nn.module.Input;
 import be.iminds.iot.dianne.api.nn.module.Memory;
 import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.ModuleMetrics;
 import be.iminds.iot.dianne.api.nn.module.Output;
 import be.iminds.iot.dianne.api.nn.module.Preprocessor;
 import be.iminds.iot.dianne.api.nn.module.Trainable;
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleDTO;
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO;
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleTypeDTO;
 import be.iminds.iot.dianne.api.nn.module.factory.ModuleFactory;
 import be.iminds.iot.dianne.api.nn.runtime.DianneRuntime;
+import be.iminds.iot.dianne.api.nn.runtime.ModuleScheduler;
 import be.iminds.iot.dianne.api.repository.DianneRepository;
+import be.iminds.iot.dianne.api.repository.RepositoryListener;
+import be.iminds.iot.dianne.nn.runtime.stream.TensorStreams;
 import be.iminds.iot.dianne.tensor.Tensor;
 
 @Component(immediate=true, 
@@ -79,6 +94,17 @@ public class DianneRuntimeImpl implements DianneRuntime {
 	// All module service registrations 
 	private ModuleMap<ServiceRegistration<?>> registrations = new ModuleMap<>();
 	private ModuleMap<ModuleInstanceDTO> instances = new ModuleMap<ModuleInstanceDTO>();
+	// Metrics of the locally deployed modules
+	private ModuleMap<ModuleMetrics> metrics = new ModuleMap<ModuleMetrics>();
+	// Expose metrics over JMX (null if disabled or not available)
+	private ModuleMetricsJMX jmx;
+	
+	// Available module schedulers by name
+	private Map<String, ModuleScheduler> schedulers = new ConcurrentHashMap<>();
+	// Scheduler used by each locally deployed neural network instance
+	private Map<UUID, String> nnSchedulers = new ConcurrentHashMap<>();
+	// Scheduler to use when none is specified at deploy time (null = AbstractModule defaults)
+	private String defaultScheduler;
 	
 	private Map<UUID, List<UUID>> nextMap = new HashMap<UUID, List<UUID>>();
 	private Map<UUID, List<UUID>> prevMap = new HashMap<UUID, List<UUID>>();
@@ -90,6 +116,20 @@ public class DianneRuntimeImpl implements DianneRuntime {
 	// Blacklisted module uuids that should not be deployed on this runtime
 	List<UUID> blacklist = new ArrayList<>();
 	
+	// Loads parameters and instantiates modules of a batch deployment in parallel
+	private ExecutorService deployer;
+	private final ThreadLocal<Boolean> deploying = ThreadLocal.withInitial(() -> false);
+	
+	// Parameters loaded from the repository, shared copy-on-write between instances of the same module
+	private SharedParameters shared;
+	private ServiceRegistration<RepositoryListener> sharedRegistration;
+	
+	// Node-local cache of parameters fetched from the repository
+	private ParameterCache cache;
+	
+	// Direct tensor streams between modules on different runtimes
+	private TensorStreams streams;
+	
 	@Activate
 	public void activate(BundleContext context){
 		this.context = context;
@@ -110,15 +150,102 @@ public class DianneRuntimeImpl implements DianneRuntime {
 				}
 			}
 		}
+		
+		defaultScheduler = context.getProperty("be.iminds.iot.dianne.runtime.scheduler");
+		
+		deployer = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), r -> {
+			Thread t = new Thread(r, "dianne-deploy");
+			t.setDaemon(true);
+			return t;
+		});
+		
+		String shareString = context.getProperty("be.iminds.iot.dianne.runtime.shareParameters");
+		if(shareString==null || Boolean.parseBoolean(shareString)){
+			shared = new SharedParameters();
+			// evict cached parameters when these are updated in the repository
+			sharedRegistration = context.registerService(RepositoryListener.class, shared, null);
+		}
+		
+		String cacheDir = context.getProperty("be.iminds.iot.dianne.runtime.cache");
+		if(cacheDir!=null){
+			// max cache size in MB
+			long cacheSize = 1024;
+			String cacheSizeString = context.getProperty("be.iminds.iot.dianne.runtime.cache.size");
+			if(cacheSizeString!=null){
+				cacheSize = Long.parseLong(cacheSizeString);
+			}
+			cache = new ParameterCache(new File(cacheDir), cacheSize*1024*1024);
+		}
+		
+		String streamString = context.getProperty("be.iminds.iot.dianne.runtime.stream");
+		if(streamString!=null && Boolean.parseBoolean(streamString)){
+			// listen on the interface remote services are exported on, unless configured otherwise
+			String host = context.getProperty("be.iminds.iot.dianne.runtime.stream.host");
+			if(host==null){
+				host = context.getProperty("rsa.ip");
+			}
+			if(host==null){
+				System.err.println("No host configured for tensor streams (be.iminds.iot.dianne.runtime.stream.host or rsa.ip), using remote calls only");
+			} else {
+				try {
+					int port = 0;
+					String portString = context.getProperty("be.iminds.iot.dianne.runtime.stream.port");
+					if(portString!=null){
+						port = Integer.parseInt(portString);
+					}
+					// number of tensors in flight per edge
+					int credits = 4;
+					String creditsString = context.getProperty("be.iminds.iot.dianne.runtime.stream.credits");
+					if(creditsString!=null){
+						credits = Integer.parseInt(creditsString);
+					}
+					// only accept streams towards modules deployed on this runtime
+					streams = new TensorStreams(host, port, credits, 
+							(moduleId, nnId) -> registrations.containsKey(moduleId, nnId) ? modules.get(moduleId, nnId) : null);
+				} catch(IOException e){
+					System.err.println("Failed to start tensor streams, using remote calls only: "+e.getMessage());
+				}
+			}
+		}
+		
+		String jmxString = context.getProperty("be.iminds.iot.dianne.runtime.jmx");
+		if(jmxString==null || Boolean.parseBoolean(jmxString)){
+			try {
+				jmx = new ModuleMetricsJMX();
+			} catch(Throwable t){
+				// no JMX available on this VM (e.g. Android)
+				jmx = null;
+			}
+		}
 	}
 	
 	@Deactivate
 	public void deactivate(){
+		deployer.shutdownNow();
+		
+		if(sharedRegistration!=null){
+			sharedRegistration.unregister();
+		}
+		
+		if(streams!=null){
+			streams.close();
+		}
+		
 		synchronized(registrations){
 			for(ServiceRegistration<?> reg : registrations.values()){
 				reg.unregister();
 			}
 		}
+		
+		if(jmx!=null){
+			synchronized(metrics){
+				Iterator<ModuleMap<ModuleMetrics>.Entry<ModuleMetrics>> it = metrics.iterator();
+				while(it.hasNext()){
+					ModuleMap<ModuleMetrics>.Entry<ModuleMetrics> e = it.next();
+					jmx.unregister(e.moduleId, e.nnId);
+				}
+			}
+		}
 	}
 
 	@Reference(cardinality = ReferenceCardinality.OPTIONAL, 
@@ -142,6 +269,35 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		this.moduleFactories.remove(factory);
 	}
 	
+	@Reference(
+			cardinality=ReferenceCardinality.MULTIPLE, 
+			policy=ReferencePolicy.DYNAMIC)
+	void addModuleScheduler(ModuleScheduler scheduler, Map<String, Object> properties){
+		String name = (String)properties.get("scheduler");
+		if(name!=null){
+			schedulers.put(name, scheduler);
+		}
+	}
+	
+	void removeModuleScheduler(ModuleScheduler scheduler, Map<String, Object> properties){
+		String name = (String)properties.get("scheduler");
+		if(name==null || !schedulers.remove(name, scheduler)){
+			return;
+		}
+		
+		// fall back to the default executors for modules that used this scheduler
+		synchronized(modules){
+			Iterator<ModuleMap<Module>.Entry<Module>> it = modules.iterator();
+			while(it.hasNext()){
+				ModuleMap<Module>.Entry<Module> e = it.next();
+				if(e.value instanceof AbstractModule && name.equals(nnSchedulers.get(e.nnId))){
+					((AbstractModule)e.value).setExecutors(null, null);
+				}
+			}
+		}
+		nnSchedulers.values().removeIf(s -> s.equals(name));
+	}
+	
 	@Reference(
 			cardinality=ReferenceCardinality.MULTIPLE, 
 			policy=ReferencePolicy.DYNAMIC)
@@ -149,14 +305,24 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		UUID moduleId = UUID.fromString((String)properties.get("module.id"));
 		UUID nnId = UUID.fromString((String)properties.get("nn.id"));
 
+		// remote modules that accept tensor streams
+		String endpoint = (String)properties.get(TensorStreams.ENDPOINT_PROPERTY);
+		if(streams!=null && endpoint!=null && !registrations.containsKey(moduleId, nnId)){
+			streams.addEndpoint(moduleId, nnId, endpoint);
+		}
+		
+		// modules deployed in a batch are already wired by deployModules
+		Module known = modules.get(moduleId, nnId);
 		modules.put(moduleId, nnId, module);
 		
 		// configure local modules that require this module
-		for(Module m : findDependingModules(moduleId, nnId, nextMap)){
-			configureNext(m, nnId);
-		}
-		for(Module m : findDependingModules(moduleId, nnId, prevMap)){
-			configurePrevious(m, nnId);
+		if(known != module){
+			for(Module m : findDependingModules(moduleId, nnId, nextMap)){
+				configureNext(m, nnId);
+			}
+			for(Module m : findDependingModules(moduleId, nnId, prevMap)){
+				configurePrevious(m, nnId);
+			}
 		}
 		
 		configureModuleListeners(moduleId, nnId, module);
@@ -265,6 +431,10 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		UUID nnId = UUID.fromString((String)properties.get("nn.id"));
 		
 		modules.remove(moduleId, nnId);
+		
+		if(streams!=null){
+			streams.removeEndpoint(moduleId, nnId);
+		}
 
 		// unconfigure modules that require this module
 		for(Module m : findDependingModules(moduleId, nnId, nextMap)){
@@ -346,34 +516,204 @@ public class DianneRuntimeImpl implements DianneRuntime {
 	
 	@Override
 	public ModuleInstanceDTO deployModule(ModuleDTO dto, UUID nnId, Tensor parameters){
-		if(blacklist.contains(dto.id)){
-			throw new RuntimeException("Module "+dto.id+" cannot be deployed on runtime "+name);
-		}
+		checkBlacklist(dto);
 		
 		// Create and register module
-		Module module = null;
-		synchronized(moduleFactories){
-			Iterator<ModuleFactory> it = moduleFactories.iterator();
-			while(module == null && it.hasNext()){
+		Module module = createModule(factories(), dto, parameters);
+		
+		configure(module, dto, nnId);
+		configureNext(module, nnId);
+		configurePrevious(module, nnId);
+
+		return register(module, dto, nnId);
+	}
+
+	@Override
+	public ModuleInstanceDTO deployModule(ModuleDTO dto, UUID nnId, String... tags){
+		checkBlacklist(dto);
+		
+		Tensor parameters = getParameters(dto.id, nnId, tags);
+		try {
+			return deployModule(dto, nnId, parameters);
+		} catch(RuntimeException e){
+			releaseParameters(dto.id, nnId);
+			throw e;
+		}
+	}
+	
+	@Override
+	public List<ModuleInstanceDTO> deployModules(List<ModuleDTO> dtos, UUID nnId, String... tags){
+		// each deploy task fetches the parameters of its module from the repository
+		try {
+			return deployModules(dtos, nnId, dto -> getParameters(dto.id, nnId, tags));
+		} catch(RuntimeException e){
+			for(ModuleDTO dto : dtos){
+				releaseParameters(dto.id, nnId);
+			}
+			throw e;
+		}
+	}
+	
+	@Override
+	public List<ModuleInstanceDTO> deployModules(List<ModuleDTO> dtos, UUID nnId, Map<UUID, Tensor> parameters){
+		return deployModules(dtos, nnId, dto -> parameters == null ? null : parameters.get(dto.id));
+	}
+	
+	private List<ModuleInstanceDTO> deployModules(List<ModuleDTO> dtos, UUID nnId, Function<ModuleDTO, Tensor> parameters){
+		for(ModuleDTO dto : dtos){
+			checkBlacklist(dto);
+		}
+		
+		// load parameters and instantiate all modules concurrently
+		// (run inline when nested, i.e. a composite module deploying its modules)
+		List<ModuleFactory> factories = factories();
+		Module[] created = new Module[dtos.size()];
+		if(dtos.size() == 1 || deploying.get()){
+			for(int i=0;i<dtos.size();i++){
+				ModuleDTO dto = dtos.get(i);
+				created[i] = createModule(factories, dto, parameters.apply(dto));
+			}
+		} else {
+			List<Future<Module>> futures = new ArrayList<>();
+			for(ModuleDTO dto : dtos){
+				futures.add(deployer.submit(() -> {
+					deploying.set(true);
+					try {
+						return createModule(factories, dto, parameters.apply(dto));
+					} finally {
+						deploying.set(false);
+					}
+				}));
+			}
+			
+			for(int i=0;i<futures.size();i++){
 				try {
-					ModuleFactory mFactory = it.next();
-					module = mFactory.createModule(dto, parameters);
-				} catch(InstantiationException e){
-					// means this factory cannot create this module type ... ignore
-				} catch(Exception ex){
-					ex.printStackTrace();
-					// something seriously went wrong
-					// out of memory?
-					throw new RuntimeException("Failed to instantiate module "+dto.type+" "+dto.id+" - "+ex.getClass().getName()+": "+ex.getMessage());
+					created[i] = futures.get(i).get();
+				} catch(ExecutionException e){
+					discard(futures);
+					if(e.getCause() instanceof RuntimeException)
+						throw (RuntimeException)e.getCause();
+					throw new RuntimeException("Failed to instantiate module "+dtos.get(i).type+" "+dtos.get(i).id, e.getCause());
+				} catch(InterruptedException e){
+					discard(futures);
+					throw new RuntimeException("Interrupted while deploying modules", e);
 				}
 			}
 		}
+		
+		// wire next/prev of the batch directly, without waiting for the service callbacks
+		for(int i=0;i<created.length;i++){
+			configure(created[i], dtos.get(i), nnId);
+			modules.put(created[i].getId(), nnId, created[i]);
+		}
+		for(Module module : created){
+			configureNext(module, nnId);
+			configurePrevious(module, nnId);
+
+			// also configure already deployed modules that require this module
+			for(Module m : findDependingModules(module.getId(), nnId, nextMap)){
+				configureNext(m, nnId);
+			}
+			for(Module m : findDependingModules(module.getId(), nnId, prevMap)){
+				configurePrevious(m, nnId);
+			}
+		}
+		
+		List<ModuleInstanceDTO> deployed = new ArrayList<>();
+		try {
+			for(int i=0;i<created.length;i++){
+				deployed.add(register(created[i], dtos.get(i), nnId));
+			}
+		} catch(RuntimeException e){
+			for(ModuleInstanceDTO mi : deployed){
+				undeployModule(mi);
+			}
+			// modules that were wired but not registered
+			for(int i=deployed.size();i<created.length;i++){
+				UUID moduleId = created[i].getId();
+				registrations.remove(moduleId, nnId);
+				modules.remove(moduleId, nnId);
+				for(Module m : findDependingModules(moduleId, nnId, nextMap)){
+					unconfigureNext(m);
+				}
+				for(Module m : findDependingModules(moduleId, nnId, prevMap)){
+					unconfigurePrevious(m);
+				}
+				if(!registrations.containsKey(moduleId)){
+					nextMap.remove(moduleId);
+					prevMap.remove(moduleId);
+				}
+				discard(created[i]);
+			}
+			throw e;
+		}
+		return deployed;
+	}
+	
+	// cancel the pending deploy tasks of a failed batch and discard the modules already created
+	private void discard(List<Future<Module>> futures){
+		// don't interrupt running tasks, these could be deploying the modules of a composite
+		futures.forEach(f -> f.cancel(false));
+		for(Future<Module> f : futures){
+			if(f.isCancelled())
+				continue;
+			
+			try {
+				discard(f.get());
+			} catch(Exception e){
+				// failed to instantiate, nothing to discard
+			}
+		}
+	}
+	
+	// undeploy the modules a composite deployed for a module that is never registered
+	private void discard(Module module){
+		if(module instanceof Composite){
+			undeployModules(((Composite)module).getNNi().id);
+		}
+	}
+	
+	private void checkBlacklist(ModuleDTO dto){
+		if(blacklist.contains(dto.id)){
+			throw new RuntimeException("Module "+dto.id+" cannot be deployed on runtime "+name);
+		}
+	}
+	
+	private List<ModuleFactory> factories(){
+		synchronized(moduleFactories){
+			return new ArrayList<>(moduleFactories);
+		}
+	}
+	
+	private Module createModule(List<ModuleFactory> factories, ModuleDTO dto, Tensor parameters){
+		Module module = null;
+		Iterator<ModuleFactory> it = factories.iterator();
+		while(module == null && it.hasNext()){
+			try {
+				ModuleFactory mFactory = it.next();
+				module = mFactory.createModule(dto, parameters);
+			} catch(InstantiationException e){
+				// means this factory cannot create this module type ... ignore
+			} catch(Exception ex){
+				ex.printStackTrace();
+				// something seriously went wrong
+				// out of memory?
+				throw new RuntimeException("Failed to instantiate module "+dto.type+" "+dto.id+" - "+ex.getClass().getName()+": "+ex.getMessage());
+			}
+		}
 
 		if(module==null){
 			throw new RuntimeException("Failed to instantiate module "+dto.type+" "+dto.id);
 		}
+		return module;
+	}
+	
+	// set scheduler, next/prev ids and output labels of a newly created module
+	private void configure(Module module, ModuleDTO dto, UUID nnId){
+		if(module instanceof AbstractModule){
+			schedule((AbstractModule)module, nnId, dto.properties);
+		}
 		
-		// configure next/prev
 		List<UUID> nextIDs = new ArrayList<>();
 		if(dto.next!=null){
 			for(UUID id : dto.next){
@@ -381,8 +721,6 @@ public class DianneRuntimeImpl implements DianneRuntime {
 			}
 		}
 		nextMap.put(module.getId(), nextIDs);
-		configureNext(module, nnId);
-		
 		
 		List<UUID> prevIDs = new ArrayList<>();
 		if(dto.prev!=null){
@@ -391,7 +729,6 @@ public class DianneRuntimeImpl implements DianneRuntime {
 			}
 		}
 		prevMap.put(module.getId(), prevIDs);
-		configurePrevious(module, nnId);
 
 		// set labels in case of output
 		if(module instanceof Output){
@@ -401,8 +738,9 @@ public class DianneRuntimeImpl implements DianneRuntime {
 				((Output)module).setOutputLabels(l);
 			}
 		}
-
-		
+	}
+	
+	private ModuleInstanceDTO register(Module module, ModuleDTO dto, UUID nnId){
 		UUID moduleId = module.getId();
 		Dictionary<String, Object> props = new Hashtable<String, Object>();
 		props.put("module.id", moduleId.toString());
@@ -434,6 +772,11 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		props.put("aiolos.combine", "*");
 		props.put("aiolos.instance.id", nnId.toString()+":"+module.getId().toString());
 		
+		// allow remote modules to stream tensors directly to this module
+		if(streams!=null){
+			props.put(TensorStreams.ENDPOINT_PROPERTY, streams.getEndpoint());
+		}
+		
 		// allready add a null registration, in order to allow registrations.contains()
 		// to return true in the addModule call of this class
 		this.registrations.put(moduleId, nnId, null);
@@ -442,20 +785,17 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		
 		ModuleInstanceDTO instance =  new ModuleInstanceDTO(dto, nnId, runtimeId);
 		this.instances.put(moduleId, nnId, instance);
+		
+		if(module instanceof AbstractModule){
+			ModuleMetrics m = ((AbstractModule)module).getMetrics();
+			this.metrics.put(moduleId, nnId, m);
+			if(jmx!=null)
+				jmx.register(moduleId, nnId, dto.type, m);
+		}
 
 		return instance;
 	}
 
-	@Override
-	public ModuleInstanceDTO deployModule(ModuleDTO dto, UUID nnId, String... tags){
-		if(blacklist.contains(dto.id)){
-			throw new RuntimeException("Module "+dto.id+" cannot be deployed on runtime "+name);
-		}
-		
-		Tensor parameters = getParameters(dto.id, tags);
-		return deployModule(dto, nnId, parameters);
-	}
-
 	
 	@Override
 	public void undeployModule(ModuleInstanceDTO dto) {
@@ -469,6 +809,18 @@ public class DianneRuntimeImpl implements DianneRuntime {
 			return;
 		}
 		
+		releaseParameters(dto.moduleId, dto.nnId);
+		
+		if(streams!=null){
+			streams.close(dto.moduleId, dto.nnId);
+		}
+		
+		if(metrics.containsKey(dto.moduleId, dto.nnId)){
+			metrics.remove(dto.moduleId, dto.nnId);
+			if(jmx!=null)
+				jmx.unregister(dto.moduleId, dto.nnId);
+		}
+		
 		ServiceRegistration<?> reg = registrations.remove(dto.moduleId, dto.nnId);
 		if(reg!=null){
 			// check if this is a composite ... if so, also undeploy composing modules
@@ -492,6 +844,47 @@ public class DianneRuntimeImpl implements DianneRuntime {
 			nextMap.remove(dto.moduleId);
 			prevMap.remove(dto.moduleId);
 		}
+		
+		// release the scheduler resources once the last module of this nn is gone
+		String s = nnSchedulers.get(dto.nnId);
+		if(s!=null && !isDeployed(dto.nnId)){
+			nnSchedulers.remove(dto.nnId);
+			ModuleScheduler scheduler = schedulers.get(s);
+			if(scheduler!=null){
+				scheduler.release(dto.nnId);
+			}
+		}
+	}
+	
+	private boolean isDeployed(UUID nnId){
+		synchronized(instances){
+			Iterator<ModuleMap<ModuleInstanceDTO>.Entry<ModuleInstanceDTO>> it = instances.iterator();
+			while(it.hasNext()){
+				if(it.next().nnId.equals(nnId)){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	private void schedule(AbstractModule module, UUID nnId, Map<String, String> config){
+		String name = config.get("scheduler");
+		if(name==null){
+			name = defaultScheduler;
+		}
+		if(name==null){
+			return;
+		}
+		
+		ModuleScheduler scheduler = schedulers.get(name);
+		if(scheduler==null){
+			System.err.println("Scheduler "+name+" not available, using default executors for module "+module.getId());
+			return;
+		}
+		
+		module.setExecutors(scheduler.getRunExecutor(nnId, config), scheduler.getListenerExecutor(nnId, config));
+		nnSchedulers.put(nnId, name);
 	}
 	
 	@Override
@@ -549,6 +942,64 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		}
 	}
 	
+	@Override
+	public void prefetchParameters(Collection<UUID> moduleIds, String... tags){
+		DianneRepository r = repository;
+		if(r == null || cache == null)
+			return;
+		
+		List<Future<?>> futures = new ArrayList<>();
+		for(UUID moduleId : moduleIds){
+			futures.add(deployer.submit(() -> {
+				try {
+					cache.prefetch(r, moduleId, tags);
+				} catch(Exception e){
+					System.err.println("Failed to prefetch parameters for module "+moduleId+": "+e.getMessage());
+				}
+			}));
+		}
+		
+		for(Future<?> f : futures){
+			try {
+				f.get();
+			} catch(ExecutionException e){
+				// already logged
+			} catch(InterruptedException e){
+				futures.forEach(ff -> ff.cancel(true));
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	@Override
+	public Map<UUID, ModuleMetricsDTO> getModuleMetrics(UUID nnId){
+		Map<UUID, ModuleMetricsDTO> result = new HashMap<>();
+		synchronized(metrics){
+			Iterator<ModuleMap<ModuleMetrics>.Entry<ModuleMetrics>> it = metrics.iterator();
+			while(it.hasNext()){
+				ModuleMap<ModuleMetrics>.Entry<ModuleMetrics> e = it.next();
+				if(e.nnId.equals(nnId)){
+					result.put(e.moduleId, e.value.snapshot(e.moduleId, e.nnId));
+				}
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public void resetModuleMetrics(UUID nnId){
+		synchronized(metrics){
+			Iterator<ModuleMap<ModuleMetrics>.Entry<ModuleMetrics>> it = metrics.iterator();
+			while(it.hasNext()){
+				ModuleMap<ModuleMetrics>.Entry<ModuleMetrics> e = it.next();
+				if(e.nnId.equals(nnId)){
+					e.value.reset();
+				}
+			}
+		}
+	}
+	
 	@Override
 	public List<ModuleTypeDTO> getSupportedModules() {
 		List<ModuleTypeDTO> supported = new ArrayList<ModuleTypeDTO>();
@@ -585,6 +1036,11 @@ public class DianneRuntimeImpl implements DianneRuntime {
 			if(nextModule== null)
 				return;
 			
+			// send tensors to remote modules over a dedicated stream
+			if(streams!=null && !registrations.containsKey(nextID, nnId)){
+				nextModule = streams.forward(m.getId(), nextID, nnId, nextModule);
+			}
+			
 			nextModules[i] = nextModule;
 			i++;
 		}
@@ -610,6 +1066,11 @@ public class DianneRuntimeImpl implements DianneRuntime {
 			if(prevModule== null)
 				return;
 			
+			// send gradients to remote modules over a dedicated stream
+			if(streams!=null && !registrations.containsKey(prevID, nnId)){
+				prevModule = streams.backward(m.getId(), prevID, nnId, prevModule);
+			}
+			
 			prevModules[i] = prevModule;
 			i++;
 		}
@@ -644,7 +1105,11 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		if(repository != null){
 			// TODO should we check first whether this module actually has parameters?
 			try {
-				parameters = repository.loadParameters(moduleId, tags);
+				if(cache != null){
+					parameters = cache.load(repository, moduleId, tags);
+				} else {
+					parameters = repository.loadParameters(moduleId, tags);
+				}
 			} catch(Exception e){
 				// ignore
 				//System.out.println("Failed to load parameters for module "+dto.id+" with tags "+Arrays.toString(tags));
@@ -653,6 +1118,19 @@ public class DianneRuntimeImpl implements DianneRuntime {
 		return parameters;
 	}
 	
+	private Tensor getParameters(UUID moduleId, UUID nnId, String... tags){
+		if(shared == null){
+			return getParameters(moduleId, tags);
+		}
+		return shared.acquire(moduleId, nnId, tags, () -> getParameters(moduleId, tags));
+	}
+	
+	private void releaseParameters(UUID moduleId, UUID nnId){
+		if(shared != null){
+			shared.release(moduleId, nnId);
+		}
+	}
+	
 	private String[] parseStrings(String string){
 		String[] strings = string.replace("[", "").replace("]", "").split(", ");
 		return strings;
@@ -51,6 +51,9 @@ public class ModuleMap<T> {
 	
 	public synchronized T remove(UUID moduleId, UUID nnId){
 		Set<UUID> nns = keyMap.get(moduleId);
+		if(nns==null){
+			return null;
+		}
 		nns.remove(nnId);
 		if(nns.size()==0){
 			keyMap.remove(moduleId);
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import be.iminds.iot.dianne.api.nn.module.ModuleMetrics;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO;
+
+/**
+ * Registers the metrics of each deployed module instance as MBean on the
+ * platform MBeanServer as be.iminds.iot.dianne:type=Module,nn=<nnId>,module=<moduleId>
+ * 
+ * Kept in a separate class so the runtime still works on VMs without javax.management
+ * 
+ * @author tverbele
+ *
+ */
+class ModuleMetricsJMX {
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	
+	void register(UUID moduleId, UUID nnId, String type, ModuleMetrics metrics){
+		try {
+			server.registerMBean(new StandardMBean(new MetricsBean(moduleId, nnId, type, metrics), ModuleMetricsMBean.class), 
+					name(moduleId, nnId));
+		} catch(Exception e){
+			System.err.println("Failed to register metrics MBean for module "+moduleId+": "+e.getMessage());
+		}
+	}
+	
+	void unregister(UUID moduleId, UUID nnId){
+		try {
+			ObjectName name = name(moduleId, nnId);
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+		} catch(Exception e){
+			// ignore
+		}
+	}
+	
+	private ObjectName name(UUID moduleId, UUID nnId) throws Exception {
+		return new ObjectName("be.iminds.iot.dianne:type=Module,nn="+nnId+",module="+moduleId);
+	}
+	
+	private static class MetricsBean implements ModuleMetricsMBean {
+
+		private final UUID moduleId;
+		private final UUID nnId;
+		private final String type;
+		private final ModuleMetrics metrics;
+		
+		// cache snapshot to avoid taking a new one for each attribute of a single JMX poll
+		private ModuleMetricsDTO snapshot;
+		
+		MetricsBean(UUID moduleId, UUID nnId, String type, ModuleMetrics metrics){
+			this.moduleId = moduleId;
+			this.nnId = nnId;
+			this.type = type;
+			this.metrics = metrics;
+		}
+		
+		private synchronized ModuleMetricsDTO snapshot(){
+			if(snapshot == null || System.currentTimeMillis() - snapshot.timestamp > 100){
+				snapshot = metrics.snapshot(moduleId, nnId);
+			}
+			return snapshot;
+		}
+		
+		@Override
+		public String getModuleId() {
+			return moduleId.toString();
+		}
+
+		@Override
+		public String getNeuralNetworkId() {
+			return nnId.toString();
+		}
+
+		@Override
+		public String getModuleType() {
+			return type;
+		}
+
+		@Override
+		public long getForwardCount() {
+			return snapshot().forward.count;
+		}
+
+		@Override
+		public double getForwardMean() {
+			return snapshot().forward.mean;
+		}
+
+		@Override
+		public long getForwardP99() {
+			return snapshot().forward.p99;
+		}
+
+		@Override
+		public long getForwardMax() {
+			return snapshot().forward.max;
+		}
+
+		@Override
+		public long getForwardTotal() {
+			return snapshot().forward.total;
+		}
+		
+		@Override
+		public long getBackwardCount() {
+			return snapshot().backward.count;
+		}
+
+		@Override
+		public double getBackwardMean() {
+			return snapshot().backward.mean;
+		}
+
+		@Override
+		public long getBackwardP99() {
+			return snapshot().backward.p99;
+		}
+
+		@Override
+		public long getBackwardMax() {
+			return snapshot().backward.max;
+		}
+
+		@Override
+		public long getBackwardTotal() {
+			return snapshot().backward.total;
+		}
+		
+		@Override
+		public double getQueueMean() {
+			return snapshot().queue.mean;
+		}
+
+		@Override
+		public long getQueueP99() {
+			return snapshot().queue.p99;
+		}
+
+		@Override
+		public long getWaitTime() {
+			return snapshot().waitTime;
+		}
+
+		@Override
+		public long getSkipCount() {
+			return snapshot().skipCount;
+		}
+
+		@Override
+		public long getOutputBytes() {
+			return snapshot().outputBytes;
+		}
+
+		@Override
+		public synchronized void reset() {
+			metrics.reset();
+			snapshot = null;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+/**
+ * JMX view on the metrics of a deployed module instance.
+ * 
+ * All times are expressed in nanoseconds.
+ * 
+ * @author tverbele
+ *
+ */
+public interface ModuleMetricsMBean {
+
+	String getModuleId();
+	
+	String getNeuralNetworkId();
+	
+	String getModuleType();
+	
+	long getForwardCount();
+	
+	double getForwardMean();
+	
+	long getForwardP99();
+	
+	long getForwardMax();
+	
+	long getForwardTotal();
+	
+	long getBackwardCount();
+	
+	double getBackwardMean();
+	
+	long getBackwardP99();
+	
+	long getBackwardMax();
+	
+	long getBackwardTotal();
+	
+	double getQueueMean();
+	
+	long getQueueP99();
+	
+	long getWaitTime();
+	
+	long getSkipCount();
+	
+	long getOutputBytes();
+	
+	void reset();
+}
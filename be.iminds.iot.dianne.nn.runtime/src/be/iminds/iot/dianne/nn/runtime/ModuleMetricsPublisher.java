@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleMetricsDTO.LatencyDTO;
+import be.iminds.iot.dianne.api.nn.runtime.DianneRuntime;
+
+/**
+ * Periodically posts the metrics of the modules deployed on the local runtime 
+ * as events on dianne/metrics/<nnId>, which are streamed to the dashboard by the SSE servlet.
+ * 
+ * Only modules that processed a forward or backward since the last publication are posted.
+ * Nothing is published as long as no EventAdmin is available.
+ * 
+ * @author tverbele
+ *
+ */
+@Component(immediate=true)
+public class ModuleMetricsPublisher {
+
+	private UUID frameworkId;
+	private long interval = 1000;
+	
+	private Map<DianneRuntime, UUID> runtimes = new ConcurrentHashMap<>();
+	private volatile EventAdmin ea;
+	
+	private ScheduledExecutorService scheduler;
+	
+	// forward+backward count at last publication
+	private Map<String, Long> published = new HashMap<>();
+	
+	@Activate
+	void activate(BundleContext context){
+		frameworkId = UUID.fromString(context.getProperty(Constants.FRAMEWORK_UUID));
+		
+		String i = context.getProperty("be.iminds.iot.dianne.runtime.metrics.interval");
+		if(i!=null){
+			interval = Long.parseLong(i);
+		}
+		
+		if(interval > 0){
+			scheduler = Executors.newSingleThreadScheduledExecutor();
+			scheduler.scheduleWithFixedDelay(this::publish, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	@Deactivate
+	void deactivate(){
+		if(scheduler!=null){
+			scheduler.shutdownNow();
+		}
+	}
+	
+	private void publish(){
+		EventAdmin ea = this.ea;
+		if(ea == null)
+			return;
+		
+		// only publish for the local runtime, remote runtimes publish their own
+		DianneRuntime r = runtimes.entrySet().stream()
+				.filter(e -> e.getValue().equals(frameworkId))
+				.map(e -> e.getKey())
+				.findFirst().orElse(null);
+		if(r == null)
+			return;
+		
+		try {
+			Set<UUID> nnIds = new HashSet<>();
+			for(ModuleInstanceDTO m : r.getModules()){
+				nnIds.add(m.nnId);
+			}
+			
+			Set<String> active = new HashSet<>();
+			for(UUID nnId : nnIds){
+				for(ModuleMetricsDTO m : r.getModuleMetrics(nnId).values()){
+					String key = nnId+":"+m.moduleId;
+					active.add(key);
+					
+					long count = m.forward.count + m.backward.count;
+					Long last = published.put(key, count);
+					if(last != null && last == count)
+						continue;
+					
+					Map<String, Object> properties = new HashMap<>();
+					properties.put("nnId", nnId.toString());
+					properties.put("moduleId", m.moduleId.toString());
+					properties.put("runtimeId", frameworkId.toString());
+					properties.put("timestamp", m.timestamp);
+					properties.put("skipCount", m.skipCount);
+					properties.put("waitTime", m.waitTime);
+					properties.put("outputBytes", m.outputBytes);
+					put(properties, "forward", m.forward);
+					put(properties, "backward", m.backward);
+					put(properties, "queue", m.queue);
+					
+					ea.postEvent(new Event("dianne/metrics/"+nnId.toString(), properties));
+				}
+			}
+			
+			published.keySet().retainAll(active);
+		} catch(Throwable t){
+			// runtime going down?
+		}
+	}
+	
+	private void put(Map<String, Object> properties, String prefix, LatencyDTO l){
+		properties.put(prefix+"Count", l.count);
+		properties.put(prefix+"Total", l.total);
+		properties.put(prefix+"Mean", l.mean);
+		properties.put(prefix+"P50", l.p50);
+		properties.put(prefix+"P99", l.p99);
+		properties.put(prefix+"Max", l.max);
+	}
+	
+	@Reference(cardinality=ReferenceCardinality.OPTIONAL, 
+			policy=ReferencePolicy.DYNAMIC)
+	void setEventAdmin(EventAdmin ea){
+		this.ea = ea;
+	}
+	
+	void unsetEventAdmin(EventAdmin ea){
+		if(this.ea == ea)
+			this.ea = null;
+	}
+	
+	@Reference(cardinality=ReferenceCardinality.MULTIPLE, 
+			policy=ReferencePolicy.DYNAMIC)
+	void addDianneRuntime(DianneRuntime r, Map<String, Object> properties){
+		runtimes.put(r, r.getRuntimeId());
+	}
+	
+	void removeDianneRuntime(DianneRuntime r, Map<String, Object> properties){
+		runtimes.remove(r);
+	}
+}
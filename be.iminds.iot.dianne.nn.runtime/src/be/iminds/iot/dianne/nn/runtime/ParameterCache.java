@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import be.iminds.iot.dianne.api.repository.DianneRepository;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Node-local cache of parameters fetched from the (remote) DianneRepository. 
+ * 
+ * Each parameter blob is stored in a file named after the SHA-256 hash of moduleId, tags 
+ * and the version reported by the repository, so a cached blob is validated with a single 
+ * parametersVersion call instead of transferring the parameters. Blobs are stored as raw floats 
+ * in native byte order and memory mapped to copy them straight into the native tensor.
+ * 
+ * The total size of the cache is bounded, least recently used blobs are evicted first. The 
+ * last modified time of the files is used to restore the LRU order after a restart.
+ * 
+ * @author tverbele
+ *
+ */
+class ParameterCache {
+
+	private final File dir;
+	private final long maxBytes;
+	
+	// cached blobs and their size in bytes, in access order
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes = 0;
+	
+	ParameterCache(File dir, long maxBytes){
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		
+		dir.mkdirs();
+		File[] files = dir.listFiles();
+		if(files != null){
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for(File f : files){
+				if(f.getName().endsWith(".tmp")){
+					// leftover of an interrupted write
+					f.delete();
+					continue;
+				}
+				entries.put(f.getName(), f.length());
+				bytes += f.length();
+			}
+		}
+		evict();
+	}
+	
+	/**
+	 * Load parameters from the cache if an up to date copy is available, otherwise load
+	 * from the repository and cache for later use.
+	 * 
+	 * @return the parameters, or null if the repository has no parameters for this module
+	 */
+	Tensor load(DianneRepository repository, UUID moduleId, String... tags) throws Exception {
+		long version;
+		try {
+			version = repository.parametersVersion(moduleId, tags);
+		} catch(Exception e){
+			// repository does not support versions, cannot use the cache
+			return repository.loadParameters(moduleId, tags);
+		}
+		if(version < 0)
+			return null;
+		
+		String key = key(moduleId, version, tags);
+		Tensor parameters = read(key);
+		if(parameters == null){
+			parameters = repository.loadParameters(moduleId, tags);
+			write(key, parameters);
+		}
+		return parameters;
+	}
+	
+	/**
+	 * Make sure the parameters are in the cache, without loading them into a tensor if they are
+	 * 
+	 * @return whether the parameters had to be fetched from the repository
+	 */
+	boolean prefetch(DianneRepository repository, UUID moduleId, String... tags) throws Exception {
+		long version = repository.parametersVersion(moduleId, tags);
+		if(version < 0)
+			return false;
+		
+		String key = key(moduleId, version, tags);
+		synchronized(entries){
+			if(entries.get(key) != null)
+				return false;
+		}
+		
+		write(key, repository.loadParameters(moduleId, tags));
+		return true;
+	}
+	
+	private Tensor read(String key){
+		synchronized(entries){
+			if(entries.get(key) == null)
+				return null;
+		}
+		
+		File f = new File(dir, key);
+		try (RandomAccessFile raf = new RandomAccessFile(f, "r");
+			 FileChannel channel = raf.getChannel()){
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.nativeOrder());
+			
+			Tensor parameters = new Tensor((int)(channel.size()/4));
+			parameters.set(buffer);
+			
+			// keep track of usage across restarts
+			f.setLastModified(System.currentTimeMillis());
+			return parameters;
+		} catch(IOException e){
+			// evicted meanwhile or corrupt file, reload from repository
+			remove(key);
+			return null;
+		}
+	}
+	
+	private void write(String key, Tensor parameters){
+		long size = 4L*parameters.size();
+		if(size > maxBytes || size > Integer.MAX_VALUE)
+			return;
+		
+		// write to a temp file first, so a blob in the cache is always complete
+		File tmp = new File(dir, key+"."+Thread.currentThread().getId()+".tmp");
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+				 FileChannel channel = raf.getChannel()){
+				MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+				buffer.order(ByteOrder.nativeOrder());
+				parameters.get(buffer);
+				buffer.force();
+			}
+			Files.move(tmp.toPath(), new File(dir, key).toPath(), 
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e){
+			System.err.println("Failed to cache parameters "+key+": "+e.getMessage());
+			tmp.delete();
+			return;
+		}
+		
+		synchronized(entries){
+			Long previous = entries.put(key, size);
+			if(previous != null){
+				bytes -= previous;
+			}
+			bytes += size;
+		}
+		evict();
+	}
+	
+	private void remove(String key){
+		synchronized(entries){
+			Long size = entries.remove(key);
+			if(size != null){
+				bytes -= size;
+			}
+		}
+		new File(dir, key).delete();
+	}
+	
+	private void evict(){
+		synchronized(entries){
+			Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+			while(bytes > maxBytes && it.hasNext()){
+				Map.Entry<String, Long> e = it.next();
+				// files that are still mapped by a reader remain valid until unmapped
+				new File(dir, e.getKey()).delete();
+				bytes -= e.getValue();
+				it.remove();
+			}
+		}
+	}
+	
+	private String key(UUID moduleId, long version, String... tags){
+		StringBuilder b = new StringBuilder();
+		b.append(moduleId);
+		if(tags != null){
+			for(String t : tags){
+				if(t != null)
+					b.append('-').append(t);
+			}
+		}
+		b.append('@').append(version);
+		
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(b.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for(byte h : hash){
+				hex.append(String.format("%02x", h));
+			}
+			return hex.toString();
+		} catch(NoSuchAlgorithmException e){
+			// SHA-256 is required to be available on every JVM
+			throw new RuntimeException(e);
+		}
+	}
+}
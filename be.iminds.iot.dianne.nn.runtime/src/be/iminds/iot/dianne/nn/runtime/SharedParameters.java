@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import be.iminds.iot.dianne.api.repository.RepositoryListener;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Keeps one copy of the parameters per moduleId and tags loaded from the repository, 
+ * which is shared by all module instances deployed on this runtime with these parameters.
+ * 
+ * Each instance gets a tensor created with share(), which only gets a private copy once the
+ * module modifies its parameters (see AbstractTrainableModule). The loaded tensor is kept
+ * alive as long as an instance refers to it, and dropped when the last one is undeployed. 
+ * 
+ * When parameters of a module are updated in the repository, the cached copies are 
+ * evicted so newly deployed instances load the latest parameters.
+ * 
+ * @author tverbele
+ *
+ */
+class SharedParameters implements RepositoryListener {
+
+	private class Shared {
+		final String key;
+		final Tensor parameters;
+		int refs = 0;
+		
+		Shared(String key, Tensor parameters){
+			this.key = key;
+			this.parameters = parameters;
+		}
+	}
+	
+	// loaded parameters by moduleId-tag1-tag2
+	private final Map<String, Shared> cache = new HashMap<>();
+	// shared parameters referred to by each deployed instance
+	private final ModuleMap<Shared> instances = new ModuleMap<>();
+	
+	/**
+	 * Get the parameters for a module instance, only loading them in case no other 
+	 * instance on this runtime refers to these parameters yet. 
+	 * 
+	 * @return a shared view on the parameters or null if no parameters could be loaded
+	 */
+	Tensor acquire(UUID moduleId, UUID nnId, String[] tags, Supplier<Tensor> loader){
+		String key = key(moduleId, tags);
+		Shared shared;
+		synchronized(cache){
+			shared = cache.get(key);
+		}
+		
+		if(shared == null){
+			// load outside the lock, in case of concurrent loads the first one wins
+			Tensor loaded = loader.get();
+			if(loaded == null)
+				return null;
+			
+			synchronized(cache){
+				shared = cache.get(key);
+				if(shared == null){
+					shared = new Shared(key, loaded);
+					cache.put(key, shared);
+				}
+			}
+		}
+		
+		synchronized(cache){
+			shared.refs++;
+			Shared previous = instances.get(moduleId, nnId);
+			if(previous != null){
+				release(previous);
+			}
+			instances.put(moduleId, nnId, shared);
+		}
+		return shared.parameters.share();
+	}
+	
+	/**
+	 * Release the parameters of an undeployed module instance
+	 */
+	void release(UUID moduleId, UUID nnId){
+		synchronized(cache){
+			Shared shared = instances.remove(moduleId, nnId);
+			if(shared != null){
+				release(shared);
+			}
+		}
+	}
+	
+	private void release(Shared shared){
+		if(--shared.refs == 0 && cache.get(shared.key) == shared){
+			cache.remove(shared.key);
+		}
+	}
+	
+	@Override
+	public void onParametersUpdate(UUID nnId, Collection<UUID> moduleIds, String... tag) {
+		synchronized(cache){
+			// instances keep their current (shared) parameters, 
+			// only new deployments will load the updated ones
+			for(UUID moduleId : moduleIds){
+				String prefix = moduleId.toString();
+				cache.keySet().removeIf(k -> k.startsWith(prefix));
+			}
+		}
+	}
+	
+	private String key(UUID moduleId, String[] tags){
+		// same naming as the repository, where the order of tags matters
+		String key = moduleId.toString();
+		if(tags != null){
+			for(String t : tags){
+				if(t != null)
+					key += "-"+t;
+			}
+		}
+		return key;
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.scheduler;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import be.iminds.iot.dianne.api.nn.runtime.ModuleScheduler;
+
+/**
+ * Base ModuleScheduler that provides a dedicated listener thread per neural network instance, 
+ * so that a slow listener only stalls the listeners of its own neural network.
+ * 
+ * @author tverbele
+ *
+ */
+public abstract class AbstractModuleScheduler implements ModuleScheduler {
+
+	protected final Map<UUID, ExecutorService> listenerExecutors = new ConcurrentHashMap<>();
+	
+	@Override
+	public ExecutorService getListenerExecutor(UUID nnId, Map<String, String> config) {
+		return listenerExecutors.computeIfAbsent(nnId, 
+				id -> Executors.newSingleThreadExecutor(threadFactory("dianne-listener-"+shortId(id))));
+	}
+
+	@Override
+	public void release(UUID nnId) {
+		ExecutorService listenerExecutor = listenerExecutors.remove(nnId);
+		if(listenerExecutor != null){
+			// let pending notifications finish
+			listenerExecutor.shutdown();
+		}
+	}
+	
+	protected void shutdown(){
+		listenerExecutors.values().forEach(e -> e.shutdown());
+		listenerExecutors.clear();
+	}
+	
+	protected static String shortId(UUID id){
+		return id.toString().substring(0, 8);
+	}
+	
+	protected static ThreadFactory threadFactory(String prefix){
+		final AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix+"-"+count.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+	
+	/**
+	 * Create a ForkJoinPool that never grows beyond maxPoolSize threads, including the spare 
+	 * threads added to compensate for modules blocked in ForkJoinPool.managedBlock. Once the 
+	 * pool is saturated, blocked modules just wait without a spare thread.
+	 * 
+	 * The bounded constructor is only available on Java 9+, on older VMs the number of spare 
+	 * threads is not bounded.
+	 */
+	protected static ForkJoinPool forkJoinPool(int parallelism, int maxPoolSize, ForkJoinWorkerThreadFactory factory){
+		try {
+			// lookup reflectively as we still compile against Java 8
+			Constructor<ForkJoinPool> c = ForkJoinPool.class.getConstructor(int.class, ForkJoinWorkerThreadFactory.class, 
+					Thread.UncaughtExceptionHandler.class, boolean.class, int.class, int.class, int.class, 
+					Predicate.class, long.class, TimeUnit.class);
+			Predicate<ForkJoinPool> saturate = pool -> true;
+			return c.newInstance(parallelism, factory, null, true, 
+					parallelism, Math.max(parallelism, maxPoolSize), 1, saturate, 60L, TimeUnit.SECONDS);
+		} catch(Exception e){
+			System.out.println("Bounded ForkJoinPool not supported on this VM, the number of spare threads is not limited");
+			return new ForkJoinPool(parallelism, factory, null, true);
+		}
+	}
+	
+	protected static ForkJoinWorkerThreadFactory forkJoinThreadFactory(String prefix, int[] cores){
+		final AtomicInteger count = new AtomicInteger();
+		return pool -> {
+			ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			int i = count.getAndIncrement();
+			t.setName(prefix+"-"+i+(cores == null ? "" : "-cpu"+cores[i % cores.length]));
+			return t;
+		};
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+import be.iminds.iot.dianne.api.nn.runtime.ModuleScheduler;
+
+/**
+ * Gives each neural network instance its own pool of threads, so networks 
+ * deployed on the same runtime do not compete for module threads.
+ * 
+ * Options (as deploy properties):
+ *  - scheduler.threads : number of threads for this neural network instance (default 2)
+ *  - scheduler.cores : core affinity hint, e.g. 0-3 or 0,2,4,6. When no threads option
+ *     is given, one thread per core is started. The JVM cannot pin threads itself, so 
+ *     the core is appended to the thread name (dianne-<nnId>-<i>-cpu<core>) for external 
+ *     pinning (e.g. taskset).
+ *  
+ * @author tverbele
+ *
+ */
+@Component(service=ModuleScheduler.class,
+	property={"scheduler=dedicated",
+			  "aiolos.proxy=false"})
+public class DedicatedModuleScheduler extends AbstractModuleScheduler {
+
+	private Map<UUID, ForkJoinPool> pools = new ConcurrentHashMap<>();
+	
+	@Deactivate
+	void deactivate(){
+		pools.values().forEach(p -> p.shutdown());
+		pools.clear();
+		shutdown();
+	}
+	
+	@Override
+	public ExecutorService getRunExecutor(UUID nnId, Map<String, String> config) {
+		return pools.computeIfAbsent(nnId, id -> {
+			int[] cores = parseCores(config.get("scheduler.cores"));
+			
+			int threads = 2;
+			if(config.containsKey("scheduler.threads")){
+				threads = Integer.parseInt(config.get("scheduler.threads"));
+			} else if(cores != null){
+				threads = cores.length;
+			}
+			
+			return new ForkJoinPool(threads, 
+					forkJoinThreadFactory("dianne-"+shortId(id), cores), null, true);
+		});
+	}
+	
+	@Override
+	public void release(UUID nnId) {
+		ForkJoinPool pool = pools.remove(nnId);
+		if(pool != null){
+			pool.shutdown();
+		}
+		super.release(nnId);
+	}
+	
+	private int[] parseCores(String s){
+		if(s == null || s.isEmpty())
+			return null;
+		
+		List<Integer> cores = new ArrayList<>();
+		for(String r : s.split(",")){
+			r = r.trim();
+			int i = r.indexOf('-');
+			if(i > 0){
+				int from = Integer.parseInt(r.substring(0, i));
+				int to = Integer.parseInt(r.substring(i+1));
+				for(int c=from;c<=to;c++){
+					cores.add(c);
+				}
+			} else {
+				cores.add(Integer.parseInt(r));
+			}
+		}
+		return cores.stream().mapToInt(c -> c).toArray();
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+import be.iminds.iot.dianne.api.nn.runtime.ModuleScheduler;
+
+/**
+ * Runs each forward/backward dispatch on its own virtual thread. 
+ * 
+ * Virtual threads are only available on Java 21+, on older VMs this falls back 
+ * to a cached thread pool (i.e. the default behavior of AbstractModule).
+ * 
+ * @author tverbele
+ *
+ */
+@Component(service=ModuleScheduler.class,
+	property={"scheduler=virtual",
+			  "aiolos.proxy=false"})
+public class VirtualThreadModuleScheduler extends AbstractModuleScheduler {
+
+	private ExecutorService executor;
+	
+	@Activate
+	void activate(){
+		try {
+			// lookup reflectively as we still compile against Java 8
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			executor = (ExecutorService) m.invoke(null);
+		} catch(Exception e){
+			System.out.println("Virtual threads not supported on this VM, falling back to a cached thread pool");
+			executor = Executors.newCachedThreadPool(threadFactory("dianne-virtual"));
+		}
+	}
+	
+	@Deactivate
+	void deactivate(){
+		executor.shutdown();
+		shutdown();
+	}
+	
+	@Override
+	public ExecutorService getRunExecutor(UUID nnId, Map<String, String> config) {
+		return executor;
+	}
+
+}
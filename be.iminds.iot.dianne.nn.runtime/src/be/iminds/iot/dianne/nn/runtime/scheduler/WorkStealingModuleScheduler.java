@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.scheduler;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+import be.iminds.iot.dianne.api.nn.runtime.ModuleScheduler;
+
+/**
+ * Shares one bounded work-stealing pool between all neural network instances. 
+ * 
+ * The pool is sized so that the module threads times the threads used by the native BLAS/OpenMP
+ * library do not exceed the number of cores. The number of BLAS threads is taken from 
+ * be.iminds.iot.dianne.scheduler.blas.threads, or else the OMP_NUM_THREADS environment variable. 
+ * The parallelism can also be set explicitly with be.iminds.iot.dianne.scheduler.parallelism.
+ * 
+ * Modules that block waiting for next modules use ForkJoinPool.managedBlock, so the pool
+ * temporarily adds spare threads instead of deadlocking. Spare threads only replace blocked
+ * workers, but to also bound the total number of threads the pool never grows beyond 
+ * be.iminds.iot.dianne.scheduler.maxPoolSize threads (default twice the parallelism).
+ * Setting this to the parallelism itself disables the spare threads, at the risk of 
+ * deadlocks when long chains of modules block on each other.
+ * 
+ * @author tverbele
+ *
+ */
+@Component(service=ModuleScheduler.class,
+	property={"scheduler=workstealing",
+			  "aiolos.proxy=false"})
+public class WorkStealingModuleScheduler extends AbstractModuleScheduler {
+
+	private ForkJoinPool pool;
+	
+	@Activate
+	void activate(BundleContext context){
+		int cores = Runtime.getRuntime().availableProcessors();
+		
+		String b = context.getProperty("be.iminds.iot.dianne.scheduler.blas.threads");
+		if(b == null){
+			b = System.getenv("OMP_NUM_THREADS");
+		}
+		int parallelism = parallelism(cores, context.getProperty("be.iminds.iot.dianne.scheduler.parallelism"), b);
+		int maxPoolSize = maxPoolSize(parallelism, context.getProperty("be.iminds.iot.dianne.scheduler.maxPoolSize"));
+		
+		pool = forkJoinPool(parallelism, maxPoolSize, forkJoinThreadFactory("dianne-worker", null));
+	}
+	
+	@Deactivate
+	void deactivate(){
+		pool.shutdown();
+		shutdown();
+	}
+	
+	@Override
+	public ExecutorService getRunExecutor(UUID nnId, Map<String, String> config) {
+		return pool;
+	}
+	
+	static int parallelism(int cores, String parallelism, String blasThreads){
+		if(parallelism != null){
+			try {
+				return Math.max(2, Integer.parseInt(parallelism.trim()));
+			} catch(NumberFormatException e){
+				System.err.println("Invalid scheduler parallelism "+parallelism);
+			}
+		}
+		
+		int blas = 1;
+		if(blasThreads != null){
+			try {
+				blas = Integer.parseInt(blasThreads.trim());
+			} catch(NumberFormatException e){
+				System.err.println("Invalid number of BLAS threads "+blasThreads);
+			}
+		}
+		return Math.max(2, cores / Math.max(1, blas));
+	}
+	
+	static int maxPoolSize(int parallelism, String maxPoolSize){
+		if(maxPoolSize != null){
+			try {
+				return Math.max(parallelism, Integer.parseInt(maxPoolSize.trim()));
+			} catch(NumberFormatException e){
+				System.err.println("Invalid scheduler max pool size "+maxPoolSize);
+			}
+		}
+		return 2*parallelism;
+	}
+
+}
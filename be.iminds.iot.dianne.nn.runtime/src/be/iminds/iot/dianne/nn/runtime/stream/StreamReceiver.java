@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.stream;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Receiving end of a tensor stream towards a local module.
+ * 
+ * Tensors are read into a ring of preallocated buffers, which are directly used as input 
+ * (or gradOutput) of the module. The number of credits handed to the sender is one less than
+ * the number of buffers, so the buffer being processed by the module is never overwritten.
+ * 
+ * @author tverbele
+ *
+ */
+class StreamReceiver implements Runnable {
+
+	private final TensorChannel channel;
+	private final BiFunction<UUID, UUID, Module> modules;
+	private final int credits;
+	
+	StreamReceiver(SocketChannel socket, BiFunction<UUID, UUID, Module> modules, int credits) throws IOException {
+		this.channel = new TensorChannel(socket);
+		this.modules = modules;
+		this.credits = credits;
+	}
+	
+	@Override
+	public void run() {
+		ExecutorService delivery = null;
+		try {
+			UUID nnId = channel.readUUID();
+			UUID moduleId = channel.readUUID();
+			boolean forward = channel.readInt() == StreamedModule.FORWARD;
+			
+			Module module = modules.apply(moduleId, nnId);
+			if(module == null){
+				channel.writeInt(0);
+				channel.flush();
+				return;
+			}
+			channel.writeInt(credits);
+			channel.flush();
+			
+			delivery = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "dianne-stream-"+moduleId);
+				t.setDaemon(true);
+				return t;
+			});
+			
+			Tensor[] buffers = new Tensor[credits+1];
+			int k = 0;
+			while(true){
+				UUID from = channel.readUUID();
+				String[] tags = new String[channel.readInt()];
+				for(int i=0;i<tags.length;i++){
+					tags[i] = channel.readString();
+				}
+				int[] dims = channel.readDims();
+				
+				Tensor tensor = buffers[k];
+				if(tensor == null || !tensor.hasDim(dims)){
+					tensor = new Tensor(dims);
+					buffers[k] = tensor;
+				}
+				channel.readData(tensor, dims);
+				k = (k+1) % buffers.length;
+				
+				final Tensor t = tensor;
+				delivery.execute(() -> {
+					try {
+						if(forward){
+							module.forward(from, t, tags);
+						} else {
+							module.backward(from, t, tags);
+						}
+					} catch(Throwable e){
+						e.printStackTrace();
+					} finally {
+						credit();
+					}
+				});
+			}
+		} catch(IOException e){
+			// stream closed
+		} finally {
+			if(delivery != null)
+				delivery.shutdown();
+			close();
+		}
+	}
+	
+	private void credit(){
+		try {
+			channel.writeInt(1);
+			channel.flush();
+		} catch(IOException e){
+			close();
+		}
+	}
+	
+	void close(){
+		try {
+			channel.close();
+		} catch(IOException e){
+		}
+	}
+}
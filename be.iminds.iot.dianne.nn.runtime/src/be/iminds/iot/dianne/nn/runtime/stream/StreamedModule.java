@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.stream;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+import be.iminds.iot.dianne.api.nn.module.BackwardListener;
+import be.iminds.iot.dianne.api.nn.module.ForwardListener;
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.ModuleException;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Sending end of a tensor stream towards a remote module.
+ * 
+ * Wraps the remote service proxy of the module: tensors in the direction of the stream 
+ * are written on a dedicated connection, everything else (exceptions, listeners, modes, ...)
+ * still goes through the proxy. 
+ * 
+ * The receiver hands out credits, one for each preallocated receive buffer. Each tensor
+ * sent consumes a credit, and a credit is returned once the remote module has processed it. 
+ * 
+ * The connection is set up in the background, so wiring modules never blocks on the network.
+ * Until the stream is connected, or in case the connection fails or breaks, all calls go 
+ * through the proxy.
+ * 
+ * @author tverbele
+ *
+ */
+class StreamedModule implements Module {
+
+	static final int FORWARD = 0;
+	static final int BACKWARD = 1;
+	
+	private static final int CONNECT_TIMEOUT = 5000;
+	
+	private final InetSocketAddress address;
+	private final UUID nnId;
+	private final UUID moduleId;
+	final Module proxy;
+	private final boolean forward;
+	
+	private final SocketChannel socket;
+	private TensorChannel channel;
+	private final Semaphore credits = new Semaphore(0);
+	private volatile boolean connected = false;
+	private volatile boolean closed = false;
+	
+	StreamedModule(InetSocketAddress address, UUID nnId, UUID moduleId, Module proxy, boolean forward) throws IOException {
+		this.address = address;
+		this.nnId = nnId;
+		this.moduleId = moduleId;
+		this.proxy = proxy;
+		this.forward = forward;
+		
+		this.socket = SocketChannel.open();
+		
+		Thread t = new Thread(this::run, "dianne-stream-"+moduleId);
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	private void run(){
+		try {
+			connect();
+			while(!closed){
+				credits.release(channel.readInt());
+			}
+		} catch(IOException e){
+			if(!connected && !closed){
+				System.err.println("Failed to open tensor stream to "+moduleId+" at "+address+", using remote calls: "+e.getMessage());
+			}
+			// else connection closed
+		} finally {
+			close();
+		}
+	}
+	
+	private void connect() throws IOException {
+		socket.socket().connect(address, CONNECT_TIMEOUT);
+		channel = new TensorChannel(socket);
+		
+		channel.writeUUID(nnId);
+		channel.writeUUID(moduleId);
+		channel.writeInt(forward ? FORWARD : BACKWARD);
+		channel.flush();
+		
+		int c = channel.readInt();
+		if(c <= 0){
+			throw new IOException("module not available");
+		}
+		credits.release(c);
+		connected = true;
+	}
+	
+	/**
+	 * @return false if the tensor could not be streamed and has to go through the proxy 
+	 */
+	private boolean send(UUID from, Tensor tensor, String... tags){
+		if(closed || !connected)
+			return false;
+		
+		try {
+			credits.acquire();
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		
+		synchronized(channel){
+			if(closed)
+				return false;
+			
+			try {
+				channel.writeUUID(from);
+				channel.writeInt(tags == null ? 0 : tags.length);
+				if(tags != null){
+					for(String tag : tags){
+						channel.writeString(tag);
+					}
+				}
+				channel.writeTensor(tensor);
+				channel.flush();
+				return true;
+			} catch(IOException e){
+				close();
+				return false;
+			}
+		}
+	}
+	
+	boolean isConnected(){
+		return connected;
+	}
+	
+	boolean isClosed(){
+		return closed;
+	}
+	
+	void close(){
+		if(closed)
+			return;
+		
+		closed = true;
+		// unblock senders waiting for credits
+		credits.release(Integer.MAX_VALUE/2);
+		try {
+			socket.close();
+		} catch(IOException e){
+		}
+	}
+	
+	@Override
+	public UUID getId() {
+		return moduleId;
+	}
+
+	@Override
+	public void forward(UUID moduleId, Tensor input, String... tags) {
+		if(!forward || input == null || !send(moduleId, input, tags)){
+			proxy.forward(moduleId, input, tags);
+		}
+	}
+
+	@Override
+	public void forward(UUID moduleId, ModuleException e, String... tags) {
+		proxy.forward(moduleId, e, tags);
+	}
+
+	@Override
+	public void backward(UUID moduleId, Tensor gradOutput, String... tags) {
+		if(forward || gradOutput == null || !send(moduleId, gradOutput, tags)){
+			proxy.backward(moduleId, gradOutput, tags);
+		}
+	}
+
+	@Override
+	public void backward(UUID moduleId, ModuleException e, String... tags) {
+		proxy.backward(moduleId, e, tags);
+	}
+
+	@Override
+	public void setNext(Module... next) {
+		proxy.setNext(next);
+	}
+
+	@Override
+	public void setPrevious(Module... prev) {
+		proxy.setPrevious(prev);
+	}
+
+	@Override
+	public void addForwardListener(ForwardListener listener) {
+		proxy.addForwardListener(listener);
+	}
+
+	@Override
+	public void removeForwardListener(ForwardListener listener) {
+		proxy.removeForwardListener(listener);
+	}
+
+	@Override
+	public void addBackwardListener(BackwardListener listener) {
+		proxy.addBackwardListener(listener);
+	}
+
+	@Override
+	public void removeBackwardListener(BackwardListener listener) {
+		proxy.removeBackwardListener(listener);
+	}
+
+	@Override
+	public void setMode(EnumSet<Mode> mode) {
+		proxy.setMode(mode);
+	}
+
+	@Override
+	public void setProperty(String key, Object val) {
+		proxy.setProperty(key, val);
+	}
+}
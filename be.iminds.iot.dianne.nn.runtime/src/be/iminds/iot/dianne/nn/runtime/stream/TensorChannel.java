@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.stream;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Buffered framing of ints, strings and tensors on a SocketChannel.
+ * 
+ * All values are little endian. Tensor data is copied straight between native memory and 
+ * the direct send/receive buffers, which are handed to the channel without further copies. 
+ * 
+ * Writing and reading are not thread safe, but one thread can write while another one reads.
+ * 
+ * @author tverbele
+ *
+ */
+class TensorChannel implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private final SocketChannel channel;
+	
+	private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	
+	TensorChannel(SocketChannel channel) throws IOException {
+		this.channel = channel;
+		this.channel.socket().setTcpNoDelay(true);
+		// nothing read yet
+		this.in.flip();
+	}
+	
+	void writeInt(int v) throws IOException {
+		require(4);
+		out.putInt(v);
+	}
+	
+	void writeUUID(UUID id) throws IOException {
+		require(16);
+		out.putLong(id.getMostSignificantBits());
+		out.putLong(id.getLeastSignificantBits());
+	}
+	
+	void writeString(String s) throws IOException {
+		if(s == null){
+			writeInt(-1);
+			return;
+		}
+		
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		int i = 0;
+		while(i < bytes.length){
+			require(1);
+			int n = Math.min(out.remaining(), bytes.length - i);
+			out.put(bytes, i, n);
+			i += n;
+		}
+	}
+	
+	void writeTensor(Tensor tensor) throws IOException {
+		int[] dims = tensor.dims();
+		writeInt(dims.length);
+		for(int d : dims){
+			writeInt(d);
+		}
+		
+		// copy in case of a narrowed tensor, to not make a contiguous copy for each chunk
+		Tensor t = tensor.isContiguous() ? tensor : tensor.copyInto(null);
+		int size = size(dims);
+		int index = 0;
+		while(index < size){
+			require(4);
+			int count = Math.min(size - index, out.remaining()/4);
+			t.get(out, index, count);
+			index += count;
+		}
+	}
+	
+	/**
+	 * Write out all buffered data
+	 */
+	void flush() throws IOException {
+		out.flip();
+		while(out.hasRemaining()){
+			channel.write(out);
+		}
+		out.clear();
+	}
+	
+	private void require(int bytes) throws IOException {
+		if(out.remaining() < bytes){
+			flush();
+		}
+	}
+	
+	int readInt() throws IOException {
+		fill(4);
+		return in.getInt();
+	}
+	
+	UUID readUUID() throws IOException {
+		fill(16);
+		return new UUID(in.getLong(), in.getLong());
+	}
+	
+	String readString() throws IOException {
+		int length = readInt();
+		if(length < 0)
+			return null;
+		
+		byte[] bytes = new byte[length];
+		int i = 0;
+		while(i < length){
+			fill(1);
+			int n = Math.min(in.remaining(), length - i);
+			in.get(bytes, i, n);
+			i += n;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	int[] readDims() throws IOException {
+		int[] dims = new int[readInt()];
+		for(int i=0;i<dims.length;i++){
+			dims[i] = readInt();
+		}
+		return dims;
+	}
+	
+	/**
+	 * Read the tensor data into a tensor of the dims returned by the preceding readDims
+	 */
+	void readData(Tensor tensor, int[] dims) throws IOException {
+		int size = size(dims);
+		int index = 0;
+		while(index < size){
+			fill(4);
+			int count = Math.min(size - index, in.remaining()/4);
+			tensor.set(in, index, count);
+			index += count;
+		}
+	}
+	
+	private void fill(int bytes) throws IOException {
+		if(in.remaining() >= bytes)
+			return;
+		
+		in.compact();
+		while(in.position() < bytes){
+			if(channel.read(in) < 0){
+				throw new EOFException();
+			}
+		}
+		in.flip();
+	}
+	
+	private static int size(int[] dims){
+		if(dims.length == 0)
+			return 0;
+		
+		int size = 1;
+		for(int d : dims){
+			size *= d;
+		}
+		return size;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.stream;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+import be.iminds.iot.dianne.api.nn.module.Module;
+
+/**
+ * Streams tensors between modules deployed on different runtimes.
+ * 
+ * Each runtime listens for incoming streams on a single server socket, of which the endpoint
+ * is advertised as service property of its modules. When wiring a local module to a remote one
+ * that advertises an endpoint, the remote proxy is wrapped in a StreamedModule that sends 
+ * its forward (or backward) tensors over a persistent connection for that edge. This connection 
+ * is opened in the background, in the meantime tensors are sent through the proxy.
+ * 
+ * @author tverbele
+ *
+ */
+public class TensorStreams {
+
+	public static final String ENDPOINT_PROPERTY = "dianne.stream";
+	
+	private final ServerSocketChannel server;
+	private final String endpoint;
+	private final int credits;
+	private final BiFunction<UUID, UUID, Module> modules;
+	
+	// stream endpoints of remote modules, keyed moduleId:nnId
+	private final Map<String, String> endpoints = new ConcurrentHashMap<>();
+	// open outgoing streams, keyed from>to:nnId:direction
+	private final Map<String, StreamedModule> edges = new ConcurrentHashMap<>();
+	// open incoming streams
+	private final Set<StreamReceiver> receivers = ConcurrentHashMap.newKeySet();
+	
+	private volatile boolean closed = false;
+	
+	/**
+	 * @param host the host on which this runtime is reachable, the server socket is bound to this host
+	 * @param port port to listen on, 0 for an ephemeral port
+	 * @param credits the number of tensors a sender can have in flight per edge
+	 * @param modules lookup of local modules by moduleId and nnId
+	 */
+	public TensorStreams(String host, int port, int credits, BiFunction<UUID, UUID, Module> modules) throws IOException {
+		this.credits = credits;
+		this.modules = modules;
+		
+		this.server = ServerSocketChannel.open();
+		// only listen on the advertised interface
+		this.server.bind(new InetSocketAddress(host, port));
+		this.endpoint = host+":"+server.socket().getLocalPort();
+		
+		Thread t = new Thread(this::accept, "dianne-stream-server");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	private void accept(){
+		while(!closed){
+			try {
+				SocketChannel socket = server.accept();
+				StreamReceiver receiver = new StreamReceiver(socket, modules, credits);
+				receivers.add(receiver);
+				Thread t = new Thread(() -> {
+					try {
+						receiver.run();
+					} finally {
+						receivers.remove(receiver);
+					}
+				}, "dianne-stream-receiver");
+				t.setDaemon(true);
+				t.start();
+			} catch(ClosedChannelException e){
+				return;
+			} catch(IOException e){
+				if(!closed){
+					System.err.println("Failed to accept tensor stream: "+e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return host:port endpoint to advertise for local modules
+	 */
+	public String getEndpoint(){
+		return endpoint;
+	}
+	
+	/**
+	 * Register the stream endpoint of a remote module
+	 */
+	public void addEndpoint(UUID moduleId, UUID nnId, String endpoint){
+		endpoints.put(moduleId+":"+nnId, endpoint);
+	}
+	
+	/**
+	 * A remote module is gone, close all streams towards it
+	 */
+	public void removeEndpoint(UUID moduleId, UUID nnId){
+		endpoints.remove(moduleId+":"+nnId);
+		close(e -> e.getKey().contains(">"+moduleId+":"+nnId));
+	}
+	
+	/**
+	 * Wrap the next module of a local module to forward tensors via a stream if possible
+	 */
+	public Module forward(UUID from, UUID to, UUID nnId, Module next){
+		return edge(from, to, nnId, next, true);
+	}
+	
+	/**
+	 * Wrap the previous module of a local module to backpropagate tensors via a stream if possible
+	 */
+	public Module backward(UUID from, UUID to, UUID nnId, Module prev){
+		return edge(from, to, nnId, prev, false);
+	}
+	
+	private Module edge(UUID from, UUID to, UUID nnId, Module proxy, boolean forward){
+		if(closed || proxy == null)
+			return proxy;
+		
+		String address = endpoints.get(to+":"+nnId);
+		if(address == null)
+			return proxy;
+		
+		String key = from+">"+to+":"+nnId+":"+(forward ? StreamedModule.FORWARD : StreamedModule.BACKWARD);
+		StreamedModule edge = edges.get(key);
+		if(edge != null){
+			if(edge.proxy == proxy && !edge.isClosed())
+				return edge;
+			
+			edge.close();
+			edges.remove(key);
+		}
+		
+		try {
+			int i = address.lastIndexOf(':');
+			InetSocketAddress a = new InetSocketAddress(address.substring(0, i), Integer.parseInt(address.substring(i+1)));
+			edge = new StreamedModule(a, nnId, to, proxy, forward);
+			edges.put(key, edge);
+			return edge;
+		} catch(Exception e){
+			System.err.println("Failed to open tensor stream to "+to+" at "+address+", falling back to remote calls: "+e.getMessage());
+			return proxy;
+		}
+	}
+	
+	/**
+	 * Close all streams originating from a local module
+	 */
+	public void close(UUID moduleId, UUID nnId){
+		close(e -> e.getKey().startsWith(moduleId+">") && e.getKey().contains(":"+nnId+":"));
+	}
+	
+	private void close(Predicate<Entry<String, StreamedModule>> filter){
+		Iterator<Entry<String, StreamedModule>> it = edges.entrySet().iterator();
+		while(it.hasNext()){
+			Entry<String, StreamedModule> e = it.next();
+			if(filter.test(e)){
+				e.getValue().close();
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Stop accepting streams and close all open streams
+	 */
+	public void close(){
+		closed = true;
+		try {
+			server.close();
+		} catch(IOException e){
+		}
+		close(e -> true);
+		receivers.forEach(StreamReceiver::close);
+		receivers.clear();
+	}
+}
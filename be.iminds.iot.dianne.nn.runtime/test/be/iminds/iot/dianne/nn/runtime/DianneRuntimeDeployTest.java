@@ -0,0 +1,422 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import be.iminds.iot.dianne.api.nn.module.BackwardListener;
+import be.iminds.iot.dianne.api.nn.module.Composite;
+import be.iminds.iot.dianne.api.nn.module.ForwardListener;
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.ModuleException;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleTypeDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.factory.ModuleFactory;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Deploys batches of modules, where the service callbacks are done by the 
+ * BundleContext on (un)registration, as the service component runtime would.
+ */
+public class DianneRuntimeDeployTest {
+
+	private final UUID nnId = UUID.randomUUID();
+	
+	private DianneRuntimeImpl runtime;
+	// services that are currently registered by the runtime
+	private final Set<Module> registered = Collections.synchronizedSet(new HashSet<>());
+	// modules that fail to register
+	private final Set<UUID> failRegistration = Collections.synchronizedSet(new HashSet<>());
+	
+	@Before
+	public void setup() {
+		Map<String, String> config = new HashMap<>();
+		config.put(Constants.FRAMEWORK_UUID, UUID.randomUUID().toString());
+		config.put("be.iminds.iot.dianne.runtime.shareParameters", "false");
+		config.put("be.iminds.iot.dianne.runtime.jmx", "false");
+		
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getProperty":
+						return config.get(args[0]);
+					case "registerService":
+						return register((Module)args[1], (Dictionary<?, ?>)args[2]);
+					default:
+						return null;
+					}
+				});
+		
+		runtime = new DianneRuntimeImpl();
+		runtime.activate(context);
+		runtime.addModuleFactory(new TestModuleFactory());
+	}
+	
+	@After
+	public void teardown() {
+		runtime.deactivate();
+	}
+	
+	private ServiceRegistration<?> register(Module module, Dictionary<?, ?> d){
+		if(failRegistration.contains(module.getId()))
+			throw new IllegalStateException("Failed to register "+module.getId());
+		
+		Map<String, Object> props = new HashMap<>();
+		for(Object key : Collections.list(d.keys())){
+			props.put((String)key, d.get(key));
+		}
+		
+		ServiceReference<?> reference = (ServiceReference<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceReference.class}, (proxy, method, args) -> 
+					"getProperty".equals(method.getName()) ? props.get(args[0]) : null);
+		ServiceRegistration<?> registration = (ServiceRegistration<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceRegistration.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getReference":
+						return reference;
+					case "unregister":
+						registered.remove(module);
+						runtime.removeModule(module, props);
+						return null;
+					default:
+						return null;
+					}
+				});
+		
+		registered.add(module);
+		runtime.addModule(module, props);
+		return registration;
+	}
+	
+	private static ModuleDTO dto(UUID id, String type, UUID[] next, UUID[] prev){
+		return new ModuleDTO(id, type, next, prev, new HashMap<>());
+	}
+	
+	private List<ModuleInstanceDTO> deploy(ModuleDTO... dtos){
+		return runtime.deployModules(Arrays.asList(dtos), nnId, (Map<UUID, Tensor>)null);
+	}
+	
+	private TestModule registered(UUID id){
+		synchronized(registered){
+			return (TestModule)registered.stream().filter(m -> m.getId().equals(id)).findFirst().orElse(null);
+		}
+	}
+	
+	@Test
+	public void testDeployBatch() {
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		UUID c = UUID.randomUUID();
+		
+		List<ModuleInstanceDTO> deployed = deploy(dto(a, "Test", new UUID[]{b}, null), 
+				dto(b, "Test", new UUID[]{c}, new UUID[]{a}), 
+				dto(c, "Test", null, new UUID[]{b}));
+		Assert.assertEquals(3, deployed.size());
+		Assert.assertEquals(3, registered.size());
+		
+		// wired within the batch
+		Assert.assertSame(registered(b), registered(a).next[0]);
+		Assert.assertSame(registered(c), registered(b).next[0]);
+		Assert.assertSame(registered(b), registered(c).prev[0]);
+	}
+	
+	@Test(timeout=10000)
+	public void testNestedComposite() {
+		// more composites than deploy threads, which would deadlock if nested batches
+		// were submitted to the deploy threads as well
+		int n = 2*Math.max(4, Runtime.getRuntime().availableProcessors())+1;
+		ModuleDTO[] dtos = new ModuleDTO[n];
+		for(int i=0;i<n;i++){
+			dtos[i] = dto(UUID.randomUUID(), "Composite", null, null);
+		}
+		deploy(dtos);
+		
+		Assert.assertEquals(3*n, registered.size());
+		for(ModuleDTO dto : dtos){
+			CompositeTestModule composite = (CompositeTestModule)registered(dto.id);
+			// the composing modules are instantiated inline, on the deploy thread of the composite
+			Assert.assertNotSame(Thread.currentThread(), composite.thread);
+			Assert.assertEquals(2, composite.nni.modules.size());
+			for(UUID id : composite.nni.modules.keySet()){
+				Assert.assertSame(composite.thread, registered(id).thread);
+			}
+		}
+		
+		// undeploying a composite also undeploys its composing modules
+		runtime.undeployModules(nnId);
+		Assert.assertTrue(registered.isEmpty());
+		Assert.assertTrue(runtime.getModules().isEmpty());
+	}
+	
+	@Test
+	public void testInstantiationFailure() {
+		UUID x = UUID.randomUUID();
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		UUID c = UUID.randomUUID();
+		
+		deploy(dto(x, "Test", new UUID[]{a}, null));
+		TestModule mx = registered(x);
+		
+		try {
+			deploy(dto(a, "Test", null, new UUID[]{x}), 
+					dto(b, "Fail", null, null), 
+					dto(c, "Composite", null, null));
+			Assert.fail("Expected deploy to fail");
+		} catch(RuntimeException e){
+		}
+		
+		// nothing of the failed batch remains, including the modules of the composite
+		Assert.assertEquals(Collections.singleton(mx), registered);
+		Assert.assertEquals(1, runtime.getModules().size());
+		Assert.assertNull(mx.next);
+		
+		// the same modules can be deployed again
+		deploy(dto(a, "Test", null, new UUID[]{x}), 
+				dto(c, "Composite", null, null));
+		Assert.assertSame(registered(a), mx.next[0]);
+		Assert.assertSame(mx, registered(a).prev[0]);
+	}
+	
+	@Test
+	public void testRegistrationFailure() {
+		UUID x = UUID.randomUUID();
+		UUID y = UUID.randomUUID();
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		UUID c = UUID.randomUUID();
+		
+		deploy(dto(x, "Test", new UUID[]{a}, null));
+		deploy(dto(y, "Test", new UUID[]{b}, null));
+		TestModule mx = registered(x);
+		TestModule my = registered(y);
+		
+		// a registers, b fails and c is never registered
+		failRegistration.add(b);
+		try {
+			deploy(dto(a, "Test", null, new UUID[]{x}), 
+					dto(b, "Test", null, new UUID[]{y}),
+					dto(c, "Composite", null, null));
+			Assert.fail("Expected deploy to fail");
+		} catch(RuntimeException e){
+		}
+		
+		Assert.assertEquals(new HashSet<>(Arrays.asList(mx, my)), registered);
+		Assert.assertEquals(2, runtime.getModules().size());
+		// no longer wired to the modules of the failed batch
+		Assert.assertNull(mx.next);
+		Assert.assertNull(my.next);
+		
+		failRegistration.clear();
+		deploy(dto(a, "Test", null, new UUID[]{x}), 
+				dto(b, "Test", null, new UUID[]{y}),
+				dto(c, "Composite", null, null));
+		Assert.assertEquals(7, registered.size());
+		Assert.assertSame(registered(a), mx.next[0]);
+		Assert.assertSame(registered(b), my.next[0]);
+	}
+	
+	@Test
+	public void testNoLeakedRegistrations() {
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		UUID c = UUID.randomUUID();
+		
+		// fail in a nested batch, while sibling composites deploy successfully
+		try {
+			deploy(dto(a, "Composite", null, null), 
+					dto(b, "FailingComposite", null, null),
+					dto(c, "Composite", null, null));
+			Assert.fail("Expected deploy to fail");
+		} catch(RuntimeException e){
+		}
+		
+		Assert.assertTrue(registered.isEmpty());
+		Assert.assertTrue(runtime.getModules().isEmpty());
+		
+		// nothing left behind to undeploy
+		runtime.undeployModules(nnId);
+		Assert.assertTrue(registered.isEmpty());
+	}
+	
+	private class TestModuleFactory implements ModuleFactory {
+
+		@Override
+		public Module createModule(ModuleDTO dto) throws InstantiationException {
+			return createModule(dto, null);
+		}
+
+		@Override
+		public Module createModule(ModuleDTO dto, Tensor parameters) throws InstantiationException {
+			switch(dto.type){
+			case "Test":
+				return new TestModule(dto.id);
+			case "Fail":
+				throw new IllegalArgumentException("Failed to create "+dto.id);
+			case "Composite":
+			case "FailingComposite":
+				// deploy two composing modules in a nested batch, as the CompositeModuleFactory does
+				UUID compositeNNid = UUID.randomUUID();
+				UUID in = UUID.randomUUID();
+				UUID out = UUID.randomUUID();
+				if(dto.type.equals("FailingComposite")){
+					failRegistration.add(out);
+				}
+				Map<UUID, ModuleInstanceDTO> deployed = new HashMap<>();
+				for(ModuleInstanceDTO mi : runtime.deployModules(Arrays.asList(
+						dto(in, "Test", new UUID[]{out}, null), dto(out, "Test", null, new UUID[]{in})), 
+						compositeNNid, (Map<UUID, Tensor>)null)){
+					deployed.put(mi.moduleId, mi);
+				}
+				return new CompositeTestModule(dto.id, new NeuralNetworkInstanceDTO(compositeNNid, dto.type, deployed));
+			default:
+				throw new InstantiationException();
+			}
+		}
+
+		@Override
+		public List<ModuleTypeDTO> getAvailableModuleTypes() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public ModuleTypeDTO getModuleType(String name) {
+			return null;
+		}
+
+		@Override
+		public int parameterSize(ModuleDTO dto) {
+			return 0;
+		}
+
+		@Override
+		public int memorySize(ModuleDTO dto) {
+			return 0;
+		}
+	}
+	
+	private static class TestModule implements Module {
+
+		private final UUID id;
+		// thread the module is instantiated on
+		final Thread thread = Thread.currentThread();
+		private volatile Module[] next;
+		private volatile Module[] prev;
+		
+		public TestModule(UUID id) {
+			this.id = id;
+		}
+		
+		@Override
+		public UUID getId() {
+			return id;
+		}
+
+		@Override
+		public void forward(UUID moduleId, Tensor input, String... tags) {
+		}
+
+		@Override
+		public void forward(UUID moduleId, ModuleException e, String... tags) {
+		}
+
+		@Override
+		public void backward(UUID moduleId, Tensor gradOutput, String... tags) {
+		}
+
+		@Override
+		public void backward(UUID moduleId, ModuleException e, String... tags) {
+		}
+
+		@Override
+		public void setNext(Module... next) {
+			this.next = next;
+		}
+
+		@Override
+		public void setPrevious(Module... prev) {
+			this.prev = prev;
+		}
+
+		@Override
+		public void addForwardListener(ForwardListener listener) {
+		}
+
+		@Override
+		public void removeForwardListener(ForwardListener listener) {
+		}
+
+		@Override
+		public void addBackwardListener(BackwardListener listener) {
+		}
+
+		@Override
+		public void removeBackwardListener(BackwardListener listener) {
+		}
+
+		@Override
+		public void setMode(EnumSet<Mode> mode) {
+		}
+
+		@Override
+		public void setProperty(String key, Object val) {
+		}
+	}
+	
+	private static class CompositeTestModule extends TestModule implements Composite {
+		
+		private final NeuralNetworkInstanceDTO nni;
+		
+		public CompositeTestModule(UUID id, NeuralNetworkInstanceDTO nni) {
+			super(id);
+			this.nni = nni;
+		}
+
+		@Override
+		public NeuralNetworkInstanceDTO getNNi() {
+			return nni;
+		}
+	}
+}
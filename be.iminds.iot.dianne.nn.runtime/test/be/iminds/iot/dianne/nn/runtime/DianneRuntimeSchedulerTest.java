@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import be.iminds.iot.dianne.api.nn.module.AbstractModule;
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleTypeDTO;
+import be.iminds.iot.dianne.api.nn.module.factory.ModuleFactory;
+import be.iminds.iot.dianne.api.nn.runtime.ModuleScheduler;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Checks which ModuleScheduler the runtime selects for deployed modules.
+ */
+public class DianneRuntimeSchedulerTest {
+
+	private final List<DianneRuntimeImpl> runtimes = new ArrayList<>();
+	// modules registered by the runtimes
+	private final List<Module> registered = Collections.synchronizedList(new ArrayList<>());
+	
+	@After
+	public void teardown() {
+		runtimes.forEach(DianneRuntimeImpl::deactivate);
+	}
+	
+	private DianneRuntimeImpl runtime(String... properties){
+		Map<String, String> config = new HashMap<>();
+		config.put(Constants.FRAMEWORK_UUID, UUID.randomUUID().toString());
+		config.put("be.iminds.iot.dianne.runtime.shareParameters", "false");
+		config.put("be.iminds.iot.dianne.runtime.jmx", "false");
+		for(int i=0;i<properties.length;i+=2){
+			config.put(properties[i], properties[i+1]);
+		}
+		
+		ServiceReference<?> reference = (ServiceReference<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceReference.class}, (proxy, method, args) -> null);
+		ServiceRegistration<?> registration = (ServiceRegistration<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceRegistration.class}, (proxy, method, args) -> 
+					"getReference".equals(method.getName()) ? reference : null);
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getProperty":
+						return config.get(args[0]);
+					case "registerService":
+						registered.add((Module)args[1]);
+						return registration;
+					default:
+						return null;
+					}
+				});
+		
+		DianneRuntimeImpl runtime = new DianneRuntimeImpl();
+		runtime.activate(context);
+		runtime.addModuleFactory(new TestModuleFactory());
+		runtimes.add(runtime);
+		return runtime;
+	}
+	
+	private static Map<String, Object> properties(String name){
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("scheduler", name);
+		return properties;
+	}
+	
+	private TestModule deploy(DianneRuntimeImpl runtime, UUID nnId, String... properties){
+		Map<String, String> config = new HashMap<>();
+		for(int i=0;i<properties.length;i+=2){
+			config.put(properties[i], properties[i+1]);
+		}
+		ModuleDTO dto = new ModuleDTO(UUID.randomUUID(), "Test", null, null, config);
+		runtime.deployModules(Arrays.asList(dto), nnId, (Map<UUID, Tensor>)null);
+		return (TestModule)registered.get(registered.size()-1);
+	}
+	
+	@Test
+	public void testDeployProperty() {
+		DianneRuntimeImpl runtime = runtime();
+		TestScheduler a = new TestScheduler();
+		TestScheduler b = new TestScheduler();
+		runtime.addModuleScheduler(a, properties("a"));
+		runtime.addModuleScheduler(b, properties("b"));
+		
+		UUID nnId = UUID.randomUUID();
+		TestModule m = deploy(runtime, nnId, "scheduler", "b", "scheduler.threads", "3");
+		Assert.assertSame(b.run, m.runExecutor());
+		Assert.assertSame(b.listener, m.listenerExecutor());
+		Assert.assertEquals(nnId, b.nnIds.get(0));
+		// scheduler options are passed on to the scheduler
+		Assert.assertEquals("3", b.configs.get(0).get("scheduler.threads"));
+		Assert.assertTrue(a.nnIds.isEmpty());
+	}
+	
+	@Test
+	public void testRuntimeDefault() {
+		DianneRuntimeImpl runtime = runtime("be.iminds.iot.dianne.runtime.scheduler", "a");
+		TestScheduler a = new TestScheduler();
+		TestScheduler b = new TestScheduler();
+		runtime.addModuleScheduler(a, properties("a"));
+		runtime.addModuleScheduler(b, properties("b"));
+		
+		// deploy property overrides the runtime default
+		Assert.assertSame(a.run, deploy(runtime, UUID.randomUUID()).runExecutor());
+		Assert.assertSame(b.run, deploy(runtime, UUID.randomUUID(), "scheduler", "b").runExecutor());
+	}
+	
+	@Test
+	public void testUnavailable() {
+		DianneRuntimeImpl runtime = runtime();
+		TestScheduler a = new TestScheduler();
+		runtime.addModuleScheduler(a, properties("a"));
+		
+		// no scheduler configured or unknown scheduler keeps the default executors
+		ExecutorService defaultExecutor = deploy(runtime, UUID.randomUUID()).runExecutor();
+		Assert.assertNotSame(a.run, defaultExecutor);
+		Assert.assertSame(defaultExecutor, deploy(runtime, UUID.randomUUID(), "scheduler", "c").runExecutor());
+		Assert.assertTrue(a.nnIds.isEmpty());
+	}
+	
+	@Test
+	public void testRelease() {
+		DianneRuntimeImpl runtime = runtime();
+		TestScheduler a = new TestScheduler();
+		runtime.addModuleScheduler(a, properties("a"));
+		
+		UUID nnId = UUID.randomUUID();
+		deploy(runtime, nnId, "scheduler", "a");
+		deploy(runtime, nnId, "scheduler", "a");
+		List<ModuleInstanceDTO> modules = runtime.getModules();
+		Assert.assertEquals(2, modules.size());
+		
+		// only released once the last module of the nn is undeployed
+		runtime.undeployModule(modules.get(0));
+		Assert.assertTrue(a.released.isEmpty());
+		runtime.undeployModule(modules.get(1));
+		Assert.assertEquals(Arrays.asList(nnId), a.released);
+	}
+	
+	@Test
+	public void testRemoveScheduler() {
+		DianneRuntimeImpl runtime = runtime();
+		TestScheduler a = new TestScheduler();
+		runtime.addModuleScheduler(a, properties("a"));
+		
+		TestModule m = deploy(runtime, UUID.randomUUID(), "scheduler", "a");
+		Assert.assertSame(a.run, m.runExecutor());
+		
+		// modules fall back to the default executors
+		runtime.removeModuleScheduler(a, properties("a"));
+		Assert.assertNotSame(a.run, m.runExecutor());
+		Assert.assertNotSame(a.listener, m.listenerExecutor());
+	}
+	
+	private static class TestScheduler implements ModuleScheduler {
+
+		private final ExecutorService run = Executors.newSingleThreadExecutor();
+		private final ExecutorService listener = Executors.newSingleThreadExecutor();
+		
+		private final List<UUID> nnIds = new ArrayList<>();
+		private final List<Map<String, String>> configs = new ArrayList<>();
+		private final List<UUID> released = new ArrayList<>();
+		
+		@Override
+		public ExecutorService getRunExecutor(UUID nnId, Map<String, String> config) {
+			nnIds.add(nnId);
+			configs.add(config);
+			return run;
+		}
+
+		@Override
+		public ExecutorService getListenerExecutor(UUID nnId, Map<String, String> config) {
+			return listener;
+		}
+
+		@Override
+		public void release(UUID nnId) {
+			released.add(nnId);
+		}
+	}
+	
+	private static class TestModuleFactory implements ModuleFactory {
+
+		@Override
+		public Module createModule(ModuleDTO dto) throws InstantiationException {
+			return createModule(dto, null);
+		}
+
+		@Override
+		public Module createModule(ModuleDTO dto, Tensor parameters) throws InstantiationException {
+			if(!"Test".equals(dto.type))
+				throw new InstantiationException();
+			return new TestModule(dto.id);
+		}
+
+		@Override
+		public List<ModuleTypeDTO> getAvailableModuleTypes() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public ModuleTypeDTO getModuleType(String name) {
+			return null;
+		}
+
+		@Override
+		public int parameterSize(ModuleDTO dto) {
+			return 0;
+		}
+
+		@Override
+		public int memorySize(ModuleDTO dto) {
+			return 0;
+		}
+	}
+	
+	private static class TestModule extends AbstractModule {
+
+		public TestModule(UUID id) {
+			super(id);
+		}
+		
+		ExecutorService runExecutor(){
+			return runExecutor;
+		}
+		
+		ExecutorService listenerExecutor(){
+			return listenerExecutor;
+		}
+
+		@Override
+		protected void forward() {
+		}
+
+		@Override
+		protected void backward() {
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import be.iminds.iot.dianne.api.nn.module.BackwardListener;
+import be.iminds.iot.dianne.api.nn.module.ForwardListener;
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.ModuleException;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleDTO;
+import be.iminds.iot.dianne.api.nn.module.dto.ModuleTypeDTO;
+import be.iminds.iot.dianne.api.nn.module.factory.ModuleFactory;
+import be.iminds.iot.dianne.nn.runtime.stream.TensorStreams;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Wires modules deployed on two runtimes, where the service callbacks of the remote 
+ * modules are done by hand instead of by remote services.
+ */
+public class DianneRuntimeStreamsTest {
+
+	private final UUID nnId = UUID.randomUUID();
+	private final UUID from = UUID.randomUUID();
+	private final UUID to = UUID.randomUUID();
+	
+	private final List<DianneRuntimeImpl> runtimes = new ArrayList<>();
+	// services registered by the runtimes
+	private final Map<Module, Map<String, Object>> registered = Collections.synchronizedMap(new HashMap<>());
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@After
+	public void teardown() {
+		runtimes.forEach(DianneRuntimeImpl::deactivate);
+	}
+	
+	private DianneRuntimeImpl runtime(String... properties){
+		Map<String, String> config = new HashMap<>();
+		config.put(Constants.FRAMEWORK_UUID, UUID.randomUUID().toString());
+		config.put("be.iminds.iot.dianne.runtime.shareParameters", "false");
+		config.put("be.iminds.iot.dianne.runtime.jmx", "false");
+		for(int i=0;i<properties.length;i+=2){
+			config.put(properties[i], properties[i+1]);
+		}
+		
+		ServiceReference<?> reference = (ServiceReference<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceReference.class}, (proxy, method, args) -> null);
+		ServiceRegistration<?> registration = (ServiceRegistration<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceRegistration.class}, (proxy, method, args) -> 
+					"getReference".equals(method.getName()) ? reference : null);
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getProperty":
+						return config.get(args[0]);
+					case "registerService":
+						Map<String, Object> props = new HashMap<>();
+						Dictionary<?, ?> d = (Dictionary<?, ?>)args[2];
+						for(Object key : Collections.list(d.keys())){
+							props.put((String)key, d.get(key));
+						}
+						registered.put((Module)args[1], props);
+						return registration;
+					default:
+						return null;
+					}
+				});
+		
+		DianneRuntimeImpl runtime = new DianneRuntimeImpl();
+		runtime.activate(context);
+		runtime.addModuleFactory(new TestModuleFactory());
+		runtimes.add(runtime);
+		return runtime;
+	}
+	
+	private TestModule deploy(DianneRuntimeImpl runtime, UUID id, UUID[] next, UUID[] prev){
+		ModuleDTO dto = new ModuleDTO(id, "Test", next, prev, new HashMap<>());
+		runtime.deployModules(Arrays.asList(dto), nnId, (Map<UUID, Tensor>)null);
+		synchronized(registered){
+			return (TestModule)registered.keySet().stream().filter(m -> m.getId().equals(id)).findFirst().get();
+		}
+	}
+	
+	// import a module deployed on another runtime, as remote services would do
+	private TestModule importModule(DianneRuntimeImpl runtime, TestModule module){
+		TestModule proxy = new TestModule(module.getId());
+		runtime.addModule(proxy, registered.get(module));
+		return proxy;
+	}
+	
+	@Test
+	public void testConfigureNext() throws Exception {
+		DianneRuntimeImpl a = runtime("be.iminds.iot.dianne.runtime.stream", "true", 
+				"be.iminds.iot.dianne.runtime.stream.host", "127.0.0.1");
+		DianneRuntimeImpl b = runtime("be.iminds.iot.dianne.runtime.stream", "true", 
+				"rsa.ip", "127.0.0.1");
+		
+		TestModule target = deploy(a, to, null, new UUID[]{from});
+		String endpoint = (String)registered.get(target).get(TensorStreams.ENDPOINT_PROPERTY);
+		Assert.assertTrue(endpoint.startsWith("127.0.0.1:"));
+		
+		TestModule proxy = importModule(b, target);
+		TestModule source = deploy(b, from, new UUID[]{to}, null);
+		Assert.assertTrue(registered.get(source).get(TensorStreams.ENDPOINT_PROPERTY).toString().startsWith("127.0.0.1:"));
+		
+		// the proxy of the remote module is wrapped in a stream
+		Module next = source.next[0];
+		Assert.assertNotSame(proxy, next);
+		Assert.assertEquals(to, next.getId());
+		
+		// until the stream is connected tensors go through the proxy
+		Tensor t = new Tensor(2, 3);
+		t.fill(1);
+		float[] received = null;
+		long timeout = System.currentTimeMillis()+5000;
+		while(received == null && System.currentTimeMillis() < timeout){
+			next.forward(from, t, "tag");
+			received = target.received.poll(10, TimeUnit.MILLISECONDS);
+		}
+		Assert.assertNotNull(received);
+		Assert.assertArrayEquals(t.get(), received, 0.0f);
+	}
+	
+	@Test
+	public void testConfigureNextNotBlocking() throws Exception {
+		DianneRuntimeImpl b = runtime("be.iminds.iot.dianne.runtime.stream", "true", 
+				"be.iminds.iot.dianne.runtime.stream.host", "127.0.0.1");
+		
+		// a remote module advertising an unreachable endpoint
+		Map<String, Object> props = new HashMap<>();
+		props.put("module.id", to.toString());
+		props.put("nn.id", nnId.toString());
+		props.put(TensorStreams.ENDPOINT_PROPERTY, "10.255.255.1:9");
+		TestModule proxy = new TestModule(to);
+		b.addModule(proxy, props);
+		
+		long start = System.currentTimeMillis();
+		TestModule source = deploy(b, from, new UUID[]{to}, null);
+		Assert.assertTrue(System.currentTimeMillis()-start < 1000);
+		
+		Tensor t = new Tensor(2);
+		t.fill(1);
+		source.next[0].forward(from, t);
+		Assert.assertEquals(1, proxy.received.size());
+	}
+	
+	@Test
+	public void testDisabled() throws Exception {
+		DianneRuntimeImpl a = runtime();
+		DianneRuntimeImpl b = runtime();
+		
+		TestModule target = deploy(a, to, null, new UUID[]{from});
+		Assert.assertFalse(registered.get(target).containsKey(TensorStreams.ENDPOINT_PROPERTY));
+		
+		TestModule proxy = importModule(b, target);
+		TestModule source = deploy(b, from, new UUID[]{to}, null);
+		Assert.assertSame(proxy, source.next[0]);
+	}
+	
+	private static class TestModuleFactory implements ModuleFactory {
+
+		@Override
+		public Module createModule(ModuleDTO dto) throws InstantiationException {
+			return createModule(dto, null);
+		}
+
+		@Override
+		public Module createModule(ModuleDTO dto, Tensor parameters) throws InstantiationException {
+			if(!"Test".equals(dto.type))
+				throw new InstantiationException();
+			return new TestModule(dto.id);
+		}
+
+		@Override
+		public List<ModuleTypeDTO> getAvailableModuleTypes() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public ModuleTypeDTO getModuleType(String name) {
+			return null;
+		}
+
+		@Override
+		public int parameterSize(ModuleDTO dto) {
+			return 0;
+		}
+
+		@Override
+		public int memorySize(ModuleDTO dto) {
+			return 0;
+		}
+	}
+	
+	private static class TestModule implements Module {
+
+		private final UUID id;
+		private final BlockingQueue<float[]> received = new LinkedBlockingQueue<>();
+		private volatile Module[] next;
+		
+		public TestModule(UUID id) {
+			this.id = id;
+		}
+		
+		@Override
+		public UUID getId() {
+			return id;
+		}
+
+		@Override
+		public void forward(UUID moduleId, Tensor input, String... tags) {
+			received.add(input.get());
+		}
+
+		@Override
+		public void forward(UUID moduleId, ModuleException e, String... tags) {
+		}
+
+		@Override
+		public void backward(UUID moduleId, Tensor gradOutput, String... tags) {
+		}
+
+		@Override
+		public void backward(UUID moduleId, ModuleException e, String... tags) {
+		}
+
+		@Override
+		public void setNext(Module... next) {
+			this.next = next;
+		}
+
+		@Override
+		public void setPrevious(Module... prev) {
+		}
+
+		@Override
+		public void addForwardListener(ForwardListener listener) {
+		}
+
+		@Override
+		public void removeForwardListener(ForwardListener listener) {
+		}
+
+		@Override
+		public void addBackwardListener(BackwardListener listener) {
+		}
+
+		@Override
+		public void removeBackwardListener(BackwardListener listener) {
+		}
+
+		@Override
+		public void setMode(EnumSet<Mode> mode) {
+		}
+
+		@Override
+		public void setProperty(String key, Object val) {
+		}
+	}
+}
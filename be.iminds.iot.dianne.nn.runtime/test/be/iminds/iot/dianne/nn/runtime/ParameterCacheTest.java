@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.repository.DianneRepository;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class ParameterCacheTest {
+
+	// 100 floats per blob
+	private static final int BLOB = 400;
+	
+	private File dir;
+	
+	private final Map<String, Tensor> parameters = new HashMap<>();
+	private final Map<String, Long> versions = new HashMap<>();
+	private int loads = 0;
+	private DianneRepository repository;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		dir = Files.createTempDirectory("dianne-cache").toFile();
+		
+		// only the methods used by the cache are implemented
+		repository = (DianneRepository)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{DianneRepository.class}, (proxy, method, args) -> {
+			String key = args[0]+Arrays.toString((String[])args[1]);
+			switch(method.getName()){
+			case "parametersVersion":
+				return versions.getOrDefault(key, -1L);
+			case "loadParameters":
+				loads++;
+				Tensor t = parameters.get(key);
+				if(t == null)
+					throw new Exception("No parameters");
+				return t.copyInto(null);
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	@After
+	public void teardown() {
+		for(File f : dir.listFiles()){
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	private UUID store(float value, String... tags){
+		UUID moduleId = UUID.randomUUID();
+		store(moduleId, value, tags);
+		return moduleId;
+	}
+	
+	private void store(UUID moduleId, float value, String... tags){
+		String key = moduleId+Arrays.toString(tags);
+		Tensor t = new Tensor(BLOB/4);
+		t.fill(value);
+		parameters.put(key, t);
+		versions.put(key, versions.getOrDefault(key, 0L)+1);
+	}
+	
+	@Test
+	public void testHitMiss() throws Exception {
+		ParameterCache cache = new ParameterCache(dir, 10*BLOB);
+		UUID m = store(1.0f, "a");
+		
+		Tensor t = cache.load(repository, m, "a");
+		Assert.assertEquals(1, loads);
+		Assert.assertEquals(parameters.get(m+"[a]"), t);
+		
+		t = cache.load(repository, m, "a");
+		Assert.assertEquals(1, loads);
+		Assert.assertEquals(parameters.get(m+"[a]"), t);
+		
+		// other tags are other parameters
+		store(m, 2.0f, "b");
+		Assert.assertEquals(2.0f, cache.load(repository, m, "b").get(0), 0.0f);
+		Assert.assertEquals(2, loads);
+		
+		// no parameters in the repository
+		Assert.assertNull(cache.load(repository, UUID.randomUUID()));
+		Assert.assertEquals(2, loads);
+	}
+	
+	@Test
+	public void testVersion() throws Exception {
+		ParameterCache cache = new ParameterCache(dir, 10*BLOB);
+		UUID m = store(1.0f);
+		cache.load(repository, m);
+		
+		// new version in the repository
+		store(m, 2.0f);
+		Tensor t = cache.load(repository, m);
+		Assert.assertEquals(2, loads);
+		Assert.assertEquals(2.0f, t.get(0), 0.0f);
+		
+		t = cache.load(repository, m);
+		Assert.assertEquals(2, loads);
+		Assert.assertEquals(2.0f, t.get(0), 0.0f);
+	}
+	
+	@Test
+	public void testEviction() throws Exception {
+		ParameterCache cache = new ParameterCache(dir, 3*BLOB);
+		UUID a = store(1.0f);
+		UUID b = store(2.0f);
+		UUID c = store(3.0f);
+		cache.load(repository, a);
+		cache.load(repository, b);
+		cache.load(repository, c);
+		Assert.assertEquals(3, dir.list().length);
+		
+		// use a, so b is the least recently used one
+		cache.load(repository, a);
+		Assert.assertEquals(3, loads);
+		
+		UUID d = store(4.0f);
+		cache.load(repository, d);
+		Assert.assertEquals(4, loads);
+		Assert.assertEquals(3, dir.list().length);
+		
+		cache.load(repository, a);
+		cache.load(repository, c);
+		cache.load(repository, d);
+		Assert.assertEquals(4, loads);
+		
+		cache.load(repository, b);
+		Assert.assertEquals(5, loads);
+		
+		// blobs larger than the cache are not cached
+		ParameterCache small = new ParameterCache(dir, BLOB-4);
+		UUID e = store(5.0f);
+		small.load(repository, e);
+		small.load(repository, e);
+		Assert.assertEquals(7, loads);
+	}
+	
+	@Test
+	public void testRestart() throws Exception {
+		ParameterCache cache = new ParameterCache(dir, 3*BLOB);
+		UUID a = store(1.0f);
+		UUID b = store(2.0f);
+		cache.load(repository, a);
+		cache.load(repository, b);
+		
+		// leftover of an interrupted write
+		new File(dir, "foo.1.tmp").createNewFile();
+		
+		cache = new ParameterCache(dir, 3*BLOB);
+		Assert.assertEquals(2, dir.list().length);
+		Assert.assertEquals(1.0f, cache.load(repository, a).get(0), 0.0f);
+		Assert.assertEquals(2.0f, cache.load(repository, b).get(0), 0.0f);
+		Assert.assertEquals(2, loads);
+		
+		// size is restored, so adding two more evicts one
+		cache.load(repository, store(3.0f));
+		cache.load(repository, store(4.0f));
+		Assert.assertEquals(3, dir.list().length);
+		
+		// a smaller cache evicts on startup
+		cache = new ParameterCache(dir, BLOB);
+		Assert.assertEquals(1, dir.list().length);
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class SharedParametersTest {
+
+	private final UUID moduleId = UUID.randomUUID();
+	private final UUID nn1 = UUID.randomUUID();
+	private final UUID nn2 = UUID.randomUUID();
+	
+	private SharedParameters shared;
+	private AtomicInteger loads;
+	private Supplier<Tensor> loader;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup() {
+		shared = new SharedParameters();
+		loads = new AtomicInteger();
+		loader = () -> {
+			Tensor t = new Tensor(4);
+			t.fill(loads.incrementAndGet());
+			return t;
+		};
+	}
+	
+	@Test
+	public void testShared() {
+		Tensor p1 = shared.acquire(moduleId, nn1, new String[]{"a"}, loader);
+		Tensor p2 = shared.acquire(moduleId, nn2, new String[]{"a"}, loader);
+		Assert.assertEquals(1, loads.get());
+		Assert.assertEquals(p1, p2);
+		
+		// copy-on-write
+		p1.unshare();
+		p1.fill(0.0f);
+		Assert.assertEquals(1.0f, p2.get(0), 0.01);
+	}
+	
+	@Test
+	public void testTags() {
+		shared.acquire(moduleId, nn1, new String[]{"a", "b"}, loader);
+		shared.acquire(moduleId, nn2, new String[]{"b", "a"}, loader);
+		shared.acquire(UUID.randomUUID(), nn2, new String[]{"a", "b"}, loader);
+		Assert.assertEquals(3, loads.get());
+	}
+	
+	@Test
+	public void testRelease() {
+		shared.acquire(moduleId, nn1, null, loader);
+		shared.acquire(moduleId, nn2, null, loader);
+		
+		// still referred to by nn2
+		shared.release(moduleId, nn1);
+		shared.acquire(moduleId, nn1, null, loader);
+		Assert.assertEquals(1, loads.get());
+		
+		// released by all, loaded again
+		shared.release(moduleId, nn1);
+		shared.release(moduleId, nn2);
+		shared.release(moduleId, nn2);
+		Tensor p = shared.acquire(moduleId, nn1, null, loader);
+		Assert.assertEquals(2, loads.get());
+		Assert.assertEquals(2.0f, p.get(0), 0.01);
+	}
+	
+	@Test
+	public void testRedeploy() {
+		// acquiring again for the same instance releases the previous reference
+		shared.acquire(moduleId, nn1, new String[]{"a"}, loader);
+		shared.acquire(moduleId, nn1, new String[]{"b"}, loader);
+		shared.release(moduleId, nn1);
+		shared.acquire(moduleId, nn2, new String[]{"a"}, loader);
+		Assert.assertEquals(3, loads.get());
+	}
+	
+	@Test
+	public void testEviction() {
+		Tensor p1 = shared.acquire(moduleId, nn1, new String[]{"a"}, loader);
+		shared.onParametersUpdate(nn1, Collections.singleton(moduleId), "a");
+		
+		// new deployments load the updated parameters, existing instances keep theirs
+		Tensor p2 = shared.acquire(moduleId, nn2, new String[]{"a"}, loader);
+		Assert.assertEquals(2, loads.get());
+		Assert.assertEquals(1.0f, p1.get(0), 0.01);
+		Assert.assertEquals(2.0f, p2.get(0), 0.01);
+		
+		// releasing the evicted entry does not drop the new one
+		shared.release(moduleId, nn1);
+		shared.acquire(moduleId, nn1, new String[]{"a"}, loader);
+		Assert.assertEquals(2, loads.get());
+	}
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.scheduler;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+public class ModuleSchedulerTest {
+
+	private static BundleContext context(String... properties){
+		Map<String, String> config = new HashMap<>();
+		for(int i=0;i<properties.length;i+=2){
+			config.put(properties[i], properties[i+1]);
+		}
+		return (BundleContext)Proxy.newProxyInstance(ModuleSchedulerTest.class.getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> 
+					"getProperty".equals(method.getName()) ? config.get(args[0]) : null);
+	}
+	
+	private static Map<String, String> config(String... properties){
+		Map<String, String> config = new HashMap<>();
+		for(int i=0;i<properties.length;i+=2){
+			config.put(properties[i], properties[i+1]);
+		}
+		return config;
+	}
+	
+	@Test
+	public void testParallelism() {
+		Assert.assertEquals(8, WorkStealingModuleScheduler.parallelism(8, null, null));
+		Assert.assertEquals(2, WorkStealingModuleScheduler.parallelism(8, null, "4"));
+		Assert.assertEquals(5, WorkStealingModuleScheduler.parallelism(16, null, "3"));
+		Assert.assertEquals(4, WorkStealingModuleScheduler.parallelism(8, null, " 2 "));
+		// at least two module threads
+		Assert.assertEquals(2, WorkStealingModuleScheduler.parallelism(1, null, null));
+		Assert.assertEquals(2, WorkStealingModuleScheduler.parallelism(8, null, "16"));
+		// explicit parallelism takes precedence
+		Assert.assertEquals(6, WorkStealingModuleScheduler.parallelism(8, "6", "4"));
+		Assert.assertEquals(2, WorkStealingModuleScheduler.parallelism(8, "1", null));
+	}
+	
+	@Test
+	public void testInvalidParallelism() {
+		// invalid OMP_NUM_THREADS values are ignored
+		Assert.assertEquals(8, WorkStealingModuleScheduler.parallelism(8, null, "abc"));
+		Assert.assertEquals(8, WorkStealingModuleScheduler.parallelism(8, null, ""));
+		Assert.assertEquals(8, WorkStealingModuleScheduler.parallelism(8, null, "0"));
+		Assert.assertEquals(8, WorkStealingModuleScheduler.parallelism(8, null, "-2"));
+		// invalid parallelism falls back to the BLAS threads
+		Assert.assertEquals(4, WorkStealingModuleScheduler.parallelism(8, "many", "2"));
+	}
+	
+	@Test
+	public void testMaxPoolSize() {
+		Assert.assertEquals(8, WorkStealingModuleScheduler.maxPoolSize(4, null));
+		Assert.assertEquals(6, WorkStealingModuleScheduler.maxPoolSize(4, "6"));
+		// never below the parallelism
+		Assert.assertEquals(4, WorkStealingModuleScheduler.maxPoolSize(4, "1"));
+		Assert.assertEquals(8, WorkStealingModuleScheduler.maxPoolSize(4, "abc"));
+	}
+	
+	@Test
+	public void testBoundedPool() throws Exception {
+		ForkJoinPool pool = AbstractModuleScheduler.forkJoinPool(2, 3, 
+				AbstractModuleScheduler.forkJoinThreadFactory("test", null));
+		try {
+			// all tasks block, the pool can only add one spare thread
+			CountDownLatch started = new CountDownLatch(3);
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(6);
+			for(int i=0;i<6;i++){
+				pool.execute(() -> {
+					started.countDown();
+					try {
+						ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+							@Override
+							public boolean block() throws InterruptedException {
+								release.await();
+								return true;
+							}
+							
+							@Override
+							public boolean isReleasable() {
+								return release.getCount() == 0;
+							}
+						});
+					} catch(InterruptedException e){
+					}
+					done.countDown();
+				});
+			}
+			
+			Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+			Thread.sleep(100);
+			Assert.assertTrue(pool.getPoolSize() <= 3);
+			
+			release.countDown();
+			Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testWorkStealingShared() {
+		WorkStealingModuleScheduler scheduler = new WorkStealingModuleScheduler();
+		scheduler.activate(context("be.iminds.iot.dianne.scheduler.parallelism", "3"));
+		try {
+			UUID nn1 = UUID.randomUUID();
+			UUID nn2 = UUID.randomUUID();
+			
+			// one pool shared by all neural network instances
+			ExecutorService run = scheduler.getRunExecutor(nn1, config());
+			Assert.assertTrue(run instanceof ForkJoinPool);
+			Assert.assertEquals(3, ((ForkJoinPool)run).getParallelism());
+			Assert.assertSame(run, scheduler.getRunExecutor(nn2, config()));
+			
+			// but a listener thread per instance
+			ExecutorService listener = scheduler.getListenerExecutor(nn1, config());
+			Assert.assertSame(listener, scheduler.getListenerExecutor(nn1, config()));
+			Assert.assertNotSame(listener, scheduler.getListenerExecutor(nn2, config()));
+			
+			scheduler.release(nn1);
+			Assert.assertTrue(listener.isShutdown());
+			Assert.assertFalse(run.isShutdown());
+			Assert.assertNotSame(listener, scheduler.getListenerExecutor(nn1, config()));
+		} finally {
+			scheduler.deactivate();
+		}
+	}
+	
+	@Test
+	public void testDedicated() {
+		DedicatedModuleScheduler scheduler = new DedicatedModuleScheduler();
+		try {
+			UUID nn1 = UUID.randomUUID();
+			UUID nn2 = UUID.randomUUID();
+			UUID nn3 = UUID.randomUUID();
+			
+			// a pool per neural network instance
+			ForkJoinPool p1 = (ForkJoinPool)scheduler.getRunExecutor(nn1, config("scheduler.threads", "3"));
+			Assert.assertEquals(3, p1.getParallelism());
+			Assert.assertSame(p1, scheduler.getRunExecutor(nn1, config()));
+			
+			ForkJoinPool p2 = (ForkJoinPool)scheduler.getRunExecutor(nn2, config("scheduler.cores", "0-3"));
+			Assert.assertNotSame(p1, p2);
+			Assert.assertEquals(4, p2.getParallelism());
+			
+			ForkJoinPool p3 = (ForkJoinPool)scheduler.getRunExecutor(nn3, config("scheduler.cores", "0,2,4"));
+			Assert.assertEquals(3, p3.getParallelism());
+			
+			scheduler.release(nn1);
+			Assert.assertTrue(p1.isShutdown());
+			Assert.assertFalse(p2.isShutdown());
+		} finally {
+			scheduler.deactivate();
+		}
+	}
+}
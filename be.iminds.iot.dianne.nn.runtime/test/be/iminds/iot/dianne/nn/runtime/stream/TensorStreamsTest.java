@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn.runtime.stream;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.nn.module.BackwardListener;
+import be.iminds.iot.dianne.api.nn.module.ForwardListener;
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.ModuleException;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class TensorStreamsTest {
+
+	private static final int CREDITS = 2;
+	
+	private final UUID nnId = UUID.randomUUID();
+	private final UUID from = UUID.randomUUID();
+	private final UUID to = UUID.randomUUID();
+	
+	private RecordingModule target;
+	private RecordingModule proxy;
+	
+	private TensorStreams sender;
+	private TensorStreams receiver;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		target = new RecordingModule(to);
+		proxy = new RecordingModule(to);
+		
+		// two runtimes on localhost
+		sender = new TensorStreams("127.0.0.1", 0, CREDITS, (m, nn) -> null);
+		receiver = new TensorStreams("127.0.0.1", 0, CREDITS, 
+				(m, nn) -> m.equals(to) && nn.equals(nnId) ? target : null);
+		
+		sender.addEndpoint(to, nnId, receiver.getEndpoint());
+	}
+	
+	@After
+	public void teardown() {
+		sender.close();
+		receiver.close();
+	}
+	
+	// the stream is connected in the background
+	static void await(Module m, boolean connected) throws InterruptedException {
+		StreamedModule s = (StreamedModule)m;
+		long timeout = System.currentTimeMillis()+5000;
+		while(s.isConnected() != connected || (!connected && !s.isClosed())){
+			Assert.assertTrue("Timeout waiting for stream", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+	}
+	
+	@Test
+	public void testForward() throws Exception {
+		Module next = sender.forward(from, to, nnId, proxy);
+		Assert.assertTrue(next instanceof StreamedModule);
+		Assert.assertEquals(to, next.getId());
+		await(next, true);
+		
+		for(int i=0;i<10;i++){
+			Tensor t = new Tensor(3, 1000);
+			t.fill(i);
+			next.forward(from, t, "tag"+i, "batch");
+		}
+		
+		for(int i=0;i<10;i++){
+			Received r = target.received.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(r);
+			Assert.assertEquals(from, r.from);
+			Assert.assertTrue(r.forward);
+			Assert.assertArrayEquals(new String[]{"tag"+i, "batch"}, r.tags);
+			Assert.assertArrayEquals(new int[]{3, 1000}, r.dims);
+			Assert.assertEquals(3000, r.data.length);
+			for(float f : r.data){
+				Assert.assertEquals(i, f, 0.0f);
+			}
+		}
+		
+		Assert.assertTrue(proxy.received.isEmpty());
+	}
+	
+	@Test
+	public void testBackward() throws Exception {
+		Module prev = sender.backward(from, to, nnId, proxy);
+		await(prev, true);
+		
+		Tensor t = new Tensor(2, 2);
+		t.set(new float[]{1, 2, 3, 4});
+		// a forward on a backward stream goes via the proxy
+		prev.forward(from, t);
+		prev.backward(from, t);
+		
+		Received r = target.received.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull(r);
+		Assert.assertFalse(r.forward);
+		Assert.assertArrayEquals(new float[]{1, 2, 3, 4}, r.data, 0.0f);
+		
+		Assert.assertEquals(1, proxy.received.size());
+		Assert.assertTrue(proxy.received.poll().forward);
+	}
+	
+	@Test
+	public void testNarrowed() throws Exception {
+		Module next = sender.forward(from, to, nnId, proxy);
+		await(next, true);
+		
+		Tensor t = new Tensor(4, 4);
+		t.set(new float[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15});
+		next.forward(from, t.narrow(1, 1, 2));
+		
+		Received r = target.received.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull(r);
+		Assert.assertArrayEquals(new int[]{4, 2}, r.dims);
+		Assert.assertArrayEquals(new float[]{1, 2, 5, 6, 9, 10, 13, 14}, r.data, 0.0f);
+	}
+	
+	@Test
+	public void testFlowControl() throws Exception {
+		Module next = sender.forward(from, to, nnId, proxy);
+		await(next, true);
+		
+		target.gate = new CountDownLatch(1);
+		
+		CountDownLatch sent = new CountDownLatch(CREDITS+2);
+		Thread t = new Thread(() -> {
+			for(int i=0;i<CREDITS+2;i++){
+				Tensor tensor = new Tensor(10);
+				tensor.fill(i);
+				next.forward(from, tensor);
+				sent.countDown();
+			}
+		});
+		t.start();
+		
+		// only the tensors for which credits were available can be sent
+		Assert.assertFalse(sent.await(500, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(2, sent.getCount());
+		
+		target.gate.countDown();
+		Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+		
+		for(int i=0;i<CREDITS+2;i++){
+			Received r = target.received.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(r);
+			Assert.assertEquals(i, r.data[0], 0.0f);
+		}
+	}
+	
+	@Test
+	public void testReuseEdge() throws Exception {
+		Module next = sender.forward(from, to, nnId, proxy);
+		Assert.assertSame(next, sender.forward(from, to, nnId, proxy));
+		
+		// a new proxy (e.g. the remote module was redeployed) opens a new stream
+		RecordingModule other = new RecordingModule(to);
+		Module next2 = sender.forward(from, to, nnId, other);
+		Assert.assertNotSame(next, next2);
+	}
+	
+	@Test
+	public void testNotConnected() throws Exception {
+		// tensors go through the proxy while the stream is not connected
+		sender.addEndpoint(to, nnId, "127.0.0.1:1");
+		Module next = sender.forward(from, to, nnId, proxy);
+		
+		Tensor t = new Tensor(2);
+		t.fill(1);
+		next.forward(from, t);
+		Assert.assertEquals(1, proxy.received.size());
+		
+		await(next, false);
+		next.forward(from, t);
+		Assert.assertEquals(2, proxy.received.size());
+		Assert.assertTrue(target.received.isEmpty());
+	}
+	
+	@Test
+	public void testFallback() throws Exception {
+		// unknown module at the remote end
+		UUID unknown = UUID.randomUUID();
+		sender.addEndpoint(unknown, nnId, receiver.getEndpoint());
+		RecordingModule p = new RecordingModule(unknown);
+		Module s = sender.forward(from, unknown, nnId, p);
+		await(s, false);
+		Tensor t = new Tensor(2);
+		t.fill(1);
+		s.forward(from, t);
+		Assert.assertEquals(1, p.received.size());
+		
+		// no endpoint advertised
+		Assert.assertSame(proxy, sender.forward(from, to, UUID.randomUUID(), proxy));
+		
+		// stream closed when the remote module is removed
+		Module next = sender.forward(from, to, nnId, proxy);
+		await(next, true);
+		sender.removeEndpoint(to, nnId);
+		next.forward(from, t);
+		Assert.assertEquals(1, proxy.received.size());
+		Assert.assertTrue(target.received.isEmpty());
+	}
+	
+	private static class Received {
+		UUID from;
+		boolean forward;
+		String[] tags;
+		int[] dims;
+		float[] data;
+	}
+	
+	private static class RecordingModule implements Module {
+
+		private final UUID id;
+		private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+		private volatile CountDownLatch gate;
+		
+		public RecordingModule(UUID id) {
+			this.id = id;
+		}
+		
+		private void record(UUID from, Tensor t, boolean forward, String... tags){
+			if(gate != null){
+				try {
+					gate.await();
+				} catch(InterruptedException e){
+				}
+			}
+			Received r = new Received();
+			r.from = from;
+			r.forward = forward;
+			r.tags = tags;
+			r.dims = t.dims();
+			r.data = t.get();
+			received.add(r);
+		}
+		
+		@Override
+		public UUID getId() {
+			return id;
+		}
+
+		@Override
+		public void forward(UUID moduleId, Tensor input, String... tags) {
+			record(moduleId, input, true, tags);
+		}
+
+		@Override
+		public void forward(UUID moduleId, ModuleException e, String... tags) {
+		}
+
+		@Override
+		public void backward(UUID moduleId, Tensor gradOutput, String... tags) {
+			record(moduleId, gradOutput, false, tags);
+		}
+
+		@Override
+		public void backward(UUID moduleId, ModuleException e, String... tags) {
+		}
+
+		@Override
+		public void setNext(Module... next) {
+		}
+
+		@Override
+		public void setPrevious(Module... prev) {
+		}
+
+		@Override
+		public void addForwardListener(ForwardListener listener) {
+		}
+
+		@Override
+		public void removeForwardListener(ForwardListener listener) {
+		}
+
+		@Override
+		public void addBackwardListener(BackwardListener listener) {
+		}
+
+		@Override
+		public void removeBackwardListener(BackwardListener listener) {
+		}
+
+		@Override
+		public void setMode(EnumSet<Mode> mode) {
+		}
+
+		@Override
+		public void setProperty(String key, Object val) {
+		}
+	}
+}
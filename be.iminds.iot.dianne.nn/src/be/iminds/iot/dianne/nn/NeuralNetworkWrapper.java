@@ -82,9 +82,10 @@ public class NeuralNetworkWrapper implements NeuralNetwork {
 	private Map<String, List<UUID>> interestedModules = Collections.synchronizedMap(new HashMap<String, List<UUID>>());
 
 	private Map<UUID, List<Tensor>> sequenceInputs = new HashMap<>();
-	private Map<UUID, List<Tensor>> sequenceOutputs = new HashMap<>();
-	private Map<UUID, List<Tensor>> sequenceMemories = new HashMap<>();
-	private Map<UUID, List<Tensor>> sequenceGradInputs = new HashMap<>();
+	private SequenceStorage sequenceOutputs = new SequenceStorage();
+	private SequenceStorage sequenceMemories = new SequenceStorage();
+	private SequenceStorage sequenceGradInputs = new SequenceStorage();
+	private Map<UUID, Tensor> detachedMemories = new HashMap<>();
 
 	
 	private boolean valid = true;
@@ -211,30 +212,25 @@ public class NeuralNetworkWrapper implements NeuralNetwork {
 		}
 
 		// TODO what if other sequence already executing?!
-		return forward(0, inputIds, outputIds, inputs, tags);
-	}
-
-	private Promise<NeuralNetworkSequenceResult> forward(int index, UUID[] inputIds, UUID[] outputIds, List<Tensor>[] inputs, String... tags){
-		int sequenceLength = inputs[0].size();
-
-		storeSequenceMemories(index);
-
-		return forward(inputIds, outputIds, getSequenceInputs(index, inputs), tags).then(p -> {
-			// store output
-			storeSequenceOutputs(index, p.getValue().tensors);
-
-			// increment counter
-			int next = index + 1;
+		Deferred<NeuralNetworkSequenceResult> d = new Deferred<>();
+		try {
+			int sequenceLength = inputs[0].size();
 			
-			// check if we are done
-			if(next == sequenceLength){
-				Deferred<NeuralNetworkSequenceResult> d = new Deferred<>();
-				d.resolve(new NeuralNetworkSequenceResult(sequenceOutputs, tags));
-				return d.getPromise();
-			} else {
-				return forward(next, inputIds, outputIds, inputs, tags);
+			// unroll iteratively, waiting for each step as the next step depends on the memory state
+			for(int index=0;index<sequenceLength;index++){
+				storeSequenceMemories(index);
+				
+				NeuralNetworkResult r = await(forward(inputIds, outputIds, getSequenceInputs(index, inputs), tags));
+				storeSequenceOutputs(index, r.tensors);
 			}
-		});
+			// also keep the memory state at the end of the sequence, to restore after backward
+			storeSequenceMemories(sequenceLength);
+			
+			d.resolve(new NeuralNetworkSequenceResult(sequenceOutputs.view(sequenceLength), tags));
+		} catch(Throwable t){
+			d.fail(t);
+		}
+		return d.getPromise();
 	}
 	
 	public List<Tensor> forward(List<Tensor> input, String... tags){
@@ -331,41 +327,36 @@ public class NeuralNetworkWrapper implements NeuralNetwork {
 		
 	
 		// TODO what if other sequence already executing?!
-		return backward(gradOutputs[0].size()-1, outputIds, inputIds, gradOutputs, accGradParameters, tags);
-	}
-
-	private Promise<NeuralNetworkSequenceResult> backward(int index, UUID[] outputIds, UUID[] inputIds, List<Tensor>[] gradOutputs, boolean accGradParameters, String... tags){
-		// first forward again with correct input and memories
-		loadSequenceMemories(index);
-		
-		Tensor[] ins = new Tensor[inputIds == null ? 1 : inputIds.length];
-		if(inputIds == null){
-			ins[0] = sequenceInputs.values().iterator().next().get(index);
-		} else {
-			for(int i=0;i<inputIds.length;i++){
-				ins[i] = sequenceInputs.get(inputIds[i]).get(index);
-			}
-		}
-		
-		return forward(inputIds, outputIds, ins, tags).then(p -> {
-			return backward(outputIds, inputIds, getSequenceInputs(index, gradOutputs), accGradParameters, tags).then( pp -> {
+		Deferred<NeuralNetworkSequenceResult> d = new Deferred<>();
+		try {
+			int sequenceLength = gradOutputs[0].size();
+			
+			Tensor[] ins = new Tensor[inputIds == null ? 1 : inputIds.length];
+			for(int index=sequenceLength-1;index>=0;index--){
+				// first forward again with correct input and memories
+				loadSequenceMemories(index);
 				
-				storeSequenceGradInputs(index, pp.getValue().tensors);
-
-				// decrement counter
-				int next = index - 1;
-
-				// check if we are done
-				if(next < 0){
-					Deferred<NeuralNetworkSequenceResult> d = new Deferred<>();
-					d.resolve(new NeuralNetworkSequenceResult(sequenceGradInputs, tags));
-					return d.getPromise();
+				if(inputIds == null){
+					ins[0] = sequenceInputs.values().iterator().next().get(index);
 				} else {
-					return backward(next, outputIds, inputIds, gradOutputs, accGradParameters, tags);
+					for(int i=0;i<inputIds.length;i++){
+						ins[i] = sequenceInputs.get(inputIds[i]).get(index);
+					}
 				}
+				await(forward(inputIds, outputIds, ins, tags));
 				
-			});
-		});
+				NeuralNetworkResult r = await(backward(outputIds, inputIds, getSequenceInputs(index, gradOutputs), accGradParameters, tags));
+				storeSequenceGradInputs(index, r.tensors);
+			}
+			
+			// restore memory state at the end of the sequence, so a next sequence can continue from there
+			loadSequenceMemories(sequenceLength);
+			
+			d.resolve(new NeuralNetworkSequenceResult(sequenceGradInputs.view(sequenceLength), tags));
+		} catch(Throwable t){
+			d.fail(t);
+		}
+		return d.getPromise();
 	}
 	
 
@@ -386,59 +377,26 @@ public class NeuralNetworkWrapper implements NeuralNetwork {
 	
 	
 	private void storeSequenceOutputs(int index, Map<UUID, Tensor> outputs){
-		outputs.entrySet().forEach(e -> {
-			List<Tensor> outs = sequenceOutputs.get(e.getKey());
-			if(outs == null){
-				outs = new ArrayList<>();
-				sequenceOutputs.put(e.getKey(), outs);
-			}
-			
-			while(outs.size() <= index){
-				outs.add(new Tensor());
-			}
-			
-			e.getValue().copyInto(outs.get(index));
-		});
+		outputs.entrySet().forEach(e -> e.getValue().copyInto(sequenceOutputs.get(e.getKey(), index)));
 	}
 	
 	private void storeSequenceMemories(int index){
-		memories.entrySet().forEach(e ->{
-			List<Tensor> mems = sequenceMemories.get(e.getKey());
-			if(mems == null){
-				mems = new ArrayList<Tensor>();
-				sequenceMemories.put(e.getKey(), mems);
-			}
-			
-			while(mems.size() <= index){
-				mems.add(new Tensor());
-			}
-			
-			e.getValue().getMemory().copyInto(mems.get(index));
-		});	
+		memories.entrySet().forEach(e -> e.getValue().getMemory().copyInto(sequenceMemories.get(e.getKey(), index)));	
 	}
 	
 	private void storeSequenceGradInputs(int index, Map<UUID, Tensor> gradInputs){
-		gradInputs.entrySet().forEach(e -> {
-			List<Tensor> gradIns = sequenceGradInputs.get(e.getKey());
-			if(gradIns == null){
-				gradIns = new ArrayList<>();
-				sequenceGradInputs.put(e.getKey(), gradIns);
-			}
-			
-			while(gradIns.size() <= index){
-				gradIns.add(new Tensor());
-			}
-			
-			e.getValue().copyInto(gradIns.get(index));
-		});
+		gradInputs.entrySet().forEach(e -> e.getValue().copyInto(sequenceGradInputs.get(e.getKey(), index)));
 	}
 	
 	private void loadSequenceMemories(int index){
-		memories.entrySet().forEach(e ->{
-			List<Tensor> mems = sequenceMemories.get(e.getKey());
-			Tensor state = mems.get(index);
-			e.getValue().setMemory(state);
-		});	
+		memories.entrySet().forEach(e -> e.getValue().setMemory(sequenceMemories.get(e.getKey(), index)));	
+	}
+	
+	private <T> T await(Promise<T> p) throws Throwable {
+		if(p.getFailure() != null)
+			throw p.getFailure();
+		
+		return p.getValue();
 	}
 	
 	private Tensor[] getSequenceInputs(int index, List<Tensor>[] inputs){
@@ -999,4 +957,51 @@ public class NeuralNetworkWrapper implements NeuralNetwork {
 	public void resetMemory(int batchSize){
 		memories.values().forEach(m -> m.reset(batchSize));
 	}
+	
+	@Override
+	public void detachMemory(){
+		memories.entrySet().forEach(e -> {
+			Memory m = e.getValue();
+			
+			// keep the current state, but reset to clear the gradient flowing back into the memory
+			Tensor state = m.getMemory().copyInto(detachedMemories.get(e.getKey()));
+			detachedMemories.put(e.getKey(), state);
+			
+			m.reset(state.dim() > 1 ? state.size(0) : 0);
+			m.setMemory(state);
+		});
+	}
+	
+	/**
+	 * Per step storage of a sequence for each module. The Tensors are kept and reused 
+	 * for the next sequence, so once allocated no new Tensors are created as long as
+	 * sequences are not getting longer.
+	 */
+	private static class SequenceStorage {
+		
+		private final Map<UUID, List<Tensor>> steps = new HashMap<>();
+		
+		Tensor get(UUID id, int index){
+			List<Tensor> l = steps.get(id);
+			if(l == null){
+				l = new ArrayList<>();
+				steps.put(id, l);
+			}
+			
+			while(l.size() <= index){
+				l.add(new Tensor());
+			}
+			
+			return l.get(index);
+		}
+		
+		/**
+		 * @return the first length steps of each module
+		 */
+		Map<UUID, List<Tensor>> view(int length){
+			Map<UUID, List<Tensor>> view = new HashMap<>();
+			steps.entrySet().forEach(e -> view.put(e.getKey(), e.getValue().subList(0, Math.min(length, e.getValue().size()))));
+			return view;
+		}
+	}
 }
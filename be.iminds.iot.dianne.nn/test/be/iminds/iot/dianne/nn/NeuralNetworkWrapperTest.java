@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.nn;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+import be.iminds.iot.dianne.api.nn.NeuralNetworkSequenceResult;
+import be.iminds.iot.dianne.api.nn.module.BackwardListener;
+import be.iminds.iot.dianne.api.nn.module.ForwardListener;
+import be.iminds.iot.dianne.api.nn.module.Input;
+import be.iminds.iot.dianne.api.nn.module.Memory;
+import be.iminds.iot.dianne.api.nn.module.Module;
+import be.iminds.iot.dianne.api.nn.module.Output;
+import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorOps;
+
+public class NeuralNetworkWrapperTest {
+
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	private final UUID inputId = UUID.randomUUID();
+	private final UUID outputId = UUID.randomUUID();
+	private final UUID memoryId = UUID.randomUUID();
+	
+	private ForwardListener forwardListener;
+	private BackwardListener backwardListener;
+	
+	// memory state of the network, the output is the sum of all inputs so far
+	private Tensor memory;
+	private List<String> log;
+	
+	private NeuralNetworkWrapper nn;
+	
+	@Before
+	public void setup(){
+		memory = new Tensor(2);
+		memory.fill(0.0f);
+		log = new ArrayList<>();
+		
+		Input input = module(Input.class, inputId, (proxy, method, args) -> {
+			if(method.getName().equals("input")){
+				TensorOps.add(memory, memory, (Tensor)args[0]);
+				forwardListener.onForward(outputId, memory.copyInto(null), (String[])args[1]);
+			}
+			return null;
+		});
+		Output output = module(Output.class, outputId, (proxy, method, args) -> {
+			if(method.getName().equals("backpropagate")){
+				// the gradient flowing back is scaled with the memory state
+				Tensor gradInput = TensorOps.add(null, (Tensor)args[0], memory);
+				backwardListener.onBackward(inputId, gradInput, (String[])args[1]);
+			}
+			return null;
+		});
+		Memory mem = module(Memory.class, memoryId, (proxy, method, args) -> {
+			switch(method.getName()){
+			case "getMemory":
+				return memory;
+			case "setMemory":
+				((Tensor)args[0]).copyInto(memory);
+				break;
+			case "reset":
+				log.add("reset");
+				memory.fill(0.0f);
+				break;
+			}
+			return null;
+		});
+		
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> {
+					if(method.getName().equals("registerService")){
+						if(args[1] instanceof ForwardListener){
+							forwardListener = (ForwardListener)args[1];
+						} else if(args[1] instanceof BackwardListener){
+							backwardListener = (BackwardListener)args[1];
+						}
+					}
+					return null;
+				});
+		
+		NeuralNetworkInstanceDTO dto = new NeuralNetworkInstanceDTO(UUID.randomUUID(), "test", new HashMap<>());
+		nn = new NeuralNetworkWrapper(dto, Arrays.asList(input, output, mem), null, context);
+		nn.register();
+	}
+	
+	private <T extends Module> T module(Class<T> type, UUID id, InvocationHandler handler){
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{type}, (proxy, method, args) -> {
+					if(method.getName().equals("getId"))
+						return id;
+					return handler.invoke(proxy, method, args);
+				}));
+	}
+	
+	private List<Tensor> sequence(int length, float value){
+		List<Tensor> sequence = new ArrayList<>();
+		for(int i=0;i<length;i++){
+			Tensor t = new Tensor(2);
+			t.fill(value);
+			sequence.add(t);
+		}
+		return sequence;
+	}
+	
+	@Test
+	public void testSequenceForward() throws Exception {
+		NeuralNetworkSequenceResult r = nn.forward(inputId, outputId, sequence(5, 1.0f)).getValue();
+		
+		List<Tensor> outputs = r.tensors.get(outputId);
+		Assert.assertEquals(5, outputs.size());
+		for(int i=0;i<5;i++){
+			Assert.assertEquals(i+1, outputs.get(i).get(0), 0.0001f);
+		}
+	}
+	
+	@Test
+	public void testSequenceStorageReused() throws Exception {
+		List<Tensor> first = new ArrayList<>(nn.forward(inputId, outputId, sequence(5, 1.0f)).getValue().tensors.get(outputId));
+		
+		nn.resetMemory();
+		List<Tensor> second = nn.forward(inputId, outputId, sequence(3, 2.0f)).getValue().tensors.get(outputId);
+		
+		// a shorter sequence reuses the storage of the first steps
+		Assert.assertEquals(3, second.size());
+		for(int i=0;i<3;i++){
+			Assert.assertSame(first.get(i), second.get(i));
+			Assert.assertEquals(2*(i+1), second.get(i).get(0), 0.0001f);
+		}
+		
+		// a longer sequence only adds storage for the extra steps
+		nn.resetMemory();
+		List<Tensor> third = nn.forward(inputId, outputId, sequence(7, 1.0f)).getValue().tensors.get(outputId);
+		Assert.assertEquals(7, third.size());
+		for(int i=0;i<5;i++){
+			Assert.assertSame(first.get(i), third.get(i));
+		}
+		Assert.assertEquals(7, third.get(6).get(0), 0.0001f);
+	}
+	
+	@Test
+	public void testSequenceBackward() throws Exception {
+		nn.forward(inputId, outputId, sequence(4, 1.0f)).getValue();
+		
+		List<Tensor> gradInputs = nn.backward(outputId, inputId, sequence(4, 0.0f), false).getValue().tensors.get(inputId);
+		
+		// each step is forwarded again from the stored memory state before the backward
+		Assert.assertEquals(4, gradInputs.size());
+		for(int i=0;i<4;i++){
+			Assert.assertEquals(i+1, gradInputs.get(i).get(0), 0.0001f);
+		}
+		
+		// the memory state at the end of the sequence is restored
+		Assert.assertEquals(4, memory.get(0), 0.0001f);
+	}
+	
+	@Test
+	public void testDetachMemory() throws Exception {
+		nn.forward(inputId, outputId, sequence(3, 1.0f)).getValue();
+		Tensor state = memory;
+		
+		nn.detachMemory();
+		
+		// the memory is reset to clear the gradient, but the state is kept
+		Assert.assertEquals(Arrays.asList("reset"), log);
+		Assert.assertSame(state, memory);
+		Assert.assertEquals(3, memory.get(0), 0.0001f);
+		
+		// the next window continues from the detached state
+		List<Tensor> outputs = nn.forward(inputId, outputId, sequence(2, 1.0f)).getValue().tensors.get(outputId);
+		Assert.assertEquals(4, outputs.get(0).get(0), 0.0001f);
+		Assert.assertEquals(5, outputs.get(1).get(0), 0.0001f);
+		
+		nn.detachMemory();
+		Assert.assertEquals(Arrays.asList("reset", "reset"), log);
+		Assert.assertEquals(5, memory.get(0), 0.0001f);
+	}
+}
@@ -32,9 +32,11 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -48,6 +50,8 @@ import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -216,6 +220,52 @@ public class DianneFileRepository implements DianneRepository {
 		return parameters;
 	}
 	
+	@Override
+	public long parametersVersion(UUID moduleId, String... tag) {
+		try {
+			lock.read(moduleId);
+			
+			// look up the parameters file in the same order as load, 
+			// use a hash of the content as version
+			String pid = parametersId(moduleId, tag);
+			File f = new File(dir+File.separator+subdir+File.separator+pid);
+			if(f.exists()){
+				return version(f);
+			}
+			
+			File d = new File(dir);
+			for(File dd : d.listFiles()){
+				if(dd.isDirectory()){
+					f = new File(dd, pid);
+					if(f.exists()){
+						return version(f);
+					}
+				} else {
+					try (ZipFile zip = new ZipFile(dd)){
+						ZipEntry entry = zip.getEntry(pid);
+						if(entry != null){
+							if(entry.getCrc() >= 0){
+								return version(entry.getCrc(), entry.getSize());
+							}
+							try (InputStream is = zip.getInputStream(entry)){
+								return version(is);
+							}
+						}
+					} catch(IOException e){
+						// ignore files that are no zip
+					}
+				}
+			}
+			return -1;
+		} catch(InterruptedException e){
+			throw new RuntimeException("Interrupted while checking parameters of module "+moduleId, e);
+		} catch(IOException e){
+			throw new RuntimeException("Failed to check parameters of module "+moduleId, e);
+		} finally {
+			lock.free(moduleId);
+		}
+	}
+	
 	@Override
 	public void storeParameters(UUID nnId, UUID moduleId, Tensor parameters, String... tag) {
 		store(subdir, moduleId, parameters, tag);
@@ -423,7 +473,9 @@ public class DianneFileRepository implements DianneRepository {
 			
 			File f = new File(dir+File.separator+subdir+File.separator+parametersId(moduleId, tag));
 	
-			try(DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+			CRC32 crc = new CRC32();
+			try(DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+					new CheckedOutputStream(new FileOutputStream(f), crc)))) {
 				float[] data = parameters.get();
 				os.writeInt(data.length);
 				for(int i=0;i<data.length;i++){
@@ -431,6 +483,8 @@ public class DianneFileRepository implements DianneRepository {
 				}
 				os.flush();
 				os.close();
+				
+				storeVersion(f, version(crc.getValue(), f.length()));
 			} catch(IOException e){
 				e.printStackTrace();
 			}
@@ -461,6 +515,67 @@ public class DianneFileRepository implements DianneRepository {
 		}
 	}
 	
+	/**
+	 * The version of a parameters file is derived from the CRC32 and the length of its content,
+	 * so it changes with each store, independent of the file timestamp resolution. 
+	 * 
+	 * It is persisted in a hidden file next to the parameters file when storing, and 
+	 * calculated from the content for parameters that were stored without version.
+	 */
+	private long version(File f) throws IOException {
+		File v = versionFile(f);
+		if(v.exists()){
+			try (DataInputStream is = new DataInputStream(new FileInputStream(v))){
+				long version = is.readLong();
+				long length = is.readLong();
+				long modified = is.readLong();
+				// check whether the parameters file was not replaced by other means
+				if(length == f.length() && modified == f.lastModified()){
+					return version;
+				}
+			} catch(IOException e){
+				// corrupt version file, calculate again
+			}
+		}
+		
+		try (InputStream is = new FileInputStream(f)){
+			return version(is);
+		}
+	}
+	
+	private long version(InputStream is) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+		long length = 0;
+		int n;
+		while((n = is.read(buffer)) > 0){
+			crc.update(buffer, 0, n);
+			length += n;
+		}
+		return version(crc.getValue(), length);
+	}
+	
+	private long version(long crc, long length){
+		// parameter files are at most 4*Integer.MAX_VALUE+4 bytes, so this is always positive
+		return ((length & 0x7fffffffL) << 32) | (crc & 0xffffffffL);
+	}
+	
+	private void storeVersion(File f, long version) throws IOException {
+		File v = versionFile(f);
+		File tmp = new File(v.getPath()+".tmp");
+		try (DataOutputStream os = new DataOutputStream(new FileOutputStream(tmp))){
+			os.writeLong(version);
+			os.writeLong(f.length());
+			os.writeLong(f.lastModified());
+		}
+		Files.move(tmp.toPath(), v.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	private File versionFile(File f){
+		// hidden file that does not start with the moduleId, so it is not picked up by listTags
+		return new File(f.getParentFile(), "."+f.getName()+".version");
+	}
+	
 	private String parametersId(UUID id, String[] tag){
 		String pid = id.toString();
 		if(tag!=null && tag.length>0){
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.repository.file;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class DianneFileRepositoryTest {
+
+	private File dir;
+	private DianneFileRepository repository;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		dir = Files.createTempDirectory("dianne-repository").toFile();
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> 
+					"getProperty".equals(method.getName()) && "be.iminds.iot.dianne.storage".equals(args[0]) 
+						? dir.getAbsolutePath() : null);
+		repository = new DianneFileRepository();
+		repository.activate(context);
+	}
+	
+	@After
+	public void teardown() {
+		repository.deactivate();
+		delete(dir);
+	}
+	
+	private void delete(File f){
+		if(f.isDirectory()){
+			for(File c : f.listFiles()){
+				delete(c);
+			}
+		}
+		f.delete();
+	}
+	
+	private Tensor tensor(float value){
+		Tensor t = new Tensor(10);
+		t.fill(value);
+		return t;
+	}
+	
+	@Test
+	public void testVersion() throws Exception {
+		UUID moduleId = UUID.randomUUID();
+		Assert.assertEquals(-1, repository.parametersVersion(moduleId, "a"));
+		
+		// stores within the same file timestamp tick should still change the version
+		repository.storeParameters(UUID.randomUUID(), moduleId, tensor(1.0f), "a");
+		long v1 = repository.parametersVersion(moduleId, "a");
+		repository.storeParameters(UUID.randomUUID(), moduleId, tensor(2.0f), "a");
+		long v2 = repository.parametersVersion(moduleId, "a");
+		Assert.assertTrue(v1 >= 0);
+		Assert.assertTrue(v2 >= 0);
+		Assert.assertNotEquals(v1, v2);
+		
+		// same content, same version
+		repository.storeParameters(UUID.randomUUID(), moduleId, tensor(1.0f), "a");
+		Assert.assertEquals(v1, repository.parametersVersion(moduleId, "a"));
+		
+		// other tags are versioned separately
+		Assert.assertEquals(-1, repository.parametersVersion(moduleId, "b"));
+	}
+	
+	@Test
+	public void testVersionWithoutVersionFile() throws Exception {
+		UUID moduleId = UUID.randomUUID();
+		repository.storeParameters(UUID.randomUUID(), moduleId, tensor(1.0f));
+		long v = repository.parametersVersion(moduleId);
+		
+		// parameters stored by an older version, calculate from the content
+		File versionFile = new File(dir, "weights"+File.separator+"."+moduleId+".version");
+		Assert.assertTrue(versionFile.exists());
+		versionFile.delete();
+		Assert.assertEquals(v, repository.parametersVersion(moduleId));
+	}
+	
+	@Test
+	public void testTags() throws Exception {
+		UUID moduleId = UUID.randomUUID();
+		repository.storeParameters(UUID.randomUUID(), moduleId, tensor(1.0f), "a");
+		repository.storeParameters(UUID.randomUUID(), moduleId, tensor(1.0f), "b");
+		
+		// version files are not listed as tags
+		Assert.assertEquals(new TreeSet<>(Arrays.asList("a", "b")), repository.listTags(moduleId));
+		Assert.assertEquals(Collections.emptyList(), repository.availableNeuralNetworks());
+	}
+}
@@ -52,6 +52,7 @@ import be.iminds.iot.dianne.api.nn.Dianne;
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
 import be.iminds.iot.dianne.api.nn.util.StrategyFactory;
+import be.iminds.iot.dianne.api.repository.ParameterSubscriber;
 import be.iminds.iot.dianne.api.repository.RepositoryListener;
 import be.iminds.iot.dianne.api.rl.agent.ActionController;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
@@ -61,6 +62,7 @@ import be.iminds.iot.dianne.api.rl.agent.AgentProgress;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
 import be.iminds.iot.dianne.api.rl.environment.Environment;
+import be.iminds.iot.dianne.api.rl.environment.VectorEnvironment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.config.AgentConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -73,7 +75,8 @@ public class AgentImpl implements Agent {
 	private final List<AgentListener> listeners = new CopyOnWriteArrayList<>();
 	private final ExecutorService listenerThread = Executors.newSingleThreadExecutor();
 
-	private Map<String, Environment> envs = new HashMap<String, Environment>();
+	private Map<String, List<Environment>> envs = new HashMap<String, List<Environment>>();
+	private Map<String, VectorEnvironment> vectorEnvs = new HashMap<String, VectorEnvironment>();
 	private Dianne dianne;
 
 	private NeuralNetwork[] nns;
@@ -82,6 +85,7 @@ public class AgentImpl implements Agent {
 	private ExperiencePool pool;
 	private String environment;
 	private Environment env;
+	private VectorEnvironment vectorEnv;
 	
 	private AgentConfig config;
 	private Map<String, String> properties;
@@ -107,6 +111,10 @@ public class AgentImpl implements Agent {
 	private ServiceRegistration<RepositoryListener> repoListenerReg;
 	private volatile boolean sync = false;
 	
+	// parameters pushed by the learner, swapped in between steps
+	private ServiceRegistration<ParameterSubscriber> subscriberReg;
+	private PushedParameters pushed;
+	
 	// in case of manual action strategy
 	private ServiceRegistration<ActionController> actionListenerReg;
 	
@@ -123,12 +131,26 @@ public class AgentImpl implements Agent {
 	@Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
 	void addEnvironment(Environment env, Map<String, Object> properties) {
 		String name = (String) properties.get("name");
-		this.envs.put(name, env);
+		this.envs.computeIfAbsent(name, n -> new CopyOnWriteArrayList<>()).add(env);
 	}
 
 	void removeEnvironment(Environment env, Map<String, Object> properties) {
 		String name = (String) properties.get("name");
-		this.envs.remove(name);
+		List<Environment> instances = this.envs.get(name);
+		if(instances != null){
+			instances.remove(env);
+		}
+	}
+	
+	@Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+	void addVectorEnvironment(VectorEnvironment env, Map<String, Object> properties) {
+		String name = (String) properties.get("name");
+		this.vectorEnvs.put(name, env);
+	}
+
+	void removeVectorEnvironment(VectorEnvironment env, Map<String, Object> properties) {
+		String name = (String) properties.get("name");
+		this.vectorEnvs.remove(name, env);
 	}
 
 	@Reference
@@ -202,21 +224,42 @@ public class AgentImpl implements Agent {
 			
 			// setup environment
 			this.environment = environment;
-			env = envs.get(environment);
-			if(env==null){
-				throw new RuntimeException("Environment "+environment+" does not exist");
+			this.env = null;
+			this.vectorEnv = vectorEnvs.get(environment);
+			List<Environment> instances = envs.get(environment);
+			if(vectorEnv == null && this.config.environments > 1){
+				// step multiple instances of the environment, each on its own thread
+				// this requires an Environment service per instance, registered under the same name
+				int available = instances == null ? 0 : instances.size();
+				if(available < this.config.environments){
+					throw new RuntimeException("Cannot act on "+this.config.environments+" instances of environment "+environment
+							+": only "+available+" Environment service(s) registered with name "+environment+". "
+							+"Singleton environments only register a single instance, "
+							+"use environments=1 or a VectorEnvironment (e.g. BatchedPong) instead.");
+				}
+				vectorEnv = new ThreadedVectorEnvironment(instances.subList(0, this.config.environments));
 			}
-			env.setup(properties);
+			
+			if(vectorEnv != null){
+				vectorEnv.setup(properties);
+			} else {
+				if(instances == null || instances.isEmpty()){
+					throw new RuntimeException("Environment "+environment+" does not exist");
+				}
+				env = instances.get(0);
+				env.setup(properties);
+			}
+			
+			int[] observationDims = vectorEnv != null ? vectorEnv.observationDims() : env.observationDims();
+			int[] actionDims = vectorEnv != null ? vectorEnv.actionDims() : env.actionDims();
 			
 			if(experiencePool != null){
 				// add env state/actionDims in case we need to construct xp pool
 				if(!config.containsKey("stateDims")){
-					int[] stateDims = env.observationDims();
-					String sd = Arrays.toString(stateDims);
+					String sd = Arrays.toString(observationDims);
 					config.put("stateDims", sd.substring(1, sd.length()-1));
 				}
 				if(!config.containsKey("actionDims")){
-					int[] actionDims = env.actionDims();
 					String ad = Arrays.toString(actionDims);
 					config.put("actionDims", ad.substring(1, ad.length()-1));
 				}
@@ -231,12 +274,16 @@ public class AgentImpl implements Agent {
 	
 			uploadBuffer = new ArrayList<>();
 			
-			actingThread = new Thread(new AgentRunnable());
+			actingThread = new Thread(vectorEnv != null ? new VectorAgentRunnable() : new AgentRunnable());
 			actingThread.start();
 		} catch(Exception e){
 			System.err.println("Failed starting agent");
 			e.printStackTrace();
-			env.cleanup();
+			if(vectorEnv != null){
+				vectorEnv.cleanup();
+			} else if(env != null){
+				env.cleanup();
+			}
 			acting = false;
 			throw e;
 		}
@@ -270,78 +317,18 @@ public class AgentImpl implements Agent {
 			ExperiencePoolSample s = new ExperiencePoolSample();
 			
 			try {
-				// setup repo listener
-				Dictionary<String, Object> props = new Hashtable<>();
-				if(config.tag != null) {
-					String[] t = new String[config.tag.length];
-					for(int i=0;i<config.tag.length;i++) {
-						t[i] = ":"+config.tag[i];
-					}
-					props.put("targets", t);
-				}
-				props.put("aiolos.unique", true);
-				repoListenerReg = context.registerService(RepositoryListener.class, new RepositoryListener() {
-					@Override
-					public synchronized void onParametersUpdate(UUID nnId, Collection<UUID> moduleIds, String... tag) {
-						for(String t : tag){
-							if(t.equals("best")){
-								return; // don't sync if we update ourselves with "best" tag
-							}
-						}
-						if(sync == false){
-							sync = true;
-							epoch++;
-						}
-					}
-				}, props);
-				
-				// make sure to sync initially
-				sync = true;
-				
-				// set count to zero
-				count = 0;
-				seq = 0;
-				epoch = 0;
-				maxReward = -Float.MAX_VALUE;
-				
-				// setup action strategy
-				strategy.setup(properties, env, nns);
-				// this allows the strategy to adapt config in setup
-				config = DianneConfigHandler.getConfig(properties, AgentConfig.class);
-				
-				// TODO this his hard coded for ManualActionStrategy ... have something better?
-				if(strategy instanceof ActionController){
-					props.put("environment", environment);
-					actionListenerReg = context.registerService(ActionController.class, (ActionController)strategy, props);
-				}
+				setupActing(env.observationDims(), env.actionDims());
 		
 				s.input = env.getObservation(s.input);
 	
 				progress = new AgentProgress(seq, 0, 0, 0, false, epoch);
 				
-				if(config.clear){
-					pool.reset();
-				}
-				
 				while(acting) {
 					// sync parameters
 					if(sync && count == 0){
-						for(int k=0;k<nns.length;k++){
-							if(config.tag.length == nns.length) {
-								try {
-									nns[k].loadParameters(config.tag[k]);
-								} catch(Exception e){
-									System.out.println("Failed loading parameters for nn "+nns[k].getId()+" - "+nns[k].getNeuralNetworkInstance().name+" with tag(s) "+config.tag[k]);
-								}
-							} else {
-								try {
-									nns[k].loadParameters(config.tag);
-								} catch(Exception e){
-									System.out.println("Failed loading parameters for nn "+nns[k].getId()+" - "+nns[k].getNeuralNetworkInstance().name+" with tag(s) "+Arrays.toString(config.tag));
-								}
-							}
-						}
-						sync = false;
+						syncParameters();
+					} else {
+						swapParameters(count == 0);
 					}
 					
 					// select action according to strategy
@@ -375,60 +362,22 @@ public class AgentImpl implements Agent {
 						progress.terminal = true;
 					}
 					
+					boolean end = s.isTerminal() || (config.maxActions > 0 && config.maxActions <= progress.iterations);
+					
 					// upload in batch
 					if(pool != null) {
-						ExperiencePoolSample b;
-						if(uploadBuffer.size() <= count){
-							b = new ExperiencePoolSample();
-							uploadBuffer.add(b);
-						} else {
-							b = uploadBuffer.get(count);
-						}
-						b.input = s.input.copyInto(b.input);
-						b.target = s.target.copyInto(b.target);
-						b.reward = s.reward.copyInto(b.reward);
-						b.terminal = s.terminal.copyInto(b.terminal);
-						b.nextState = s.isTerminal() ? null : s.nextState.copyInto(b.nextState);
-						count++;
+						count = buffer(uploadBuffer, count, s.input, s.target, s.reward, s.terminal, s.isTerminal() ? null : s.nextState);
 						
-						if(b.isTerminal() || (config.maxActions > 0 && config.maxActions <= progress.iterations)){
-							// sequence finished, upload to pool
-							upload = new Sequence<ExperiencePoolSample>(uploadBuffer.subList(0, count), count);
-							if(pool!=null){
-								try {
-									pool.addSequence(upload);
-								} catch(Exception e){
-									System.out.println("Failed to upload to experience pool ");
-									e.printStackTrace();
-								}
-							}
+						if(end || count == config.unroll){
+							// sequence finished or a full trajectory chunk, upload to pool
+							upload(uploadBuffer, count);
 							count = 0;
 						}
 					}
 	
 					// if this is a terminal state - reset environment and start over
-					if(s.isTerminal() || (config.maxActions > 0 && config.maxActions <= progress.iterations)){
-						
-						// store if we observed best reward so far
-						if(config.tagBest){
-							if(progress.reward > maxReward){
-								maxReward = progress.reward;
-								for(int i=0;i<nns.length;i++){
-									if(config.tag.length == nns.length)
-										nns[i].storeParameters(config.tag[i],"best");
-									else
-										nns[i].storeParameters(config.tag[0],"best");
-								}
-							}
-						}
-						
-						// trace agent per sequence
-						if(seq % config.traceInterval == 0){
-							if(config.trace)
-								System.out.println(progress);
-							
-							publishProgress(progress);
-						}
+					if(end){
+						endSequence(progress);
 						
 						seq++;
 						progress = new AgentProgress(seq, 0, 0, 0, false, epoch);
@@ -457,23 +406,325 @@ public class AgentImpl implements Agent {
 			} finally {
 				env.cleanup();
 				
-				datasets.releaseDataset(pool);
+				stopActing();
+			}
+		}
+	}
+	
+	/**
+	 * Acts on all instances of a VectorEnvironment at once, selecting the actions
+	 * for all instances with a single batched call to the action strategy. Each instance 
+	 * keeps its own progress and upload buffer, and uploads its sequences to the pool 
+	 * as soon as they finish.
+	 */
+	private class VectorAgentRunnable implements Runnable {
+
+		@Override
+		public void run() {
+			int n = vectorEnv.size();
+			
+			long[] sequences = new long[n];
+			long[] iterations = new long[n];
+			AgentProgress[] progresses = new AgentProgress[n];
+			List<List<ExperiencePoolSample>> buffers = new ArrayList<>();
+			int[] counts = new int[n];
+			
+			boolean[] terminal = new boolean[n];
+			Tensor states = null;
+			Tensor nextStates = null;
+			Tensor rewards = null;
+			Tensor r = new Tensor(1);
+			Tensor t = new Tensor(1);
+			
+			try {
+				setupActing(vectorEnv.observationDims(), vectorEnv.actionDims());
+				
+				for(int k=0;k<n;k++){
+					progresses[k] = new AgentProgress(seq++, 0, 0, 0, false, epoch);
+					buffers.add(new ArrayList<>());
+				}
+				progress = progresses[0];
 				
-				if(repoListenerReg != null){
-					repoListenerReg.unregister();
+				states = vectorEnv.getObservations(states, terminal);
+				for(int k=0;k<n;k++){
+					if(terminal[k]){
+						throw new RuntimeException("Environment instance "+k+" in terminal state after setup");
+					}
 				}
 				
-				if(actionListenerReg != null){
-					actionListenerReg.unregister();
+				while(acting) {
+					// sync parameters
+					// instances are never all in between sequences, so sync at the next step
+					if(sync){
+						syncParameters();
+					} else {
+						swapParameters(true);
+					}
+					
+					// select actions for all instances at once
+					for(int k=0;k<n;k++){
+						sequences[k] = progresses[k].sequence;
+						iterations[k] = progresses[k].iterations;
+					}
+					Tensor actions = strategy.processIteration(sequences, iterations, states);
+					
+					// execute actions and get rewards
+					rewards = vectorEnv.performActions(actions, rewards);
+					
+					// get the next states
+					nextStates = vectorEnv.getObservations(nextStates, terminal);
+					
+					boolean reset = false;
+					for(int k=0;k<n;k++){
+						AgentProgress p = progresses[k];
+						float reward = rewards.get(k);
+						
+						if(config.traceReward){
+							System.out.println("[AGENT] Environment: "+k+" Iteration: "+p.iterations+" Reward: "+reward);
+						}
+						
+						p.reward+=reward;
+						p.last = reward;
+						p.iterations++;
+						if(terminal[k]){
+							p.terminal = true;
+						}
+						
+						boolean end = terminal[k] || (config.maxActions > 0 && config.maxActions <= p.iterations);
+
+						if(pool != null){
+							r.set(reward, 0);
+							t.set(terminal[k] ? 0.0f : 1.0f, 0);
+							counts[k] = buffer(buffers.get(k), counts[k], states.select(0, k), actions.select(0, k), 
+									r, t, terminal[k] ? null : nextStates.select(0, k));
+							
+							if(end || counts[k] == config.unroll){
+								upload(buffers.get(k), counts[k]);
+								counts[k] = 0;
+							}
+						}
+						
+						if(end){
+							endSequence(p);
+							
+							progresses[k] = new AgentProgress(seq++, 0, 0, 0, false, epoch);
+							vectorEnv.reset(k);
+							reset = true;
+						}
+					}
+					progress = progresses[0];
+					
+					while(reset){
+						// fetch the initial observations of the instances that were reset
+						nextStates = vectorEnv.getObservations(nextStates, terminal);
+						reset = false;
+						for(int k=0;k<n;k++){
+							if(terminal[k]){
+								System.out.println("Observation null after reset, trying to reinitialize environment "+k);
+								vectorEnv.reset(k);
+								reset = true;
+							}
+						}
+					}
+					
+					Tensor temp = states;
+					states = nextStates;
+					nextStates = temp;
+				}
+			} catch(Throwable e){
+				if(e.getCause() != null && e.getCause() instanceof InterruptedException){
+					return;
 				}
 				
 				acting = false;
 				
-				publishDone();
+				e.printStackTrace();
+				
+				publishError(e);
+			} finally {
+				vectorEnv.cleanup();
+				
+				stopActing();
 			}
 		}
 	}
 	
+	private void setupActing(int[] observationDims, int[] actionDims) throws Exception {
+		// setup repo listener
+		Dictionary<String, Object> props = new Hashtable<>();
+		if(config.tag != null) {
+			String[] t = new String[config.tag.length];
+			for(int i=0;i<config.tag.length;i++) {
+				t[i] = ":"+config.tag[i];
+			}
+			props.put("targets", t);
+		}
+		props.put("aiolos.unique", true);
+		if(config.push){
+			// get parameters pushed by the learner instead of loading them from the repository
+			pushed = new PushedParameters(nns.length, config.tag);
+			subscriberReg = context.registerService(ParameterSubscriber.class, new ParameterSubscriber() {
+				@Override
+				public void onParameters(UUID nnId, long version, Map<UUID, Tensor> parameters, String... tag) {
+					pushed.push(nnId, version, parameters, tag);
+				}
+			}, props);
+		} else {
+			pushed = null;
+			repoListenerReg = context.registerService(RepositoryListener.class, new RepositoryListener() {
+				@Override
+				public synchronized void onParametersUpdate(UUID nnId, Collection<UUID> moduleIds, String... tag) {
+					for(String t : tag){
+						if(t.equals("best")){
+							return; // don't sync if we update ourselves with "best" tag
+						}
+					}
+					if(sync == false){
+						sync = true;
+						epoch++;
+					}
+				}
+			}, props);
+		}
+		
+		// make sure to sync initially
+		sync = true;
+		
+		// set count to zero
+		count = 0;
+		seq = 0;
+		epoch = 0;
+		maxReward = -Float.MAX_VALUE;
+		
+		// setup action strategy
+		strategy.setup(properties, observationDims, actionDims, nns);
+		// this allows the strategy to adapt config in setup
+		config = DianneConfigHandler.getConfig(properties, AgentConfig.class);
+		
+		// TODO this his hard coded for ManualActionStrategy ... have something better?
+		if(strategy instanceof ActionController){
+			props.put("environment", environment);
+			actionListenerReg = context.registerService(ActionController.class, (ActionController)strategy, props);
+		}
+		
+		if(config.clear){
+			pool.reset();
+		}
+	}
+	
+	private void syncParameters(){
+		for(int k=0;k<nns.length;k++){
+			if(config.tag.length == nns.length) {
+				try {
+					nns[k].loadParameters(config.tag[k]);
+				} catch(Exception e){
+					System.out.println("Failed loading parameters for nn "+nns[k].getId()+" - "+nns[k].getNeuralNetworkInstance().name+" with tag(s) "+config.tag[k]);
+				}
+			} else {
+				try {
+					nns[k].loadParameters(config.tag);
+				} catch(Exception e){
+					System.out.println("Failed loading parameters for nn "+nns[k].getId()+" - "+nns[k].getNeuralNetworkInstance().name+" with tag(s) "+Arrays.toString(config.tag));
+				}
+			}
+		}
+		sync = false;
+	}
+	
+	/**
+	 * Swap in the parameters pushed by the learner. This is only done at a boundary (i.e. in between
+	 * uploads), unless the agent lags more than maxStaleness versions behind.
+	 */
+	private void swapParameters(boolean boundary){
+		if(pushed == null)
+			return;
+		
+		Map<UUID, Tensor>[] p = pushed.take(boundary, config.maxStaleness);
+		if(p == null)
+			return;
+		
+		for(int k=0;k<nns.length;k++){
+			if(p[k] != null){
+				nns[k].setParameters(p[k]);
+			}
+		}
+		epoch++;
+	}
+	
+	/**
+	 * Copy a sample into the upload buffer
+	 * @return the new number of samples in the buffer
+	 */
+	private int buffer(List<ExperiencePoolSample> buffer, int count, Tensor state, Tensor action, Tensor reward, Tensor terminal, Tensor nextState){
+		ExperiencePoolSample b;
+		if(buffer.size() <= count){
+			b = new ExperiencePoolSample();
+			buffer.add(b);
+		} else {
+			b = buffer.get(count);
+		}
+		b.input = state.copyInto(b.input);
+		b.target = action.copyInto(b.target);
+		b.reward = reward.copyInto(b.reward);
+		b.terminal = terminal.copyInto(b.terminal);
+		b.nextState = nextState == null ? null : nextState.copyInto(b.nextState);
+		return count+1;
+	}
+	
+	private void upload(List<ExperiencePoolSample> buffer, int count){
+		upload = new Sequence<ExperiencePoolSample>(buffer.subList(0, count), count);
+		try {
+			pool.addSequence(upload);
+		} catch(Exception e){
+			System.out.println("Failed to upload to experience pool ");
+			e.printStackTrace();
+		}
+	}
+	
+	private void endSequence(AgentProgress progress) throws Exception {
+		// store if we observed best reward so far
+		if(config.tagBest){
+			if(progress.reward > maxReward){
+				maxReward = progress.reward;
+				for(int i=0;i<nns.length;i++){
+					if(config.tag.length == nns.length)
+						nns[i].storeParameters(config.tag[i],"best");
+					else
+						nns[i].storeParameters(config.tag[0],"best");
+				}
+			}
+		}
+		
+		// trace agent per sequence
+		if(progress.sequence % config.traceInterval == 0){
+			if(config.trace)
+				System.out.println(progress);
+			
+			publishProgress(progress);
+		}
+	}
+	
+	private void stopActing(){
+		datasets.releaseDataset(pool);
+		
+		if(repoListenerReg != null){
+			repoListenerReg.unregister();
+			repoListenerReg = null;
+		}
+		
+		if(subscriberReg != null){
+			subscriberReg.unregister();
+			subscriberReg = null;
+		}
+		
+		if(actionListenerReg != null){
+			actionListenerReg.unregister();
+		}
+		
+		acting = false;
+		
+		publishDone();
+	}
 	
 	private void publishProgress(final AgentProgress progress){
 		if(!acting)
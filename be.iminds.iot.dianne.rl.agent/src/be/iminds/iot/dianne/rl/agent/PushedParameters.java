@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.agent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Keeps the parameters pushed by a learner until the agent swaps them in. Pushed versions 
+ * that are not newer than the last one of the same nn instance are dropped, newer versions 
+ * are merged into the parameters that are not yet swapped in.
+ * 
+ * @author tverbele
+ *
+ */
+class PushedParameters {
+
+	// in case of a tag per nn, only take the parameters published with that tag
+	private final String[] tags;
+	
+	private Map<UUID, Tensor>[] pushed;
+	private final Map<UUID, Long> versions = new HashMap<>();
+	// number of versions pushed since the last swap
+	private int behind = 0;
+	
+	PushedParameters(int nns, String[] tags){
+		this.pushed = newPushed(nns);
+		this.tags = tags != null && tags.length == nns ? tags : null;
+	}
+	
+	/**
+	 * @return false in case the version is stale and dropped
+	 */
+	synchronized boolean push(UUID nnId, long version, Map<UUID, Tensor> parameters, String... tag){
+		Long last = versions.get(nnId);
+		if(last != null && last >= version)
+			return false;
+		versions.put(nnId, version);
+		
+		List<String> t = Arrays.asList(tag);
+		for(int k=0;k<pushed.length;k++){
+			if(tags != null && !t.contains(tags[k]))
+				continue;
+			
+			if(pushed[k] == null){
+				pushed[k] = new HashMap<>();
+			}
+			pushed[k].putAll(parameters);
+		}
+		behind++;
+		return true;
+	}
+	
+	/**
+	 * Take the pushed parameters to swap in, per nn. This is only done at a boundary (i.e. in 
+	 * between uploads), unless the agent lags more than maxStaleness versions behind.
+	 * 
+	 * @return the parameters per nn (null in case nothing is pushed for that nn), or null if nothing to swap in
+	 */
+	synchronized Map<UUID, Tensor>[] take(boolean boundary, int maxStaleness){
+		if(behind == 0)
+			return null;
+		
+		if(!boundary && (maxStaleness <= 0 || behind < maxStaleness))
+			return null;
+		
+		Map<UUID, Tensor>[] p = pushed;
+		pushed = newPushed(p.length);
+		behind = 0;
+		return p;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<UUID, Tensor>[] newPushed(int nns){
+		return new Map[nns];
+	}
+}
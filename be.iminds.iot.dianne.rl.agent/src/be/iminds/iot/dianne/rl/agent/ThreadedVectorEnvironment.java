@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import be.iminds.iot.dianne.api.rl.environment.Environment;
+import be.iminds.iot.dianne.api.rl.environment.VectorEnvironment;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * VectorEnvironment that steps a number of Environment instances in lockstep, 
+ * each on its own thread. Resets are executed asynchronously on the instance 
+ * thread, and only waited for when the next observation is requested.
+ * 
+ * All calls to a single Environment instance happen on the same thread, as some 
+ * environments (e.g. Gym using Jep) are bound to the thread that created them.
+ * 
+ * @author tverbele
+ *
+ */
+public class ThreadedVectorEnvironment implements VectorEnvironment {
+
+	private final List<Environment> envs;
+	private final ExecutorService[] threads;
+	private final Future<?>[] pending;
+	private final Future<?>[] resets;
+	private final float[] rewards;
+	
+	public ThreadedVectorEnvironment(List<Environment> envs){
+		this.envs = new ArrayList<>(envs);
+		this.threads = new ExecutorService[envs.size()];
+		this.pending = new Future<?>[envs.size()];
+		this.resets = new Future<?>[envs.size()];
+		this.rewards = new float[envs.size()];
+		
+		for(int i=0;i<threads.length;i++){
+			final String name = "dianne-env-"+i;
+			threads[i] = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+	
+	@Override
+	public int size() {
+		return envs.size();
+	}
+
+	@Override
+	public int[] observationDims() {
+		return envs.get(0).observationDims();
+	}
+
+	@Override
+	public int[] actionDims() {
+		return envs.get(0).actionDims();
+	}
+
+	@Override
+	public Tensor performActions(Tensor actions, Tensor r) {
+		for(int i=0;i<envs.size();i++){
+			final int k = i;
+			final Tensor action = actions.select(0, k);
+			submit(k, () -> {
+				rewards[k] = envs.get(k).performAction(action);
+			});
+		}
+		await();
+		
+		if(r == null){
+			r = new Tensor(envs.size());
+		}
+		r.set(rewards);
+		return r;
+	}
+
+	@Override
+	public Tensor getObservations(Tensor t, boolean[] terminal) {
+		if(t == null){
+			t = new Tensor(envs.size(), observationDims());
+		}
+		
+		for(int i=0;i<envs.size();i++){
+			final int k = i;
+			final Tensor observation = t.select(0, k);
+			submit(k, () -> {
+				terminal[k] = envs.get(k).getObservation(observation) == null;
+			});
+		}
+		await();
+		
+		return t;
+	}
+
+	@Override
+	public void reset(int index) {
+		// no need to wait, the next call to this instance is queued after the reset 
+		resets[index] = threads[index].submit(() -> envs.get(index).reset());
+	}
+
+	@Override
+	public void setup(Map<String, String> config) {
+		for(int i=0;i<envs.size();i++){
+			final int k = i;
+			submit(k, () -> envs.get(k).setup(config));
+		}
+		await();
+	}
+
+	@Override
+	public void cleanup() {
+		for(int i=0;i<envs.size();i++){
+			final int k = i;
+			submit(k, () -> envs.get(k).cleanup());
+		}
+		try {
+			await();
+		} finally {
+			for(ExecutorService thread : threads){
+				thread.shutdown();
+			}
+		}
+	}
+
+	private void submit(int k, Runnable r){
+		pending[k] = threads[k].submit(r);
+	}
+	
+	private void await(){
+		for(int k=0;k<pending.length;k++){
+			await(k);
+		}
+	}
+	
+	private void await(int k){
+		try {
+			if(resets[k] != null){
+				resets[k].get();
+			}
+			if(pending[k] != null){
+				pending[k].get();
+			}
+		} catch(InterruptedException e){
+			throw new RuntimeException("Interrupted while waiting for environment "+k, e);
+		} catch(ExecutionException e){
+			throw new RuntimeException("Environment "+k+" failed: "+e.getCause().getMessage(), e.getCause());
+		} finally {
+			resets[k] = null;
+			pending[k] = null;
+		}
+	}
+}
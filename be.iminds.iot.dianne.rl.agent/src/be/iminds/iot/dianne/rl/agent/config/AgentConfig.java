@@ -63,4 +63,28 @@ public class AgentConfig {
 	 * Tag parameters that got best reward in a sequence
 	 */
 	public boolean tagBest = true;
+	
+	/**
+	 * Number of environment instances to act on at once, actions for all instances are 
+	 * selected with a single batched forward pass
+	 */
+	public int environments = 1;
+	
+	/**
+	 * Get the parameters pushed by the learner on each sync, instead of loading these from the 
+	 * repository each time the repository notifies an update
+	 */
+	public boolean push = false;
+	
+	/**
+	 * Max number of pushed parameter versions the agent can lag behind before the parameters are swapped
+	 * in the middle of a sequence, by default parameters are only swapped in between uploads
+	 */
+	public int maxStaleness = 0;
+	
+	/**
+	 * Upload a trajectory chunk each time this number of actions is buffered, instead of only
+	 * uploading complete sequences, e.g. to stream trajectories to a TrajectoryQueue
+	 */
+	public int unroll = -1;
 }
@@ -26,7 +26,6 @@ import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.BoltzmannConfig;
 import be.iminds.iot.dianne.tensor.ModuleOps;
@@ -45,8 +44,10 @@ public class BoltzmannActionStrategy implements ActionStrategy {
 	private BoltzmannConfig config;
 	private NeuralNetwork nn;
 	
+	private Tensor actions;
+	
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.config = DianneConfigHandler.getConfig(config, BoltzmannConfig.class);
 		this.nn = nns[0];
 	}
@@ -58,6 +59,29 @@ public class BoltzmannActionStrategy implements ActionStrategy {
 		Tensor action = new Tensor(output.size());
 		action.fill(0);
 		
+		action.set(1, sample(output, s));
+		
+		return action;
+	}
+	
+	@Override
+	public Tensor processIteration(long[] s, long[] i, Tensor states) throws Exception {
+		Tensor output = nn.forward(states);
+		
+		int n = s.length;
+		if(actions == null || actions.size(0) != n){
+			actions = new Tensor(n, output.size(1));
+		}
+		actions.fill(0);
+		
+		for(int k=0;k<n;k++){
+			actions.set(1, k, sample(output.select(0, k), s[k]));
+		}
+		
+		return actions;
+	}
+	
+	private int sample(Tensor output, long s){
 		double temperature = config.temperatureMin + (config.temperatureMax - config.temperatureMin) * Math.exp(-s * config.temperatureDecay);
 		
 		TensorOps.div(output, output, (float) temperature);
@@ -66,12 +90,10 @@ public class BoltzmannActionStrategy implements ActionStrategy {
 		double t = 0, r = Math.random();
 		int a = 0;
 		
-		while((t += output.get(a)) < r)
+		while((t += output.get(a)) < r && a < output.size()-1)
 			a++;
 		
-		action.set(1, a);
-		
-		return action;
+		return a;
 	}
 
 }
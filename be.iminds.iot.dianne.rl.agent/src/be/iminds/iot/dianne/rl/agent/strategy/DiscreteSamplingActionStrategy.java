@@ -26,13 +26,17 @@ import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
+import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
+import be.iminds.iot.dianne.rl.agent.strategy.config.DiscreteSamplingConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
 import be.iminds.iot.dianne.tensor.TensorOps;
 
 /**
  * Discrete sampling ActionStrategy that takes the output of a (discrete) policy network
  * ending with a softmax/logsoftmax module and samples an actual discrete action from it.  
+ * 
+ * With behaviourProbability set, the probability of the sampled action is kept in the 
+ * action tensor instead of 1, so off-policy learners know the behaviour policy.
  * @author tverbele
  *
  */
@@ -40,9 +44,12 @@ public class DiscreteSamplingActionStrategy implements ActionStrategy {
 	
 	private NeuralNetwork nn;
 	
+	private DiscreteSamplingConfig config;
+	
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.nn = nns[0];
+		this.config = DianneConfigHandler.getConfig(config, DiscreteSamplingConfig.class);
 	}
 
 	@Override
@@ -59,11 +66,11 @@ public class DiscreteSamplingActionStrategy implements ActionStrategy {
 		
 		double t = 0, r = Math.random();
 		int a = 0;
-		while(a < output.size() && (t += output.get(a)) < r){
+		while(a < output.size()-1 && (t += output.get(a)) < r){
 			a++;
 		}
 		
-		action.set(1, a);
+		action.set(config.behaviourProbability ? output.get(a) : 1, a);
 		
 		return action;
 	}
@@ -26,7 +26,6 @@ import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.tensor.Tensor;
 
 public class FixedActionStrategy implements ActionStrategy {
@@ -35,8 +34,8 @@ public class FixedActionStrategy implements ActionStrategy {
 	
 	
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
-		action = new Tensor(env.actionDims());
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
+		action = new Tensor(actionDims);
 		
 		if(config.containsKey("action")){
 			String[] floats = config.get("action").split(",");
@@ -26,7 +26,6 @@ import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.GaussianNoiseConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -38,12 +37,13 @@ public class GaussianNoiseActionStrategy implements ActionStrategy {
 	private GaussianNoiseConfig config;
 	
 	private Tensor noise;
+	private Tensor noiseBatch;
 
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.policy = nns[0];
 		this.config = DianneConfigHandler.getConfig(config, GaussianNoiseConfig.class);
-		this.noise = new Tensor(env.actionDims());
+		this.noise = new Tensor(actionDims);
 	}
 
 	@Override
@@ -60,5 +60,27 @@ public class GaussianNoiseActionStrategy implements ActionStrategy {
 		
 		return action;
 	}
+	
+	@Override
+	public Tensor processIteration(long[] s, long[] i, Tensor states) throws Exception {
+		Tensor actions = policy.forward(states);
+		
+		int n = s.length;
+		if(noiseBatch == null || noiseBatch.size(0) != n){
+			noiseBatch = new Tensor(n, noise.dims());
+		}
+		noiseBatch.randn();
+		
+		// noise is annealed per sequence of each instance
+		for(int k=0;k<n;k++){
+			double stdev = config.noiseMin + (config.noiseMax - config.noiseMin) * Math.exp(-s[k] * config.noiseDecay);
+			Tensor action = actions.select(0, k);
+			TensorOps.add(action, action, (float) stdev, noiseBatch.select(0, k));
+		}
+		
+		TensorOps.clamp(actions, actions, config.minValue, config.maxValue);
+		
+		return actions;
+	}
 
 }
@@ -4,7 +4,6 @@ import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.GaussianNoiseConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -20,10 +19,10 @@ public class GaussianSamplingActionStrategy implements ActionStrategy {
 	private Tensor action;
 	
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.policy = nns[0];
 		this.config = DianneConfigHandler.getConfig(config, GaussianNoiseConfig.class);
-		this.actionDims = env.actionDims()[0];
+		this.actionDims = actionDims[0];
 		this.action = new Tensor(this.actionDims);
 	}
 
@@ -26,7 +26,6 @@ import java.util.Map;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.GreedyConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -45,23 +44,20 @@ public class GreedyActionStrategy implements ActionStrategy {
 	private NeuralNetwork nn;
 	
 	private Tensor action;
+	private Tensor actions;
 
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.config = DianneConfigHandler.getConfig(config, GreedyConfig.class);
 		this.nn = nns[0];
-		this.action = new Tensor(env.actionDims());
+		this.action = new Tensor(actionDims);
 		this.action.fill(0.0f);
 		this.action.set(1, (int)(this.action.size()*Math.random()));
 	}
 
 	@Override
 	public Tensor processIteration(long s, long i, Tensor state) throws Exception {
-		double epsilon = config.epsilonMin + (config.epsilonMax - config.epsilonMin) * Math.exp(-s * config.epsilonDecay);
-		
-		if(config.trace && s % config.traceInterval == 0 && i == 0){
-			System.out.println("Epsilon: "+epsilon);
-		}
+		double epsilon = epsilon(s, i);
 		
 		if(config.drop > 0 && Math.random() < config.drop){
 			// no-op action?
@@ -83,5 +79,52 @@ public class GreedyActionStrategy implements ActionStrategy {
 			return action;
 		}
 	}
+	
+	@Override
+	public Tensor processIteration(long[] s, long[] i, Tensor states) throws Exception {
+		int n = s.length;
+		if(actions == null || actions.size(0) != n){
+			actions = new Tensor(n, action.size());
+			actions.fill(0.0f);
+			for(int k=0;k<n;k++){
+				actions.set(1, k, (int)(action.size()*Math.random()));
+			}
+		}
+		
+		// only forward once for the whole batch, and only when required
+		Tensor output = null;
+		for(int k=0;k<n;k++){
+			double epsilon = epsilon(s[k], i[k]);
+			Tensor a = actions.select(0, k);
+			
+			if(config.drop > 0 && Math.random() < config.drop){
+				a.fill(0.0f);
+			} else if (Math.random() < epsilon) {
+				if(config.momentum > 0.0f && Math.random() < config.momentum){
+					// keep previous action of this instance
+					continue;
+				} 
+				a.fill(0);
+				a.set(1, (int) (Math.random() * action.size()));
+			} else {
+				if(output == null){
+					output = nn.forward(states);
+				}
+				a.fill(0);
+				a.set(1, TensorOps.argmax(output.select(0, k)));
+			}
+		}
+		return actions;
+	}
+	
+	private double epsilon(long s, long i){
+		double epsilon = config.epsilonMin + (config.epsilonMax - config.epsilonMin) * Math.exp(-s * config.epsilonDecay);
+		
+		if(config.trace && s % config.traceInterval == 0 && i == 0){
+			System.out.println("Epsilon: "+epsilon);
+		}
+		
+		return epsilon;
+	}
 
 }
@@ -27,7 +27,6 @@ import java.util.Map;
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionController;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.tensor.Tensor;
 
 public class ManualActionStrategy implements ActionStrategy, ActionController {
@@ -45,7 +44,7 @@ public class ManualActionStrategy implements ActionStrategy, ActionController {
 	}
 
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		if(config.containsKey("wait")){
 			wait = Boolean.parseBoolean(config.get("wait"));
 		}
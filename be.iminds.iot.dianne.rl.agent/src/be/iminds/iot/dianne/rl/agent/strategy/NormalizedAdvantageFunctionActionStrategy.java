@@ -29,7 +29,6 @@ import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.nn.module.dto.ModuleInstanceDTO;
 import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.OrnsteinUhlenbeckConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -58,34 +57,34 @@ public class NormalizedAdvantageFunctionActionStrategy implements ActionStrategy
 	protected UUID stateIn, maxActionOut;
 
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.policy = nns[0];
 		this.config = DianneConfigHandler.getConfig(config, OrnsteinUhlenbeckConfig.class);
 		
-		this.noise = new Tensor(env.actionDims());
-		this.deltaNoise = new Tensor(env.actionDims());
+		this.noise = new Tensor(actionDims);
+		this.deltaNoise = new Tensor(actionDims);
 		
 		String warning = "";
 		if (this.config.mu.length == this.noise.size()) {
-			this.mu = new Tensor(this.config.mu, env.actionDims());
+			this.mu = new Tensor(this.config.mu, actionDims);
 		} else {
-			this.mu = new Tensor(env.actionDims());
+			this.mu = new Tensor(actionDims);
 			this.mu.fill(this.config.mu[0]);
 			warning += "mu, ";
 		}
 		
 		if (this.config.sigma.length == this.noise.size()) {
-			this.sigma = new Tensor(this.config.sigma, env.actionDims());
+			this.sigma = new Tensor(this.config.sigma, actionDims);
 		} else {
-			this.sigma = new Tensor(env.actionDims());
+			this.sigma = new Tensor(actionDims);
 			this.sigma.fill(this.config.sigma[0]);
 			warning += "sigma, ";
 		}
 		
 		if (this.config.theta.length == this.noise.size()) {
-			this.theta = new Tensor(this.config.theta, env.actionDims());
+			this.theta = new Tensor(this.config.theta, actionDims);
 		} else {
-			this.theta = new Tensor(env.actionDims());
+			this.theta = new Tensor(actionDims);
 			this.theta.fill(this.config.theta[0]);
 			warning += "theta, ";
 		}
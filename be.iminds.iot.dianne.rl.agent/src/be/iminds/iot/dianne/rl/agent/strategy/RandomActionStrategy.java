@@ -27,7 +27,6 @@ import java.util.Random;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.RandomConfig;
 import be.iminds.iot.dianne.tensor.ModuleOps;
@@ -49,14 +48,14 @@ public class RandomActionStrategy implements ActionStrategy {
 	private Tensor t;
 	
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.config = DianneConfigHandler.getConfig(config, RandomConfig.class);
 		
-		this.action = new Tensor(env.actionDims());
+		this.action = new Tensor(actionDims);
 		this.action.fill(0.0f);
 		
 		if(this.config.momentum > 0.0f){
-			t = new Tensor(env.actionDims());
+			t = new Tensor(actionDims);
 		}
 	}
 
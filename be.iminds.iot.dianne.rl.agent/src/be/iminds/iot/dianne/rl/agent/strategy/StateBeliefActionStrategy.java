@@ -28,7 +28,6 @@ import java.util.UUID;
 
 import be.iminds.iot.dianne.api.nn.NeuralNetwork;
 import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
-import be.iminds.iot.dianne.api.rl.environment.Environment;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.agent.strategy.config.StateBeliefConfig;
 import be.iminds.iot.dianne.tensor.Tensor;
@@ -78,7 +77,7 @@ public class StateBeliefActionStrategy implements ActionStrategy {
 
 	
 	@Override
-	public void setup(Map<String, String> config, Environment env, NeuralNetwork... nns) throws Exception {
+	public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {
 		this.config = DianneConfigHandler.getConfig(config, StateBeliefConfig.class);
 		if(nns.length < 2){
 			throw new RuntimeException("Provide both a state belief and policy neural network for this strategy!");
@@ -103,12 +102,12 @@ public class StateBeliefActionStrategy implements ActionStrategy {
 			}
 		}
 		
-		this.act = new Tensor(env.actionDims());
+		this.act = new Tensor(actionDims);
 		
 		// separate case for noSamples = 1, else potentially problematic reshapes in NNs
 		this.state = this.config.noSamples > 1 ? new Tensor(this.config.noSamples, this.config.stateSize) : new Tensor(this.config.stateSize);
-		this.observation = this.config.noSamples > 1 ? new Tensor(this.config.noSamples, env.observationDims()) : new Tensor(env.observationDims());
-		this.action = this.config.noSamples > 1 ? new Tensor(this.config.noSamples, env.actionDims()) : new Tensor(env.actionDims());
+		this.observation = this.config.noSamples > 1 ? new Tensor(this.config.noSamples, observationDims) : new Tensor(observationDims);
+		this.action = this.config.noSamples > 1 ? new Tensor(this.config.noSamples, actionDims) : new Tensor(actionDims);
 	}
 
 	@Override
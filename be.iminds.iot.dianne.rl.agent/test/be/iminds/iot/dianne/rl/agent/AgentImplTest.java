@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.agent;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import be.iminds.iot.dianne.api.dataset.DianneDatasets;
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.api.nn.module.dto.NeuralNetworkInstanceDTO;
+import be.iminds.iot.dianne.api.rl.agent.ActionStrategy;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.api.rl.environment.VectorEnvironment;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class AgentImplTest {
+
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	/**
+	 * VectorEnvironment of which instance k terminates after lengths[k] actions. The 
+	 * observation of instance k is k*100 + the number of actions since the last reset.
+	 */
+	private static class CountingVectorEnvironment implements VectorEnvironment {
+
+		final int[] lengths;
+		final int[] steps;
+		final int[] resets;
+		// number of resets of each instance that end up in a terminal state
+		final int[] failedResets;
+		volatile int total = 0;
+		
+		CountingVectorEnvironment(int... lengths){
+			this.lengths = lengths;
+			this.steps = new int[lengths.length];
+			this.resets = new int[lengths.length];
+			this.failedResets = new int[lengths.length];
+		}
+		
+		@Override
+		public int size() {
+			return lengths.length;
+		}
+
+		@Override
+		public int[] observationDims() {
+			return new int[]{1};
+		}
+
+		@Override
+		public int[] actionDims() {
+			return new int[]{1};
+		}
+
+		@Override
+		public Tensor performActions(Tensor actions, Tensor rewards) {
+			if(rewards == null){
+				rewards = new Tensor(lengths.length);
+			}
+			for(int k=0;k<lengths.length;k++){
+				steps[k]++;
+				rewards.set(k, k);
+			}
+			total++;
+			return rewards;
+		}
+
+		@Override
+		public Tensor getObservations(Tensor t, boolean[] terminal) {
+			if(t == null){
+				t = new Tensor(lengths.length, 1);
+			}
+			for(int k=0;k<lengths.length;k++){
+				terminal[k] = steps[k] >= lengths[k];
+				t.set(k*100+steps[k], k, 0);
+			}
+			return t;
+		}
+
+		@Override
+		public void reset(int index) {
+			resets[index]++;
+			if(failedResets[index] > 0){
+				failedResets[index]--;
+				steps[index] = lengths[index];
+			} else {
+				steps[index] = 0;
+			}
+		}
+
+		@Override
+		public void setup(Map<String, String> config) {}
+
+		@Override
+		public void cleanup() {}
+	}
+	
+	private AgentImpl agent;
+	private CountingVectorEnvironment env;
+	private List<List<float[]>> uploads;
+	
+	@Before
+	public void setup() {
+		uploads = Collections.synchronizedList(new ArrayList<>());
+		ExperiencePool pool = (ExperiencePool)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ExperiencePool.class}, (proxy, method, args) -> {
+					if(method.getName().equals("addSequence")){
+						// keep state, terminal and next state of each sample, as the agent reuses its buffers 
+						List<float[]> sequence = new ArrayList<>();
+						for(ExperiencePoolSample s : (Sequence<ExperiencePoolSample>)args[0]){
+							sequence.add(new float[]{s.getState().get(0), s.isTerminal() ? 1 : 0, 
+									s.getNextState() == null ? -1 : s.getNextState().get(0)});
+						}
+						uploads.add(sequence);
+					}
+					return null;
+				});
+		DianneDatasets datasets = (DianneDatasets)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{DianneDatasets.class}, (proxy, method, args) -> {
+					if(method.getName().equals("configureDataset")){
+						return pool;
+					}
+					return null;
+				});
+		ServiceRegistration<?> registration = (ServiceRegistration<?>)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{ServiceRegistration.class}, (proxy, method, args) -> null);
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getProperty":
+						return UUID.randomUUID().toString();
+					case "registerService":
+						return registration;
+					}
+					return null;
+				});
+		
+		ActionStrategy strategy = new ActionStrategy() {
+			@Override
+			public void setup(Map<String, String> config, int[] observationDims, int[] actionDims, NeuralNetwork... nns) throws Exception {}
+			
+			@Override
+			public Tensor processIteration(long s, long i, Tensor state) throws Exception {
+				Tensor action = new Tensor(1);
+				action.fill(0.0f);
+				return action;
+			}
+		};
+		
+		agent = new AgentImpl();
+		agent.setDianneDatasets(datasets);
+		agent.setActionFactoryStrategy(s -> strategy);
+		agent.activate(context);
+	}
+	
+	private void act(int steps) throws Exception {
+		Map<String, Object> props = new HashMap<>();
+		props.put("name", "Counting");
+		agent.addVectorEnvironment(env, props);
+		
+		Map<String, String> config = new HashMap<>();
+		config.put("tagBest", "false");
+		agent.act("Counting", "Pool", config, (NeuralNetworkInstanceDTO[])null);
+		
+		long start = System.currentTimeMillis();
+		while(env.total < steps && System.currentTimeMillis() - start < 10000){
+			Thread.sleep(10);
+		}
+		agent.stop();
+		Assert.assertTrue(env.total >= steps);
+	}
+	
+	private int checkUploads(int instance){
+		int count = 0;
+		for(List<float[]> sequence : uploads){
+			int k = (int)sequence.get(0)[0]/100;
+			if(k != instance)
+				continue;
+			
+			// each upload is a complete sequence of a single instance, terminal at the end
+			Assert.assertEquals(env.lengths[k], sequence.size());
+			for(int i=0;i<sequence.size();i++){
+				float[] s = sequence.get(i);
+				Assert.assertEquals(k*100+i, s[0], 0.0001f);
+				if(i < sequence.size()-1){
+					Assert.assertEquals(0, s[1], 0.0001f);
+					Assert.assertEquals(k*100+i+1, s[2], 0.0001f);
+				} else {
+					Assert.assertEquals(1, s[1], 0.0001f);
+					Assert.assertEquals(-1, s[2], 0.0001f);
+				}
+			}
+			count++;
+		}
+		return count;
+	}
+	
+	@Test
+	public void testInstancesTerminateIndependently() throws Exception {
+		env = new CountingVectorEnvironment(3, 5);
+		act(30);
+		
+		int uploads0 = checkUploads(0);
+		int uploads1 = checkUploads(1);
+		Assert.assertEquals(uploads.size(), uploads0 + uploads1);
+		Assert.assertTrue(uploads0 >= 5);
+		Assert.assertTrue(uploads1 >= 3);
+		
+		// only the instance that terminated gets reset
+		Assert.assertEquals(uploads0, env.resets[0]);
+		Assert.assertEquals(uploads1, env.resets[1]);
+	}
+	
+	@Test
+	public void testFailedReset() throws Exception {
+		env = new CountingVectorEnvironment(3, 5);
+		env.failedResets[0] = 2;
+		act(30);
+		
+		// the instance is reset again until it is no longer terminal
+		int uploads0 = checkUploads(0);
+		Assert.assertTrue(uploads0 >= 3);
+		Assert.assertEquals(uploads0 + 2, env.resets[0]);
+		Assert.assertEquals(checkUploads(1), env.resets[1]);
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.agent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class PushedParametersTest {
+
+	private final UUID nnId = UUID.randomUUID();
+	
+	private Map<UUID, Tensor> parameters(UUID... moduleIds){
+		Map<UUID, Tensor> parameters = new HashMap<>();
+		for(UUID moduleId : moduleIds){
+			parameters.put(moduleId, null);
+		}
+		return parameters;
+	}
+	
+	@Test
+	public void testStaleVersionsDropped() {
+		PushedParameters pushed = new PushedParameters(1, null);
+		
+		Assert.assertTrue(pushed.push(nnId, 2, parameters(UUID.randomUUID())));
+		Assert.assertFalse(pushed.push(nnId, 2, parameters(UUID.randomUUID())));
+		Assert.assertFalse(pushed.push(nnId, 1, parameters(UUID.randomUUID())));
+		
+		Map<UUID, Tensor>[] p = pushed.take(true, 0);
+		Assert.assertEquals(1, p[0].size());
+		
+		// versions are tracked across swaps
+		Assert.assertFalse(pushed.push(nnId, 2, parameters(UUID.randomUUID())));
+		Assert.assertNull(pushed.take(true, 0));
+		
+		// and per nn instance
+		Assert.assertTrue(pushed.push(UUID.randomUUID(), 1, parameters(UUID.randomUUID())));
+		Assert.assertNotNull(pushed.take(true, 0));
+	}
+	
+	@Test
+	public void testSwapAtBoundary() {
+		PushedParameters pushed = new PushedParameters(1, null);
+		Assert.assertNull(pushed.take(true, 0));
+		
+		UUID m1 = UUID.randomUUID();
+		UUID m2 = UUID.randomUUID();
+		pushed.push(nnId, 1, parameters(m1));
+		pushed.push(nnId, 2, parameters(m2));
+		
+		// without max staleness only swap at a boundary
+		Assert.assertNull(pushed.take(false, 0));
+		
+		Map<UUID, Tensor>[] p = pushed.take(true, 0);
+		Assert.assertTrue(p[0].containsKey(m1));
+		Assert.assertTrue(p[0].containsKey(m2));
+		
+		Assert.assertNull(pushed.take(true, 0));
+	}
+	
+	@Test
+	public void testMaxStaleness() {
+		PushedParameters pushed = new PushedParameters(1, null);
+		
+		pushed.push(nnId, 1, parameters(UUID.randomUUID()));
+		pushed.push(nnId, 2, parameters(UUID.randomUUID()));
+		Assert.assertNull(pushed.take(false, 3));
+		
+		// stale versions do not count
+		pushed.push(nnId, 2, parameters(UUID.randomUUID()));
+		Assert.assertNull(pushed.take(false, 3));
+		
+		pushed.push(nnId, 3, parameters(UUID.randomUUID()));
+		Map<UUID, Tensor>[] p = pushed.take(false, 3);
+		Assert.assertNotNull(p);
+		Assert.assertEquals(3, p[0].size());
+		
+		Assert.assertNull(pushed.take(false, 3));
+	}
+	
+	@Test
+	public void testTags() {
+		PushedParameters pushed = new PushedParameters(2, new String[]{"actor", "critic"});
+		
+		UUID actor = UUID.randomUUID();
+		UUID critic = UUID.randomUUID();
+		pushed.push(nnId, 1, parameters(actor), "actor");
+		pushed.push(UUID.randomUUID(), 1, parameters(critic), "critic");
+		
+		Map<UUID, Tensor>[] p = pushed.take(true, 0);
+		Assert.assertEquals(1, p[0].size());
+		Assert.assertTrue(p[0].containsKey(actor));
+		Assert.assertEquals(1, p[1].size());
+		Assert.assertTrue(p[1].containsKey(critic));
+		
+		// without a tag per nn, all parameters go to each nn
+		pushed = new PushedParameters(2, new String[]{"run"});
+		pushed.push(nnId, 1, parameters(actor), "actor");
+		p = pushed.take(true, 0);
+		Assert.assertTrue(p[0].containsKey(actor));
+		Assert.assertTrue(p[1].containsKey(actor));
+	}
+}
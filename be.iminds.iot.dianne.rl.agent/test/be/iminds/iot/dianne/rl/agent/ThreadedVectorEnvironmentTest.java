@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.rl.environment.Environment;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class ThreadedVectorEnvironmentTest {
+
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	/**
+	 * Environment that terminates after length actions, the observation is the 
+	 * number of actions since the last reset and the reward the action value.
+	 */
+	private static class CountingEnvironment implements Environment {
+		
+		final int length;
+		final long resetDelay;
+		
+		int steps = 0;
+		int resets = 0;
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+		
+		CountingEnvironment(int length, long resetDelay){
+			this.length = length;
+			this.resetDelay = resetDelay;
+		}
+		
+		@Override
+		public int[] observationDims() {
+			return new int[]{1};
+		}
+
+		@Override
+		public int[] actionDims() {
+			return new int[]{1};
+		}
+
+		@Override
+		public float performAction(Tensor action) {
+			threads.add(Thread.currentThread());
+			steps++;
+			return action.get(0);
+		}
+
+		@Override
+		public Tensor getObservation(Tensor t) {
+			threads.add(Thread.currentThread());
+			if(steps >= length)
+				return null;
+			
+			if(t == null){
+				t = new Tensor(1);
+			}
+			t.set(steps, 0);
+			return t;
+		}
+
+		@Override
+		public void reset() {
+			threads.add(Thread.currentThread());
+			try {
+				Thread.sleep(resetDelay);
+			} catch(InterruptedException e){}
+			steps = 0;
+			resets++;
+		}
+
+		@Override
+		public void setup(Map<String, String> config) {
+			threads.add(Thread.currentThread());
+		}
+
+		@Override
+		public void cleanup() {
+			threads.add(Thread.currentThread());
+		}
+	}
+	
+	private Tensor actions(float... a){
+		return new Tensor(a, a.length, 1);
+	}
+	
+	@Test
+	public void testLockstep() {
+		List<CountingEnvironment> envs = new ArrayList<>();
+		envs.add(new CountingEnvironment(2, 0));
+		envs.add(new CountingEnvironment(3, 0));
+		ThreadedVectorEnvironment vectorEnv = new ThreadedVectorEnvironment(new ArrayList<>(envs));
+		vectorEnv.setup(new HashMap<>());
+		
+		Assert.assertEquals(2, vectorEnv.size());
+		Assert.assertArrayEquals(new int[]{1}, vectorEnv.observationDims());
+		
+		boolean[] terminal = new boolean[2];
+		Tensor observations = vectorEnv.getObservations(null, terminal);
+		Assert.assertEquals(new Tensor(new float[]{0, 0}, 2, 1), observations);
+		
+		Tensor rewards = vectorEnv.performActions(actions(1, 2), null);
+		Assert.assertEquals(new Tensor(new float[]{1, 2}, 2), rewards);
+		
+		// the rewards tensor is reused
+		Assert.assertSame(rewards, vectorEnv.performActions(actions(3, 4), rewards));
+		Assert.assertEquals(new Tensor(new float[]{3, 4}, 2), rewards);
+		
+		// each instance terminates independently
+		Assert.assertSame(observations, vectorEnv.getObservations(observations, terminal));
+		Assert.assertTrue(terminal[0]);
+		Assert.assertFalse(terminal[1]);
+		Assert.assertEquals(2, observations.get(1, 0), 0.0001f);
+		
+		vectorEnv.cleanup();
+	}
+	
+	@Test
+	public void testResetSingleInstance() {
+		List<CountingEnvironment> envs = new ArrayList<>();
+		envs.add(new CountingEnvironment(1, 100));
+		envs.add(new CountingEnvironment(5, 0));
+		ThreadedVectorEnvironment vectorEnv = new ThreadedVectorEnvironment(new ArrayList<>(envs));
+		vectorEnv.setup(new HashMap<>());
+		
+		boolean[] terminal = new boolean[2];
+		vectorEnv.performActions(actions(0, 0), null);
+		Tensor observations = vectorEnv.getObservations(null, terminal);
+		Assert.assertTrue(terminal[0]);
+		Assert.assertFalse(terminal[1]);
+		
+		// the reset returns immediately, the next observation is the one after the reset
+		long start = System.currentTimeMillis();
+		vectorEnv.reset(0);
+		Assert.assertTrue(System.currentTimeMillis() - start < 100);
+		
+		observations = vectorEnv.getObservations(observations, terminal);
+		Assert.assertFalse(terminal[0]);
+		Assert.assertFalse(terminal[1]);
+		Assert.assertEquals(0, observations.get(0, 0), 0.0001f);
+		Assert.assertEquals(1, observations.get(1, 0), 0.0001f);
+		
+		Assert.assertEquals(1, envs.get(0).resets);
+		Assert.assertEquals(0, envs.get(1).resets);
+		
+		vectorEnv.cleanup();
+	}
+	
+	@Test
+	public void testInstanceThreads() {
+		List<CountingEnvironment> envs = new ArrayList<>();
+		for(int i=0;i<3;i++){
+			envs.add(new CountingEnvironment(2, 0));
+		}
+		ThreadedVectorEnvironment vectorEnv = new ThreadedVectorEnvironment(new ArrayList<>(envs));
+		vectorEnv.setup(new HashMap<>());
+		
+		boolean[] terminal = new boolean[3];
+		for(int i=0;i<5;i++){
+			vectorEnv.performActions(actions(0, 0, 0), null);
+			vectorEnv.getObservations(null, terminal);
+			for(int k=0;k<3;k++){
+				if(terminal[k]){
+					vectorEnv.reset(k);
+				}
+			}
+		}
+		vectorEnv.cleanup();
+		
+		// all calls to an instance happen on the same thread, a different one for each instance
+		Set<Thread> all = new HashSet<>();
+		for(CountingEnvironment env : envs){
+			Assert.assertEquals(1, env.threads.size());
+			all.addAll(env.threads);
+		}
+		Assert.assertEquals(3, all.size());
+		Assert.assertFalse(all.contains(Thread.currentThread()));
+	}
+	
+	@Test
+	public void testInstanceFailure() {
+		List<Environment> envs = new ArrayList<>();
+		envs.add(new CountingEnvironment(2, 0));
+		envs.add(new CountingEnvironment(2, 0){
+			@Override
+			public float performAction(Tensor action) {
+				throw new IllegalStateException("broken");
+			}
+		});
+		ThreadedVectorEnvironment vectorEnv = new ThreadedVectorEnvironment(envs);
+		vectorEnv.setup(new HashMap<>());
+		
+		try {
+			vectorEnv.performActions(actions(0, 0), null);
+			Assert.fail();
+		} catch(RuntimeException e){
+			Assert.assertTrue(e.getMessage().contains("Environment 1 failed"));
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		} finally {
+			vectorEnv.cleanup();
+		}
+	}
+}
@@ -89,20 +89,19 @@ public class ArcadeLearningEnvironment implements Environment {
 		
 		int r = 0;
 		
-		for(int i=0;i<config.observationLength;i++){
+		if(config.slide){
 			r += performAction(TensorOps.argmax(action));
 			
-			screen.set(getScreen());
-			
-			// convert to grayscale
-			gray = screen.select(0, 0).copyInto(gray);
-			TensorOps.add(gray, gray, screen.select(0, 1));
-			TensorOps.add(gray, gray, screen.select(0, 2));
-			TensorOps.div(gray, gray, 3);
-			// downsample to 110 x 84
-			TensorOps.scale2D(scaled, gray, 110, 84);
-			// copy narrowed 84x84 into observation
-			narrowed.copyInto(observation.select(0, i));
+			// shift the previous frames and add the new frame at the end
+			for(int i=0;i<config.observationLength-1;i++){
+				observation.select(0, i+1).copyInto(observation.select(0, i));
+			}
+			frame(config.observationLength-1);
+		} else {
+			for(int i=0;i<config.observationLength;i++){
+				r += performAction(TensorOps.argmax(action));
+				frame(i);
+			}
 		}
 		
     	final float reward = r;
@@ -146,6 +145,20 @@ public class ArcadeLearningEnvironment implements Environment {
 		}
 	}
 
+	private void frame(int i){
+		screen.set(getScreen());
+		
+		// convert to grayscale
+		gray = screen.select(0, 0).copyInto(gray);
+		TensorOps.add(gray, gray, screen.select(0, 1));
+		TensorOps.add(gray, gray, screen.select(0, 2));
+		TensorOps.div(gray, gray, 3);
+		// downsample to 110 x 84
+		TensorOps.scale2D(scaled, gray, 110, 84);
+		// copy narrowed 84x84 into observation
+		narrowed.copyInto(observation.select(0, i));
+	}
+
 	private native void loadROM(String rom);
 
 	private native int getActions();
@@ -40,5 +40,11 @@ public class ALEConfig {
 	 */
 	public int observationLength = 4;
 	
+	/**
+	 * Slide the observation by one frame per action instead of replacing all frames,
+	 * allows a CompactExperiencePool to store each frame only once
+	 */
+	public boolean slide = false;
+	
 
 }
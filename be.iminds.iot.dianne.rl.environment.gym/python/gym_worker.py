@@ -0,0 +1,149 @@
+#
+# DIANNE  - Framework for distributed artificial neural networks
+# Copyright (C) 2015  iMinds - IBCN - UGent
+#
+# This file is part of DIANNE.
+#
+# DIANNE is free software: you can redistribute it and/or modify
+# it under the terms of the GNU Affero General Public License as
+# published by the Free Software Foundation, either version 3 of the
+# License, or (at your option) any later version.
+#
+# This program is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+# GNU Affero General Public License for more details.
+#
+# You should have received a copy of the GNU Affero General Public License
+# along with this program.  If not, see <http://www.gnu.org/licenses/>.
+#
+# Contributors:
+#     Tim Verbelen, Steven Bohez
+#
+
+# Worker process owning a single OpenAI Gym environment, driven by the
+# GymWorkerPool over stdin/stdout with big-endian binary frames:
+#
+#  'M' <int length> <utf-8 env id>   -> <int n> <n ints obs dims> <byte discrete> <int m> <m ints action dims>
+#  'R'                               -> <obs floats>
+#  'S' <int action> | <action floats> -> <float reward> <byte done> <obs floats>
+#  'C'                               -> exit
+#
+# Observations are float32, images are converted to [channel, height, width] in 0..1.
+# The env id "Stub" runs a trivial stand-in environment that requires neither gym nor numpy.
+
+import os
+import struct
+import sys
+
+try:
+	import numpy as np
+except ImportError:
+	# only the Stub environment can run without numpy
+	np = None
+
+# keep stdout for the protocol, anything printed by gym goes to stderr
+out = os.fdopen(os.dup(1), 'wb')
+os.dup2(2, 1)
+inp = os.fdopen(0, 'rb')
+
+
+class StubEnv(object):
+	"""Walk left or right on a line of length 10, reward 1 when reaching the right end."""
+
+	class Space(object):
+		def __init__(self, n=None, shape=None):
+			self.n = n
+			self.shape = shape
+
+	def __init__(self):
+		self.observation_space = StubEnv.Space(shape=(1,))
+		self.action_space = StubEnv.Space(n=2)
+		self.position = 0
+
+	def reset(self):
+		self.position = 5
+		return [float(self.position)]
+
+	def step(self, action):
+		self.position += 1 if action == 1 else -1
+		done = self.position <= 0 or self.position >= 10
+		reward = 1.0 if self.position >= 10 else 0.0
+		return [float(self.position)], reward, done, {}
+
+	def render(self):
+		pass
+
+
+def read(n):
+	data = b''
+	while len(data) < n:
+		chunk = inp.read(n - len(data))
+		if not chunk:
+			sys.exit(0)
+		data += chunk
+	return data
+
+
+def encode(observation):
+	"""Returns the dimensions and big-endian float32 data of an observation"""
+	if np is None:
+		return [len(observation)], struct.pack('>%df' % len(observation), *observation)
+
+	o = np.asarray(observation)
+	if o.dtype == np.uint8:
+		o = o.astype(np.float32) / 255.0
+		if o.ndim == 3:
+			o = o.transpose(2, 0, 1)
+	o = np.ascontiguousarray(o, dtype='>f4')
+	return list(o.shape), o.tobytes()
+
+
+def main():
+	env = None
+	discrete = True
+	action_size = 1
+	render = len(sys.argv) > 1 and sys.argv[1] == 'render'
+
+	while True:
+		command = read(1)
+		if command == b'M':
+			length = struct.unpack('>i', read(4))[0]
+			name = read(length).decode('utf-8')
+			if name == 'Stub':
+				env = StubEnv()
+			else:
+				import gym
+				env = gym.make(name)
+
+			observation_dims = encode(env.reset())[0]
+			discrete = getattr(env.action_space, 'n', None) is not None
+			action_dims = [env.action_space.n] if discrete else list(env.action_space.shape)
+			action_size = 1
+			for d in action_dims:
+				action_size *= d
+
+			out.write(struct.pack('>i', len(observation_dims)))
+			out.write(struct.pack('>%di' % len(observation_dims), *observation_dims))
+			out.write(struct.pack('>b', 1 if discrete else 0))
+			out.write(struct.pack('>i', len(action_dims)))
+			out.write(struct.pack('>%di' % len(action_dims), *action_dims))
+		elif command == b'R':
+			out.write(encode(env.reset())[1])
+		elif command == b'S':
+			if discrete:
+				action = struct.unpack('>i', read(4))[0]
+			else:
+				action = np.array(struct.unpack('>%df' % action_size, read(4 * action_size)), dtype=np.float32)
+			observation, reward, done, info = env.step(action)
+			if render:
+				env.render()
+			out.write(struct.pack('>fb', float(reward), 1 if done else 0))
+			out.write(encode(observation)[1])
+		elif command == b'C':
+			break
+		out.flush()
+
+
+if __name__ == '__main__':
+	main()
@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.environment.gym;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+import be.iminds.iot.dianne.api.rl.environment.VectorEnvironment;
+import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
+import be.iminds.iot.dianne.rl.environment.gym.config.GymWorkersConfig;
+import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorOps;
+
+/**
+ * VectorEnvironment that runs each OpenAI gym environment instance in its own Python
+ * worker process, instead of embedding CPython through Jep. This avoids the single 
+ * interpreter lock being shared by all instances and keeps a crashing simulator from 
+ * taking down the OSGi runtime.
+ * 
+ * Workers are driven over their stdin/stdout pipes using big-endian binary frames (see 
+ * python/gym_worker.py), observations are transferred as raw float32 data. Actions are
+ * first sent to all workers before any reply is read, so all instances step in parallel.
+ * 
+ * @author tverbele
+ *
+ */
+@Component(immediate = true,
+	service={VectorEnvironment.class},
+	property = { "name="+GymWorkerPool.NAME, 
+		"aiolos.unique=be.iminds.iot.dianne.api.rl.VectorEnvironment"})
+public class GymWorkerPool implements VectorEnvironment {
+
+	public static final String NAME = "GymWorkers";
+	
+	private static final String SCRIPT = "python/gym_worker.py";
+
+	private File script;
+	
+	private GymWorkersConfig config;
+	private boolean active = false;
+	
+	private List<Worker> workers = new ArrayList<>();
+	
+	private int[] observationDims;
+	private int[] actionDims;
+	private boolean discrete = true;
+	
+	private int observationSize;
+	private float[] observations;
+	private byte[] frame;
+	private float[] rewards;
+	
+	private Tensor actionIndices;
+	private Tensor scaledActions;
+	
+	@Activate
+	void activate(BundleContext context) {
+		try {
+			// unpack the worker script into the bundle data area
+			URL url = context.getBundle().getEntry(SCRIPT);
+			if(url == null)
+				return;
+			
+			File f = context.getDataFile(SCRIPT);
+			if(f == null){
+				// no file system support for the bundle data area
+				f = File.createTempFile("gym_worker", ".py");
+				f.deleteOnExit();
+			}
+			f.getParentFile().mkdirs();
+			
+			try(InputStream inputStream = url.openStream();
+				OutputStream outputStream = new FileOutputStream(f)){
+				int read = 0;
+				byte[] bytes = new byte[1024];
+
+				while ((read = inputStream.read(bytes)) != -1) {
+					outputStream.write(bytes, 0, read);
+				}
+			}
+			script = f;
+		} catch(Exception e){
+			e.printStackTrace();
+		}
+	}
+	
+	@Deactivate
+	void deactivate(){
+		if(active)
+			cleanup();
+	}
+	
+	@Override
+	public int size() {
+		return workers.size();
+	}
+
+	@Override
+	public int[] observationDims() {
+		return observationDims;
+	}
+
+	@Override
+	public int[] actionDims() {
+		return actionDims;
+	}
+
+	@Override
+	public Tensor performActions(Tensor actions, Tensor r) {
+		if(!active)
+			throw new RuntimeException("The Environment is not active!");
+
+		int n = workers.size();
+		float[] data;
+		if(discrete){
+			actionIndices = TensorOps.argmax(actionIndices, actions, 1);
+			data = actionIndices.get();
+		} else {
+			scaledActions = TensorOps.mul(scaledActions, actions, config.actionFactor);
+			data = scaledActions.get();
+		}
+		int actionSize = data.length / n;
+		
+		try {
+			// first dispatch the actions to all workers ...
+			for(int k=0;k<n;k++){
+				Worker w = workers.get(k);
+				w.collect(k);
+				
+				w.out.writeByte('S');
+				if(discrete){
+					w.out.writeInt((int)data[k]);
+				} else {
+					for(int i=0;i<actionSize;i++){
+						w.out.writeFloat(data[k*actionSize+i]);
+					}
+				}
+				w.out.flush();
+			}
+			
+			// ... then collect the results while they step in parallel
+			for(int k=0;k<n;k++){
+				Worker w = workers.get(k);
+				rewards[k] = w.in.readFloat() * config.rewardFactor;
+				w.terminal = w.in.readByte() != 0;
+				w.readObservation(k);
+			}
+		} catch(IOException e){
+			throw new RuntimeException("Failed to step Gym worker", e);
+		}
+		
+		if(r == null){
+			r = new Tensor(n);
+		} else {
+			r.reshape(n);
+		}
+		r.set(rewards);
+		return r;
+	}
+
+	@Override
+	public Tensor getObservations(Tensor t, boolean[] terminal) {
+		if(!active)
+			throw new RuntimeException("The Environment is not active!");
+		
+		int n = workers.size();
+		int[] dims = new int[observationDims.length+1];
+		dims[0] = n;
+		System.arraycopy(observationDims, 0, dims, 1, observationDims.length);
+		
+		try {
+			for(int k=0;k<n;k++){
+				Worker w = workers.get(k);
+				w.collect(k);
+				if(terminal != null)
+					terminal[k] = w.terminal;
+			}
+		} catch(IOException e){
+			throw new RuntimeException("Failed to reset Gym worker", e);
+		}
+		
+		if(t == null){
+			t = new Tensor(dims);
+		} else {
+			t.reshape(dims);
+		}
+		t.set(observations);
+		return t;
+	}
+
+	@Override
+	public void reset(int index) {
+		if(!active)
+			throw new RuntimeException("The Environment is not active!");
+		
+		try {
+			workers.get(index).reset();
+		} catch(IOException e){
+			throw new RuntimeException("Failed to reset Gym worker", e);
+		}
+	}
+
+	@Override
+	public void setup(Map<String, String> config) {
+		if(active)
+			throw new RuntimeException("This Environment is already active");
+		
+		this.config = DianneConfigHandler.getConfig(config, GymWorkersConfig.class);
+		
+		List<String> command = new ArrayList<>();
+		if(this.config.command != null){
+			command.addAll(Arrays.asList(this.config.command.trim().split(" +")));
+		} else {
+			if(script == null)
+				throw new RuntimeException("The Gym worker script "+SCRIPT+" is not available");
+			command.add(this.config.python);
+			command.add(script.getAbsolutePath());
+		}
+		if(this.config.render)
+			command.add("render");
+		
+		try {
+			for(int k=0;k<this.config.environments;k++){
+				workers.add(new Worker(command));
+			}
+			
+			// let all workers make their env and check they agree on the dimensions
+			byte[] env = this.config.env.getBytes("UTF-8");
+			for(Worker w : workers){
+				w.out.writeByte('M');
+				w.out.writeInt(env.length);
+				w.out.write(env);
+				w.out.flush();
+			}
+			for(Worker w : workers){
+				int[] o = readDims(w.in);
+				boolean d = w.in.readByte() != 0;
+				int[] a = readDims(w.in);
+				if(observationDims == null){
+					observationDims = o;
+					actionDims = a;
+					discrete = d;
+				} else if(!Arrays.equals(observationDims, o) || !Arrays.equals(actionDims, a)){
+					throw new RuntimeException("Gym workers report different dimensions: "
+							+Arrays.toString(o)+" vs "+Arrays.toString(observationDims));
+				}
+			}
+		} catch(Exception e){
+			cleanup();
+			throw new RuntimeException("Failed to launch Gym workers for "+this.config.env, e);
+		}
+		
+		observationSize = 1;
+		for(int d : observationDims){
+			observationSize *= d;
+		}
+		observations = new float[workers.size()*observationSize];
+		frame = new byte[4*observationSize];
+		rewards = new float[workers.size()];
+		
+		active = true;
+		
+		for(int k=0;k<workers.size();k++){
+			reset(k);
+		}
+	}
+
+	@Override
+	public void cleanup() {
+		active = false;
+		
+		for(Worker w : workers){
+			w.close();
+		}
+		workers.clear();
+		
+		observationDims = null;
+		actionDims = null;
+		discrete = true;
+		actionIndices = null;
+		scaledActions = null;
+	}
+	
+	private static int[] readDims(DataInputStream in) throws IOException {
+		int[] dims = new int[in.readInt()];
+		for(int i=0;i<dims.length;i++){
+			dims[i] = in.readInt();
+		}
+		return dims;
+	}
+	
+	private class Worker {
+		
+		private final Process process;
+		private final DataOutputStream out;
+		private final DataInputStream in;
+		
+		private boolean resetting = false;
+		private boolean terminal = false;
+		
+		public Worker(List<String> command) throws IOException {
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			process = builder.start();
+			out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			in = new DataInputStream(new BufferedInputStream(process.getInputStream(), 65536));
+		}
+		
+		public void reset() throws IOException {
+			// only send the request, the observation is read on the next collect
+			collect(-1);
+			out.writeByte('R');
+			out.flush();
+			resetting = true;
+			terminal = false;
+		}
+		
+		public void collect(int index) throws IOException {
+			if(!resetting)
+				return;
+			
+			readObservation(index);
+			resetting = false;
+		}
+		
+		public void readObservation(int index) throws IOException {
+			in.readFully(frame);
+			if(index < 0)
+				return;
+			
+			ByteBuffer.wrap(frame).asFloatBuffer().get(observations, index*observationSize, observationSize);
+		}
+		
+		public void close(){
+			try {
+				out.writeByte('C');
+				out.flush();
+			} catch(IOException e){
+				// worker already gone
+			}
+			
+			try {
+				if(!process.waitFor(1, TimeUnit.SECONDS)){
+					process.destroyForcibly();
+				}
+			} catch(InterruptedException e){
+				process.destroyForcibly();
+			}
+		}
+	}
+}
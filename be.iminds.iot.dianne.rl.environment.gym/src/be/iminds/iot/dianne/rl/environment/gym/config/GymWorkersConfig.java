@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.environment.gym.config;
+
+
+public class GymWorkersConfig {
+
+	/**
+	 * Environment to load, "Stub" runs a trivial stand-in environment that does not require gym
+	 */
+	public String env = "CartPole-v0";
+
+	/**
+	 * Number of worker processes, each owning a single environment instance
+	 */
+	public int environments = 1;
+	
+	/**
+	 * Render the Gym environments on the machine
+	 */
+	public boolean render = false;
+	
+	/**
+	 * Reward factor
+	 */
+	public float rewardFactor = 0.01f;
+
+	/**
+	 * action factor. Change range of the action.
+	 */
+	public float actionFactor = 1.0f;
+	
+	/**
+	 * Python interpreter used to launch the workers
+	 */
+	public String python = "python";
+	
+	/**
+	 * Custom command to launch a worker instead of the bundled gym_worker.py script, 
+	 * arguments separated by spaces. The worker should implement the same protocol.
+	 */
+	public String command;
+	
+}
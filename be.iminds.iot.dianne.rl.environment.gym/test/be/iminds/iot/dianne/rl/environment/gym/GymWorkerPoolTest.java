@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.environment.gym;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+/**
+ * Runs the worker pool with the Stub environment of the worker script, 
+ * skipped when no Python interpreter is available.
+ */
+public class GymWorkerPoolTest {
+
+	private static String python;
+	
+	private File dir;
+	private GymWorkerPool pool;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+		
+		for(String p : new String[]{"python3", "python"}){
+			try {
+				Process process = new ProcessBuilder(p, "-c", "import struct").start();
+				if(process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0){
+					python = p;
+					return;
+				}
+			} catch(Exception e){
+				// try next
+			}
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		Assume.assumeNotNull(python);
+		dir = Files.createTempDirectory("dianne-gym").toFile();
+		pool = new GymWorkerPool();
+	}
+	
+	@After
+	public void teardown() {
+		if(pool != null)
+			pool.deactivate();
+		if(dir != null)
+			delete(dir);
+	}
+	
+	private void delete(File f){
+		if(f.isDirectory()){
+			for(File c : f.listFiles()){
+				delete(c);
+			}
+		}
+		f.delete();
+	}
+	
+	private void activate(boolean dataArea) throws Exception {
+		// serve the worker script from the bundle sources
+		File script = new File("python/gym_worker.py");
+		Assume.assumeTrue(script.exists());
+		
+		Bundle bundle = (Bundle)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{Bundle.class}, (proxy, method, args) -> 
+					"getEntry".equals(method.getName()) ? script.toURI().toURL() : null);
+		BundleContext context = (BundleContext)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{BundleContext.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "getBundle":
+						return bundle;
+					case "getDataFile":
+						return dataArea ? new File(dir, (String)args[0]) : null;
+					default:
+						return null;
+					}
+				});
+		pool.activate(context);
+	}
+	
+	private Map<String, String> config(int environments){
+		Map<String, String> config = new HashMap<>();
+		config.put("env", "Stub");
+		config.put("environments", ""+environments);
+		config.put("python", python);
+		config.put("rewardFactor", "1");
+		return config;
+	}
+	
+	private Tensor actions(int n, int action){
+		Tensor actions = new Tensor(n, 2);
+		actions.fill(0.0f);
+		for(int k=0;k<n;k++){
+			actions.set(1.0f, k, action);
+		}
+		return actions;
+	}
+	
+	@Test
+	public void testStub() throws Exception {
+		activate(true);
+		Assert.assertTrue(new File(dir, "python/gym_worker.py").exists());
+		
+		pool.setup(config(3));
+		Assert.assertEquals(3, pool.size());
+		Assert.assertArrayEquals(new int[]{1}, pool.observationDims());
+		Assert.assertArrayEquals(new int[]{2}, pool.actionDims());
+		
+		boolean[] terminal = new boolean[3];
+		Tensor o = pool.getObservations(null, terminal);
+		Assert.assertArrayEquals(new int[]{3, 1}, o.dims());
+		Assert.assertArrayEquals(new float[]{5, 5, 5}, o.get(), 0.0f);
+		Assert.assertArrayEquals(new boolean[]{false, false, false}, terminal);
+		
+		// walk right until the end of the line
+		Tensor actions = actions(3, 1);
+		Tensor r = null;
+		for(int i=6;i<=10;i++){
+			r = pool.performActions(actions, r);
+			o = pool.getObservations(o, terminal);
+			Assert.assertArrayEquals(new float[]{i, i, i}, o.get(), 0.0f);
+		}
+		Assert.assertArrayEquals(new float[]{1, 1, 1}, r.get(), 0.0f);
+		Assert.assertArrayEquals(new boolean[]{true, true, true}, terminal);
+		
+		// reset a single instance
+		pool.reset(1);
+		o = pool.getObservations(o, terminal);
+		Assert.assertArrayEquals(new float[]{10, 5, 10}, o.get(), 0.0f);
+		Assert.assertArrayEquals(new boolean[]{true, false, true}, terminal);
+		
+		r = pool.performActions(actions(3, 0), r);
+		o = pool.getObservations(o, terminal);
+		Assert.assertArrayEquals(new float[]{9, 4, 9}, o.get(), 0.0f);
+		Assert.assertArrayEquals(new float[]{0, 0, 0}, r.get(), 0.0f);
+		
+		pool.cleanup();
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	@Test
+	public void testTempScript() throws Exception {
+		activate(false);
+		
+		pool.setup(config(1));
+		Tensor o = pool.getObservations(null, null);
+		Assert.assertArrayEquals(new float[]{5}, o.get(), 0.0f);
+	}
+	
+	@Test(expected=RuntimeException.class)
+	public void testSetupTwice() throws Exception {
+		activate(true);
+		
+		pool.setup(config(1));
+		pool.setup(config(1));
+	}
+}
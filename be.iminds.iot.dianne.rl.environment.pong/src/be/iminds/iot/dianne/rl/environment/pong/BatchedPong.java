@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.environment.pong;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Random;
+
+import org.osgi.service.component.annotations.Component;
+
+import be.iminds.iot.dianne.api.rl.environment.VectorEnvironment;
+import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
+import be.iminds.iot.dianne.rl.environment.pong.config.BatchedPongConfig;
+import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorOps;
+
+/**
+ * Headless variant of the Pong environment that simulates a number of games side 
+ * by side, mainly to benchmark the agent/learner pipeline without being bound by 
+ * the environment.
+ * 
+ * The game state is kept in primitive arrays (one entry per game), all games are 
+ * stepped in a single call and the observations are written in the caller's batch 
+ * Tensor at once. No listeners are notified, so the PongServlet won't render these games.
+ * 
+ * @author tverbele
+ *
+ */
+@Component(immediate = true,
+	service = VectorEnvironment.class,
+	property = { "name="+BatchedPong.NAME, "aiolos.unique=be.iminds.iot.dianne.api.rl.VectorEnvironment" })
+public class BatchedPong implements VectorEnvironment {
+	
+	public static final String NAME = "BatchedPong";
+	
+	private static final int OBSERVATION_SIZE = 6;
+	
+	// paddle length and width
+	private final float pl = 0.3f;  
+	private final float pw = 0.05f; 
+	// bounds
+	private final float b = 0.8f;
+	// ball radius
+	private final float rad = 0.025f;
+	// speed
+	private final float vdef = 0.012f; 
+	
+	private BatchedPongConfig config;
+	private volatile boolean active = false;
+	
+	private Random random;
+	
+	// state of each game
+	private int n;
+	private float[] x, y, vx, vy, p, o;
+	private boolean[] terminal;
+	
+	// preallocated buffers to exchange with the agent
+	private float[] observations;
+	private float[] rewards;
+	private Tensor actionIndices;
+	// native order direct buffer, so the action indices are copied without allocating a float[]
+	private ByteBuffer actionBuffer;
+	
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public int[] observationDims() {
+		return new int[]{OBSERVATION_SIZE};
+	}
+
+	@Override
+	public int[] actionDims() {
+		return new int[]{3};
+	}
+
+	@Override
+	public Tensor performActions(Tensor actions, Tensor r) {
+		if(!active)
+			throw new RuntimeException("The Environment is not active!");
+
+		actionIndices = TensorOps.argmax(actionIndices, actions, 1);
+		actionBuffer.clear();
+		actionIndices.get(actionBuffer);
+		
+		for(int k=0;k<n;k++){
+			rewards[k] = terminal[k] ? 0 : step(k, (int)actionBuffer.getFloat(4*k) - 1);
+		}
+		
+		if(r == null){
+			r = new Tensor(n);
+		} else {
+			r.reshape(n);
+		}
+		r.set(rewards);
+		return r;
+	}
+
+	@Override
+	public Tensor getObservations(Tensor t, boolean[] term) {
+		if(!active)
+			throw new RuntimeException("The Environment is not active!");
+		
+		for(int k=0;k<n;k++){
+			int i = k*OBSERVATION_SIZE;
+			observations[i] = x[k];
+			observations[i+1] = y[k];
+			observations[i+2] = vx[k];
+			observations[i+3] = vy[k];
+			observations[i+4] = p[k];
+			observations[i+5] = o[k];
+			
+			if(term != null)
+				term[k] = terminal[k];
+		}
+		
+		if(t == null){
+			t = new Tensor(n, OBSERVATION_SIZE);
+		} else {
+			t.reshape(n, OBSERVATION_SIZE);
+		}
+		t.set(observations);
+		return t;
+	}
+
+	@Override
+	public void reset(int k) {
+		if(!active)
+			throw new RuntimeException("The Environment is not active!");
+		
+		resetGame(k);
+	}
+
+	@Override
+	public void setup(Map<String, String> config) {
+		if(active)
+			throw new RuntimeException("This Environment is already active");
+		
+		this.config = DianneConfigHandler.getConfig(config, BatchedPongConfig.class);
+		
+		random = this.config.seed == -1 ? new Random() : new Random(this.config.seed);
+		
+		n = this.config.environments;
+		x = new float[n];
+		y = new float[n];
+		vx = new float[n];
+		vy = new float[n];
+		p = new float[n];
+		o = new float[n];
+		terminal = new boolean[n];
+		
+		observations = new float[n*OBSERVATION_SIZE];
+		rewards = new float[n];
+		actionIndices = new Tensor(n);
+		actionBuffer = ByteBuffer.allocateDirect(4*n).order(ByteOrder.nativeOrder());
+		
+		for(int k=0;k<n;k++){
+			resetGame(k);
+		}
+		
+		active = true;
+	}
+
+	@Override
+	public void cleanup() {
+		active = false;
+		actionIndices = null;
+		actionBuffer = null;
+	}
+	
+	/**
+	 * Advance game k config.skip frames, same dynamics as Pong against the AI opponent
+	 */
+	private float step(int k, int agentAction){
+		int opponentAction;
+		if (y[k] < o[k] - pl/2 )
+			opponentAction = -1;
+		else if (y[k] > o[k] + pl/2)
+			opponentAction = 1;
+		else
+			opponentAction = 0;
+		
+		float totalReward = 0;
+		
+		for(int i = 0; i < config.skip && !terminal[k]; i++){
+			float reward = 0;
+			
+			p[k] = clamp(p[k] + vdef * agentAction);
+			o[k] = clamp(o[k] + vdef * opponentAction);
+	
+			x[k] += vx[k];
+			y[k] += vy[k];
+
+			if (y[k] - rad < -1 * b) {
+				y[k] = -b + rad;
+				vy[k] = -vy[k];
+			} else if (y[k] + rad > 1 * b) {
+				y[k] = b - rad;
+				vy[k] = -vy[k];
+			}
+	
+			if (x[k] - rad - pw < -1) {
+				if(onPaddle(k, p[k])){
+					vx[k] = -vx[k];
+					vy[k] += agentAction*vdef/2;
+					
+					x[k] = -1 + rad + pw;
+				} else if (x[k] < -1) {
+					reward = -1;
+					score(k);
+				}
+			} else if (x[k] + rad + pw > 1) {
+				if(onPaddle(k, o[k])){
+					vx[k] = -vx[k];
+					vy[k] += opponentAction*vdef/2;
+					
+					x[k] = 1 - rad - pw;
+				} else if (x[k] > 1){
+					reward = 1;
+					score(k);
+				}
+			}
+			
+			totalReward += reward;
+		}
+		
+		return totalReward;
+	}
+	
+	private void score(int k){
+		if(config.terminalState){
+			terminal[k] = true;
+		} else {
+			resetGame(k);
+		}
+	}
+	
+	private float clamp(float paddle){
+		return Math.max(pl / 2 - 1*b, Math.min(1*b - pl / 2, paddle));
+	}
+	
+	private boolean onPaddle(int k, float paddle){
+		return paddle - pl / 2 - rad < y[k] &&  y[k] < paddle + pl / 2 + rad;
+	}
+	
+	private void resetGame(int k){
+		// reset ball position
+		x[k] = y[k] = 0;
+		// reset paddles ?
+		if(config.resetPaddles){
+			p[k] = o[k] = 0;
+		}
+
+		double r = random.nextDouble();
+		r = (r < 0.5) ? 3 * Math.PI / 4 + r * Math.PI : -Math.PI / 4 + (r - 0.5) * Math.PI;
+		
+		// fixed start position ?
+		if(!config.randomStart){
+			r = - Math.PI;
+		}
+		
+		vx[k] = vdef * (float) Math.cos(r);
+		vy[k] = vdef * (float) Math.sin(r);
+		
+		terminal[k] = false;
+	}
+}
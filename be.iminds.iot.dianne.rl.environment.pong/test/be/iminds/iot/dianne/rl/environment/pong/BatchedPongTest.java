@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.environment.pong;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class BatchedPongTest {
+
+	private BatchedPong pong;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup() {
+		pong = new BatchedPong();
+	}
+	
+	@After
+	public void teardown() {
+		pong.cleanup();
+	}
+	
+	private void setup(int environments){
+		Map<String, String> config = new HashMap<>();
+		config.put("environments", ""+environments);
+		config.put("seed", "1");
+		pong.setup(config);
+	}
+	
+	// one hot actions, 0 = down, 1 = stay, 2 = up
+	private Tensor actions(int... a){
+		Tensor actions = new Tensor(a.length, 3);
+		actions.fill(0.0f);
+		for(int k=0;k<a.length;k++){
+			actions.set(1.0f, k, a[k]);
+		}
+		return actions;
+	}
+	
+	@Test
+	public void testActions() {
+		setup(3);
+		Assert.assertEquals(3, pong.size());
+		
+		boolean[] terminal = new boolean[3];
+		Tensor o = pong.getObservations(null, terminal);
+		Assert.assertArrayEquals(new int[]{3, 6}, o.dims());
+		
+		// each game moves its own paddle, the ball moves left (no random start)
+		Tensor r = pong.performActions(actions(0, 1, 2), null);
+		Assert.assertArrayEquals(new float[]{0, 0, 0}, r.get(), 0.0f);
+		o = pong.getObservations(o, terminal);
+		for(int k=0;k<3;k++){
+			Assert.assertEquals(-0.06f, o.get(k, 0), 1e-5f);
+			Assert.assertEquals(0.06f*(k-1), o.get(k, 4), 1e-5f);
+		}
+		Assert.assertArrayEquals(new boolean[]{false, false, false}, terminal);
+		
+		// the action buffer is reused across steps
+		pong.performActions(actions(2, 1, 0), r);
+		o = pong.getObservations(o, terminal);
+		for(int k=0;k<3;k++){
+			Assert.assertEquals(0.0f, o.get(k, 4), 1e-5f);
+		}
+	}
+	
+	@Test
+	public void testMiss() {
+		setup(2);
+		
+		// game 0 moves its paddle away and misses the ball, game 1 keeps it in the middle
+		boolean[] terminal = new boolean[2];
+		Tensor r = null;
+		float total = 0;
+		for(int i=0;i<40 && !terminal[0];i++){
+			r = pong.performActions(actions(2, 1), r);
+			total += r.get(0);
+			Assert.assertEquals(0.0f, r.get(1), 0.0f);
+			pong.getObservations(null, terminal);
+		}
+		Assert.assertTrue(terminal[0]);
+		Assert.assertFalse(terminal[1]);
+		Assert.assertEquals(-1.0f, total, 0.0f);
+		
+		pong.reset(0);
+		pong.getObservations(null, terminal);
+		Assert.assertFalse(terminal[0]);
+	}
+	
+	@Test
+	public void testBenchmark() {
+		int n = 256;
+		int steps = 1000;
+		setup(n);
+		
+		int[] a = new int[n];
+		Tensor actions = actions(a);
+		Tensor o = null;
+		Tensor r = null;
+		boolean[] terminal = new boolean[n];
+		
+		long t1 = System.nanoTime();
+		for(int i=0;i<steps;i++){
+			r = pong.performActions(actions, r);
+			o = pong.getObservations(o, terminal);
+			for(int k=0;k<n;k++){
+				if(terminal[k])
+					pong.reset(k);
+			}
+		}
+		long t2 = System.nanoTime();
+		System.out.println("BatchedPong: "+(long)(steps*n/((t2-t1)/1e9))+" environment steps/s with "+n+" games");
+	}
+}
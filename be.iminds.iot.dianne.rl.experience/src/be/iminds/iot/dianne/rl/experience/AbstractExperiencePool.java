@@ -22,25 +22,30 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.rl.experience;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 import be.iminds.iot.dianne.api.dataset.AbstractDataset;
 import be.iminds.iot.dianne.api.dataset.Sequence;
@@ -51,6 +56,20 @@ import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSequence;
 import be.iminds.iot.dianne.tensor.Tensor;
 
+/**
+ * Base class for experience pools that keep the samples in a ring buffer.
+ * 
+ * Writers never take a global lock while copying their samples: each addSequence 
+ * reserves a region of the ring buffer by atomically advancing the tail, copies its 
+ * samples into that region and then publishes the sequence in reservation order. Only 
+ * evicting the overwritten sequences and publishing take a short write section. 
+ * 
+ * Readers use an optimistic read (seqlock) that is validated after the data is copied 
+ * out, and only fall back to a read lock in case a writer evicted or published in between. 
+ * 
+ * @author tverbele
+ *
+ */
 public abstract class AbstractExperiencePool extends AbstractDataset implements ExperiencePool {
 
 	protected int maxSize = 10000; // max number of samples in the experience pool
@@ -61,25 +80,38 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 	protected int actionSize;
 	protected int sampleSize;
 	
-	protected boolean infiniteHorizon = false;
+	// once a sequence takes more buffer positions than it has samples (i.e. the next state of an 
+	// infinite sequence, or a failed write) sample indices are no longer contiguous in the buffer
+	protected volatile boolean infiniteHorizon = false;
 	
-	protected ExecutorService queuedAddSequenceThread = Executors.newSingleThreadExecutor();
+	// number of buffer positions reserved in front of each sequence, i.e. to store the history of the first state
+	protected int history = 0;
 	
 	public class SequenceLocation {
 		public final int start;
 		public final int length;
 		public final boolean infinite;
+		// position counted over all samples ever written, start = offset % maxSize
+		public final long offset;
+		// number of buffer positions taken, including the history in front
+		public final int size;
+		// number of samples published before this sequence, set when published
+		long before;
 		
 		public SequenceLocation(int start, int length){
-			this.start = start;
-			this.length = length;
-			this.infinite = false;
+			this(start, length, false);
 		}
 		
 		public SequenceLocation(int start, int length, boolean infinite){
+			this(start, length, infinite, start, length + (infinite ? 1 : 0));
+		}
+		
+		SequenceLocation(int start, int length, boolean infinite, long offset, int size){
 			this.start = start;
 			this.length = length;
 			this.infinite = infinite;
+			this.offset = offset;
+			this.size = size;
 		}
 		
 		public String toString(){
@@ -87,9 +119,45 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		}
 	}
 	
-	protected List<SequenceLocation> sequences = new ArrayList<>();
+	// published sequences, indexed by sequence number in a ring of maxSize entries
+	private SequenceLocation[] sequences;
+	// sequence number of the oldest and the next sequence
+	private volatile long first = 0;
+	private volatile long last = 0;
+	// number of samples ever published, the before of the sequences are a ring of cumulative offsets
+	private long samples = 0;
+	// number of samples of the oldest sequence that are already taken out
+	private int taken = 0;
+	
+	// end of the region of the buffer reserved by writers
+	private final AtomicLong reserved = new AtomicLong();
+	// end of the region of the buffer published to readers
+	private volatile long published = 0;
+	
+	// guards the published sequences, only write locked to evict/publish sequences
+	protected final StampedLock lock = new StampedLock();
+	
+	// chunks of buffer positions written since the last snapshot
+	private int chunkSize;
+	private AtomicIntegerArray dirty;
+	private final Object snapshot = new Object();
 	
-	protected ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+	// marks a sequences file that starts with the snapshot generation
+	private static final int SNAPSHOT = -1;
+	// the data of consecutive snapshots alternates between two files, so the data 
+	// referred to by the current sequences file is never overwritten
+	private long generation = 0;
+	// per data file, the chunks that changed since that file was last written
+	private boolean[][] pending;
+	// recovered from an older snapshot layout, cleaned up after the next snapshot
+	private boolean legacy = false;
+	
+	// priorities per buffer position for prioritized sampling
+	protected PriorityTree priorities;
+	// generation per buffer position, incremented each time the position is filled or cleared,
+	// so that priority updates for a sample that is no longer there can be ignored
+	private long[] stamps;
+	private final Random random = new Random(System.currentTimeMillis());
 	
 	@Override
 	public void activate(Map<String, Object> config) {
@@ -104,6 +172,19 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		sampleSize = stateSize+actionSize+2;
 
 		setup(config);
+		if(history > 0)
+			infiniteHorizon = true;
+		
+		sequences = new SequenceLocation[maxSize];
+		
+		// snapshot in chunks of about 4 MB
+		chunkSize = Math.max(1, Math.min(maxSize, (4 << 20) / slotSize()));
+		dirty = new AtomicIntegerArray((maxSize + chunkSize - 1) / chunkSize);
+		pending = new boolean[2][dirty.length()];
+		Arrays.fill(pending[0], true);
+		Arrays.fill(pending[1], true);
+		priorities = new PriorityTree(maxSize);
+		stamps = new long[maxSize];
 		
 		recover();
 	}
@@ -151,12 +232,12 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 	
 	@Override
 	public int sequences(){
-		return sequences.size();
+		return read(() -> (int)(last-first));
 	}
 	
 	@Override
 	public int sequenceLength(int sequence){
-		return sequences.get(sequence).length;
+		return read(() -> sequence(sequence).length);
 	}
 	
 	@Override
@@ -176,7 +257,6 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 	
 	@Override
 	public ExperiencePoolSample getSample(ExperiencePoolSample s, int index){
-		// no locking since that kills performance and every part of the experience pool should be a valid xp sample
 		return getSample(s, index, 0, true);
 	}
 		
@@ -194,58 +274,116 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		return b;
 	}
 
+	@Override
+	public ExperiencePoolBatch getPrioritizedBatch(ExperiencePoolBatch b, int size, float alpha, float beta) {
+		if(b == null){
+			b = new ExperiencePoolBatch(size, stateDims, actionDims);
+		}
+		if(b.indices == null || b.indices.length != size){
+			b.indices = new int[size];
+		}
+		if(b.stamps == null || b.stamps.length != size){
+			b.stamps = new long[size];
+		}
+		if(b.weights == null){
+			b.weights = new Tensor(size);
+		}
+		
+		synchronized(priorities){
+			priorities.setAlpha(alpha);
+		}
+		
+		final int[] indices = b.indices;
+		final long[] sampleStamps = b.stamps;
+		final float[] weights = new float[size];
+		for(int i=0;i<size;i++){
+			final int k = i;
+			// stratified sampling: one sample out of each equal part of the priority mass
+			final double u = (k + random.nextDouble())/size;
+			float[] data = read(() -> {
+				synchronized(priorities){
+					double total = priorities.total();
+					if(total <= 0){
+						throw new IllegalStateException("Cannot sample from an empty experience pool");
+					}
+					
+					// the importance-sampling weight (N*P(i))^-beta is normalized by the max weight (N*P(min))^-beta
+					indices[k] = priorities.find(u*total);
+					sampleStamps[k] = stamps[indices[k]];
+					weights[k] = (float)Math.pow(priorities.value(indices[k])/priorities.min(), -beta);
+				}
+				return loadSample(indices[k], null);
+			});
+			toSample(b.getSample(k), data, true);
+		}
+		b.weights.set(weights);
+		
+		return b;
+	}
+	
+	@Override
+	public void updatePriorities(int[] indices, long[] s, float[] p) {
+		synchronized(priorities){
+			for(int i=0;i<indices.length;i++){
+				// ignore positions that got evicted or refilled since they were sampled
+				if(stamps[indices[i]] == s[i]){
+					priorities.set(indices[i], p[i]);
+				}
+			}
+		}
+	}
 	
 	@Override
 	public ExperiencePoolSequence getSequence(ExperiencePoolSequence s, int sequence, int index, int length){
 		if(s == null){
 			s = new ExperiencePoolSequence();
 		}
-		List<ExperiencePoolSample> list = s.data; 
 				
-		if(sequence > sequences.size()){
+		if(sequence > sequences()){
 			throw new RuntimeException("Invalid sequence number");
 		}
 		
-		try {
-			lock.readLock().lock();
-			
-			SequenceLocation seq = sequences.get(sequence);
+		float[][] data = read(() -> {
+			SequenceLocation seq = sequence(sequence);
 			if(index >= seq.length){
-				throw new RuntimeException("Invalid start index: "+index);
+				throw new IllegalArgumentException("Invalid start index: "+index);
 			}
 			
-			if(length == -1){
-				length = seq.length-index;
-			} else {
-				length = seq.length-index < length ? seq.length-index : length;
-			}
+			int l = length == -1 || seq.length-index < length ? seq.length-index : length;
 			
-			ExperiencePoolSample previous = null;
-			for(int i=0;i<length;i++){
-				ExperiencePoolSample sample = null;
-				if(list.size() <= i){
-					sample = new ExperiencePoolSample(previous == null ? null : previous.nextState, null, 0, null);
-					list.add(sample);
-				} else {
-					sample = list.get(i);
-					if(previous != null){
-						sample.input = previous.nextState;
-					}
-				}
-				
-				if(i==0){
-					getSample(sample, i+index, sequence, true);
-				} else {
-					getSample(sample, i+index, sequence, false);
+			float[][] d = new float[l][];
+			for(int i=0;i<l;i++){
+				d[i] = loadSample((seq.offset+index+i) % maxSize, null);
+			}
+			return d;
+		});
+		
+		return toSequence(s, data);
+	}
+	
+	private ExperiencePoolSequence toSequence(ExperiencePoolSequence s, float[][] data){
+		List<ExperiencePoolSample> list = s.data; 
+		
+		ExperiencePoolSample previous = null;
+		for(int i=0;i<data.length;i++){
+			ExperiencePoolSample sample = null;
+			if(list.size() <= i){
+				sample = new ExperiencePoolSample(previous == null ? null : previous.nextState, null, 0, null);
+				list.add(sample);
+			} else {
+				sample = list.get(i);
+				if(previous != null){
+					sample.input = previous.nextState;
 				}
-				
-				previous = sample;
 			}
 			
-			s.size = length;
-		} finally {
-			lock.readLock().unlock();
+			// in sequences one reuses the nextState tensor of previous instead of loading state again
+			toSample(sample, data[i], i==0);
+			
+			previous = sample;
 		}
+		
+		s.size = data.length;
 
 		return s;
 	}
@@ -257,29 +395,21 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		}
 		List<ExperiencePoolBatch> list = b.data; 
 				
-		boolean l = false;
+		int noSequences = sequences();
 		for(int sequence : sequences){
-			if(sequence > this.sequences.size()){
+			if(sequence > noSequences){
 				throw new RuntimeException("Invalid sequence number");
 			}
-			if(sequence == 0){
-				l = true;
-			}
 		}
 		
-		try {
-			// only lock if you want the first sequence ... this is the only one that might get overridden when no lock taken
-			if(l){
-				lock.readLock().lock();
-			}
-			
-			int[] globalIndices = new int[sequences.length];
+		float[][][] data = read(() -> {
+			long[] positions = new long[sequences.length];
 			int minLength = Integer.MAX_VALUE;
 			
 			for(int k=0; k<sequences.length;k++){
-				SequenceLocation seq = this.sequences.get(sequences[k]);
+				SequenceLocation seq = sequence(sequences[k]);
 				if(indices[k] >= seq.length){
-					throw new RuntimeException("Invalid start index: "+indices[k]);
+					throw new IllegalArgumentException("Invalid start index: "+indices[k]);
 				}
 			
 				int sequenceLength;
@@ -293,29 +423,33 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 					minLength = sequenceLength;
 				}
 			
-				globalIndices[k] = seq.start + indices[k];
+				positions[k] = seq.offset + indices[k];
 			}
-				
 			
+			float[][][] d = new float[minLength][sequences.length][];
 			for(int i=0;i<minLength;i++){
-				if(list.size() > i){
-					getBatch(list.get(i), globalIndices);
-				} else {
-					ExperiencePoolBatch batch = getBatch(null, globalIndices);
-					list.add(batch);
-				}
-				
-				for(int k=0;k<globalIndices.length;k++){
-					globalIndices[k] = globalIndices[k]+1;
+				for(int k=0;k<positions.length;k++){
+					d[i][k] = loadSample((positions[k]+i) % maxSize, null);
 				}
 			}
+			return d;
+		});
+		
+		for(int i=0;i<data.length;i++){
+			ExperiencePoolBatch batch;
+			if(list.size() > i){
+				batch = list.get(i);
+			} else {
+				batch = new ExperiencePoolBatch(sequences.length, stateDims, actionDims);
+				list.add(batch);
+			}
 			
-			b.size = minLength;
-		} finally {
-			if(l){
-				lock.readLock().unlock();
+			for(int k=0;k<sequences.length;k++){
+				toSample(batch.getSample(k), data[i][k], true);
 			}
 		}
+		
+		b.size = data.length;
 
 		return b;
 	}
@@ -328,7 +462,7 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		}
 
 		int length = sequence.size();
-		int size = length;
+		int size = history + length;
 		boolean infinite = false;
 		if(!sequence.get(size-1).isTerminal()){
 			size += 1;
@@ -342,108 +476,259 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 			return;
 		}
 		
-		float[] buffer = new float[sampleSize];
-		boolean locked = false;
+		// reserve a region of the buffer
+		final long offset = reserved.getAndAdd(size);
+		final long end = offset + size;
+		final long first = offset + history;
+		
+		// wait until the region we are going to overwrite is published by slower writers
+		while(published < end - maxSize){
+			Thread.yield();
+		}
+		
+		// evict the sequences that are going to be overwritten
+		if(end > maxSize){
+			long stamp = lock.writeLock();
+			try {
+				while(this.first < last && sequence(0).offset - history < end - maxSize){
+					removeFirstSequence();
+				}
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+		
+		// copy the samples
+		boolean written = false;
 		try {
-			locked = lock.writeLock().tryLock();
+			write(offset, sequence);
+			written = true;
+		} catch(Throwable t){ 
+			t.printStackTrace();
+		} finally {
+			// mark the written chunks for the next snapshot
+			for(long p = offset; p < end; ){
+				int position = (int)(p % maxSize);
+				int c = position / chunkSize;
+				dirty.set(c, 1);
+				p += Math.min((c+1)*chunkSize, maxSize) - position;
+			}
 			
-			if(!locked){
-				// take copy of the sequence and add to the queuedAddSequence thread...
-				// this allows for agents not having to keep on waiting until sequence is added...
-				final Sequence<ExperiencePoolSample> copy = sequence.clone();
-				
-				// TODO should we make sure we are not getting flooded with addSequences 
-				// and ignore addSequence calls once queue gets crowded?
-				queuedAddSequenceThread.submit(() ->{
-					try {
-						lock.writeLock().lock();
-						addSequence(copy);
-					} finally {
-						lock.writeLock().unlock();
-					}
-				});
-				return;
+			// always publish, otherwise later writers keep on waiting on this region
+			publish(new SequenceLocation((int)(first % maxSize), written ? length : 0, infinite, first, size));
+		}
+	}
+	
+	/**
+	 * Copy the samples of a sequence into the buffer, starting at the (not yet wrapped) offset.
+	 * In case of an infinite sequence the last next state is written at the position after 
+	 * the last sample. This is called without holding any lock.
+	 */
+	protected void write(long offset, Sequence<ExperiencePoolSample> sequence){
+		int size = sequence.size();
+		if(!sequence.get(size-1).isTerminal()){
+			size += 1;
+		}
+		
+		float[] buffer = new float[sampleSize];
+		for(int i=0;i<size;i++){
+			Arrays.fill(buffer, 0.0f);
+			if(sequence.size() == i){
+				ExperiencePoolSample s = sequence.get(sequence.size()-1);
+				System.arraycopy(s.nextState.get(), 0, buffer, 0 , stateSize);
+				buffer[stateSize+actionSize+1] = 1.0f;
+			} else {
+				ExperiencePoolSample s = sequence.get(i);
+				System.arraycopy(s.input.get(), 0, buffer, 0 , stateSize);
+				System.arraycopy(s.target.get(), 0, buffer, stateSize, actionSize);
+				buffer[stateSize+actionSize] = s.getScalarReward();
+				buffer[stateSize+actionSize+1] = s.isTerminal() ? 0.0f : 1.0f;
 			}
-
-			int index = getBufferEnd();
-			int start = index == maxSize ? 0 : index;
 			
-			if(start == 0 && !sequences.isEmpty()
-					&& sequences.get(0).start == 0){
-				SequenceLocation removed = sequences.remove(0);
-				noSamples -= removed.length;
+			writeData(((offset+i) % maxSize)*sampleSize, buffer);
+		}
+	}
+	
+	private void publish(SequenceLocation seq){
+		// publish in reservation order
+		final long offset = seq.offset - history;
+		while(published != offset){
+			Thread.yield();
+		}
+		
+		long stamp = lock.writeLock();
+		try {
+			if(seq.length > 0){
+				seq.before = samples;
+				samples += seq.length;
+				sequences[(int)(last % maxSize)] = seq;
+				last++;
+				noSamples += seq.length;
+			} else {
+				// failed write, this region is skipped
+				infiniteHorizon = true;
 			}
 			
-			for(int i=0;i<size;i++){
-				Arrays.fill(buffer, 0.0f);
-				if(sequence.size() == i){
-					ExperiencePoolSample s = sequence.get(sequence.size()-1);
-					System.arraycopy(s.nextState.get(), 0, buffer, 0 , stateSize);
-					buffer[stateSize+actionSize+1] = 1.0f;
-				} else {
-					ExperiencePoolSample s = sequence.get(i);
-					System.arraycopy(s.input.get(), 0, buffer, 0 , stateSize);
-					System.arraycopy(s.target.get(), 0, buffer, stateSize, actionSize);
-					buffer[stateSize+actionSize] = s.getScalarReward();
-					buffer[stateSize+actionSize+1] = s.isTerminal() ? 0.0f : 1.0f;
-				}
-				
-				if(index == maxSize){
-					// cycle 
-					index = 0;
-					
-					if(sequences.get(0).start == 0){
-						SequenceLocation removed = sequences.remove(0);
-						noSamples -= removed.length;
+			// new samples get max priority, the history and trailing next state of an infinite sequence are no samples
+			synchronized(priorities){
+				for(int i=0;i<seq.size;i++){
+					int index = (int)((offset+i) % maxSize);
+					stamps[index]++;
+					if(i >= history && i < history + seq.length){
+						priorities.setMax(index);
+					} else {
+						priorities.set(index, 0);
 					}
 				}
-
-				if( getBufferStart() > 0 && index == getBufferStart()){
-					SequenceLocation removed = sequences.remove(0);
-					noSamples -= removed.length;
-				}
-				
-				writeData((long)index*(long)sampleSize, buffer);
-				index++;
 			}
 			
-			SequenceLocation seq = new SequenceLocation(start, length, infinite);
-			sequences.add(seq);
-			noSamples+= length;
-			
-		} catch(Throwable t){ 
-			t.printStackTrace();
+			published = offset + seq.size;
 		} finally {
-			if(locked)
-				lock.writeLock().unlock();
+			lock.unlockWrite(stamp);
 		}
 	}
 	
 	@Override
 	public void reset() {
+		long stamp = lock.writeLock();
 		try {
-			lock.writeLock().lock();
 			noSamples = 0;
-			sequences.clear();
+			first = last;
+			taken = 0;
+			synchronized(priorities){
+				priorities.clear();
+				for(int i=0;i<maxSize;i++){
+					stamps[i]++;
+				}
+			}
 		} finally {
-			lock.writeLock().unlock();
+			lock.unlockWrite(stamp);
 		}
 		
 	}
-
-	protected ExperiencePoolSample getSample(ExperiencePoolSample s, int index, int startSequence, boolean loadState){
-		float[] sampleBuffer = new float[sampleSize];
+	
+	/**
+	 * Run a read of the pool, optimistically without locking in case no concurrent 
+	 * evict/publish happens. The reader should only copy data out of the pool, since it
+	 * might be executed twice and see an inconsistent state the first time.
+	 */
+	protected <T> T read(Supplier<T> reader){
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0){
+			try {
+				T result = reader.get();
+				if(lock.validate(stamp)){
+					return result;
+				}
+			} catch(RuntimeException e){
+				// might be caused by an inconsistent view, retry with lock
+			}
+		}
 		
-		long bufferPosition = 0;
+		stamp = lock.readLock();
 		try {
-			lock.readLock().lock();
-			bufferPosition = getBufferPosition(index, startSequence);
-			loadData(bufferPosition*sampleSize, sampleBuffer);
+			return reader.get();
 		} finally {
-			lock.readLock().unlock();
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	// get the n-th oldest sequence, only use within read()
+	private SequenceLocation sequence(int n){
+		if(n >= last-first){
+			throw new IllegalArgumentException("Invalid sequence number "+n);
+		}
+		return sequences[(int)((first+n) % maxSize)];
+	}
+	
+	/**
+	 * Take at most length samples of the oldest sequence out of the pool, so the pool can be 
+	 * consumed as a FIFO queue. The oldest sequence is removed once all its samples are taken,
+	 * a sequence that is taken partially continues where the previous take stopped.
+	 * 
+	 * @return the taken samples, or null in case the pool is empty
+	 */
+	protected ExperiencePoolSequence take(ExperiencePoolSequence s, int length){
+		float[][] data;
+		long stamp = lock.writeLock();
+		try {
+			if(first == last){
+				return null;
+			}
+			
+			SequenceLocation seq = sequence(0);
+			int l = length <= 0 || seq.length-taken < length ? seq.length-taken : length;
+			data = new float[l][];
+			for(int i=0;i<l;i++){
+				data[i] = loadSample((seq.offset+taken+i) % maxSize, null);
+			}
+			
+			taken += l;
+			noSamples -= l;
+			if(taken == seq.length){
+				removeFirstSequence();
+			}
+		} finally {
+			lock.unlockWrite(stamp);
 		}
-
 		
+		if(s == null){
+			s = new ExperiencePoolSequence();
+		}
+		return toSequence(s, data);
+	}
+	
+	// only call when write locked
+	private void removeFirstSequence(){
+		SequenceLocation removed = sequence(0);
+		first++;
+		noSamples -= removed.length - taken;
+		taken = 0;
+		
+		synchronized(priorities){
+			for(int i=0;i<removed.size;i++){
+				int index = (int)((removed.offset-history+i) % maxSize);
+				stamps[index]++;
+				priorities.set(index, 0);
+			}
+		}
+	}
+	
+	protected ExperiencePoolSample getSample(ExperiencePoolSample s, int index, int startSequence, boolean loadState){
+		float[] data = read(() -> loadSample(getBufferPosition(index, startSequence) % maxSize, null));
+		return toSample(s, data, loadState);
+	}
+	
+	private float[] loadSample(long bufferPosition, float[] data){
+		if(data == null){
+			data = new float[sampleSize+stateSize];
+		}
+		readSample((int)bufferPosition, data);
+		return data;
+	}
+	
+	/**
+	 * Copy the sample at a buffer position into data, laid out as state, action, reward, 
+	 * terminal flag and next state (only in case the sample is not terminal). 
+	 */
+	protected void readSample(int bufferPosition, float[] data){
+		float[] sampleBuffer = new float[sampleSize];
+		loadData(((long)bufferPosition)*sampleSize, sampleBuffer);
+		System.arraycopy(sampleBuffer, 0, data, 0, sampleSize);
+		
+		if(sampleBuffer[stateSize+actionSize+1] != 0.0f){
+			// load next state
+			float[] nextStateBuffer = new float[stateSize];
+			bufferPosition += 1;
+			if(bufferPosition == maxSize)
+				bufferPosition = 0;
+			
+			loadData(((long)bufferPosition)*sampleSize, nextStateBuffer);
+			System.arraycopy(nextStateBuffer, 0, data, sampleSize, stateSize);
+		}
+	}
+	
+	private ExperiencePoolSample toSample(ExperiencePoolSample s, float[] data, boolean loadState){
 		if(s == null){
 			s = new ExperiencePoolSample();	
 		}
@@ -452,7 +737,7 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		// in case of sequences on might just reuse nextState tensor of previous instead of loading state again
 		if(loadState){
 			float[] stateBuffer = new float[stateSize];
-			System.arraycopy(sampleBuffer, 0, stateBuffer, 0, stateSize);
+			System.arraycopy(data, 0, stateBuffer, 0, stateSize);
 
 			if(s.input == null){
 				s.input = new Tensor(stateBuffer, stateDims);
@@ -463,7 +748,7 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		
 		// action
 		float[] actionBuffer = new float[actionSize];
-		System.arraycopy(sampleBuffer, stateSize, actionBuffer, 0, actionSize);
+		System.arraycopy(data, stateSize, actionBuffer, 0, actionSize);
 		
 		if(s.target == null){
 			s.target = new Tensor(actionBuffer, actionDims);
@@ -475,22 +760,18 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		if(s.reward == null){
 			s.reward = new Tensor(1);
 		}
-		s.reward.set(sampleBuffer[stateSize+actionSize], 0);
+		s.reward.set(data[stateSize+actionSize], 0);
 		
 		// terminal
 		if(s.terminal == null){
 			s.terminal = new Tensor(1);
 		}
-		s.terminal.set(sampleBuffer[stateSize+actionSize+1], 0);
+		s.terminal.set(data[stateSize+actionSize+1], 0);
 		
 		if(!s.isTerminal()){
-			// load next state
+			// next state
 			float[] nextStateBuffer = new float[stateSize];
-			bufferPosition += 1;
-			if(bufferPosition == maxSize)
-				bufferPosition = 0;
-			
-			loadData((bufferPosition*sampleSize) , nextStateBuffer);
+			System.arraycopy(data, sampleSize, nextStateBuffer, 0, stateSize);
 
 			if(s.nextState == null){
 				s.nextState = new Tensor(nextStateBuffer, stateDims);
@@ -507,42 +788,37 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		return s;
 	}
 	
+	// position (counted over all samples written) of the index-th sample starting from sequence startSequence
+	// only use within read()
 	private long getBufferPosition(long index, int startSequence){
-		long pos;
-		long start = sequences.get(startSequence).start;
+		SequenceLocation seq = sequence(startSequence);
 		if(!infiniteHorizon){
-			pos = (start+index) % maxSize;
-		} else {
-			int i = startSequence;
-			long trackedIndex = 0;
-			long correctedIndex = 0;
-			while(i < sequences.size() && trackedIndex < index){
-				int length = sequences.get(i).length;
-				trackedIndex += length;
-				correctedIndex += length;
-				if(trackedIndex > index){
-					correctedIndex -= (trackedIndex-index);
-				} else if(sequences.get(i).infinite){
-					correctedIndex +=1;
-				}
-				i++;
+			if(index >= noSamples){
+				throw new IllegalArgumentException("Invalid index "+index);
 			}
-			pos = (start+correctedIndex) % maxSize;
+			return seq.offset+index;
+		} 
+		
+		// binary search the cumulative offsets for the sequence containing the sample
+		long sample = seq.before + index;
+		int lo = startSequence;
+		int hi = (int)(last-first)-1;
+		SequenceLocation end = sequence(hi);
+		if(index < 0 || sample >= end.before + end.length){
+			throw new IllegalArgumentException("Invalid index "+index);
 		}
-		return pos;
-	}
-	
-	private int getBufferStart(){
-		if(sequences.isEmpty())
-			return 0;
-		return sequences.get(0).start;
-	}
-	
-	private int getBufferEnd(){
-		if(sequences.isEmpty())
-			return 0;
-		SequenceLocation last = sequences.get(sequences.size() - 1);
-		return  (last.start+last.length + (last.infinite ? 1 : 0)) % maxSize;
+		
+		while(lo < hi){
+			int mid = (lo + hi + 1) >>> 1;
+			if(sequence(mid).before <= sample){
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		
+		seq = sequence(lo);
+		return seq.offset + (sample - seq.before);
 	}
 	
 	protected abstract void setup(Map<String, Object> config);
@@ -551,10 +827,45 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 	
 	protected abstract void writeData(long position, float[] data);
 
-	protected abstract void dumpData() throws IOException;
+	/**
+	 * @return the number of bytes a buffer position takes in a snapshot
+	 */
+	protected abstract int slotSize();
 	
-	protected abstract void recoverData();
+	/**
+	 * Bulk copy the buffer positions [from, to) into the target
+	 */
+	protected abstract void dumpData(int from, int to, ByteBuffer target);
 	
+	/**
+	 * Bulk copy the buffer positions [from, to) from the source
+	 */
+	protected abstract void recoverData(int from, int to, ByteBuffer source);
+	
+	/**
+	 * Recover the data from a snapshot in the layout used before the alternating data files, if present
+	 * @return whether such snapshot was found
+	 */
+	protected boolean recoverLegacyData() {
+		return false;
+	}
+	
+	/**
+	 * Remove the data files of the layout used before the alternating data files
+	 */
+	protected void deleteLegacyData() {
+	}
+	
+	/**
+	 * Write an incremental snapshot of the pool to dir. Only chunks of the buffer that are
+	 * written since the last snapshot are copied to the data file, and agents can keep on 
+	 * adding sequences meanwhile. The sequences file is only replaced after the data is copied, 
+	 * and only lists the sequences that were published before and not evicted during the copy.
+	 * 
+	 * The data is written to the data file of the previous snapshot, while the sequences
+	 * file still refers to the other one. Replacing the sequences file commits the snapshot, so
+	 * a crash during the dump leaves the last complete snapshot intact.
+	 */
 	@Override
 	public void dump() {
 		// write json if not preset
@@ -581,37 +892,116 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 		descriptor.append(maxSize);
 		descriptor.append("\n}");
 		
-		try {
-			Files.write( Paths.get(dir+File.separator+name+".json"), descriptor.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-		
-			lock.writeLock().lock();
-		
-			// write sequences
-			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir+File.separator+"sequences"))))){
-				for(SequenceLocation s : sequences){
-					out.writeInt(s.start);
-					out.writeInt(s.length);
-					out.writeBoolean(s.infinite);
+		synchronized(snapshot){
+			try {
+				Files.write( Paths.get(dir+File.separator+name+".json"), descriptor.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			
+				// sequences published at the start of the snapshot
+				SequenceLocation[] locations;
+				long from;
+				long stamp = lock.readLock();
+				try {
+					from = first;
+					locations = new SequenceLocation[(int)(last-first)];
+					for(int i=0;i<locations.length;i++){
+						locations[i] = sequence(i);
+					}
+				} finally {
+					lock.unlockRead(stamp);
+				}
+				
+				long gen = generation + 1;
+				boolean[] write = pending[(int)(gen % 2)];
+				boolean[] other = pending[(int)((gen+1) % 2)];
+				for(int c=0;c<dirty.length();c++){
+					if(dirty.getAndSet(c, 0) != 0){
+						write[c] = true;
+						other[c] = true;
+					}
+				}
+				
+				// copy the chunks that changed since this data file was last written
+				int slotSize = slotSize();
+				ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize*slotSize).order(ByteOrder.LITTLE_ENDIAN);
+				try (FileChannel channel = FileChannel.open(dataFile(gen).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)){
+					for(int c=0;c<write.length;c++){
+						if(!write[c])
+							continue;
+						
+						int start = c*chunkSize;
+						int end = Math.min(maxSize, start+chunkSize);
+						
+						buffer.clear();
+						dumpData(start, end, buffer);
+						buffer.flip();
+						
+						long position = ((long)start)*slotSize;
+						while(buffer.hasRemaining()){
+							position += channel.write(buffer, position);
+						}
+					}
+					channel.force(false);
+				}
+				
+				// skip the sequences that got evicted, and thus might be overwritten, during the copy
+				int skip = (int)Math.max(0, first - from);
+				
+				// write sequences
+				File tmp = new File(dir+File.separator+"sequences.tmp");
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))){
+					out.writeInt(SNAPSHOT);
+					out.writeLong(gen);
+					for(int i=skip;i<locations.length;i++){
+						SequenceLocation s = locations[i];
+						out.writeInt(s.start);
+						out.writeInt(s.length);
+						out.writeBoolean(s.infinite);
+					}
+					out.flush();
+				}
+				Files.move(tmp.toPath(), Paths.get(dir+File.separator+"sequences"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				
+				generation = gen;
+				Arrays.fill(write, false);
+				
+				if(legacy){
+					deleteLegacyData();
+					legacy = false;
 				}
-				out.flush();
+			} catch(Exception e){ 
+				e.printStackTrace();
 			}
-			
-			// dump data
-			dumpData();
-		
-		} catch(Exception e){ 
-			e.printStackTrace();
-		}finally {
-			lock.writeLock().unlock();
 		}
 	}
 	
 	public void recover() {
+		long stamp = lock.writeLock();
 		try {
-			lock.writeLock().lock();
-
+			File sequencesFile = new File(dir+File.separator+"sequences");
+			if(!sequencesFile.exists())
+				return;
+			
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(sequencesFile.toPath())));
+			
+			// recover data, older snapshots have no generation in the sequences file
+			in.mark(12);
+			if(in.available() >= 12 && in.readInt() == SNAPSHOT){
+				generation = in.readLong();
+				if(!recoverData(dataFile(generation)))
+					return;
+				
+				Arrays.fill(pending[(int)(generation % 2)], false);
+			} else {
+				in.reset();
+				if(!recoverLegacyData())
+					return;
+				
+				legacy = true;
+			}
+			
 			// recover sequences
-			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir+File.separator+"sequences"))))){
+			try {
+				long offset = -1;
 				while(true){
 					int start = in.readInt();
 					int length = in.readInt();
@@ -619,20 +1009,66 @@ public abstract class AbstractExperiencePool extends AbstractDataset implements
 					if(infinite)
 						infiniteHorizon = true;
 					
-					SequenceLocation s = new SequenceLocation(start, length, infinite);
-					sequences.add(s);
+					// sequences are stored back to back in the buffer
+					long first = offset + history;
+					if(offset < 0 || first % maxSize != start){
+						first = start + (start < history ? maxSize : 0);
+					}
+					
+					SequenceLocation s = new SequenceLocation(start, length, infinite, first, history + length + (infinite ? 1 : 0));
+					s.before = samples;
+					samples += length;
+					sequences[(int)(last % maxSize)] = s;
+					last++;
 		
 					noSamples+=length;
+					
+					for(int i=0;i<length;i++){
+						int index = (int)((first+i) % maxSize);
+						stamps[index]++;
+						priorities.set(index, 1.0f);
+					}
+					
+					offset = first - history + s.size;
+					reserved.set(offset);
+					published = offset;
 				}
-			} catch(Exception e){
+			} catch(IOException e){
+				// end of sequences
 			}
-			
-			// recover data
-			recoverData();
-			
+		} catch(IOException e){
+			e.printStackTrace();
 		} finally {
-			lock.writeLock().unlock();
+			lock.unlockWrite(stamp);
 		}
 		
 	}
+	
+	/**
+	 * Recover the data, mapping the complete snapshot at once if it fits
+	 */
+	private boolean recoverData(File data){
+		if(!data.exists())
+			return false;
+		
+		int slotSize = slotSize();
+		try (FileChannel channel = FileChannel.open(data.toPath(), StandardOpenOption.READ)){
+			int slots = (int)Math.min(maxSize, channel.size() / slotSize);
+			int window = Integer.MAX_VALUE / slotSize;
+			for(int from=0; from<slots; from+=window){
+				int to = Math.min(slots, from+window);
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, ((long)from)*slotSize, ((long)(to-from))*slotSize);
+				mapped.order(ByteOrder.LITTLE_ENDIAN);
+				recoverData(from, to, mapped);
+			}
+			return true;
+		} catch(IOException e){
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	private File dataFile(long generation){
+		return new File(dir+File.separator+"data."+(generation % 2)+".bin");
+	}
 }
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Map;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+
+import be.iminds.iot.dianne.api.dataset.Dataset;
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+
+/**
+ * In-memory experience pool for pixel observations. States are quantized to uint8 
+ * (value*stateScale) and, in case the states are a sliding window of frameStack frames
+ * (i.e. state dims [frameStack, h, w]), only the newest frame of each state is stored.
+ * Frame stacks are reconstructed from the previous buffer positions at sample time, and 
+ * the frameStack-1 older frames of the first state are stored in front of each sequence.
+ * 
+ * For e.g. 4 stacked Atari frames this takes about 16 times less memory than a MemoryExperiencePool.
+ * 
+ * @author tverbele
+ *
+ */
+@Component(
+		service={ExperiencePool.class, Dataset.class},
+		immediate=true, 
+		configurationPolicy=ConfigurationPolicy.REQUIRE,
+		configurationPid="be.iminds.iot.dianne.dataset.CompactExperiencePool")
+public class CompactExperiencePool extends AbstractExperiencePool {
+
+	private final static int MAX_BUFFER_SIZE = 1000000000;
+	
+	private int frameStack = 1;
+	private float stateScale = 255;
+	
+	private int frameSize;
+	private int framesPerBuffer;
+	private byte[][] frames;
+	
+	// action, reward and terminal flag per buffer position
+	private int metaSize;
+	private float[] meta;
+	
+	@Override
+	protected void setup(Map<String, Object> config) {
+		if(config.containsKey("frameStack"))
+			frameStack = Integer.parseInt(config.get("frameStack").toString().trim());
+		
+		if(config.containsKey("stateScale"))
+			stateScale = Float.parseFloat(config.get("stateScale").toString().trim());
+		
+		if(frameStack > 1 && stateDims[0] != frameStack){
+			throw new RuntimeException("Invalid frameStack "+frameStack+" for stateDims starting with "+stateDims[0]);
+		}
+		
+		frameSize = stateSize / frameStack;
+		history = frameStack - 1;
+		metaSize = actionSize + 2;
+		
+		framesPerBuffer = MAX_BUFFER_SIZE / frameSize;
+		int noBuffers = maxSize / framesPerBuffer;
+		if(maxSize % framesPerBuffer != 0)
+			noBuffers += 1;
+		
+		if(((long)maxSize)*metaSize > Integer.MAX_VALUE){
+			throw new RuntimeException("Failed to instantiate experience pool, maxSize "+maxSize+" too large");
+		}
+		
+		try {
+			frames = new byte[noBuffers][];
+			for(int i=0;i<noBuffers;i++){
+				int f = i < noBuffers-1 ? framesPerBuffer : maxSize - i*framesPerBuffer;
+				frames[i] = new byte[f*frameSize];
+			}
+			meta = new float[maxSize*metaSize];
+		} catch(OutOfMemoryError e){
+			System.err.println("Failed to setup Experience Pool "+name+" in memory: failed to allocate "+(((long)maxSize)*frameSize/1000000)+" MB");
+			throw new RuntimeException("Failed to instantiate experience pool, not enough memory", e);
+		}
+	}
+	
+	@Override
+	public void addSequence(Sequence<ExperiencePoolSample> sequence){
+		if(sequence == null){
+			throw new RuntimeException("Null sequence given");
+		}
+		
+		if(frameStack > 1){
+			// only the newest frame of each state is kept, so check whether states actually overlap
+			for(int i=1;i<sequence.size();i++){
+				if(!shifted(sequence.get(i-1).input.get(), sequence.get(i).input.get())){
+					throw new IllegalArgumentException("State "+i+" is not the previous state shifted by one frame");
+				}
+			}
+			ExperiencePoolSample last = sequence.get(sequence.size()-1);
+			if(!last.isTerminal() && !shifted(last.input.get(), last.nextState.get())){
+				throw new IllegalArgumentException("Next state is not the last state shifted by one frame");
+			}
+		}
+		
+		super.addSequence(sequence);
+	}
+	
+	@Override
+	protected void write(long offset, Sequence<ExperiencePoolSample> sequence){
+		// the older frames of the first state are stored in the history in front of the sequence
+		float[] first = sequence.get(0).input.get();
+		for(int i=0;i<history;i++){
+			storeFrame((int)((offset+i) % maxSize), first, i*frameSize);
+		}
+		
+		super.write(offset+history, sequence);
+	}
+	
+	@Override
+	protected void loadData(long position, float[] data) {
+		int slot = (int)(position / sampleSize);
+		
+		// reconstruct the frame stack from the previous positions and dequantize on the fly
+		int frame = slot - frameStack + 1;
+		if(frame < 0)
+			frame += maxSize;
+		for(int f=0;f<frameStack;f++){
+			byte[] buffer = frames[frame / framesPerBuffer];
+			int pos = (frame % framesPerBuffer)*frameSize;
+			int k = f*frameSize;
+			int l = Math.min(frameSize, data.length-k);
+			for(int i=0;i<l;i++){
+				data[k+i] = (buffer[pos+i] & 0xFF) / stateScale;
+			}
+			
+			frame = frame + 1 == maxSize ? 0 : frame + 1;
+		}
+		
+		if(data.length > stateSize){
+			System.arraycopy(meta, slot*metaSize, data, stateSize, data.length-stateSize);
+		}
+	}
+
+	@Override
+	protected void writeData(long position, float[] data) {
+		int slot = (int)(position / sampleSize);
+		
+		storeFrame(slot, data, (frameStack-1)*frameSize);
+		System.arraycopy(data, stateSize, meta, slot*metaSize, metaSize);
+	}
+	
+	private void storeFrame(int slot, float[] data, int offset){
+		byte[] buffer = frames[slot / framesPerBuffer];
+		int pos = (slot % framesPerBuffer)*frameSize;
+		for(int i=0;i<frameSize;i++){
+			buffer[pos+i] = quantize(data[offset+i]);
+		}
+	}
+	
+	private byte quantize(float v){
+		int q = Math.round(v*stateScale);
+		return (byte)(q < 0 ? 0 : q > 255 ? 255 : q);
+	}
+	
+	private boolean shifted(float[] state, float[] next){
+		for(int i=0;i<stateSize-frameSize;i++){
+			if(quantize(state[frameSize+i]) != quantize(next[i]))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	protected int slotSize() {
+		return frameSize + metaSize*4;
+	}
+
+	@Override
+	protected void dumpData(int from, int to, ByteBuffer target) {
+		// first the frames, then the meta data of the range
+		for(int slot=from; slot<to; ){
+			int b = slot / framesPerBuffer;
+			int l = Math.min(to, (b+1)*framesPerBuffer) - slot;
+			target.put(frames[b], (slot % framesPerBuffer)*frameSize, l*frameSize);
+			slot += l;
+		}
+		FloatBuffer out = target.asFloatBuffer();
+		out.put(meta, from*metaSize, (to-from)*metaSize);
+		target.position(target.position()+out.position()*4);
+	}
+
+	@Override
+	protected void recoverData(int from, int to, ByteBuffer source) {
+		for(int slot=from; slot<to; ){
+			int b = slot / framesPerBuffer;
+			int l = Math.min(to, (b+1)*framesPerBuffer) - slot;
+			source.get(frames[b], (slot % framesPerBuffer)*frameSize, l*frameSize);
+			slot += l;
+		}
+		FloatBuffer in = source.asFloatBuffer();
+		in.get(meta, from*metaSize, (to-from)*metaSize);
+		source.position(source.position()+in.position()*4);
+	}
+}
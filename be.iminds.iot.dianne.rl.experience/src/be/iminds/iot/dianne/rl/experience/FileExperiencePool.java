@@ -23,14 +23,12 @@
 package be.iminds.iot.dianne.rl.experience;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
@@ -86,8 +84,9 @@ public class FileExperiencePool extends AbstractExperiencePool {
 	protected void loadData(long position, float[] data) {
 		int size = data.length;
 		
+		// duplicate, since concurrent readers and writers each need their own position
 		int b = (int)(position / FLOATS_PER_BUFFER);
-		FloatBuffer buffer = buffers[b];
+		FloatBuffer buffer = buffers[b].duplicate();
 		int i = (int)(position % FLOATS_PER_BUFFER);
 
 		if(FLOATS_PER_BUFFER-i < size){
@@ -96,7 +95,7 @@ public class FileExperiencePool extends AbstractExperiencePool {
 			buffer.position(i);
 			buffer.get(data, 0, half);
 			
-			FloatBuffer next = buffers[b+1];
+			FloatBuffer next = buffers[b+1].duplicate();
 			next.position(0);
 			next.get(data, half, size-half);
 		} else {
@@ -108,7 +107,7 @@ public class FileExperiencePool extends AbstractExperiencePool {
 	@Override
 	protected void writeData(long position, float[] data) {
 		int b = (int) (position / FLOATS_PER_BUFFER);
-		FloatBuffer buffer = buffers[b];
+		FloatBuffer buffer = buffers[b].duplicate();
 		int i = (int)(position % FLOATS_PER_BUFFER);
 
 		if(FLOATS_PER_BUFFER-i < data.length){
@@ -117,7 +116,7 @@ public class FileExperiencePool extends AbstractExperiencePool {
 			buffer.position(i);
 			buffer.put(data, 0, half);
 			
-			FloatBuffer next = buffers[b+1];
+			FloatBuffer next = buffers[b+1].duplicate();
 			next.position(0);
 			next.put(data, half, data.length-half);
 		} else {
@@ -143,28 +142,71 @@ public class FileExperiencePool extends AbstractExperiencePool {
 
 	
 	@Override
-	protected void dumpData() throws IOException {
-		for(int i=0;i<buffers.length;i++){
-			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir+File.separator+"data"+i+".bin"))))){
-				for(int k=0;k<buffers[i].limit();k++){
-					buffers[i].position(k);
-					out.writeFloat(buffers[i].get());
-				}
-				out.flush();
-			}
+	protected int slotSize() {
+		return sampleSize*4;
+	}
+	
+	@Override
+	protected void dumpData(int from, int to, ByteBuffer target) {
+		FloatBuffer out = target.asFloatBuffer();
+		long position = ((long)from)*sampleSize;
+		long end = ((long)to)*sampleSize;
+		while(position < end){
+			int b = (int)(position / FLOATS_PER_BUFFER);
+			int i = (int)(position % FLOATS_PER_BUFFER);
+			int l = (int)Math.min(FLOATS_PER_BUFFER-i, end-position);
+			FloatBuffer buffer = buffers[b].duplicate();
+			buffer.position(i);
+			buffer.limit(i+l);
+			out.put(buffer);
+			position += l;
 		}
+		target.position(target.position()+out.position()*4);
 	}
 
 	@Override
-	protected void recoverData() {
+	protected void recoverData(int from, int to, ByteBuffer source) {
+		FloatBuffer in = source.asFloatBuffer();
+		long position = ((long)from)*sampleSize;
+		long end = ((long)to)*sampleSize;
+		while(position < end){
+			int b = (int)(position / FLOATS_PER_BUFFER);
+			int i = (int)(position % FLOATS_PER_BUFFER);
+			int l = (int)Math.min(FLOATS_PER_BUFFER-i, end-position);
+			FloatBuffer buffer = buffers[b].duplicate();
+			buffer.position(i);
+			FloatBuffer src = in.slice();
+			src.limit(l);
+			buffer.put(src);
+			in.position(in.position()+l);
+			position += l;
+		}
+		source.position(source.position()+in.position()*4);
+	}
+	
+	@Override
+	protected boolean recoverLegacyData() {
+		if(!new File(dir+File.separator+"data0.bin").exists())
+			return false;
+		
 		for(int i=0;i<buffers.length;i++){
 			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir+File.separator+"data"+i+".bin"))))){
-				int k=0;
-				while(true){
-					buffers[i].position(k++);
-					buffers[i].put(in.readFloat());
+				FloatBuffer buffer = buffers[i].duplicate();
+				buffer.position(0);
+				while(buffer.hasRemaining()){
+					buffer.put(in.readFloat());
 				}
-			} catch(Exception e){}
+			} catch(IOException e){
+				// end of file
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	protected void deleteLegacyData() {
+		for(int i=0;i<buffers.length;i++){
+			new File(dir+File.separator+"data"+i+".bin").delete();
 		}
 	}
 }
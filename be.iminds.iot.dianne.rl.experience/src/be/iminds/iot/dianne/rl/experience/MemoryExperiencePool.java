@@ -23,13 +23,12 @@
 package be.iminds.iot.dianne.rl.experience;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.Map;
 
 import org.osgi.service.component.annotations.Component;
@@ -77,7 +76,7 @@ public class MemoryExperiencePool extends AbstractExperiencePool {
 		} else {
 			int s = bufferSize-pos;
 			System.arraycopy(buffers[buffer], pos, data, 0, s);
-			System.arraycopy(buffers[buffer+1], 0, data, s+1, data.length-s);
+			System.arraycopy(buffers[buffer+1], 0, data, s, data.length-s);
 		}
 	}
 
@@ -91,32 +90,65 @@ public class MemoryExperiencePool extends AbstractExperiencePool {
 		} else {
 			int s = bufferSize-pos;
 			System.arraycopy(data, 0, buffers[buffer], pos, s);
-			System.arraycopy(data, s+1, buffers[buffer+1], 0, data.length-s);
+			System.arraycopy(data, s, buffers[buffer+1], 0, data.length-s);
 		}
 	}
 
 	@Override
-	protected void dumpData() throws IOException {
-		for(int k=0;k<buffers.length;k++){
-			float[] buffer = buffers[k];
-			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir+File.separator+"data-"+k+".bin"))))){
-				for(int i=0;i<buffer.length;i++){
-					out.writeFloat(buffer[i]);
-				}
-				out.flush();
-			}
+	protected int slotSize() {
+		return sampleSize*4;
+	}
+
+	@Override
+	protected void dumpData(int from, int to, ByteBuffer target) {
+		FloatBuffer out = target.asFloatBuffer();
+		long position = ((long)from)*sampleSize;
+		long end = ((long)to)*sampleSize;
+		while(position < end){
+			int buffer = (int)(position / bufferSize);
+			int pos = (int)(position % bufferSize);
+			int l = (int)Math.min(bufferSize-pos, end-position);
+			out.put(buffers[buffer], pos, l);
+			position += l;
 		}
+		target.position(target.position()+out.position()*4);
 	}
 
 	@Override
-	protected void recoverData() {
+	protected void recoverData(int from, int to, ByteBuffer source) {
+		FloatBuffer in = source.asFloatBuffer();
+		long position = ((long)from)*sampleSize;
+		long end = ((long)to)*sampleSize;
+		while(position < end){
+			int buffer = (int)(position / bufferSize);
+			int pos = (int)(position % bufferSize);
+			int l = (int)Math.min(bufferSize-pos, end-position);
+			in.get(buffers[buffer], pos, l);
+			position += l;
+		}
+		source.position(source.position()+in.position()*4);
+	}
+	
+	@Override
+	protected boolean recoverLegacyData() {
+		if(!new File(dir+File.separator+"data-0.bin").exists())
+			return false;
+		
 		for(int k=0;k<buffers.length;k++){
 			float[] buffer = buffers[k];
 			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir+File.separator+"data-"+k+".bin"))))){
 				for(int i=0;i<buffer.length;i++){
 					buffer[i] = in.readFloat();
 				}
-			} catch(Exception e){}
+			} catch(IOException e){}
+		}
+		return true;
+	}
+	
+	@Override
+	protected void deleteLegacyData() {
+		for(int k=0;k<buffers.length;k++){
+			new File(dir+File.separator+"data-"+k+".bin").delete();
 		}
 	}
 }
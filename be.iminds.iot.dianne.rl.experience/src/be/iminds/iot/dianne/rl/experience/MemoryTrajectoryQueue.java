@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+
+import be.iminds.iot.dianne.api.dataset.Dataset;
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSequence;
+import be.iminds.iot.dianne.api.rl.dataset.TrajectoryQueue;
+
+/**
+ * In-memory TrajectoryQueue for actor-learner setups. It uses the ring buffer of the 
+ * MemoryExperiencePool, so agents can add trajectories concurrently and maxSize bounds 
+ * the number of transitions waiting to be taken, overwriting the oldest ones when the 
+ * learner falls behind.
+ * 
+ * The queue only holds transient data, so it is not dumped to or recovered from disk.
+ * 
+ * @author tverbele
+ *
+ */
+@Component(
+		service={TrajectoryQueue.class, ExperiencePool.class, Dataset.class},
+		immediate=true, 
+		configurationPolicy=ConfigurationPolicy.REQUIRE,
+		configurationPid="be.iminds.iot.dianne.dataset.TrajectoryQueue")
+public class MemoryTrajectoryQueue extends MemoryExperiencePool implements TrajectoryQueue {
+
+	private final Object available = new Object();
+	
+	@Override
+	public void addSequence(Sequence<ExperiencePoolSample> sequence){
+		super.addSequence(sequence);
+		
+		synchronized(available){
+			available.notifyAll();
+		}
+	}
+	
+	@Override
+	public ExperiencePoolSequence[] take(ExperiencePoolSequence[] trajectories, int count, int length) throws InterruptedException {
+		if(trajectories == null || trajectories.length < count){
+			ExperiencePoolSequence[] t = new ExperiencePoolSequence[count];
+			if(trajectories != null){
+				System.arraycopy(trajectories, 0, t, 0, trajectories.length);
+			}
+			trajectories = t;
+		}
+		
+		for(int i=0;i<count;i++){
+			ExperiencePoolSequence t = take(trajectories[i], length);
+			while(t == null){
+				synchronized(available){
+					if(size() == 0){
+						available.wait(100);
+					}
+				}
+				t = take(trajectories[i], length);
+			}
+			trajectories[i] = t;
+		}
+		
+		return trajectories;
+	}
+	
+	@Override
+	public void dump(){
+		// trajectories are consumed, nothing to keep
+	}
+	
+	@Override
+	public void recover(){
+		// start with an empty queue
+	}
+}
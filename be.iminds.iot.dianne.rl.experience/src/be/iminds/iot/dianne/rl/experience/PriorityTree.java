@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import java.util.Arrays;
+
+/**
+ * Array-backed sum-tree and min-tree over the priorities of the pool positions,
+ * allowing O(log n) updates and proportional sampling.
+ * 
+ * The leaves hold priority^alpha, a zero priority marks a position that holds 
+ * no (valid) sample. Internal nodes are recomputed from their children on each 
+ * update, so no floating point drift accumulates.
+ * 
+ * Not thread safe, callers should synchronize.
+ * 
+ * @author tverbele
+ *
+ */
+public class PriorityTree {
+
+	private final int size;
+	private final int capacity;
+	
+	private final double[] sum;
+	private final float[] min;
+	
+	// raw (non-exponentiated) priorities
+	private final float[] priorities;
+	private float alpha = 1.0f;
+	private float max = 1.0f;
+	
+	public PriorityTree(int size){
+		this.size = size;
+		int c = 1;
+		while(c < size){
+			c <<= 1;
+		}
+		this.capacity = c;
+		
+		this.sum = new double[2*capacity];
+		this.min = new float[2*capacity];
+		this.priorities = new float[size];
+		Arrays.fill(min, Float.POSITIVE_INFINITY);
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Set the priority of a position, 0 to mark it empty
+	 */
+	public void set(int index, float priority){
+		priorities[index] = priority;
+		if(priority > max){
+			max = priority;
+		}
+		update(index, priority > 0 ? (float)Math.pow(priority, alpha) : 0);
+	}
+	
+	/**
+	 * Set the position to the max priority seen so far, used for new samples 
+	 * so that these are sampled at least once
+	 */
+	public void setMax(int index){
+		set(index, max);
+	}
+	
+	public float get(int index){
+		return priorities[index];
+	}
+	
+	/**
+	 * @return the priority^alpha of a position
+	 */
+	public double value(int index){
+		return sum[capacity+index];
+	}
+	
+	public double total(){
+		return sum[1];
+	}
+	
+	/**
+	 * @return smallest non-zero priority^alpha, or infinity when empty
+	 */
+	public float min(){
+		return min[1];
+	}
+	
+	public float alpha(){
+		return alpha;
+	}
+	
+	/**
+	 * Change the priority exponent, this rebuilds the complete tree in O(n)
+	 */
+	public void setAlpha(float alpha){
+		if(alpha == this.alpha)
+			return;
+		
+		this.alpha = alpha;
+		for(int i=0;i<size;i++){
+			float p = priorities[i];
+			sum[capacity+i] = p > 0 ? Math.pow(p, alpha) : 0;
+			min[capacity+i] = p > 0 ? (float)sum[capacity+i] : Float.POSITIVE_INFINITY;
+		}
+		for(int n=capacity-1;n>0;n--){
+			sum[n] = sum[2*n] + sum[2*n+1];
+			min[n] = Math.min(min[2*n], min[2*n+1]);
+		}
+	}
+	
+	/**
+	 * Find the position for which the prefix sum of priority^alpha covers value
+	 * 
+	 * @param value a value in [0, total()[
+	 * @return a position with non-zero priority, or -1 in case the tree is empty
+	 */
+	public int find(double value){
+		if(sum[1] <= 0)
+			return -1;
+		
+		int n = 1;
+		while(n < capacity){
+			int left = 2*n;
+			if(value < sum[left] || sum[left+1] <= 0){
+				n = left;
+			} else {
+				value -= sum[left];
+				n = left+1;
+			}
+		}
+		return n - capacity;
+	}
+	
+	public void clear(){
+		Arrays.fill(sum, 0);
+		Arrays.fill(min, Float.POSITIVE_INFINITY);
+		Arrays.fill(priorities, 0);
+		max = 1.0f;
+	}
+	
+	private void update(int index, float value){
+		int n = capacity+index;
+		sum[n] = value;
+		min[n] = value > 0 ? value : Float.POSITIVE_INFINITY;
+		n >>= 1;
+		while(n > 0){
+			sum[n] = sum[2*n] + sum[2*n+1];
+			min[n] = Math.min(min[2*n], min[2*n+1]);
+			n >>= 1;
+		}
+	}
+}
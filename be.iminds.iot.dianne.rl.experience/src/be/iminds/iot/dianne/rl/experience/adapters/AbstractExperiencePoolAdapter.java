@@ -155,6 +155,20 @@ public abstract class AbstractExperiencePoolAdapter implements ExperiencePool {
 		return b;
 	}
 	
+	@Override
+	public ExperiencePoolBatch getPrioritizedBatch(ExperiencePoolBatch b, int size, float alpha, float beta) {
+		b =  pool.getPrioritizedBatch(b, size, alpha, beta);
+		for(int i=0;i<size;i++){
+			adaptFetchedSample(b.getSample(i));
+		}
+		return b;
+	}
+	
+	@Override
+	public void updatePriorities(int[] indices, long[] stamps, float[] priorities) {
+		pool.updatePriorities(indices, stamps, priorities);
+	}
+	
 	@Override
 	public ExperiencePoolSequence getSequence(ExperiencePoolSequence s, int sequence, int index, int length){
 		s = pool.getSequence(s, sequence, index, length);
@@ -50,7 +50,15 @@ public class ExperiencePoolBatchSerializer extends Serializer<ExperiencePoolBatc
 		Tensor reward = kryo.readObject(input, Tensor.class);
 		Tensor nextState = kryo.readObject(input, Tensor.class);
 		Tensor terminal = kryo.readObject(input, Tensor.class);
-		return new ExperiencePoolBatch(state, action, reward, nextState, terminal);
+		ExperiencePoolBatch b = new ExperiencePoolBatch(state, action, reward, nextState, terminal);
+		
+		// indices and weights in case of prioritized sampling
+		int noIndices = input.readInt();
+		if(noIndices >= 0){
+			b.indices = input.readInts(noIndices);
+			b.weights = kryo.readObject(input, Tensor.class);
+		}
+		return b;
 	}
 
 	@Override
@@ -61,6 +69,14 @@ public class ExperiencePoolBatchSerializer extends Serializer<ExperiencePoolBatc
 			kryo.writeObject(output, batch.reward);
 			kryo.writeObject(output, batch.nextState);
 			kryo.writeObject(output, batch.terminal);
+			
+			if(batch.indices == null){
+				output.writeInt(-1);
+			} else {
+				output.writeInt(batch.indices.length);
+				output.writeInts(batch.indices);
+				kryo.writeObject(output, batch.weights);
+			}
 		} catch(Throwable t){
 			t.printStackTrace();
 			throw t;
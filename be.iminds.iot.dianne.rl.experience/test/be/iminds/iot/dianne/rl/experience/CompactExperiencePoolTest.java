@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+import junit.framework.Assert;
+
+public class CompactExperiencePoolTest {
+
+	protected Tensor a = new Tensor(new float[]{0, 1}, 2);
+	
+	@BeforeClass
+	public static void setup() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	// pool of states with 3 stacked frames of 2 values
+	private CompactExperiencePool pool(int maxSize){
+		Map<String, Object> config = new HashMap<>();
+		config.put("name", "Test");
+		config.put("dir", "generated");
+		config.put("stateDims", new String[]{"3", "2"});
+		config.put("actionDims", new String[]{"2"});
+		config.put("maxSize", ""+maxSize);
+		config.put("frameStack", "3");
+		config.put("stateScale", "1");
+		
+		CompactExperiencePool pool = new CompactExperiencePool();
+		pool.activate(config);
+		return pool;
+	}
+	
+	// state stacking the frames base+t, base+t+1 and base+t+2
+	private Tensor state(int base, int t){
+		float[] data = new float[6];
+		for(int f=0;f<3;f++){
+			data[2*f] = base+t+f;
+			data[2*f+1] = base+t+f+100;
+		}
+		return new Tensor(data, 3, 2);
+	}
+	
+	private Sequence<ExperiencePoolSample> sequence(int base, int length, boolean terminal){
+		List<ExperiencePoolSample> samples = new ArrayList<>();
+		for(int t=0;t<length;t++){
+			boolean end = terminal && t == length-1;
+			samples.add(new ExperiencePoolSample(state(base, t), a, t, end ? null : state(base, t+1)));
+		}
+		return new Sequence<ExperiencePoolSample>(samples);
+	}
+	
+	private void assertSequence(CompactExperiencePool pool, int index, int base, int length, boolean terminal){
+		for(int t=0;t<length;t++){
+			ExperiencePoolSample s = pool.getSample(index+t);
+			Assert.assertEquals(state(base, t), s.getState());
+			Assert.assertEquals(a, s.getAction());
+			Assert.assertEquals((float)t, s.getScalarReward());
+			
+			boolean end = terminal && t == length-1;
+			Assert.assertEquals(end, s.isTerminal());
+			if(end){
+				for(float n : s.getNextState().get()){
+					Assert.assertEquals(0.0f, n);
+				}
+			} else {
+				Assert.assertEquals(state(base, t+1), s.getNextState());
+			}
+		}
+	}
+	
+	@Test
+	public void testFrameStackSequenceBoundary() throws Exception {
+		CompactExperiencePool pool = pool(20);
+		
+		pool.addSequence(sequence(0, 3, true));
+		pool.addSequence(sequence(50, 4, false));
+		pool.addSequence(sequence(20, 2, true));
+		
+		Assert.assertEquals(9, pool.size());
+		Assert.assertEquals(3, pool.sequences());
+		
+		// the first states of a sequence are stacked from its own history, not from the previous sequence
+		assertSequence(pool, 0, 0, 3, true);
+		assertSequence(pool, 3, 50, 4, false);
+		assertSequence(pool, 7, 20, 2, true);
+	}
+	
+	@Test
+	public void testFrameStackWrapAround() throws Exception {
+		CompactExperiencePool pool = pool(10);
+		
+		// takes buffer positions 0-3 and 4-8
+		pool.addSequence(sequence(0, 2, true));
+		pool.addSequence(sequence(50, 3, true));
+		
+		// takes positions 9-13, wrapping around to 0-3 and evicting the first sequence
+		pool.addSequence(sequence(20, 3, true));
+		
+		Assert.assertEquals(6, pool.size());
+		Assert.assertEquals(2, pool.sequences());
+		
+		assertSequence(pool, 0, 50, 3, true);
+		assertSequence(pool, 3, 20, 3, true);
+	}
+	
+	@Test
+	public void testFrameStackWrapAroundNextState() throws Exception {
+		CompactExperiencePool pool = pool(10);
+		
+		// takes buffer positions 0-5, the trailing next state included
+		pool.addSequence(sequence(0, 3, false));
+		
+		// takes positions 6-12, wrapping around to 0-2 and evicting the first sequence
+		pool.addSequence(sequence(50, 4, false));
+		
+		Assert.assertEquals(4, pool.size());
+		Assert.assertEquals(1, pool.sequences());
+		
+		assertSequence(pool, 0, 50, 4, false);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFrameStackNotShifted() throws Exception {
+		CompactExperiencePool pool = pool(20);
+		
+		List<ExperiencePoolSample> samples = new ArrayList<>();
+		samples.add(new ExperiencePoolSample(state(0, 0), a, 0, state(0, 1)));
+		samples.add(new ExperiencePoolSample(state(10, 0), a, 0, null));
+		pool.addSequence(new Sequence<ExperiencePoolSample>(samples));
+	}
+}
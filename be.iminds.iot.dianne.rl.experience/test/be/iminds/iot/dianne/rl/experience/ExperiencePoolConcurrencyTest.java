@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+import junit.framework.Assert;
+
+public class ExperiencePoolConcurrencyTest {
+
+	@BeforeClass
+	public static void setup() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	private Map<String, Object> config(int maxSize){
+		Map<String, Object> config = new HashMap<>();
+		config.put("name", "Test");
+		config.put("dir", "generated");
+		config.put("stateDims", new String[]{"4"});
+		config.put("actionDims", new String[]{"2"});
+		config.put("maxSize", ""+maxSize);
+		return config;
+	}
+	
+	private Tensor tensor(float v, int size){
+		Tensor t = new Tensor(size);
+		t.fill(v);
+		return t;
+	}
+	
+	// terminal sequence of which all states, actions and rewards have value v
+	private Sequence<ExperiencePoolSample> sequence(float v, int length){
+		List<ExperiencePoolSample> samples = new ArrayList<>();
+		for(int i=0;i<length;i++){
+			samples.add(new ExperiencePoolSample(tensor(v, 4), tensor(v, 2), v, i == length-1 ? null : tensor(v, 4)));
+		}
+		return new Sequence<ExperiencePoolSample>(samples);
+	}
+	
+	// a sample mixing data of different sequences is torn
+	private float value(ExperiencePoolSample s){
+		float v = s.getScalarReward();
+		for(float f : s.getState().get()){
+			Assert.assertEquals(v, f);
+		}
+		for(float f : s.getAction().get()){
+			Assert.assertEquals(v, f);
+		}
+		for(float f : s.getNextState().get()){
+			Assert.assertEquals(s.isTerminal() ? 0.0f : v, f);
+		}
+		return v;
+	}
+	
+	@Test
+	public void testTornReadRetried() throws Exception {
+		AtomicBoolean overwrite = new AtomicBoolean(true);
+		AtomicInteger reads = new AtomicInteger();
+		
+		MemoryExperiencePool pool = new MemoryExperiencePool(){
+			@Override
+			protected void readSample(int bufferPosition, float[] data){
+				reads.incrementAndGet();
+				if(overwrite.getAndSet(false)){
+					// a writer evicts and overwrites the sequence while it is read optimistically
+					Thread writer = new Thread(() -> addSequence(sequence(3, 6)));
+					writer.start();
+					try {
+						writer.join();
+					} catch(InterruptedException e){
+						throw new RuntimeException(e);
+					}
+				}
+				super.readSample(bufferPosition, data);
+			}
+		};
+		pool.activate(config(12));
+		
+		pool.addSequence(sequence(1, 6));
+		pool.addSequence(sequence(2, 6));
+		
+		// the optimistic read returned the overwritten data, so it is retried under the read lock
+		ExperiencePoolSample s = pool.getSample(0);
+		Assert.assertEquals(2, reads.get());
+		Assert.assertEquals(2.0f, value(s));
+		
+		Assert.assertEquals(12, pool.size());
+		Assert.assertEquals(3.0f, value(pool.getSample(6)));
+	}
+	
+	@Test
+	public void testConcurrentWritersReaders() throws Exception {
+		MemoryExperiencePool pool = new MemoryExperiencePool();
+		pool.activate(config(50));
+		
+		int noWriters = 4;
+		int noReaders = 4;
+		int noSequences = 500;
+		
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicInteger checked = new AtomicInteger();
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		
+		List<Thread> writers = new ArrayList<>();
+		for(int w=0;w<noWriters;w++){
+			final int writer = w;
+			writers.add(new Thread(() -> {
+				Random random = new Random(writer);
+				try {
+					for(int k=1;k<=noSequences;k++){
+						pool.addSequence(sequence(writer*1000+k, 1+random.nextInt(5)));
+					}
+				} catch(Throwable t){
+					error.compareAndSet(null, t);
+				}
+			}));
+		}
+		
+		List<Thread> readers = new ArrayList<>();
+		for(int r=0;r<noReaders;r++){
+			final int reader = r;
+			readers.add(new Thread(() -> {
+				Random random = new Random(100+reader);
+				try {
+					while(writing.get()){
+						int size = pool.size();
+						if(size == 0){
+							continue;
+						}
+						
+						ExperiencePoolSample s;
+						try {
+							s = pool.getSample(random.nextInt(size));
+						} catch(IllegalArgumentException e){
+							// sequences evicted since the size was read
+							continue;
+						}
+						value(s);
+						checked.incrementAndGet();
+					}
+				} catch(Throwable t){
+					error.compareAndSet(null, t);
+				}
+			}));
+		}
+		
+		readers.forEach(Thread::start);
+		writers.forEach(Thread::start);
+		for(Thread t : writers){
+			t.join();
+		}
+		writing.set(false);
+		for(Thread t : readers){
+			t.join();
+		}
+		
+		if(error.get() != null){
+			throw new AssertionError("Inconsistent sample read", error.get());
+		}
+		Assert.assertTrue(checked.get() > 0);
+		
+		// after all writers are done the pool is consistent and bounded
+		Assert.assertTrue(pool.size() <= 50);
+		int size = 0;
+		for(int i=0;i<pool.sequences();i++){
+			size += pool.sequenceLength(i);
+		}
+		Assert.assertEquals(pool.size(), size);
+		for(int i=0;i<pool.size();i++){
+			value(pool.getSample(i));
+		}
+	}
+}
@@ -1,12 +1,15 @@
 package be.iminds.iot.dianne.rl.experience;
 
+import java.io.File;
 import java.lang.reflect.Proxy;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -32,11 +35,14 @@ public class ExperiencePoolTest {
         { new FileExperiencePool(), null, null},
         { new FileExperiencePool(), "200", null},
         { new MemoryExperiencePool(), null, null},
-        { new MemoryExperiencePool(), null, true}
+        { new MemoryExperiencePool(), null, true},
+        { new CompactExperiencePool(), null, null}
       });
     }
 	
 	protected ExperiencePool pool;
+	protected Class<? extends ExperiencePool> type;
+	protected Map<String, Object> config;
 	
 	protected Tensor s0 = new Tensor(new float[]{0, 1, 2, 3}, 4);
 	protected Tensor a0 = new Tensor(new float[]{0, 0}, 2);
@@ -59,14 +65,17 @@ public class ExperiencePoolTest {
 	}
 	
     public ExperiencePoolTest(ExperiencePool p, Object bufferSize, Object remote) throws Exception {
-    	this.pool = p.getClass().newInstance();
+    	this.type = p.getClass();
+    	this.pool = type.newInstance();
     	
-    	Map<String, Object> config = new HashMap<>();
+    	config = new HashMap<>();
 		config.put("name", "Test");
 		config.put("dir", "generated");
 		config.put("stateDims", new String[]{"4"});
 		config.put("actionDims", new String[]{"2"});
 		config.put("maxSize", "12");
+		// test states are small integers, stored exactly as uint8
+		config.put("stateScale", "1");
 		if(bufferSize!=null){
 			config.put("sizePerBuffer", bufferSize);
 		}
@@ -587,4 +596,175 @@ public class ExperiencePoolTest {
 		Assert.assertEquals(s1, s.getNextState()); //next state should be correct!
 		Assert.assertEquals(false, s.isTerminal());
 	}
+	
+	@Test
+	public void testExperiencePoolInfiniteHorizonBenchmark() throws Exception {
+		// 10^6 transitions in infinite sequences of 100 samples, each taking an extra buffer position
+		int length = 100;
+		int count = 10000;
+		
+		ExperiencePool p = type.newInstance();
+		Map<String, Object> config = new HashMap<>();
+		config.put("name", "Benchmark");
+		config.put("dir", "generated");
+		config.put("stateDims", new String[]{"4"});
+		config.put("actionDims", new String[]{"2"});
+		config.put("maxSize", ""+(length+1)*count);
+		config.put("stateScale", "1");
+		p.getClass().getMethod("activate", Map.class).invoke(p, config);
+		
+		List<ExperiencePoolSample> sequence = new ArrayList<>();
+		for(int i=0;i<length;i++){
+			Tensor state = new Tensor(4);
+			state.fill(i);
+			Tensor next = new Tensor(4);
+			next.fill(i+1);
+			sequence.add(new ExperiencePoolSample(state, a0, 0, next));
+		}
+		for(int i=0;i<count;i++){
+			p.addSequence(new Sequence<ExperiencePoolSample>(sequence, length));
+		}
+		
+		Assert.assertEquals(length*count, p.size());
+		Assert.assertEquals(count, p.sequences());
+		
+		Random r = new Random(0);
+		int batchSize = 32;
+		int batches = 1000;
+		int[] indices = new int[batchSize];
+		ExperiencePoolBatch b = null;
+		
+		long t1 = System.nanoTime();
+		for(int k=0;k<batches;k++){
+			for(int i=0;i<batchSize;i++){
+				indices[i] = r.nextInt(length*count);
+			}
+			b = p.getBatch(b, indices);
+		}
+		long t2 = System.nanoTime();
+		
+		for(int i=0;i<batchSize;i++){
+			Assert.assertEquals((float)(indices[i] % length), b.getState(i).get(0));
+			Assert.assertEquals((float)(indices[i] % length + 1), b.getNextState(i).get(0));
+		}
+		
+		System.out.println(type.getSimpleName()+" getBatch("+batchSize+") on "+length*count+" transitions: "+(t2-t1)/batches/1000+" us");
+	}
+	
+	@Test
+	public void testStalePriorityUpdate() throws Exception {
+		pool.addSequence(sequence(6));
+		pool.addSequence(sequence(6));
+		
+		ExperiencePoolBatch b = pool.getPrioritizedBatch(null, 12, 1.0f, 1.0f);
+		int[] indices = b.indices.clone();
+		long[] stamps = b.stamps.clone();
+		
+		// all positions get evicted and refilled with new samples
+		pool.addSequence(sequence(6));
+		pool.addSequence(sequence(6));
+		
+		float[] p = new float[12];
+		Arrays.fill(p, 0.01f);
+		pool.updatePriorities(indices, stamps, p);
+		
+		// new samples keep their initial max priority, so all weights are equal
+		b = pool.getPrioritizedBatch(null, 12, 1.0f, 1.0f);
+		for(float w : b.weights.get()){
+			Assert.assertEquals(1.0f, w, 0.0001f);
+		}
+		
+		// an update with the current stamps is applied
+		p = new float[12];
+		Arrays.fill(p, 1.0f);
+		p[0] = 0.01f;
+		pool.updatePriorities(b.indices, b.stamps, p);
+		
+		b = pool.getPrioritizedBatch(null, 12, 1.0f, 1.0f);
+		float min = Float.MAX_VALUE;
+		for(float w : b.weights.get()){
+			min = Math.min(min, w);
+		}
+		Assert.assertTrue(min < 0.1f);
+	}
+	
+	private ExperiencePool create(File dir) throws Exception {
+		Map<String, Object> c = new HashMap<>(config);
+		c.put("dir", dir.getAbsolutePath());
+		ExperiencePool p = type.newInstance();
+		p.getClass().getMethod("activate", Map.class).invoke(p, c);
+		return p;
+	}
+	
+	private void delete(File f){
+		if(f.isDirectory()){
+			for(File c : f.listFiles()){
+				delete(c);
+			}
+		}
+		f.delete();
+	}
+	
+	private void assertEquals(ExperiencePool expected, ExperiencePool actual){
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(expected.sequences(), actual.sequences());
+		for(int i=0;i<expected.sequences();i++){
+			Sequence<ExperiencePoolSample> e = expected.getSequence(i);
+			Sequence<ExperiencePoolSample> a = actual.getSequence(i);
+			Assert.assertEquals(e.size(), a.size());
+			for(int k=0;k<e.size();k++){
+				Assert.assertEquals(e.get(k).getState(), a.get(k).getState());
+				Assert.assertEquals(e.get(k).getAction(), a.get(k).getAction());
+				Assert.assertEquals(e.get(k).getScalarReward(), a.get(k).getScalarReward());
+				Assert.assertEquals(e.get(k).isTerminal(), a.get(k).isTerminal());
+				Assert.assertEquals(e.get(k).getNextState(), a.get(k).getNextState());
+			}
+		}
+	}
+	
+	private Sequence<ExperiencePoolSample> sequence(int length){
+		Tensor[] states = new Tensor[]{s0, s1, s2, s3, s4, s5};
+		Tensor[] actions = new Tensor[]{a0, a1, a2, a3, a4, a5};
+		List<ExperiencePoolSample> sequence = new ArrayList<>();
+		for(int i=0;i<length;i++){
+			sequence.add(new ExperiencePoolSample(states[i], actions[i], i, i < length-1 ? states[i+1] : null));
+		}
+		return new Sequence<ExperiencePoolSample>(sequence, length);
+	}
+	
+	@Test
+	public void testDumpRecover() throws Exception {
+		File dir = Files.createTempDirectory("dianne-pool").toFile();
+		try {
+			ExperiencePool p = create(dir);
+			p.addSequence(sequence(4));
+			p.addSequence(sequence(6));
+			p.dump();
+			assertEquals(p, create(dir));
+			
+			// incremental snapshot after wrapping around, evicting the first sequence
+			p.addSequence(sequence(5));
+			p.dump();
+			Assert.assertEquals(2, p.sequences());
+			assertEquals(p, create(dir));
+			
+			// a dump that gets interrupted after writing the data does not affect the last snapshot
+			ExperiencePool recovered = create(dir);
+			p.addSequence(sequence(3));
+			// block replacing the sequences file, so the dump fails before it is committed
+			File tmp = new File(dir, "sequences.tmp");
+			tmp.mkdir();
+			byte[] data = Files.readAllBytes(new File(dir, "data.1.bin").toPath());
+			p.dump();
+			Assert.assertFalse(Arrays.equals(data, Files.readAllBytes(new File(dir, "data.1.bin").toPath())));
+			assertEquals(recovered, create(dir));
+			
+			// the next dump writes the data again
+			tmp.delete();
+			p.dump();
+			assertEquals(p, create(dir));
+		} finally {
+			delete(dir);
+		}
+	}
 }
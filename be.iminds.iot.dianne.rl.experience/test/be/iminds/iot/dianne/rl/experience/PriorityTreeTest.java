@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class PriorityTreeTest {
+
+	@Test
+	public void testTotalAndMin() {
+		PriorityTree tree = new PriorityTree(5);
+		Assert.assertEquals(-1, tree.find(0));
+		
+		tree.set(0, 1);
+		tree.set(1, 2);
+		tree.set(4, 0.5f);
+		
+		Assert.assertEquals(3.5, tree.total(), 1e-6);
+		Assert.assertEquals(0.5f, tree.min());
+		
+		tree.set(4, 0);
+		Assert.assertEquals(3.0, tree.total(), 1e-6);
+		Assert.assertEquals(1.0f, tree.min());
+	}
+	
+	@Test
+	public void testFind() {
+		PriorityTree tree = new PriorityTree(6);
+		tree.set(1, 1);
+		tree.set(3, 2);
+		tree.set(4, 1);
+		
+		Assert.assertEquals(1, tree.find(0));
+		Assert.assertEquals(1, tree.find(0.99));
+		Assert.assertEquals(3, tree.find(1));
+		Assert.assertEquals(3, tree.find(2.99));
+		Assert.assertEquals(4, tree.find(3));
+		// out of range values still end up in a valid position
+		Assert.assertEquals(4, tree.find(10));
+	}
+	
+	@Test
+	public void testProportionalSampling() {
+		PriorityTree tree = new PriorityTree(3);
+		tree.set(0, 1);
+		tree.set(1, 3);
+		
+		Random r = new Random(0);
+		int[] counts = new int[3];
+		int n = 100000;
+		for(int i=0;i<n;i++){
+			counts[tree.find(r.nextDouble()*tree.total())]++;
+		}
+		
+		Assert.assertEquals(0, counts[2]);
+		Assert.assertEquals(0.25, (double)counts[0]/n, 0.01);
+		Assert.assertEquals(0.75, (double)counts[1]/n, 0.01);
+	}
+	
+	@Test
+	public void testAlpha() {
+		PriorityTree tree = new PriorityTree(4);
+		tree.set(0, 4);
+		tree.set(1, 16);
+		
+		tree.setAlpha(0.5f);
+		Assert.assertEquals(6.0, tree.total(), 1e-6);
+		Assert.assertEquals(2.0f, tree.min());
+		
+		tree.set(2, 9);
+		Assert.assertEquals(9.0, tree.total(), 1e-6);
+		
+		tree.setAlpha(0);
+		Assert.assertEquals(3.0, tree.total(), 1e-6);
+		Assert.assertEquals(9.0f, tree.get(2));
+	}
+	
+	@Test
+	public void testSetMax() {
+		PriorityTree tree = new PriorityTree(4);
+		tree.setMax(0);
+		Assert.assertEquals(1.0f, tree.get(0));
+		
+		tree.set(1, 5);
+		tree.setMax(2);
+		Assert.assertEquals(5.0f, tree.get(2));
+		
+		tree.clear();
+		Assert.assertEquals(0.0, tree.total());
+		tree.setMax(3);
+		Assert.assertEquals(1.0f, tree.get(3));
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.experience;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSequence;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+import junit.framework.Assert;
+
+public class TrajectoryQueueTest {
+
+	protected MemoryTrajectoryQueue queue;
+	
+	protected Tensor s0 = new Tensor(new float[]{0, 1, 2, 3}, 4);
+	protected Tensor s1 = new Tensor(new float[]{1, 2, 3, 4}, 4);
+	protected Tensor s2 = new Tensor(new float[]{2, 3, 4, 5}, 4);
+	protected Tensor s3 = new Tensor(new float[]{3, 4, 5, 6}, 4);
+	protected Tensor s4 = new Tensor(new float[]{4, 5, 6, 7}, 4);
+	protected Tensor s5 = new Tensor(new float[]{5, 6, 7, 8}, 4);
+	protected Tensor sEnd = new Tensor(new float[]{0, 0, 0, 0}, 4);
+	protected Tensor a = new Tensor(new float[]{0, 1}, 2);
+	
+	@BeforeClass
+	public static void setup() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void init() throws Exception {
+		Map<String, Object> config = new HashMap<>();
+		config.put("name", "Test");
+		config.put("dir", "generated");
+		config.put("stateDims", new String[]{"4"});
+		config.put("actionDims", new String[]{"2"});
+		config.put("maxSize", "12");
+		
+		queue = new MemoryTrajectoryQueue();
+		queue.activate(config);
+	}
+	
+	// sequence visiting the states in order, ending in a terminal state, rewards are the sample index
+	private Sequence<ExperiencePoolSample> sequence(Tensor... states){
+		List<ExperiencePoolSample> samples = new ArrayList<>();
+		for(int i=0;i<states.length;i++){
+			samples.add(new ExperiencePoolSample(states[i], a, i, i == states.length-1 ? null : states[i+1]));
+		}
+		return new Sequence<ExperiencePoolSample>(samples);
+	}
+	
+	private void assertTrajectory(ExperiencePoolSequence trajectory, int offset, boolean terminal, Tensor... states){
+		Assert.assertEquals(states.length, trajectory.size());
+		for(int i=0;i<states.length;i++){
+			ExperiencePoolSample s = trajectory.get(i);
+			Assert.assertEquals(states[i], s.getState());
+			Assert.assertEquals(a, s.getAction());
+			Assert.assertEquals((float)(offset+i), s.getScalarReward());
+			
+			boolean end = terminal && i == states.length-1;
+			Assert.assertEquals(end, s.isTerminal());
+		}
+	}
+	
+	@Test
+	public void testTakeSplit() throws Exception {
+		queue.addSequence(sequence(s0, s1, s2, s3, s4, s5));
+		
+		ExperiencePoolSequence[] t = queue.take(null, 1, 4);
+		assertTrajectory(t[0], 0, false, s0, s1, s2, s3);
+		// the next state is kept to bootstrap at the split
+		Assert.assertEquals(s4, t[0].get(3).getNextState());
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(1, queue.sequences());
+		
+		// the remainder continues at the offset where the previous take stopped
+		ExperiencePoolSequence first = t[0];
+		t = queue.take(t, 1, 4);
+		Assert.assertSame(first, t[0]);
+		assertTrajectory(t[0], 4, true, s4, s5);
+		Assert.assertEquals(sEnd, t[0].get(1).getNextState());
+		Assert.assertEquals(0, queue.size());
+		Assert.assertEquals(0, queue.sequences());
+	}
+	
+	@Test
+	public void testTakeSequenceBoundary() throws Exception {
+		queue.addSequence(sequence(s0, s1, s2, s3));
+		queue.addSequence(sequence(s4, s5));
+		
+		// a trajectory never crosses a sequence boundary
+		ExperiencePoolSequence[] t = queue.take(null, 2, 3);
+		assertTrajectory(t[0], 0, false, s0, s1, s2);
+		assertTrajectory(t[1], 3, true, s3);
+		Assert.assertEquals(2, queue.size());
+		
+		t = queue.take(t, 1, 3);
+		assertTrajectory(t[0], 0, true, s4, s5);
+		Assert.assertEquals(0, queue.size());
+	}
+	
+	@Test
+	public void testTakeAll() throws Exception {
+		queue.addSequence(sequence(s0, s1, s2, s3, s4, s5));
+		
+		// no max length takes the remainder of the oldest sequence
+		ExperiencePoolSequence[] t = queue.take(null, 1, 2);
+		assertTrajectory(t[0], 0, false, s0, s1);
+		t = queue.take(t, 1, -1);
+		assertTrajectory(t[0], 2, true, s2, s3, s4, s5);
+	}
+	
+	@Test
+	public void testDropOldest() throws Exception {
+		queue.addSequence(sequence(s0, s1, s2, s3, s4, s5));
+		queue.addSequence(sequence(s5, s4, s3, s2, s1, s0));
+		
+		// wraps around the ring buffer, overwriting the first sequence that is not taken yet
+		queue.addSequence(sequence(s2, s3, s4, s5));
+		Assert.assertEquals(10, queue.size());
+		Assert.assertEquals(2, queue.sequences());
+		
+		ExperiencePoolSequence[] t = queue.take(null, 2, 6);
+		assertTrajectory(t[0], 0, true, s5, s4, s3, s2, s1, s0);
+		assertTrajectory(t[1], 0, true, s2, s3, s4, s5);
+		Assert.assertEquals(0, queue.size());
+	}
+	
+	@Test
+	public void testDropPartiallyTaken() throws Exception {
+		queue.addSequence(sequence(s0, s1, s2, s3, s4, s5));
+		queue.take(null, 1, 4);
+		
+		// the remainder of a partially taken sequence is dropped as well
+		queue.addSequence(sequence(s5, s4, s3, s2, s1, s0));
+		queue.addSequence(sequence(s2, s3, s4, s5));
+		Assert.assertEquals(10, queue.size());
+		
+		ExperiencePoolSequence[] t = queue.take(null, 1, 6);
+		assertTrajectory(t[0], 0, true, s5, s4, s3, s2, s1, s0);
+	}
+	
+	@Test
+	public void testTakeBlocking() throws Exception {
+		Thread agent = new Thread(() -> {
+			try {
+				Thread.sleep(200);
+			} catch(InterruptedException e){
+			}
+			queue.addSequence(sequence(s0, s1));
+		});
+		agent.start();
+		
+		long start = System.currentTimeMillis();
+		ExperiencePoolSequence[] t = queue.take(null, 1, 4);
+		Assert.assertTrue(System.currentTimeMillis()-start >= 100);
+		assertTrajectory(t[0], 0, true, s0, s1);
+		
+		agent.join();
+	}
+}
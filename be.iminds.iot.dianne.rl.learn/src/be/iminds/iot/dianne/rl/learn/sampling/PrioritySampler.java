@@ -23,77 +23,96 @@
 package be.iminds.iot.dianne.rl.learn.sampling;
 
 import java.util.Map;
-import java.util.Random;
-import java.util.TreeMap;
 
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolBatch;
-import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
 import be.iminds.iot.dianne.nn.learn.sampling.SamplingFactory.SamplingConfig;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
+import be.iminds.iot.dianne.rl.learn.sampling.config.ExperienceSamplerConfig;
 import be.iminds.iot.dianne.rl.learn.sampling.config.PrioritySamplerConfig;
-import be.iminds.iot.dianne.tensor.Tensor;
 
 /**
- * Utility class that maintains a prioritized subset of the dataset out of which
- * is sampled for the batches
+ * Utility class for prioritized experience replay. Samples are drawn proportional 
+ * to their priority^alpha using the priorities kept by the experience pool, and the 
+ * priorities are updated with the TD errors calculated by the learning strategy.
+ * 
+ * Alpha and beta are linearly annealed over priorityAnnealing batches. In case 
+ * priorityAlpha is 0 the configured sampling strategy is used instead.
  * 
  * @author tverbele
  *
  */
 public class PrioritySampler {
 
-	private final ExperienceSampler sampler;
-	private final TreeMap<Float, ExperiencePoolSample> priorityBuffer = new TreeMap<>();
+	// priority exponent for configurations that still set the removed prioritySamplingFactor
+	private static final float DEFAULT_ALPHA = 0.6f;
+	
+	private final ExperiencePool pool;
 	private final PrioritySamplerConfig config;
-	private final Random random = new Random(System.currentTimeMillis());
+	private final int batchSize;
+	
+	private ExperienceSampler sampler;
+	private ExperiencePoolBatch batch;
+	private float[] priorities;
+	private long iteration = 0;
 	
 	public PrioritySampler(ExperiencePool pool, SamplingConfig sampling, Map<String, String> config){
-		this.sampler = new ExperienceSampler(pool, sampling, config);
+		this.pool = pool;
 		this.config = DianneConfigHandler.getConfig(config, PrioritySamplerConfig.class);
+		this.batchSize = DianneConfigHandler.getConfig(config, ExperienceSamplerConfig.class).batchSize;
+		
+		if(config.containsKey("prioritySamplingFactor") || config.containsKey("prioritySamplingSize")){
+			System.out.println("Warning: prioritySamplingFactor and prioritySamplingSize are no longer supported, configure priorityAlpha and priorityBeta instead");
+			
+			// keep prioritized sampling enabled for configurations of the old priority buffer
+			if(!config.containsKey("priorityAlpha") 
+					&& Float.parseFloat(config.getOrDefault("prioritySamplingFactor", "0")) > 0){
+				this.config.priorityAlpha = DEFAULT_ALPHA;
+			}
+		}
+		
+		if(this.config.priorityAlpha <= 0){
+			this.sampler = new ExperienceSampler(pool, sampling, config);
+		} else {
+			this.priorities = new float[batchSize];
+		}
 	}
 	
+	/**
+	 * @return the next batch, in case of prioritized sampling the batch weights contain the importance-sampling weights
+	 */
 	public ExperiencePoolBatch nextBatch(){
-		ExperiencePoolBatch b = sampler.nextBatch();
+		if(sampler != null){
+			return sampler.nextBatch();
+		}
 		
-		// potentially replace some batch items by samples from the priority buffer
-		if(config.prioritySamplingFactor > 0){
-			for(int i=0;i<b.getSize();i++){
-				if(priorityBuffer.size() > 0){
-					if(random.nextDouble() < config.prioritySamplingFactor){
-						// how to best sample from priority buffer?
-						float highest = priorityBuffer.lastKey();
-						float lowest = priorityBuffer.firstKey();
-						float key = lowest + random.nextFloat()*(highest-lowest);
-						
-						ExperiencePoolSample s = priorityBuffer.ceilingEntry(key).getValue();
-						
-						ExperiencePoolSample replace = b.getSample(i);
-						s.copyInto(replace);
-					}
-				}
-			}
+		float progress = config.priorityAnnealing > 0 ? Math.min(1.0f, (float)iteration++/config.priorityAnnealing) : 1.0f;
+		
+		float alpha = config.priorityAlpha;
+		if(config.priorityAlphaEnd >= 0){
+			// round to limit the number of times the pool has to rebuild its priority tree
+			alpha += progress*(config.priorityAlphaEnd-config.priorityAlpha);
+			alpha = Math.round(alpha*100)/100.0f;
 		}
+		float beta = config.priorityBeta + progress*(config.priorityBetaEnd-config.priorityBeta);
 		
-		return b;
+		batch = pool.getPrioritizedBatch(batch, batchSize, alpha, beta);
+		return batch;
 	}
 	
-	public void addBatch(Tensor priority, ExperiencePoolBatch batch){
-		if(config.prioritySamplingFactor > 0 ){
-			for(int i=0;i<priority.size();i++){
-				float p = priority.get(i);
-				if(priorityBuffer.size() < config.prioritySamplingSize
-						|| priorityBuffer.lowerKey(p) != null){
-					
-					ExperiencePoolSample save = new ExperiencePoolSample();
-					batch.getSample(i).copyInto(save);
-					priorityBuffer.put(p, save);
-				}
-			}
-			
-			while(priorityBuffer.size() > config.prioritySamplingSize){
-				priorityBuffer.pollFirstEntry();
-			}
+	/**
+	 * Update the priorities of a batch returned by nextBatch
+	 * 
+	 * @param batch the batch 
+	 * @param tdErrors the TD error of each sample in the batch
+	 */
+	public void updatePriorities(ExperiencePoolBatch batch, float[] tdErrors){
+		if(batch.indices == null || batch.stamps == null)
+			return;
+		
+		for(int i=0;i<tdErrors.length;i++){
+			priorities[i] = Math.abs(tdErrors[i]) + config.priorityEpsilon;
 		}
+		pool.updatePriorities(batch.indices, batch.stamps, priorities);
 	}
 }
@@ -25,13 +25,33 @@ package be.iminds.iot.dianne.rl.learn.sampling.config;
 public class PrioritySamplerConfig {
 
 	/**
-	 * Probability to get a sample from the priority sampling buffer
+	 * Priority exponent, 0 disables prioritized replay and samples using the sampling strategy
 	 */
-	public float prioritySamplingFactor = 0f;
+	public float priorityAlpha = 0f;
 	
 	/**
-	 * Size of the priority sampling buffer
+	 * Priority exponent at the end of the annealing, -1 to keep priorityAlpha fixed
 	 */
-	public int prioritySamplingSize = 100;
+	public float priorityAlphaEnd = -1f;
+	
+	/**
+	 * Importance-sampling exponent at the start of learning
+	 */
+	public float priorityBeta = 0.4f;
+	
+	/**
+	 * Importance-sampling exponent at the end of the annealing
+	 */
+	public float priorityBetaEnd = 1.0f;
+	
+	/**
+	 * Number of batches over which alpha and beta are linearly annealed
+	 */
+	public int priorityAnnealing = 100000;
+	
+	/**
+	 * Small constant added to the absolute TD error so that no sample gets zero priority
+	 */
+	public float priorityEpsilon = 0.0001f;
 	
 }
@@ -39,6 +39,7 @@ import be.iminds.iot.dianne.nn.learn.criterion.CriterionFactory;
 import be.iminds.iot.dianne.nn.learn.criterion.CriterionFactory.BatchConfig;
 import be.iminds.iot.dianne.nn.learn.criterion.PseudoHuberCriterion;
 import be.iminds.iot.dianne.nn.learn.processors.ProcessorFactory;
+import be.iminds.iot.dianne.nn.learn.target.TargetUpdater;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.learn.sampling.ExperienceSampler;
 import be.iminds.iot.dianne.rl.learn.strategy.config.DeepDeterministicPolicyGradientConfig;
@@ -59,6 +60,9 @@ public class DeepDeterministicPolicyGradientStrategy implements LearningStrategy
 	protected NeuralNetwork critic;
 	protected NeuralNetwork targetCritic;
 	
+	protected TargetUpdater targetActorUpdater;
+	protected TargetUpdater targetCriticUpdater;
+	
 	protected Criterion reconCriterion;
 	protected Criterion regulCriterion;
 	protected GradientProcessor actorProcessor;
@@ -89,6 +93,8 @@ public class DeepDeterministicPolicyGradientStrategy implements LearningStrategy
 		this.targetCritic = nns[3];
 		
 		this.config = DianneConfigHandler.getConfig(config, DeepDeterministicPolicyGradientConfig.class);
+		this.targetActorUpdater = new TargetUpdater(actor, targetActor, config);
+		this.targetCriticUpdater = new TargetUpdater(critic, targetCritic, config);
 		this.sampler = new ExperienceSampler(pool, this.config.sampling, config);
 		this.reconCriterion = CriterionFactory.createCriterion(this.config.criterion, config);
 		this.regulCriterion = new PseudoHuberCriterion(DianneConfigHandler.getConfig(config, BatchConfig.class));
@@ -191,10 +197,13 @@ public class DeepDeterministicPolicyGradientStrategy implements LearningStrategy
 		criticProcessor.calculateDelta(i);
 		
 		// Apply the updates
-		// Note: target actor & critic get updated automatically by setting the syncInterval option
 		actor.updateParameters();
 		critic.updateParameters();
 		
+		// Update the target actor & critic, unless these are synced via the repository with the syncInterval option
+		targetActorUpdater.update(i);
+		targetCriticUpdater.update(i);
+		
 		// Report the average loss and value of the current policy
 		return new LearnProgress(i, loss, new String[]{"Average Value", "Max Value"}, new float[]{TensorOps.sum(value)/config.batchSize, TensorOps.max(value)});
 	}
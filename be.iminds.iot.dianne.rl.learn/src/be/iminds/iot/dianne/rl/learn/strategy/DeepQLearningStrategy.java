@@ -34,6 +34,7 @@ import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolBatch;
 import be.iminds.iot.dianne.nn.learn.criterion.CriterionFactory;
 import be.iminds.iot.dianne.nn.learn.processors.ProcessorFactory;
+import be.iminds.iot.dianne.nn.learn.target.TargetUpdater;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.learn.sampling.PrioritySampler;
 import be.iminds.iot.dianne.rl.learn.strategy.config.DeepQConfig;
@@ -46,7 +47,8 @@ import be.iminds.iot.dianne.tensor.TensorOps;
  * The strategy requires 2 NN instances of the same NN: one acting as a target for the other
  * 
  * In order to make this work, make sure to set the syncInterval of the target to make sure it 
- * updates from time to time to the weights of the trained NN.
+ * updates from time to time to the weights of the trained NN, or set the targetInterval (and
+ * optionally tau) to update the target in memory.
  * 
  * @author tverbele
  *
@@ -60,11 +62,19 @@ public class DeepQLearningStrategy implements LearningStrategy {
 	
 	protected NeuralNetwork valueNetwork;
 	protected NeuralNetwork targetNetwork;
+	protected TargetUpdater targetUpdater;
 	
 	protected Criterion criterion;
 	protected GradientProcessor gradientProcessor;
 	
 	protected Tensor targetValueBatch;
+	protected Tensor actions;
+	protected Tensor nextActions;
+	protected Tensor nextValues;
+	protected Tensor targetValues;
+	protected Tensor values;
+	protected Tensor tdErrors;
+	protected Tensor gradients;
 	
 	@Override
 	public void setup(Map<String, String> config, Dataset dataset, NeuralNetwork... nns) throws Exception {
@@ -80,12 +90,20 @@ public class DeepQLearningStrategy implements LearningStrategy {
 		this.targetNetwork = nns[1];
 		
 		this.config = DianneConfigHandler.getConfig(config, DeepQConfig.class);
+		this.targetUpdater = new TargetUpdater(valueNetwork, targetNetwork, config);
 		this.prioritySampler = new PrioritySampler(pool, this.config.sampling, config);
 		this.criterion = CriterionFactory.createCriterion(this.config.criterion, config);
 		this.gradientProcessor = ProcessorFactory.createGradientProcessor(this.config.method, valueNetwork, config);
 		
 		// Pre-allocate tensors for batch operations
 		this.targetValueBatch = new Tensor(this.config.batchSize, this.pool.actionDims()[0]);
+		this.actions = new Tensor(this.config.batchSize);
+		this.nextActions = new Tensor(this.config.batchSize);
+		this.nextValues = new Tensor(this.config.batchSize);
+		this.targetValues = new Tensor(this.config.batchSize, 1);
+		this.values = new Tensor(this.config.batchSize);
+		this.tdErrors = new Tensor(this.config.batchSize);
+		this.gradients = new Tensor(this.config.batchSize);
 		
 		// Wait for the pool to contain enough samples
 		if(pool.size() < this.config.minSamples){
@@ -120,38 +138,27 @@ public class DeepQLearningStrategy implements LearningStrategy {
 		if(config.doubleQ)
 			nextValue = valueNetwork.forward(batch.nextState);
 		
-		for(int b = 0; b < config.batchSize; b++) {
-			// Get the data from the sample
-			// Note: actions are one-hot encoded
-			int action = TensorOps.argmax(batch.getAction(b));
-			float reward = batch.getScalarReward(b);
-			
-			// Calculate the target value
-			if(!batch.isTerminal(b)) {
-				// If the next state is not terminal, get the next value using the target network
-				Tensor t = nextTargetValue.select(0, b);
-				
-				// Determine the next action, depends on whether we are using double Q learning or not
-				int nextAction = TensorOps.argmax(config.doubleQ ? nextValue.select(0, b) : t);
-				
-				// Set the target value using the Bellman equation
-				targetValueBatch.set(reward + config.discount*t.get(nextAction), b, action);
-			} else {
-				// If the next state is terminal, the target value is equal to the reward
-				targetValueBatch.set(reward, b, action);
-			}
-		}
+		// Get the actions taken, these are one-hot encoded
+		TensorOps.argmax(actions, batch.getAction(), 1);
+		
+		// Determine the next actions, depends on whether we are using double Q learning or not
+		TensorOps.argmax(nextActions, config.doubleQ ? nextValue : nextTargetValue, 1);
+		TensorOps.gather(nextValues, nextTargetValue, 1, nextActions);
+		
+		// Set the target values using the Bellman equation, terminal is 0 for terminal next states
+		TensorOps.addcmul(targetValues, batch.getReward(), config.discount, batch.getTerminal(), nextValues);
+		TensorOps.scatter(targetValueBatch, 1, actions, targetValues);
 		
 		// Forward pass of the value network to get the current value estimate
 		Tensor valueBatch = valueNetwork.forward(batch.getState());
 		
 		// Get the avg value of the best actions in the batch for reporting
-		float value = 0;
-		for(int b = 0; b < config.batchSize; b++) {
-			value += TensorOps.max(valueBatch.select(0, b));
-		}
-		value /= config.batchSize;
+		float value = TensorOps.mean(TensorOps.max(values, valueBatch, 1));
 
+		// TD errors to update the priorities
+		TensorOps.gather(values, valueBatch, 1, actions);
+		TensorOps.sub(tdErrors, targetValues, values);
+		
 		// Only keep the values on the actions actually taken
 		TensorOps.cmul(valueBatch, valueBatch, batch.getAction());
 		
@@ -164,6 +171,14 @@ public class DeepQLearningStrategy implements LearningStrategy {
 		
 		Tensor grad = criterion.grad(valueBatch, targetValueBatch);
 		
+		// Correct for the bias of prioritized sampling
+		// Note: the gradient is zero except on the actions taken
+		if(batch.weights != null){
+			TensorOps.gather(gradients, grad, 1, actions);
+			TensorOps.cmul(gradients, gradients, batch.weights);
+			TensorOps.scatter(grad, 1, actions, gradients);
+		}
+		
 		// Backward pass of the critic
 		valueNetwork.backward(grad);
 		valueNetwork.accGradParameters();
@@ -172,11 +187,13 @@ public class DeepQLearningStrategy implements LearningStrategy {
 		gradientProcessor.calculateDelta(i);
 		
 		// Apply the updates
-		// Note: target network gets updated automatically by setting the syncInterval option
 		valueNetwork.updateParameters();
 		
-		// Add samples for priority sampling
-		prioritySampler.addBatch(l, batch);
+		// Update the target network, unless it is synced via the repository with the syncInterval option
+		targetUpdater.update(i);
+		
+		// Update the priorities of the sampled experiences
+		prioritySampler.updatePriorities(batch, tdErrors.get());
 		
 		return new LearnProgress(i, loss, new String[]{"q"}, new float[]{value});
 	}
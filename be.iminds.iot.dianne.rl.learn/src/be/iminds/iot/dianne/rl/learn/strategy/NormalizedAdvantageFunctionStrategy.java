@@ -39,6 +39,7 @@ import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolBatch;
 import be.iminds.iot.dianne.nn.learn.criterion.CriterionFactory;
 import be.iminds.iot.dianne.nn.learn.processors.ProcessorFactory;
+import be.iminds.iot.dianne.nn.learn.target.TargetUpdater;
 import be.iminds.iot.dianne.nn.learn.sampling.SamplingFactory;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.learn.strategy.config.DeepQConfig;
@@ -51,7 +52,8 @@ import be.iminds.iot.dianne.tensor.TensorOps;
  * The strategy requires 2 NN instances of the same NN: one acting as a target for the other
  * 
  * In order to make this work, make sure to set the syncInterval of the target to make sure it 
- * updates from time to time to the weights of the trained NN.
+ * updates from time to time to the weights of the trained NN, or set the targetInterval (and
+ * optionally tau) to update the target in memory.
  * 
  * @author sbohez
  *
@@ -67,6 +69,7 @@ public class NormalizedAdvantageFunctionStrategy implements LearningStrategy {
 	
 	protected NeuralNetwork valueNetwork;
 	protected NeuralNetwork targetNetwork;
+	protected TargetUpdater targetUpdater;
 	
 	protected Criterion criterion;
 	protected GradientProcessor gradientProcessor;
@@ -88,6 +91,7 @@ public class NormalizedAdvantageFunctionStrategy implements LearningStrategy {
 		this.targetNetwork = nns[1];
 		
 		this.config = DianneConfigHandler.getConfig(config, DeepQConfig.class);
+		this.targetUpdater = new TargetUpdater(valueNetwork, targetNetwork, config);
 		this.sampling = SamplingFactory.createSamplingStrategy(this.config.sampling, dataset, config);
 		config.put("batchSize", "1");
 		this.criterion = CriterionFactory.createCriterion(this.config.criterion, config);
@@ -174,8 +178,10 @@ public class NormalizedAdvantageFunctionStrategy implements LearningStrategy {
 		gradientProcessor.calculateDelta(i);
 		
 		// Apply the updates
-		// Note: target network gets updated automatically by setting the syncInterval option
 		valueNetwork.updateParameters();
+		
+		// Update the target network, unless it is synced via the repository with the syncInterval option
+		targetUpdater.update(i);
 
 		return new LearnProgress(i, totalLoss/config.batchSize, new String[]{"q"}, new float[]{ totalValue/config.batchSize});
 
@@ -35,6 +35,7 @@ import be.iminds.iot.dianne.api.rl.dataset.BatchedExperiencePoolSequence;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePool;
 import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolBatch;
 import be.iminds.iot.dianne.nn.learn.processors.ProcessorFactory;
+import be.iminds.iot.dianne.nn.learn.target.TargetUpdater;
 import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
 import be.iminds.iot.dianne.rl.learn.sampling.ExperienceSampler;
 import be.iminds.iot.dianne.rl.learn.strategy.config.RecurrentDeepQConfig;
@@ -62,6 +63,7 @@ public class RecurrentDeepQLearningStrategy implements LearningStrategy {
 	
 	protected NeuralNetwork valueNetwork;
 	protected NeuralNetwork targetNetwork;
+	protected TargetUpdater targetUpdater;
 	
 	protected SequenceCriterion criterion;
 	protected GradientProcessor gradientProcessor;
@@ -69,6 +71,10 @@ public class RecurrentDeepQLearningStrategy implements LearningStrategy {
 	protected Tensor actionBatch;
 	protected List<Tensor> targets;
 	
+	protected Tensor actions;
+	protected Tensor maxValues;
+	protected Tensor targetValues;
+	
 	protected BatchedExperiencePoolSequence sequence;
 	
 	@Override
@@ -85,6 +91,7 @@ public class RecurrentDeepQLearningStrategy implements LearningStrategy {
 		this.targetNetwork = nns[1];
 		
 		this.config = DianneConfigHandler.getConfig(config, RecurrentDeepQConfig.class);
+		this.targetUpdater = new TargetUpdater(valueNetwork, targetNetwork, config);
 		this.sampler = new ExperienceSampler(this.pool, this.config.sampling, config);
 		this.criterion = SequenceCriterionFactory.createCriterion(this.config.criterion, config);
 		this.gradientProcessor = ProcessorFactory.createGradientProcessor(this.config.method, valueNetwork, config);
@@ -94,6 +101,9 @@ public class RecurrentDeepQLearningStrategy implements LearningStrategy {
 		for(int i=0;i<this.config.sequenceLength;i++){
 			targets.add(new Tensor(this.config.batchSize, this.pool.actionDims()[0]));
 		}
+		this.actions = new Tensor(this.config.batchSize);
+		this.maxValues = new Tensor(this.config.batchSize);
+		this.targetValues = new Tensor(this.config.batchSize, 1);
 
 		
 		// Wait for the pool to contain enough samples
@@ -125,34 +135,24 @@ public class RecurrentDeepQLearningStrategy implements LearningStrategy {
 		List<Tensor> nextValues = targetNetwork.forward(sequence.getNextStates());
 		
 		for(int s=0; s<config.sequenceLength; s++){
+			ExperiencePoolBatch b = sequence.get(s);
 			Tensor target = targets.get(s);
 			target.fill(0.0f);
-			for(int b=0; b<config.batchSize; b++){
-				int action = TensorOps.argmax(sequence.get(s).getAction(b));
-				float reward = sequence.get(s).getScalarReward(b);
-				
-				// Calculate the target value
-				if(!sequence.get(s).isTerminal(b)) {
-					// TODO add double q learning?
-					
-					// Set the target value using the Bellman equation
-					target.set(reward + config.discount*TensorOps.max(nextValues.get(s).select(0, b)), b, action);
-				} else {
-					// If the next state is terminal, the target value is equal to the reward
-					target.set(reward, b, action);
-				}
-			}
+			
+			// Set the target value of the actions taken using the Bellman equation
+			// TODO add double q learning?
+			TensorOps.argmax(actions, b.getAction(), 1);
+			TensorOps.max(maxValues, nextValues.get(s), 1);
+			TensorOps.addcmul(targetValues, b.getReward(), config.discount, b.getTerminal(), maxValues);
+			TensorOps.scatter(target, 1, actions, targetValues);
 		}
 		
 		List<Tensor> values = valueNetwork.forward(sequence.getStates());
 		
 		float value = 0;
 		for(int s=0; s<config.sequenceLength; s++){
-			for(int b = 0; b < config.batchSize; b++) {
-				value += TensorOps.max(values.get(s).select(0, b));
-			}
+			value += TensorOps.mean(TensorOps.max(maxValues, values.get(s), 1));
 		}
-		value /= config.batchSize;
 		value /= config.sequenceLength;
 		
 		for(int s=0; s<config.sequenceLength; s++){
@@ -169,9 +169,11 @@ public class RecurrentDeepQLearningStrategy implements LearningStrategy {
 		gradientProcessor.calculateDelta(i);
 		
 		// Apply the updates
-		// Note: target network gets updated automatically by setting the syncInterval option
 		valueNetwork.updateParameters();
 		
+		// Update the target network, unless it is synced via the repository with the syncInterval option
+		targetUpdater.update(i);
+		
 		return new LearnProgress(i, loss, new String[]{"q"}, new float[]{value});
 	}
 
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.learn.strategy;
+
+import java.util.Map;
+
+import be.iminds.iot.dianne.api.dataset.Dataset;
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.api.nn.learn.GradientProcessor;
+import be.iminds.iot.dianne.api.nn.learn.LearnProgress;
+import be.iminds.iot.dianne.api.nn.learn.LearningStrategy;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSequence;
+import be.iminds.iot.dianne.api.rl.dataset.TrajectoryQueue;
+import be.iminds.iot.dianne.nn.learn.processors.ProcessorFactory;
+import be.iminds.iot.dianne.nn.util.DianneConfigHandler;
+import be.iminds.iot.dianne.rl.learn.strategy.config.VTraceConfig;
+import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorOps;
+
+/**
+ * Actor-critic learner for IMPALA-style actor-learner setups (Espeholt et al., 2018).
+ * 
+ * Agents act with a (slightly outdated) copy of the policy and stream trajectories into a 
+ * TrajectoryQueue. Each iteration takes batchSize trajectories of at most unroll steps out 
+ * of the queue and corrects for the policy lag with V-trace targets, using the importance 
+ * weights between the current policy and the behaviour policy of the agent.
+ * 
+ * Expects a discrete policy network ending with softmax/logsoftmax (nns[0]) and a state 
+ * value network (nns[1]). Agents should use the DiscreteSamplingActionStrategy with 
+ * behaviourProbability set, so the behaviour probability is stored in the action.
+ * 
+ * @author tverbele
+ *
+ */
+public class VTraceLearningStrategy implements LearningStrategy {
+
+	protected VTraceConfig config;
+	
+	protected TrajectoryQueue queue;
+	protected ExperiencePoolSequence[] trajectories;
+	
+	protected NeuralNetwork policy;
+	protected NeuralNetwork value;
+	
+	protected GradientProcessor policyProcessor;
+	protected GradientProcessor valueProcessor;
+	
+	protected int actions;
+	
+	// all transitions of a batch of trajectories, padded up to batchSize*unroll
+	protected Tensor states;
+	protected Tensor nextStates;
+	
+	protected Tensor policyGrad;
+	protected Tensor valueGrad;
+	
+	protected int[] action;
+	protected float[] behaviour;
+	protected float[] reward;
+	protected float[] discount;
+	
+	@Override
+	public void setup(Map<String, String> config, Dataset dataset, NeuralNetwork... nns) throws Exception {
+		if(!(dataset instanceof TrajectoryQueue))
+			throw new RuntimeException("Dataset is no trajectory queue");
+		
+		this.queue = (TrajectoryQueue) dataset;
+		
+		if(nns.length != 2)
+			throw new RuntimeException("Invalid number of NN instances provided: "+nns.length+" (expected 2)");
+		
+		this.policy = nns[0];
+		this.value = nns[1];
+		
+		this.config = DianneConfigHandler.getConfig(config, VTraceConfig.class);
+		
+		this.policyProcessor = ProcessorFactory.createGradientProcessor(this.config.method, policy, config);
+		this.valueProcessor = ProcessorFactory.createGradientProcessor(this.config.method, value, config);
+		
+		// Pre-allocate tensors for batch operations
+		int size = this.config.batchSize*this.config.unroll;
+		this.actions = this.queue.actionDims()[0];
+		
+		this.states = new Tensor(size, this.queue.stateDims());
+		this.nextStates = new Tensor(size, this.queue.stateDims());
+		this.states.fill(0);
+		this.nextStates.fill(0);
+		
+		this.policyGrad = new Tensor(size, actions);
+		this.valueGrad = new Tensor(size, 1);
+		
+		this.action = new int[size];
+		this.behaviour = new float[size];
+		this.reward = new float[size];
+		this.discount = new float[size];
+		
+		this.trajectories = new ExperiencePoolSequence[this.config.batchSize];
+		
+		System.out.println("Start learning...");
+	}
+
+	@Override
+	public LearnProgress processIteration(long i) throws Exception {
+		// Reset the deltas
+		policy.zeroDeltaParameters();
+		value.zeroDeltaParameters();
+		
+		// Take the next trajectories out of the queue, blocks until the agents have provided these
+		trajectories = queue.take(trajectories, config.batchSize, config.unroll);
+		
+		// Put all transitions in a single batch, remaining rows are padding
+		int n = 0;
+		for(ExperiencePoolSequence trajectory : trajectories){
+			for(int t=0;t<trajectory.size();t++){
+				ExperiencePoolSample s = trajectory.get(t);
+				s.getState().copyInto(states.select(0, n));
+				s.getNextState().copyInto(nextStates.select(0, n));
+				
+				int a = TensorOps.argmax(s.getAction());
+				action[n] = a;
+				behaviour[n] = s.getAction().get(a);
+				reward[n] = s.getScalarReward();
+				discount[n] = config.discount*s.getTerminal().get(0);
+				n++;
+			}
+		}
+		
+		// Value estimates of the next and current states, current last as the backward pass needs it
+		float[] nextValues = value.forward(nextStates).get();
+		float[] values = value.forward(states).get();
+		
+		// Current policy
+		float[] output = policy.forward(states).get();
+		boolean log = false;
+		for(int k=0;k<n*actions;k++){
+			if(output[k] < 0){
+				// assume logsoftmax output
+				log = true;
+				break;
+			}
+		}
+		
+		float[] pg = new float[policyGrad.size()];
+		float[] vg = new float[valueGrad.size()];
+		
+		float policyLoss = 0;
+		float valueLoss = 0;
+		float entropy = 0;
+		float targets = 0;
+		
+		// Calculate the v-trace targets backwards in time for each trajectory
+		int end = n;
+		for(int k=trajectories.length-1;k>=0;k--){
+			int start = end-trajectories[k].size();
+			
+			// v_{s+1} - V(x_{s+1}), zero at the end of the trajectory to bootstrap on V(x_{s+1})
+			float trace = 0;
+			for(int s=end-1;s>=start;s--){
+				int o = s*actions;
+				float p = log ? (float)Math.exp(output[o+action[s]]) : output[o+action[s]];
+				float ratio = p/Math.max(behaviour[s], 1e-8f);
+				float rho = Math.min(config.rhoMax, ratio);
+				float c = config.lambda*Math.min(config.cMax, ratio);
+				
+				// policy gradient uses the target of the next state v_{s+1}
+				float advantage = rho*(reward[s] + discount[s]*(nextValues[s] + trace) - values[s]);
+				
+				float delta = rho*(reward[s] + discount[s]*nextValues[s] - values[s]);
+				trace = delta + discount[s]*c*trace;
+				float target = values[s] + trace;
+				targets += target;
+				
+				// value regression on the v-trace target
+				vg[s] = config.valueCoefficient*(values[s] - target)/n;
+				valueLoss += 0.5f*(values[s] - target)*(values[s] - target);
+				
+				// policy gradient with entropy regularization
+				policyLoss -= advantage*(log ? output[o+action[s]] : Math.log(Math.max(p, 1e-8f)));
+				for(int j=0;j<actions;j++){
+					float pj = log ? (float)Math.exp(output[o+j]) : output[o+j];
+					float lj = log ? output[o+j] : (float)Math.log(Math.max(pj, 1e-8f));
+					entropy -= pj*lj;
+					if(log){
+						pg[o+j] = config.entropyCoefficient*pj*(lj+1)/n;
+					} else {
+						pg[o+j] = config.entropyCoefficient*(lj+1)/n;
+					}
+				}
+				pg[o+action[s]] -= (log ? advantage : advantage/Math.max(p, 1e-8f))/n;
+			}
+			end = start;
+		}
+		
+		policyGrad.set(pg);
+		valueGrad.set(vg);
+		
+		// Backward passes
+		value.backward(valueGrad);
+		value.accGradParameters();
+		
+		policy.backward(policyGrad);
+		policy.accGradParameters();
+		
+		// Call the processors to set the updates
+		policyProcessor.calculateDelta(i);
+		valueProcessor.calculateDelta(i);
+		
+		// Apply the updates
+		policy.updateParameters();
+		value.updateParameters();
+		
+		float loss = (policyLoss + config.valueCoefficient*valueLoss - config.entropyCoefficient*entropy)/n;
+		return new LearnProgress(i, loss, new String[]{"v", "entropy"}, new float[]{targets/n, entropy/n});
+	}
+}
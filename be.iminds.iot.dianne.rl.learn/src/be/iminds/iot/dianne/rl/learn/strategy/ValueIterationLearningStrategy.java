@@ -76,6 +76,8 @@ public class ValueIterationLearningStrategy implements LearningStrategy {
 	protected Tensor rewardSample;
 	protected Tensor random4reward;
 	protected Tensor targetValue;
+	protected Tensor actionIndex;
+	protected Tensor ones;
 	
 	protected List<Tensor> states = new ArrayList<>();
 	protected List<Tensor> actions = new ArrayList<>();
@@ -108,6 +110,9 @@ public class ValueIterationLearningStrategy implements LearningStrategy {
 		this.rewardSample = new Tensor(this.config.batchSize);
 		this.random4reward = new Tensor(this.config.batchSize);
 		this.targetValue = new Tensor(this.config.batchSize, this.config.actionDims);
+		this.actionIndex = new Tensor(this.config.batchSize);
+		this.ones = new Tensor(this.config.batchSize);
+		this.ones.fill(1);
 		
 		System.out.println("Start learning...");
 	}
@@ -127,9 +132,8 @@ public class ValueIterationLearningStrategy implements LearningStrategy {
 			Tensor value = config.doubleQ ? valueNetwork.forward(stateSample) : targetNetwork.forward(stateSample);
 			
 			action.fill(0);
-			for(int b = 0; b < config.batchSize; b++) {
-				action.set(1, b, TensorOps.argmax(value.select(0, b)));
-			}
+			TensorOps.argmax(actionIndex, value, 1);
+			TensorOps.scatter(action, 1, actionIndex, ones);
 			storeTensor(actions, action, t);
 			
 			Tensor rewardDistribution = rewardModel.forward(rewardModelIn, rewardModelOut, new Tensor[]{stateSample, action}).getValue().tensor;
@@ -151,11 +155,9 @@ public class ValueIterationLearningStrategy implements LearningStrategy {
 				Tensor futureState = states.get(t+config.Qsteps);
 				Tensor futureAction = actions.get(t+config.Qsteps); //doubleQ already included
 				Tensor futureValue = targetNetwork.forward(futureState);
-				TensorOps.cmul(futureValue, futureValue, futureAction);
 				
-				for(int b = 0; b < config.batchSize; b++) {
-					rewardSample.set(TensorOps.sum(futureValue.select(0, b)), b);
-				}
+				TensorOps.argmax(actionIndex, futureAction, 1);
+				TensorOps.gather(rewardSample, futureValue, 1, actionIndex);
 			} else {
 				rewardSample.fill(0);
 			}
@@ -166,11 +168,8 @@ public class ValueIterationLearningStrategy implements LearningStrategy {
 			}
 			
 			targetValue.fill(0);
-			for(int b = 0; b < config.batchSize; b++) {
-				Tensor v = targetValue.select(0, b);
-				Tensor a = currentAction.select(0,b);
-				TensorOps.mul(v, a, rewardSample.get(b));
-			}
+			TensorOps.argmax(actionIndex, currentAction, 1);
+			TensorOps.scatter(targetValue, 1, actionIndex, rewardSample);
 			
 			loss += TensorOps.mean(criterion.loss(currentValue, targetValue));
 			valueNetwork.backward(criterion.grad(currentValue, targetValue), true);
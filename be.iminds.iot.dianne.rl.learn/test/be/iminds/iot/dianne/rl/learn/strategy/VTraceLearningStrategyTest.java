@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rl.learn.strategy;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSample;
+import be.iminds.iot.dianne.api.rl.dataset.ExperiencePoolSequence;
+import be.iminds.iot.dianne.api.rl.dataset.TrajectoryQueue;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class VTraceLearningStrategyTest {
+
+	private static final float DISCOUNT = 0.9f;
+	
+	// current policy is uniform over 2 actions
+	private static final float POLICY = 0.5f;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	private Tensor state(float v){
+		Tensor t = new Tensor(4);
+		t.fill(v);
+		return t;
+	}
+	
+	// first action taken with the given behaviour probability
+	private Tensor action(float behaviour){
+		return new Tensor(new float[]{behaviour, 0}, 2);
+	}
+	
+	// trajectory with state values start, start+1, ... ending in a terminal state or not
+	private ExperiencePoolSequence trajectory(float start, float[] behaviour, float[] reward, boolean terminal){
+		List<ExperiencePoolSample> samples = new ArrayList<>();
+		for(int t=0;t<reward.length;t++){
+			boolean end = terminal && t == reward.length-1;
+			Tensor next = end ? state(0) : state(start+t+1);
+			Tensor term = new Tensor(1);
+			term.set(end ? 0.0f : 1.0f, 0);
+			Tensor r = new Tensor(1);
+			r.set(reward[t], 0);
+			samples.add(new ExperiencePoolSample(state(start+t), action(behaviour[t]), r, next, term));
+		}
+		return new ExperiencePoolSequence(samples);
+	}
+	
+	private TrajectoryQueue queue(ExperiencePoolSequence... trajectories){
+		return (TrajectoryQueue)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{TrajectoryQueue.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "stateDims":
+						return new int[]{4};
+					case "actionDims":
+						return new int[]{2};
+					case "take":
+						return trajectories;
+					default:
+						return null;
+					}
+				});
+	}
+	
+	// value network estimates the value of a state as its first element, policy network is uniform
+	private NeuralNetwork nn(boolean policy, List<Tensor> gradOutputs){
+		return (NeuralNetwork)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{NeuralNetwork.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "forward":
+						Tensor input = (Tensor)args[0];
+						int size = input.dims()[0];
+						if(policy){
+							Tensor output = new Tensor(size, 2);
+							output.fill(POLICY);
+							return output;
+						}
+						float[] states = input.get();
+						float[] values = new float[size];
+						for(int k=0;k<size;k++){
+							values[k] = states[k*4];
+						}
+						return new Tensor(values, size, 1);
+					case "backward":
+						gradOutputs.add(((Tensor)args[0]).copyInto(null));
+						return null;
+					case "getTrainables":
+						return Collections.emptyMap();
+					default:
+						return null;
+					}
+				});
+	}
+	
+	// v_s = V(x_s) + sum_t (prod_{i<t} discount_i*c_i) delta_t
+	private float[] targets(float[] values, float[] nextValues, float[] discount, float[] behaviour, float[] reward){
+		int n = values.length;
+		float[] v = new float[n];
+		for(int s=0;s<n;s++){
+			v[s] = values[s];
+			float weight = 1;
+			for(int t=s;t<n;t++){
+				float ratio = POLICY/behaviour[t];
+				float rho = Math.min(1.0f, ratio);
+				float delta = rho*(reward[t] + discount[t]*nextValues[t] - values[t]);
+				v[s] += weight*delta;
+				weight *= discount[t]*Math.min(1.0f, ratio);
+			}
+		}
+		return v;
+	}
+	
+	@Test
+	public void testTargets() throws Exception {
+		float[] behaviour1 = new float[]{0.25f, 1.0f, 0.5f};
+		float[] reward1 = new float[]{1, 0, 2};
+		float[] behaviour2 = new float[]{0.8f, 0.25f};
+		float[] reward2 = new float[]{0.5f, 1};
+		
+		Map<String, String> config = new HashMap<>();
+		config.put("batchSize", "2");
+		config.put("unroll", "3");
+		config.put("discount", ""+DISCOUNT);
+		config.put("entropyCoefficient", "0");
+		config.put("valueCoefficient", "1");
+		
+		List<Tensor> policyGrads = new ArrayList<>();
+		List<Tensor> valueGrads = new ArrayList<>();
+		
+		VTraceLearningStrategy strategy = new VTraceLearningStrategy();
+		strategy.setup(config, queue(trajectory(1, behaviour1, reward1, false), trajectory(10, behaviour2, reward2, true)),
+				nn(true, policyGrads), nn(false, valueGrads));
+		strategy.processIteration(0);
+		
+		Assert.assertEquals(1, policyGrads.size());
+		Assert.assertEquals(1, valueGrads.size());
+		
+		// the trace is cut at the trajectory boundary, the first bootstraps on V(x_4), the second terminates
+		float[] v1 = targets(new float[]{1, 2, 3}, new float[]{2, 3, 4}, 
+				new float[]{DISCOUNT, DISCOUNT, DISCOUNT}, behaviour1, reward1);
+		float[] v2 = targets(new float[]{10, 11}, new float[]{11, 0}, 
+				new float[]{DISCOUNT, 0}, behaviour2, reward2);
+		
+		float[] values = new float[]{1, 2, 3, 10, 11};
+		float[] nextTargets = new float[]{v1[1], v1[2], 4, v2[1], 0};
+		float[] discount = new float[]{DISCOUNT, DISCOUNT, DISCOUNT, DISCOUNT, 0};
+		float[] behaviour = new float[]{0.25f, 1.0f, 0.5f, 0.8f, 0.25f};
+		float[] reward = new float[]{1, 0, 2, 0.5f, 1};
+		float[] expected = new float[]{v1[0], v1[1], v1[2], v2[0], v2[1]};
+		
+		float[] vg = valueGrads.get(0).get();
+		float[] pg = policyGrads.get(0).get();
+		int n = 5;
+		for(int s=0;s<n;s++){
+			// value gradient is (V(x_s) - v_s)/n
+			Assert.assertEquals(expected[s], values[s] - vg[s]*n, 0.0001f);
+			
+			// policy gradient uses the advantage on the target of the next state
+			float rho = Math.min(1.0f, POLICY/behaviour[s]);
+			float advantage = rho*(reward[s] + discount[s]*nextTargets[s] - values[s]);
+			Assert.assertEquals(-advantage/POLICY/n, pg[2*s], 0.0001f);
+			Assert.assertEquals(0.0f, pg[2*s+1], 0.0001f);
+		}
+		
+		// padding does not contribute
+		Assert.assertEquals(0.0f, vg[5], 0.0001f);
+		Assert.assertEquals(0.0f, pg[10], 0.0001f);
+	}
+}
@@ -46,6 +46,9 @@ import be.iminds.iot.dianne.tensor.TensorOps;
  * This LearningStrategy works on SequenceDatasets and trains according to the
  * Back Propagate Through Time (BPTT) principle.
  * 
+ * When a window is configured, the sampled sequence is processed in chunks of window
+ * steps (truncated BPTT), which bounds the number of steps kept in memory.
+ * 
  * @author tverbele
  *
  */
@@ -80,30 +83,49 @@ public class BPTTLearningStrategy implements LearningStrategy {
 
 	@Override
 	public LearnProgress processIteration(long i) throws Exception {
-		// clear delta params
-		nn.zeroDeltaParameters();
 		// reset memory
 		this.nn.resetMemory(this.config.batchSize);
 
 		// sample sequence
 		Sequence<Batch> sequence = sampler.nextSequence();
-		
-		// forward
-		List<Tensor> outputs = nn.forward(sequence.getInputs());
-		
-		// calculate gradients
+		List<Tensor> inputs = sequence.getInputs();
 		List<Tensor> targets = sequence.getTargets();
-		float loss =  TensorOps.mean(criterion.loss(outputs, targets).stream().reduce((t1,t2) -> TensorOps.add(t1, t1, t2)).get())/sequence.size;
-		List<Tensor> gradOutputs = criterion.grad(outputs, targets);
 		
-		// backward and acc grad parameters
-		nn.backward(gradOutputs, true);
-
-		// run gradient processors
-		gradientProcessor.calculateDelta(i);
+		int window = config.window > 0 ? config.window : sequence.size;
 		
-		// update parameters
-		nn.updateParameters();
+		float loss = 0;
+		for(int start=0;start<sequence.size;start+=window){
+			int end = Math.min(start+window, sequence.size);
+			
+			if(start > 0){
+				// truncate gradients at the window boundary
+				if(config.carryState){
+					nn.detachMemory();
+				} else {
+					nn.resetMemory(config.batchSize);
+				}
+			}
+			
+			// clear delta params
+			nn.zeroDeltaParameters();
+
+			// forward
+			List<Tensor> outputs = nn.forward(inputs.subList(start, end));
+			
+			// calculate gradients
+			List<Tensor> windowTargets = targets.subList(start, end);
+			loss += TensorOps.mean(criterion.loss(outputs, windowTargets).stream().reduce((t1,t2) -> TensorOps.add(t1, t1, t2)).get())/sequence.size;
+			List<Tensor> gradOutputs = criterion.grad(outputs, windowTargets);
+			
+			// backward and acc grad parameters
+			nn.backward(gradOutputs, true);
+	
+			// run gradient processors
+			gradientProcessor.calculateDelta(i);
+			
+			// update parameters
+			nn.updateParameters();
+		}
 		
 		return new LearnProgress(i, loss);
 	}
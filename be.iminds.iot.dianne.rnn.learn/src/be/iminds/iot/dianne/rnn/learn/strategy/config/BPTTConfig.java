@@ -38,6 +38,17 @@ public class BPTTConfig {
 	 */
 	public int sequenceLength = 1;
 	
+	/**
+	 * Truncate back propagation to windows of this many steps, updating the parameters after 
+	 * each window. By default (-1) the whole sequence is back propagated at once.
+	 */
+	public int window = -1;
+	
+	/**
+	 * Carry the memory state over from one window to the next, otherwise the memory is reset for each window
+	 */
+	public boolean carryState = true;
+	
 	/**
 	 * The criterion to use to evaluate the error between output and target
 	 */
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.rnn.learn.strategy;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.iminds.iot.dianne.api.dataset.Batch;
+import be.iminds.iot.dianne.api.dataset.Sequence;
+import be.iminds.iot.dianne.api.dataset.SequenceDataset;
+import be.iminds.iot.dianne.api.nn.NeuralNetwork;
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+
+public class BPTTLearningStrategyTest {
+
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	// dataset with one sequence of 20 steps, sampled from the start, inputs are filled with the step index, targets with zeros
+	private SequenceDataset dataset(){
+		return (SequenceDataset)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{SequenceDataset.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "sequences":
+						return 1;
+					case "sequenceLength":
+						return 20;
+					case "getBatchedSequence":
+						int[] indices = (int[])args[2];
+						int length = (Integer)args[3];
+						List<Batch> batches = new ArrayList<>();
+						for(int k=0;k<length;k++){
+							Tensor input = new Tensor(indices.length, 2);
+							input.fill(indices[0]+k);
+							Tensor target = new Tensor(indices.length, 2);
+							target.fill(0.0f);
+							batches.add(new Batch(input, target));
+						}
+						return new Sequence<Batch>(batches);
+					default:
+						return null;
+					}
+				});
+	}
+	
+	// neural network that outputs its input and logs the calls made by the strategy
+	private NeuralNetwork nn(List<String> log){
+		return (NeuralNetwork)Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class[]{NeuralNetwork.class}, (proxy, method, args) -> {
+					switch(method.getName()){
+					case "forward":
+					case "backward":
+						List<Tensor> tensors = (List<Tensor>)args[0];
+						log.add(method.getName()+":"+tensors.size());
+						List<Tensor> result = new ArrayList<>();
+						tensors.forEach(t -> result.add(t.copyInto(null)));
+						return result;
+					case "getTrainables":
+						return Collections.emptyMap();
+					case "resetMemory":
+					case "detachMemory":
+					case "updateParameters":
+						log.add(method.getName());
+						return null;
+					default:
+						return null;
+					}
+				});
+	}
+	
+	private Map<String, String> config(int window, boolean carryState){
+		Map<String, String> config = new HashMap<>();
+		config.put("sequenceLength", "6");
+		config.put("fromStart", "true");
+		config.put("window", ""+window);
+		config.put("carryState", ""+carryState);
+		return config;
+	}
+	
+	private float learn(int window, boolean carryState, List<String> log) throws Exception {
+		BPTTLearningStrategy strategy = new BPTTLearningStrategy();
+		strategy.setup(config(window, carryState), dataset(), nn(log));
+		return strategy.processIteration(0).minibatchLoss;
+	}
+	
+	@Test
+	public void testNoWindow() throws Exception {
+		List<String> log = new ArrayList<>();
+		learn(-1, true, log);
+		
+		Assert.assertEquals(Arrays.asList(
+				"resetMemory", "forward:6", "backward:6", "updateParameters"), log);
+	}
+	
+	@Test
+	public void testWindowCarryState() throws Exception {
+		List<String> log = new ArrayList<>();
+		learn(4, true, log);
+		
+		// memory is detached, not reset, at the window boundary
+		Assert.assertEquals(Arrays.asList(
+				"resetMemory", "forward:4", "backward:4", "updateParameters",
+				"detachMemory", "forward:2", "backward:2", "updateParameters"), log);
+	}
+	
+	@Test
+	public void testWindowResetState() throws Exception {
+		List<String> log = new ArrayList<>();
+		learn(4, false, log);
+		
+		Assert.assertEquals(Arrays.asList(
+				"resetMemory", "forward:4", "backward:4", "updateParameters",
+				"resetMemory", "forward:2", "backward:2", "updateParameters"), log);
+	}
+	
+	@Test
+	public void testWindowLargerThanSequence() throws Exception {
+		List<String> log = new ArrayList<>();
+		learn(10, true, log);
+		
+		Assert.assertEquals(Arrays.asList(
+				"resetMemory", "forward:6", "backward:6", "updateParameters"), log);
+	}
+	
+	@Test
+	public void testWindowLoss() throws Exception {
+		// the loss is averaged over the whole sequence, independent of the window
+		float loss = learn(-1, true, new ArrayList<>());
+		float windowLoss = learn(4, true, new ArrayList<>());
+		
+		Assert.assertTrue(loss > 0);
+		Assert.assertEquals(loss, windowLoss, 0.0001f);
+	}
+}
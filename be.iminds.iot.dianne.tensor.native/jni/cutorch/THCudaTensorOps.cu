@@ -90,6 +90,124 @@ __global__ void scale2d(float *input, float *output,
 }
 
 
+// one thread per slice of outer x size x inner along the reduced dimension
+__global__ void maxdim(float *values, float *indices, float *src, long outer, long size, long inner)
+{
+	long slice = blockIdx.x*blockDim.x+threadIdx.x;
+	if(slice >= outer*inner){
+		return;
+	}
+	
+	long o = slice / inner;
+	long i = slice % inner;
+	float *ptr = src + o*size*inner + i;
+	float max = ptr[0];
+	long index = 0;
+	for(long k=1;k<size;k++){
+		if(max < ptr[k*inner]){
+			max = ptr[k*inner];
+			index = k;
+		}
+	}
+	
+	if(values != NULL)
+		values[slice] = max;
+	if(indices != NULL)
+		indices[slice] = index;
+}
+
+__global__ void gatherdim(float *dst, float *src, float *index, long outer, long size, long inner)
+{
+	long slice = blockIdx.x*blockDim.x+threadIdx.x;
+	if(slice >= outer*inner){
+		return;
+	}
+	
+	long k = (long)index[slice];
+	if(k < 0 || k >= size){
+		return;
+	}
+	dst[slice] = src[(slice / inner)*size*inner + k*inner + slice % inner];
+}
+
+__global__ void scatterdim(float *dst, float *src, float *index, long outer, long size, long inner)
+{
+	long slice = blockIdx.x*blockDim.x+threadIdx.x;
+	if(slice >= outer*inner){
+		return;
+	}
+	
+	long k = (long)index[slice];
+	if(k < 0 || k >= size){
+		return;
+	}
+	dst[(slice / inner)*size*inner + k*inner + slice % inner] = src[slice];
+}
+
+// keep the k largest elements of each slice sorted, insertion is fine for the small k typically used
+__global__ void topkdim(float *values, float *indices, float *src, long outer, long size, long inner, long k)
+{
+	long slice = blockIdx.x*blockDim.x+threadIdx.x;
+	if(slice >= outer*inner){
+		return;
+	}
+	
+	long o = slice / inner;
+	long i = slice % inner;
+	float *ptr = src + o*size*inner + i;
+	float *v = values + o*k*inner + i;
+	float *idx = indices + o*k*inner + i;
+	long n = 0;
+	for(long j=0;j<size;j++){
+		float val = ptr[j*inner];
+		if(n == k && !(val > v[(k-1)*inner])){
+			continue;
+		}
+		long pos = n < k ? n : k-1;
+		while(pos > 0 && val > v[(pos-1)*inner]){
+			v[pos*inner] = v[(pos-1)*inner];
+			idx[pos*inner] = idx[(pos-1)*inner];
+			pos--;
+		}
+		v[pos*inner] = val;
+		idx[pos*inner] = j;
+		if(n < k)
+			n++;
+	}
+}
+
+__global__ void rankdim(float *dst, float *src, float *index, long outer, long size, long inner)
+{
+	long slice = blockIdx.x*blockDim.x+threadIdx.x;
+	if(slice >= outer*inner){
+		return;
+	}
+	
+	long k = (long)index[slice];
+	if(k < 0 || k >= size){
+		return;
+	}
+	float *ptr = src + (slice / inner)*size*inner + slice % inner;
+	float val = ptr[k*inner];
+	long rank = 0;
+	for(long j=0;j<size;j++){
+		float v = ptr[j*inner];
+		if(v > val || (v == val && j < k))
+			rank++;
+	}
+	dst[slice] = rank;
+}
+
+static void splitdim(THCudaTensor *t, int dim, long *outer, long *size, long *inner){
+	*outer = 1;
+	*size = t->size[dim];
+	*inner = 1;
+	for(int i=0;i<dim;i++)
+		*outer *= t->size[i];
+	for(int i=dim+1;i<t->nDimension;i++)
+		*inner *= t->size[i];
+}
+
 	
 	int THCudaTensor_argmax(THCState *state, THCudaTensor *t){
 		t = THCudaTensor_newContiguous(state, t);
@@ -152,3 +270,69 @@ __global__ void scale2d(float *input, float *output,
     	THCudaTensor_free(state, input);
     	
 	}
+	
+	void THCudaTensor_maxdim(THCState *state, THCudaTensor *values, THCudaTensor *indices, THCudaTensor *src, int dim)
+	{
+		long outer, size, inner;
+		splitdim(src, dim, &outer, &size, &inner);
+		
+		dim3 threads(256);
+		dim3 blocks((outer*inner + threads.x - 1)/threads.x);
+		
+		maxdim <<<blocks, threads, 0, THCState_getCurrentStream(state)>>> (
+		  values == NULL ? NULL : THCudaTensor_data(state, values), 
+		  indices == NULL ? NULL : THCudaTensor_data(state, indices), 
+		  THCudaTensor_data(state, src), outer, size, inner);
+	}
+	
+	void THCudaTensor_gatherdim(THCState *state, THCudaTensor *dst, THCudaTensor *src, int dim, THCudaTensor *index)
+	{
+		long outer, size, inner;
+		splitdim(src, dim, &outer, &size, &inner);
+		
+		dim3 threads(256);
+		dim3 blocks((outer*inner + threads.x - 1)/threads.x);
+		
+		gatherdim <<<blocks, threads, 0, THCState_getCurrentStream(state)>>> (
+		  THCudaTensor_data(state, dst), THCudaTensor_data(state, src), 
+		  THCudaTensor_data(state, index), outer, size, inner);
+	}
+	
+	void THCudaTensor_topkdim(THCState *state, THCudaTensor *values, THCudaTensor *indices, THCudaTensor *src, int k, int dim)
+	{
+		long outer, size, inner;
+		splitdim(src, dim, &outer, &size, &inner);
+		
+		dim3 threads(256);
+		dim3 blocks((outer*inner + threads.x - 1)/threads.x);
+		
+		topkdim <<<blocks, threads, 0, THCState_getCurrentStream(state)>>> (
+		  THCudaTensor_data(state, values), THCudaTensor_data(state, indices),
+		  THCudaTensor_data(state, src), outer, size, inner, k);
+	}
+	
+	void THCudaTensor_rankdim(THCState *state, THCudaTensor *dst, THCudaTensor *src, int dim, THCudaTensor *index)
+	{
+		long outer, size, inner;
+		splitdim(src, dim, &outer, &size, &inner);
+		
+		dim3 threads(256);
+		dim3 blocks((outer*inner + threads.x - 1)/threads.x);
+		
+		rankdim <<<blocks, threads, 0, THCState_getCurrentStream(state)>>> (
+		  THCudaTensor_data(state, dst), THCudaTensor_data(state, src), 
+		  THCudaTensor_data(state, index), outer, size, inner);
+	}
+	
+	void THCudaTensor_scatterdim(THCState *state, THCudaTensor *dst, int dim, THCudaTensor *index, THCudaTensor *src)
+	{
+		long outer, size, inner;
+		splitdim(dst, dim, &outer, &size, &inner);
+		
+		dim3 threads(256);
+		dim3 blocks((outer*inner + threads.x - 1)/threads.x);
+		
+		scatterdim <<<blocks, threads, 0, THCState_getCurrentStream(state)>>> (
+		  THCudaTensor_data(state, dst), THCudaTensor_data(state, src), 
+		  THCudaTensor_data(state, index), outer, size, inner);
+	}
@@ -29,5 +29,11 @@
 int THCudaTensor_argmax(THCState *state, THCudaTensor *t);
 int THCudaTensor_argmin(THCState *state, THCudaTensor *t);
 void THCudaTensor_scale2d(THCState *state, THCudaTensor *dst, THCudaTensor *src);
+// batched ops along a dimension, all tensors should be contiguous
+void THCudaTensor_maxdim(THCState *state, THCudaTensor *values, THCudaTensor *indices, THCudaTensor *src, int dim);
+void THCudaTensor_gatherdim(THCState *state, THCudaTensor *dst, THCudaTensor *src, int dim, THCudaTensor *index);
+void THCudaTensor_scatterdim(THCState *state, THCudaTensor *dst, int dim, THCudaTensor *index, THCudaTensor *src);
+void THCudaTensor_topkdim(THCState *state, THCudaTensor *values, THCudaTensor *indices, THCudaTensor *src, int k, int dim);
+void THCudaTensor_rankdim(THCState *state, THCudaTensor *dst, THCudaTensor *src, int dim, THCudaTensor *index);
 
 #endif
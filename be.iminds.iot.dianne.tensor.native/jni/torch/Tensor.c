@@ -478,6 +478,113 @@ JNIEXPORT void JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_set___3F
 }
 
 
+// copy count elements starting at index of the tensor data to host memory
+static void copyToHost(THTensor* tensor, void* dst, int index, int count){
+	// in case of a narrowed tensor, copy to a contiguous tensor first
+	THTensor* contiguous = THTensor_(newContiguous)(
+#ifdef CUDA
+			state,
+#endif
+			tensor);
+
+#ifdef CUDA
+	cudaMemcpy(dst, THTensor_(data)(state, contiguous)+index, count*sizeof(real), cudaMemcpyDeviceToHost);
+	THCudaCheck(cudaGetLastError());
+#else
+	memcpy(dst, THTensor_(data)(contiguous)+index, count*sizeof(real));
+#endif
+
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			contiguous);
+}
+
+// copy count elements from host memory into the tensor data starting at index
+static void copyFromHost(THTensor* tensor, void* src, int index, int count){
+	THTensor* contiguous = tensor;
+	int isContiguous = THTensor_(isContiguous)(
+#ifdef CUDA
+			state,
+#endif
+			tensor);
+	if(!isContiguous){
+		contiguous = THTensor_(newContiguous)(
+#ifdef CUDA
+				state,
+#endif
+				tensor);
+	}
+
+#ifdef CUDA
+	cudaMemcpy(THTensor_(data)(state, contiguous)+index, src, count*sizeof(real), cudaMemcpyHostToDevice);
+	THCudaCheck(cudaGetLastError());
+#else
+	memcpy(THTensor_(data)(contiguous)+index, src, count*sizeof(real));
+#endif
+
+	if(!isContiguous){
+		THTensor_(copy)(
+#ifdef CUDA
+				state,
+#endif
+				tensor, contiguous);
+		THTensor_(free)(
+#ifdef CUDA
+				state,
+#endif
+				contiguous);
+	}
+}
+
+
+JNIEXPORT void JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_getDirect
+  (JNIEnv * env, jobject t, jobject buffer, jint offset, jint index, jint count){
+	THTensor* tensor = getTensor(env, t);
+	char* dst = (char*)env->GetDirectBufferAddress(buffer) + offset;
+	copyToHost(tensor, dst, index, count);
+}
+
+
+JNIEXPORT void JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_setDirect
+  (JNIEnv * env, jobject t, jobject buffer, jint offset, jint index, jint count){
+	THTensor* tensor = getTensor(env, t);
+	char* src = (char*)env->GetDirectBufferAddress(buffer) + offset;
+	copyFromHost(tensor, src, index, count);
+}
+
+
+JNIEXPORT void JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_getArray
+  (JNIEnv * env, jobject t, jbyteArray array, jint offset, jint index, jint count){
+	THTensor* tensor = getTensor(env, t);
+	jbyte* bytes = (jbyte*)env->GetPrimitiveArrayCritical(array, 0);
+	copyToHost(tensor, bytes + offset, index, count);
+	env->ReleasePrimitiveArrayCritical(array, bytes, 0);
+}
+
+
+JNIEXPORT void JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_setArray
+  (JNIEnv * env, jobject t, jbyteArray array, jint offset, jint index, jint count){
+	THTensor* tensor = getTensor(env, t);
+	jbyte* bytes = (jbyte*)env->GetPrimitiveArrayCritical(array, 0);
+	copyFromHost(tensor, bytes + offset, index, count);
+	// nothing changed in the array, no need to copy back
+	env->ReleasePrimitiveArrayCritical(array, bytes, JNI_ABORT);
+}
+
+
+JNIEXPORT jboolean JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_isContiguous
+  (JNIEnv * env, jobject t){
+	THTensor* tensor = getTensor(env, t);
+	return THTensor_(isContiguous)(
+#ifdef CUDA
+			state,
+#endif
+			tensor);
+}
+
+
 
 JNIEXPORT void JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_fill
   (JNIEnv * env, jobject t, jfloat val){
@@ -579,6 +686,130 @@ JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_copyInto
 }
 
 
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_share
+  (JNIEnv * env, jobject t){
+	THTensor* tensor = getTensor(env, t);
+	THStorage* storage = tensor->storage;
+
+	// new storage object pointing to the same data, but without ownership
+	// so it is never freed through this storage
+	THStorage* shared = THStorage_(newWithData)(
+#ifdef CUDA
+		state,
+#endif
+		storage->data, storage->size);
+	THStorage_(clearFlag)(
+#ifdef CUDA
+		state,
+#endif
+		shared, TH_STORAGE_FREEMEM);
+
+	// keep the source storage alive as long as the shared storage (or any
+	// tensor viewing it) exists, it is released when the shared storage is freed
+	THStorage_(retain)(
+#ifdef CUDA
+		state,
+#endif
+		storage);
+	shared->view = storage;
+	THStorage_(setFlag)(
+#ifdef CUDA
+		state,
+#endif
+		shared, TH_STORAGE_VIEW);
+
+	THLongStorage* size = THTensor_(newSizeOf)(
+#ifdef CUDA
+		state,
+#endif
+		tensor);
+	THLongStorage* stride = THTensor_(newStrideOf)(
+#ifdef CUDA
+		state,
+#endif
+		tensor);
+
+	THTensor* result = THTensor_(newWithStorage)(
+#ifdef CUDA
+		state,
+#endif
+		shared, tensor->storageOffset, size, stride);
+
+	THLongStorage_free(size);
+	THLongStorage_free(stride);
+	THStorage_(free)(
+#ifdef CUDA
+		state,
+#endif
+		shared);
+
+	return createTensorObject(env, result);
+}
+
+
+JNIEXPORT jboolean JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_unshare
+  (JNIEnv * env, jobject t){
+	THTensor* tensor = getTensor(env, t);
+	THStorage* storage = tensor->storage;
+
+	if(storage == NULL || (storage->flag & TH_STORAGE_FREEMEM)){
+		// already owns its data
+		return false;
+	}
+
+	THStorage* copy = THStorage_(newWithSize)(
+#ifdef CUDA
+		state,
+#endif
+		storage->size);
+	THStorage_(copy)(
+#ifdef CUDA
+		state,
+#endif
+		copy, storage);
+
+	// swap the data pointers, this way all tensors on this storage
+	// (i.e. narrowed views) now point to the private copy
+	real* data = copy->data;
+	copy->data = storage->data;
+	storage->data = data;
+
+	THStorage_(clearFlag)(
+#ifdef CUDA
+		state,
+#endif
+		copy, TH_STORAGE_FREEMEM);
+	THStorage_(setFlag)(
+#ifdef CUDA
+		state,
+#endif
+		storage, TH_STORAGE_FREEMEM);
+	THStorage_(free)(
+#ifdef CUDA
+		state,
+#endif
+		copy);
+
+	// no longer refers to the source data, so release it
+	if(storage->flag & TH_STORAGE_VIEW){
+		THStorage* source = storage->view;
+		storage->view = NULL;
+		THStorage_(clearFlag)(
+#ifdef CUDA
+			state,
+#endif
+			storage, TH_STORAGE_VIEW);
+		THStorage_(free)(
+#ifdef CUDA
+			state,
+#endif
+			source);
+	}
+
+	return true;
+}
+
+
 
 JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_Tensor_narrow
   (JNIEnv * env, jobject t, jint dim, jint index, jint size){
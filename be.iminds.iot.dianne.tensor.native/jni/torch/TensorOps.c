@@ -239,6 +239,27 @@ JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_addcdiv
 
 
 
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_lerp
+  (JNIEnv * env, jclass c, jobject res, jobject tensor1, jobject tensor2, jfloat weight){
+	THTensor* r = getTensor(env, res);
+	THTensor* t1 = getTensor(env, tensor1);
+	THTensor* t2 = getTensor(env, tensor2);
+
+#ifdef CUDA
+	THTensor_(mul)(state, r, t1, 1-weight);
+	THTensor_(cadd)(state, r, r, weight, t2);
+#else
+	THTensor_(resizeAs)(r, t1);
+	TH_TENSOR_APPLY3(real, r, real, t1, real, t2,
+	  *r_data = *t1_data + weight*(*t2_data - *t1_data);
+	);
+#endif
+
+	return res == NULL ? createTensorObject(env, r) : res;
+}
+
+
+
 JNIEXPORT jfloat JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_dot
   (JNIEnv * env, jclass c, jobject tensor1, jobject tensor2){
 	THTensor* vec1 = getTensor(env, tensor1);
@@ -580,7 +601,7 @@ JNIEXPORT jfloat JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_sum
 
 
 
-JNIEXPORT jfloat JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_max
+JNIEXPORT jfloat JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_max__Lbe_iminds_iot_dianne_tensor_Tensor_2
   (JNIEnv * env, jclass c, jobject tensor){
 	THTensor* t = getTensor(env, tensor);
 	return THTensor_(maxall)(
@@ -616,7 +637,7 @@ JNIEXPORT jfloat JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_mean
 
 
 
-JNIEXPORT jint JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_argmax
+JNIEXPORT jint JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_argmax__Lbe_iminds_iot_dianne_tensor_Tensor_2
   (JNIEnv * env, jclass c, jobject tensor){
 	THTensor* t = getTensor(env, tensor);
 	THTensor* vec = getVector(t);
@@ -672,6 +693,457 @@ JNIEXPORT jint JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_argmin
 	return index;
 }
 
+// resize r to the dims of t without dimension dim
+void resizeReduced(THTensor* r, THTensor* t, int dim){
+	int n = t->nDimension > 1 ? t->nDimension-1 : 1;
+	THLongStorage* size = THLongStorage_newWithSize(n);
+	THLongStorage_fill(size, 1);
+	int i, j = 0;
+	for(i=0;i<t->nDimension;i++){
+		if(i != dim)
+			size->data[j++] = t->size[i];
+	}
+	THTensor_(resize)(
+#ifdef CUDA
+			state,
+#endif
+			r, size, NULL);
+	THLongStorage_free(size);
+}
+
+// split the elements of t in outer x size x inner around dimension dim
+void splitDim(THTensor* t, int dim, long* outer, long* size, long* inner){
+	*outer = 1;
+	*size = t->size[dim];
+	*inner = 1;
+	int i;
+	for(i=0;i<dim;i++)
+		*outer *= t->size[i];
+	for(i=dim+1;i<t->nDimension;i++)
+		*inner *= t->size[i];
+}
+
+#ifndef CUDA
+// helper functions on CPU only, all work on contiguous tensors
+
+void maxdim(THTensor* values, THTensor* indices, THTensor* t, int dim){
+	long outer, size, inner;
+	splitDim(t, dim, &outer, &size, &inner);
+
+	real* v_data = values == NULL ? NULL : THTensor_(data)(values);
+	real* i_data = indices == NULL ? NULL : THTensor_(data)(indices);
+	real* t_data = THTensor_(data)(t);
+
+	long o, i, k;
+	for(o=0;o<outer;o++){
+		for(i=0;i<inner;i++){
+			real* ptr = t_data + o*size*inner + i;
+			real max = ptr[0];
+			long index = 0;
+			for(k=1;k<size;k++){
+				if(max < ptr[k*inner]){
+					max = ptr[k*inner];
+					index = k;
+				}
+			}
+			if(v_data != NULL)
+				v_data[o*inner+i] = max;
+			if(i_data != NULL)
+				i_data[o*inner+i] = index;
+		}
+	}
+}
+
+int gatherdim(THTensor* r, THTensor* t, int dim, THTensor* index){
+	long outer, size, inner;
+	splitDim(t, dim, &outer, &size, &inner);
+
+	real* r_data = THTensor_(data)(r);
+	real* t_data = THTensor_(data)(t);
+	real* index_data = THTensor_(data)(index);
+
+	long o, i;
+	for(o=0;o<outer;o++){
+		for(i=0;i<inner;i++){
+			long k = (long)index_data[o*inner+i];
+			if(k < 0 || k >= size)
+				return 0;
+			r_data[o*inner+i] = t_data[o*size*inner + k*inner + i];
+		}
+	}
+	return 1;
+}
+
+int scatterdim(THTensor* r, int dim, THTensor* index, THTensor* src){
+	long outer, size, inner;
+	splitDim(r, dim, &outer, &size, &inner);
+
+	real* r_data = THTensor_(data)(r);
+	real* src_data = THTensor_(data)(src);
+	real* index_data = THTensor_(data)(index);
+
+	long o, i;
+	for(o=0;o<outer;o++){
+		for(i=0;i<inner;i++){
+			long k = (long)index_data[o*inner+i];
+			if(k < 0 || k >= size)
+				return 0;
+			r_data[o*size*inner + k*inner + i] = src_data[o*inner+i];
+		}
+	}
+	return 1;
+}
+
+// keep the k largest elements of each slice sorted, insertion is fine for the small k typically used
+void topkdim(THTensor* values, THTensor* indices, THTensor* t, int k, int dim){
+	long outer, size, inner;
+	splitDim(t, dim, &outer, &size, &inner);
+
+	real* v_data = THTensor_(data)(values);
+	real* i_data = THTensor_(data)(indices);
+	real* t_data = THTensor_(data)(t);
+
+	long o, i, j;
+	for(o=0;o<outer;o++){
+		for(i=0;i<inner;i++){
+			real* ptr = t_data + o*size*inner + i;
+			real* v = v_data + o*k*inner + i;
+			real* idx = i_data + o*k*inner + i;
+			long n = 0;
+			for(j=0;j<size;j++){
+				real val = ptr[j*inner];
+				if(n == k && !(val > v[(k-1)*inner]))
+					continue;
+
+				long pos = n < k ? n : k-1;
+				while(pos > 0 && val > v[(pos-1)*inner]){
+					v[pos*inner] = v[(pos-1)*inner];
+					idx[pos*inner] = idx[(pos-1)*inner];
+					pos--;
+				}
+				v[pos*inner] = val;
+				idx[pos*inner] = j;
+				if(n < k)
+					n++;
+			}
+		}
+	}
+}
+
+int rankdim(THTensor* r, THTensor* t, int dim, THTensor* index){
+	long outer, size, inner;
+	splitDim(t, dim, &outer, &size, &inner);
+
+	real* r_data = THTensor_(data)(r);
+	real* t_data = THTensor_(data)(t);
+	real* index_data = THTensor_(data)(index);
+
+	long o, i, j;
+	for(o=0;o<outer;o++){
+		for(i=0;i<inner;i++){
+			long k = (long)index_data[o*inner+i];
+			if(k < 0 || k >= size)
+				return 0;
+
+			real* ptr = t_data + o*size*inner + i;
+			real val = ptr[k*inner];
+			long rank = 0;
+			for(j=0;j<size;j++){
+				real v = ptr[j*inner];
+				if(v > val || (v == val && j < k))
+					rank++;
+			}
+			r_data[o*inner+i] = rank;
+		}
+	}
+	return 1;
+}
+#endif
+
+THTensor* contiguous(THTensor* t){
+	return THTensor_(newContiguous)(
+#ifdef CUDA
+			state,
+#endif
+			t);
+}
+
+// copy back in case the result tensor was not contiguous
+void freeCopyTo(THTensor* c, THTensor* t){
+	THTensor_(freeCopyTo)(
+#ifdef CUDA
+			state,
+#endif
+			c, t);
+}
+
+long elements(THTensor* t){
+	return THTensor_(nElement)(
+#ifdef CUDA
+			state,
+#endif
+			t);
+}
+
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_max__Lbe_iminds_iot_dianne_tensor_Tensor_2Lbe_iminds_iot_dianne_tensor_Tensor_2I
+  (JNIEnv * env, jclass c, jobject res, jobject tensor, jint dim){
+	THTensor* r = getTensor(env, res);
+	THTensor* t = getTensor(env, tensor);
+	if(dim < 0 || dim >= t->nDimension){
+		throwException("Invalid dimension");
+		return NULL;
+	}
+	resizeReduced(r, t, dim);
+
+	THTensor* values = contiguous(r);
+	THTensor* src = contiguous(t);
+#ifdef CUDA
+	THCudaTensor_maxdim(state, values, NULL, src, dim);
+#else
+	maxdim(values, NULL, src, dim);
+#endif
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			src);
+	freeCopyTo(values, r);
+
+	return res == NULL ? createTensorObject(env, r) : res;
+}
+
+
+
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_argmax__Lbe_iminds_iot_dianne_tensor_Tensor_2Lbe_iminds_iot_dianne_tensor_Tensor_2I
+  (JNIEnv * env, jclass c, jobject res, jobject tensor, jint dim){
+	THTensor* r = getTensor(env, res);
+	THTensor* t = getTensor(env, tensor);
+	if(dim < 0 || dim >= t->nDimension){
+		throwException("Invalid dimension");
+		return NULL;
+	}
+	resizeReduced(r, t, dim);
+
+	THTensor* indices = contiguous(r);
+	THTensor* src = contiguous(t);
+#ifdef CUDA
+	THCudaTensor_maxdim(state, NULL, indices, src, dim);
+#else
+	maxdim(NULL, indices, src, dim);
+#endif
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			src);
+	freeCopyTo(indices, r);
+
+	return res == NULL ? createTensorObject(env, r) : res;
+}
+
+
+
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_gather
+  (JNIEnv * env, jclass c, jobject res, jobject tensor, jint dim, jobject idx){
+	THTensor* r = getTensor(env, res);
+	THTensor* t = getTensor(env, tensor);
+	THTensor* index = getTensor(env, idx);
+	if(dim < 0 || dim >= t->nDimension){
+		throwException("Invalid dimension");
+		return NULL;
+	}
+	if(elements(index)*t->size[dim] != elements(t)){
+		throwException("Index should have one element for each slice of the tensor along dim");
+		return NULL;
+	}
+	resizeReduced(r, t, dim);
+
+	THTensor* values = contiguous(r);
+	THTensor* src = contiguous(t);
+	THTensor* indices = contiguous(index);
+	int valid = 1;
+#ifdef CUDA
+	THCudaTensor_gatherdim(state, values, src, dim, indices);
+#else
+	valid = gatherdim(values, src, dim, indices);
+#endif
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			src);
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			indices);
+	freeCopyTo(values, r);
+
+	if(!valid){
+		throwException("Index out of range");
+		return NULL;
+	}
+
+	return res == NULL ? createTensorObject(env, r) : res;
+}
+
+
+
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_scatter
+  (JNIEnv * env, jclass c, jobject res, jint dim, jobject idx, jobject source){
+	THTensor* r = getTensor(env, res);
+	THTensor* index = getTensor(env, idx);
+	THTensor* s = getTensor(env, source);
+	if(dim < 0 || dim >= r->nDimension){
+		throwException("Invalid dimension");
+		return NULL;
+	}
+	if(elements(index)*r->size[dim] != elements(r) || elements(s) != elements(index)){
+		throwException("Index and source should have one element for each slice of the result along dim");
+		return NULL;
+	}
+
+	THTensor* values = contiguous(r);
+	THTensor* src = contiguous(s);
+	THTensor* indices = contiguous(index);
+	int valid = 1;
+#ifdef CUDA
+	THCudaTensor_scatterdim(state, values, dim, indices, src);
+#else
+	valid = scatterdim(values, dim, indices, src);
+#endif
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			src);
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			indices);
+	freeCopyTo(values, r);
+
+	if(!valid){
+		throwException("Index out of range");
+		return NULL;
+	}
+
+	return res;
+}
+
+
+
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_topk
+  (JNIEnv * env, jclass c, jobject res, jobject idx, jobject tensor, jint k, jint dim){
+	THTensor* r = getTensor(env, res);
+	THTensor* t = getTensor(env, tensor);
+	if(dim < 0 || dim >= t->nDimension){
+		throwException("Invalid dimension");
+		return NULL;
+	}
+	if(k <= 0 || k > t->size[dim]){
+		throwException("Invalid k");
+		return NULL;
+	}
+	// indices are optional, use a temporary tensor if not requested
+	THTensor* i = idx == NULL ? THTensor_(new)(
+#ifdef CUDA
+			state
+#endif
+			) : getTensor(env, idx);
+
+	THLongStorage* size = THLongStorage_newWithSize(t->nDimension);
+	int d;
+	for(d=0;d<t->nDimension;d++){
+		size->data[d] = d == dim ? k : t->size[d];
+	}
+	THTensor_(resize)(
+#ifdef CUDA
+			state,
+#endif
+			r, size, NULL);
+	THTensor_(resize)(
+#ifdef CUDA
+			state,
+#endif
+			i, size, NULL);
+	THLongStorage_free(size);
+
+	THTensor* values = contiguous(r);
+	THTensor* indices = contiguous(i);
+	THTensor* src = contiguous(t);
+#ifdef CUDA
+	THCudaTensor_topkdim(state, values, indices, src, k, dim);
+#else
+	topkdim(values, indices, src, k, dim);
+#endif
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			src);
+	freeCopyTo(values, r);
+	freeCopyTo(indices, i);
+	if(idx == NULL){
+		THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			i);
+	}
+
+	return res == NULL ? createTensorObject(env, r) : res;
+}
+
+
+
+JNIEXPORT jobject JNICALL Java_be_iminds_iot_dianne_tensor_TensorOps_rank
+  (JNIEnv * env, jclass c, jobject res, jobject tensor, jint dim, jobject idx){
+	THTensor* r = getTensor(env, res);
+	THTensor* t = getTensor(env, tensor);
+	THTensor* index = getTensor(env, idx);
+	if(dim < 0 || dim >= t->nDimension){
+		throwException("Invalid dimension");
+		return NULL;
+	}
+	if(elements(index)*t->size[dim] != elements(t)){
+		throwException("Index should have one element for each slice of the tensor along dim");
+		return NULL;
+	}
+	resizeReduced(r, t, dim);
+
+	THTensor* ranks = contiguous(r);
+	THTensor* src = contiguous(t);
+	THTensor* indices = contiguous(index);
+	int valid = 1;
+#ifdef CUDA
+	THCudaTensor_rankdim(state, ranks, src, dim, indices);
+#else
+	valid = rankdim(ranks, src, dim, indices);
+#endif
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			src);
+	THTensor_(free)(
+#ifdef CUDA
+			state,
+#endif
+			indices);
+	freeCopyTo(ranks, r);
+
+	if(!valid){
+		throwException("Index out of range");
+		return NULL;
+	}
+
+	return res == NULL ? createTensorObject(env, r) : res;
+}
+
+
+
 #ifndef CUDA
 // helper function on CPU only
 void scale2d(THTensor* r, THTensor* t){
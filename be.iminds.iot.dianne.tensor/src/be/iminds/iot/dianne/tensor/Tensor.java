@@ -22,6 +22,10 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.tensor;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -179,6 +183,82 @@ public class Tensor {
 	 */
 	public native void set(final float[] data);
 	
+	/**
+	 * copy the raw data of this tensor into a ByteBuffer at its current position, and
+	 * advance the position with 4*size() bytes. In case of a direct or array-backed buffer in 
+	 * native byte order the data is copied directly from native memory, without intermediate float[].
+	 */
+	public void get(final ByteBuffer buffer){
+		get(buffer, 0, size());
+	}
+	
+	/**
+	 * copy count floats of the raw data of this tensor, starting from element index, into a 
+	 * ByteBuffer at its current position and advance the position with 4*count bytes. 
+	 */
+	public void get(final ByteBuffer buffer, final int index, final int count){
+		int bytes = 4*count;
+		if(buffer.remaining() < bytes)
+			throw new BufferOverflowException();
+		if(index < 0 || index+count > size())
+			throw new IndexOutOfBoundsException("Cannot get "+count+" elements from index "+index);
+		
+		if(buffer.order() == ByteOrder.nativeOrder() && buffer.isDirect()){
+			getDirect(buffer, buffer.position(), index, count);
+		} else if(buffer.order() == ByteOrder.nativeOrder() && buffer.hasArray()){
+			getArray(buffer.array(), buffer.arrayOffset()+buffer.position(), index, count);
+		} else {
+			buffer.asFloatBuffer().put(get(), index, count);
+		}
+		buffer.position(buffer.position()+bytes);
+	}
+	
+	/**
+	 * copy raw data from a ByteBuffer at its current position into this tensor, and
+	 * advance the position with 4*size() bytes. In case of a direct or array-backed buffer in 
+	 * native byte order the data is copied directly into native memory, without intermediate float[].
+	 */
+	public void set(final ByteBuffer buffer){
+		set(buffer, 0, size());
+	}
+	
+	/**
+	 * copy count floats from a ByteBuffer at its current position into the raw data of this tensor
+	 * starting from element index, and advance the position with 4*count bytes. 
+	 */
+	public void set(final ByteBuffer buffer, final int index, final int count){
+		int bytes = 4*count;
+		if(buffer.remaining() < bytes)
+			throw new BufferUnderflowException();
+		if(index < 0 || index+count > size())
+			throw new IndexOutOfBoundsException("Cannot set "+count+" elements from index "+index);
+		
+		if(buffer.order() == ByteOrder.nativeOrder() && buffer.isDirect()){
+			setDirect(buffer, buffer.position(), index, count);
+		} else if(buffer.order() == ByteOrder.nativeOrder() && buffer.hasArray()){
+			setArray(buffer.array(), buffer.arrayOffset()+buffer.position(), index, count);
+		} else {
+			float[] data = count == size() ? new float[count] : get();
+			buffer.asFloatBuffer().get(data, index, count);
+			set(data);
+		}
+		buffer.position(buffer.position()+bytes);
+	}
+	
+	private native void getDirect(ByteBuffer buffer, int offset, int index, int count);
+	
+	private native void setDirect(ByteBuffer buffer, int offset, int index, int count);
+	
+	private native void getArray(byte[] array, int offset, int index, int count);
+	
+	private native void setArray(byte[] array, int offset, int index, int count);
+	
+	/**
+	 * @return whether the data of this tensor is contiguous in memory, which is not the case for
+	 * some narrowed tensors
+	 */
+	public native boolean isContiguous();
+	
 	/**
 	 * fill with fixed value
 	 * @param v the new value
@@ -242,7 +322,23 @@ public class Tensor {
 	public Tensor clone(){
 		return copyInto(null);
 	}
-	
+
+	/**
+	 * Create a new tensor that references the same data as this tensor, without copying.
+	 * The shared tensor keeps the data of this tensor alive, also after this tensor is freed,
+	 * until it is unshared and all tensors narrowed from it are freed as well.
+	 *
+	 * Call unshare() before writing to the shared tensor (copy-on-write).
+	 */
+	public native Tensor share();
+
+	/**
+	 * Make sure this tensor has its own copy of the data in case it was created with share().
+	 * All tensors narrowed from the shared tensor will also point to the private copy.
+	 * @return true if the data was copied, false if this tensor already owned its data
+	 */
+	public native boolean unshare();
+
 	/**
 	 * Return a subtensor narrowing dimension dim from index to index+size-1
 	 */
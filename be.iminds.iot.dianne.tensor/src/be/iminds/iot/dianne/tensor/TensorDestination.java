@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.tensor;
+
+/**
+ * Allows to deserialize tensors into existing tensors instead of allocating new ones.
+ * 
+ * Before doing a remote call, the caller can set the tensors that should be reused for the
+ * result on the current thread. When the result is deserialized on the same thread, the 
+ * TensorSerializer will fill these tensors in order, given that they have the same dimensions as
+ * the tensor read. Otherwise, a new tensor is allocated, hence the caller should always check 
+ * whether the result actually refers to the provided tensors.
+ * 
+ * @author tverbele
+ *
+ */
+public final class TensorDestination {
+
+	private static final ThreadLocal<TensorDestination> destinations = new ThreadLocal<>();
+	
+	private final Tensor[] tensors;
+	private int next = 0;
+	
+	private TensorDestination(Tensor[] tensors){
+		this.tensors = tensors;
+	}
+	
+	/**
+	 * Set the tensors to deserialize into on this thread, in the order they are read.
+	 * Null entries will be skipped and result in a newly allocated tensor.
+	 */
+	public static void set(Tensor... tensors){
+		destinations.set(new TensorDestination(tensors));
+	}
+	
+	/**
+	 * Clear the tensors to deserialize into on this thread
+	 */
+	public static void clear(){
+		destinations.remove();
+	}
+	
+	/**
+	 * Get the next tensor to deserialize into, to be used by deserializers
+	 * 
+	 * @param dims the dimensions of the tensor to read
+	 * @return the destination tensor with the requested dims, or null if there is no (matching) destination
+	 */
+	public static Tensor next(int... dims){
+		TensorDestination d = destinations.get();
+		if(d == null || d.next >= d.tensors.length)
+			return null;
+		
+		Tensor t = d.tensors[d.next++];
+		if(t == null)
+			return null;
+		
+		// only reuse tensors with the same dims, as these might have been narrowed 
+		// (e.g. the samples of a Batch) and a reshape would invalidate these 
+		if(!t.hasDim(dims))
+			return null;
+		
+		return t;
+	}
+}
@@ -101,6 +101,12 @@ public class TensorOps {
 	 */
 	public static native Tensor addcdiv(Tensor res, final Tensor tensor1, final float value, final Tensor tensor2, final Tensor tensor3);
 
+	/**
+	 * Linear interpolation from tensor1 to tensor2: tensor1 + weight*(tensor2-tensor1), in a single pass.
+	 * The number of elements must match, but sizes do not matter.
+	 */
+	public static native Tensor lerp(Tensor res, final Tensor tensor1, final Tensor tensor2, final float weight);
+
 	/**
 	 * Performs the dot product between vec1 and vec2. 
 	 * The number of elements must match: both Ts are seen as a 1D vector.
@@ -228,6 +234,49 @@ public class TensorOps {
 	 * Return index of the min element (treats T as 1 dim vector)
 	 */
 	public static native int argmin(final Tensor tensor);
+	
+	/**
+	 * Calculate the max of each slice along dimension dim, i.e. for a batch of 
+	 * vectors [batch, n] and dim 1 the result contains the max of each vector.
+	 * The result has the dims of the tensor without dimension dim.
+	 */
+	public static native Tensor max(Tensor res, final Tensor tensor, final int dim);
+	
+	/**
+	 * Calculate the index of the max element of each slice along dimension dim. 
+	 * The result has the dims of the tensor without dimension dim.
+	 */
+	public static native Tensor argmax(Tensor res, final Tensor tensor, final int dim);
+	
+	/**
+	 * Select one element of each slice along dimension dim, at the position given 
+	 * in index, e.g. res[b] = tensor[b][index[b]] for a 2 dim tensor and dim 1. 
+	 * Index has one element for each slice and the result gets the dims of the 
+	 * tensor without dimension dim.
+	 */
+	public static native Tensor gather(Tensor res, final Tensor tensor, final int dim, final Tensor index);
+	
+	/**
+	 * Write one element in each slice along dimension dim, at the position given 
+	 * in index, e.g. res[b][index[b]] = src[b] for a 2 dim tensor and dim 1. 
+	 * Other elements of res are left untouched.
+	 */
+	public static native Tensor scatter(Tensor res, final int dim, final Tensor index, final Tensor src);
+	
+	/**
+	 * Select the k largest elements of each slice along dimension dim, sorted from 
+	 * large to small. Values and indices get the dims of the tensor with dimension 
+	 * dim of size k. Indices can be null in case only the values are required.
+	 */
+	public static native Tensor topk(Tensor values, Tensor indices, final Tensor tensor, final int k, final int dim);
+	
+	/**
+	 * Calculate the rank of one element of each slice along dimension dim, at the 
+	 * position given in index, i.e. the number of elements that are larger (with equal 
+	 * elements at a lower position counted as larger). A rank of 0 means the element 
+	 * is the max of its slice. The result gets the dims of the tensor without dimension dim.
+	 */
+	public static native Tensor rank(Tensor res, final Tensor tensor, final int dim, final Tensor index);
 
 	/**
 	 * Scale (bilinear interpollate) in 2 dimensions
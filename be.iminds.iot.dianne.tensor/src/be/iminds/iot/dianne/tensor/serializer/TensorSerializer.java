@@ -22,37 +22,114 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.tensor.serializer;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.osgi.service.component.annotations.Component;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorDestination;
 
+/**
+ * Serializes a Tensor as its dims followed by the raw float data in little endian byte order.
+ * 
+ * The serialized form starts with a negative format marker, where the original big endian 
+ * format started with the (non-negative) number of dims, so that peers using a different
+ * format fail with an exception instead of reading garbage data.
+ * 
+ * The data is copied straight between native memory and the Kryo Output/Input buffer,
+ * in chunks when the tensor does not fit the buffer. Tensors can be deserialized into existing 
+ * tensors provided via TensorDestination.
+ * 
+ * @author tverbele
+ *
+ */
 @Component(service = Serializer.class, property = { 
 		"aiolos.export=false",
 		"kryo.serializer.class=be.iminds.iot.dianne.tensor.Tensor", 
 		"kryo.serializer.id=100" })
 public class TensorSerializer extends Serializer<Tensor> {
 
+	// format marker for little endian raw data, must be negative
+	public static final int FORMAT = -2;
+	
 	@Override
 	public Tensor read(Kryo kryo, Input input, Class<Tensor> tensor) {
+		int format = input.readInt();
+		if(format != FORMAT){
+			if(format >= 0){
+				throw new KryoException("Cannot deserialize Tensor, peer uses the old big endian format");
+			}
+			throw new KryoException("Cannot deserialize Tensor, unknown format "+format);
+		}
+		
 		int noDims = input.readInt();
 		int[] dims = input.readInts(noDims);
 		int length = input.readInt();
-		float[] data = input.readFloats(length);
-		return new Tensor(data, dims);
+		
+		Tensor t = TensorDestination.next(dims);
+		if(t == null){
+			t = new Tensor(dims);
+		}
+		
+		int index = 0;
+		while(index < length){
+			int count = Math.min(length - index, (input.limit() - input.position())/4);
+			if(count == 0){
+				// fill the buffer from the underlying stream
+				input.readInt();
+				input.setPosition(input.position()-4);
+				continue;
+			}
+			
+			ByteBuffer buffer = ByteBuffer.wrap(input.getBuffer(), input.position(), 4*count)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			t.set(buffer, index, count);
+			input.setPosition(input.position()+4*count);
+			index += count;
+		}
+		return t;
 	}
 
 	@Override
 	public void write(Kryo kryo, Output output, Tensor tensor) {
 		try {
-			output.writeInt(tensor.dims().length);
-			output.writeInts(tensor.dims());
-			output.writeInt(tensor.size());
-			output.writeFloats(tensor.get());
+			int[] dims = tensor.dims();
+			int length = dims.length == 0 ? 0 : 1;
+			for(int d : dims){
+				length *= d;
+			}
+			
+			output.writeInt(FORMAT);
+			output.writeInt(dims.length);
+			output.writeInts(dims);
+			output.writeInt(length);
+			
+			// copy in case of a narrowed tensor, to not make a contiguous copy for each chunk
+			Tensor t = tensor.isContiguous() ? tensor : tensor.copyInto(null);
+			
+			int index = 0;
+			while(index < length){
+				int count = Math.min(length - index, (output.getBuffer().length - output.position())/4);
+				if(count == 0){
+					// make room by flushing to the underlying stream or growing the buffer
+					output.writeInt(0);
+					output.setPosition(output.position()-4);
+					continue;
+				}
+				
+				ByteBuffer buffer = ByteBuffer.wrap(output.getBuffer(), output.position(), 4*count)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				t.get(buffer, index, count);
+				output.setPosition(output.position()+4*count);
+				index += count;
+			}
 		} catch(Throwable t){
 			t.printStackTrace();
 			throw t;
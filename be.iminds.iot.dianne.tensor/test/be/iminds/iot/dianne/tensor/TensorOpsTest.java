@@ -47,6 +47,26 @@ public class TensorOpsTest {
 		Assert.assertEquals(exp, r);
 	}
 	
+	@Test
+	public void testLerp() {
+		Tensor t1 = new Tensor(2,2);
+		t1.fill(2);
+		Tensor t2 = new Tensor(4);
+		t2.fill(6);
+		
+		Tensor r = TensorOps.lerp(null, t1, t2, 0.25f);
+		
+		Tensor exp = new Tensor(2,2);
+		exp.fill(3);
+		
+		Assert.assertEquals(exp, r);
+		
+		// in place
+		TensorOps.lerp(t1, t1, t2, 1);
+		exp.fill(6);
+		Assert.assertEquals(exp, t1);
+	}
+	
 	@Test
 	public void testAdd2() {
 		Tensor t1 = new Tensor(2,2);
@@ -464,6 +484,78 @@ public class TensorOpsTest {
 		Assert.assertEquals(0, TensorOps.argmin(t1));
 	}
 	
+	@Test
+	public void testMaxDim() {
+		Tensor t = new Tensor(new float[]{1, 5, 2, 7, 3, 4}, 2, 3);
+		
+		Tensor max = TensorOps.max(null, t, 1);
+		Assert.assertEquals(new Tensor(new float[]{5, 7}, 2), max);
+		
+		Tensor argmax = TensorOps.argmax(null, t, 1);
+		Assert.assertEquals(new Tensor(new float[]{1, 0}, 2), argmax);
+		
+		argmax = TensorOps.argmax(argmax, t, 0);
+		Assert.assertEquals(new Tensor(new float[]{1, 0, 1}, 3), argmax);
+	}
+	
+	@Test
+	public void testGatherScatter() {
+		Tensor t = new Tensor(new float[]{1, 5, 2, 7, 3, 4}, 2, 3);
+		Tensor index = new Tensor(new float[]{2, 0}, 2);
+		
+		Tensor r = TensorOps.gather(null, t, 1, index);
+		Assert.assertEquals(new Tensor(new float[]{2, 7}, 2), r);
+		
+		Tensor res = new Tensor(2, 3);
+		res.fill(0);
+		TensorOps.scatter(res, 1, index, new Tensor(new float[]{8, 9}, 2));
+		Assert.assertEquals(new Tensor(new float[]{0, 0, 8, 9, 0, 0}, 2, 3), res);
+	}
+	
+	@Test
+	public void testTopkRank() {
+		Tensor t = new Tensor(new float[]{1, 5, 2, 3, 7, 3, 4, 0}, 2, 4);
+		
+		Tensor indices = new Tensor();
+		Tensor values = TensorOps.topk(null, indices, t, 2, 1);
+		Assert.assertEquals(new Tensor(new float[]{5, 3, 7, 4}, 2, 2), values);
+		Assert.assertEquals(new Tensor(new float[]{1, 3, 0, 2}, 2, 2), indices);
+		
+		// ties are ranked by position
+		Tensor r = TensorOps.rank(null, t, 1, new Tensor(new float[]{0, 3}, 2));
+		Assert.assertEquals(new Tensor(new float[]{3, 3}, 2), r);
+		
+		r = TensorOps.rank(r, t, 1, new Tensor(new float[]{1, 1}, 2));
+		Assert.assertEquals(new Tensor(new float[]{0, 2}, 2), r);
+	}
+	
+	@Test
+	public void testTopk() {
+		Tensor t = new Tensor(new float[]{1, 5, 2, 3, 7, 3, 4, 0}, 2, 4);
+		
+		// along the first dimension
+		Tensor indices = new Tensor();
+		Tensor values = TensorOps.topk(null, indices, t, 1, 0);
+		Assert.assertEquals(new Tensor(new float[]{7, 5, 4, 3}, 1, 4), values);
+		Assert.assertEquals(new Tensor(new float[]{1, 0, 1, 0}, 1, 4), indices);
+		
+		// k equal to the size sorts the complete slice, reusing the values tensor
+		Tensor v = TensorOps.topk(values, null, t, 4, 1);
+		Assert.assertSame(values, v);
+		Assert.assertEquals(new Tensor(new float[]{5, 3, 2, 1, 7, 4, 3, 0}, 2, 4), v);
+		
+		// vector
+		Tensor vec = new Tensor(new float[]{0.1f, 0.4f, 0.3f, 0.2f}, 4);
+		Assert.assertEquals(new Tensor(new float[]{0.4f, 0.3f}, 2), TensorOps.topk(null, indices, vec, 2, 0));
+		Assert.assertEquals(new Tensor(new float[]{1, 2}, 2), indices);
+	}
+	
+	@Test(expected=Exception.class)
+	public void testTopkInvalidK() {
+		Tensor t = new Tensor(new float[]{1, 5, 2, 3}, 4);
+		TensorOps.topk(null, null, t, 5, 0);
+	}
+	
 	@Test
 	public void testScaleUp(){
 		float[] data = new float[]{0, 0, 0, 0, 1, 0, 0, 0, 0}; 
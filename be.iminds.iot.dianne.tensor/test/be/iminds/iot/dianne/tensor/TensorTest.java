@@ -22,6 +22,9 @@
  *******************************************************************************/
 package be.iminds.iot.dianne.tensor;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -352,4 +355,114 @@ public class TensorTest {
 		
 		Assert.assertNull(t.get("test3"));
 	}
+	
+	@Test
+	public void testByteBuffer() {
+		Tensor t = new Tensor(new float[]{1,2,3,4,5,6}, 2, 3);
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(24).order(ByteOrder.nativeOrder());
+		ByteBuffer heap = ByteBuffer.allocate(24).order(ByteOrder.nativeOrder());
+		ByteBuffer big = ByteBuffer.allocate(24).order(ByteOrder.BIG_ENDIAN);
+		
+		for(ByteBuffer b : new ByteBuffer[]{direct, heap, big}){
+			t.get(b);
+			Assert.assertEquals(24, b.position());
+			b.flip();
+			Assert.assertEquals(3.0f, b.getFloat(8), 0.01);
+			
+			Tensor t2 = new Tensor(2, 3);
+			t2.set(b);
+			Assert.assertEquals(t, t2);
+		}
+	}
+	
+	@Test
+	public void testByteBufferRange() {
+		Tensor t = new Tensor(new float[]{1,2,3,4,5,6}, 6);
+		ByteBuffer b = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+		t.get(b, 2, 2);
+		b.flip();
+		Assert.assertEquals(3.0f, b.getFloat(0), 0.01);
+		Assert.assertEquals(4.0f, b.getFloat(4), 0.01);
+		
+		Tensor t2 = new Tensor(6);
+		t2.fill(0.0f);
+		t2.set(b, 4, 2);
+		Assert.assertArrayEquals(new float[]{0,0,0,0,3,4}, t2.get(), 0.01f);
+	}
+	
+	@Test
+	public void testByteBufferNarrowed() {
+		Tensor t = new Tensor(new float[]{1,2,3,4,5,6}, 2, 3);
+		Tensor n = t.narrow(1, 1, 2);
+		Assert.assertFalse(n.isContiguous());
+		
+		ByteBuffer b = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder());
+		n.get(b);
+		b.flip();
+		Assert.assertEquals(2.0f, b.getFloat(0), 0.01);
+		Assert.assertEquals(6.0f, b.getFloat(12), 0.01);
+		
+		n.fill(0.0f);
+		n.set(b);
+		Assert.assertArrayEquals(new float[]{1,2,3,4,5,6}, t.get(), 0.01f);
+	}
+	
+	@Test
+	public void testShare() {
+		Tensor t = new Tensor(new float[]{1,2,3,4,5,6}, 2, 3);
+		Tensor s = t.share();
+		Assert.assertArrayEquals(new int[]{2, 3}, s.dims());
+		Assert.assertEquals(t, s);
+		
+		// writes to the source are visible in the shared tensor
+		t.set(10.0f, 0, 0);
+		Assert.assertEquals(10.0f, s.get(0, 0), 0.01);
+		
+		// after unshare, the shared tensor has its own copy
+		Assert.assertTrue(s.unshare());
+		Assert.assertFalse(s.unshare());
+		Assert.assertFalse(t.unshare());
+		s.set(20.0f, 0, 0);
+		Assert.assertEquals(10.0f, t.get(0, 0), 0.01);
+		Assert.assertEquals(20.0f, s.get(0, 0), 0.01);
+		Assert.assertEquals(2.0f, s.get(0, 1), 0.01);
+	}
+	
+	@Test
+	public void testShareNarrowed() {
+		Tensor t = new Tensor(new float[]{1,2,3,4,5,6}, 6);
+		Tensor s = t.share();
+		Tensor weights = s.narrow(0, 0, 4);
+		Tensor bias = s.narrow(0, 4, 2);
+		
+		// narrowed views follow the private copy of the shared tensor
+		s.unshare();
+		weights.fill(0.0f);
+		bias.fill(1.0f);
+		Assert.assertArrayEquals(new float[]{0,0,0,0,1,1}, s.get(), 0.01f);
+		Assert.assertArrayEquals(new float[]{1,2,3,4,5,6}, t.get(), 0.01f);
+	}
+	
+	@Test
+	public void testShareOutlivesSource() throws Exception {
+		Tensor t = new Tensor(new float[]{1,2,3,4,5,6}, 6);
+		Tensor s = t.share();
+		Tensor bias = s.narrow(0, 4, 2);
+		
+		// free the source, the shared storage should keep the data alive
+		t = null;
+		s = null;
+		for(int i=0;i<5;i++){
+			System.gc();
+			System.runFinalization();
+			Thread.sleep(10);
+		}
+		
+		// allocate some tensors that would reuse freed memory
+		for(int i=0;i<10;i++){
+			new Tensor(6).fill(-1.0f);
+		}
+		Assert.assertArrayEquals(new float[]{5,6}, bias.get(), 0.01f);
+	}
 }
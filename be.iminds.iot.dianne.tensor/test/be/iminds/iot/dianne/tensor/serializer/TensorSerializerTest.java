@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * DIANNE  - Framework for distributed artificial neural networks
+ * Copyright (C) 2015  iMinds - IBCN - UGent
+ *
+ * This file is part of DIANNE.
+ *
+ * DIANNE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Tim Verbelen, Steven Bohez
+ *******************************************************************************/
+package be.iminds.iot.dianne.tensor.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import be.iminds.iot.dianne.tensor.NativeTensorLoader;
+import be.iminds.iot.dianne.tensor.Tensor;
+import be.iminds.iot.dianne.tensor.TensorDestination;
+
+public class TensorSerializerTest {
+
+	// small buffers to make sure the chunked copy loops are exercised
+	private static final int BUFFER_SIZE = 16;
+	
+	private Kryo kryo;
+	
+	@BeforeClass
+	public static void load() {
+		NativeTensorLoader loader = new NativeTensorLoader();
+		loader.activate(null);
+	}
+	
+	@Before
+	public void setup(){
+		kryo = new Kryo();
+		kryo.register(Tensor.class, new TensorSerializer(), 100);
+	}
+	
+	private byte[] writeStream(Tensor t){
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Output output = new Output(bytes, BUFFER_SIZE);
+		kryo.writeObject(output, t);
+		output.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] writeGrowing(Tensor t){
+		Output output = new Output(BUFFER_SIZE, -1);
+		kryo.writeObject(output, t);
+		return output.toBytes();
+	}
+	
+	private Tensor readStream(byte[] bytes){
+		Input input = new Input(new ByteArrayInputStream(bytes), BUFFER_SIZE);
+		return kryo.readObject(input, Tensor.class);
+	}
+	
+	private Tensor readBuffer(byte[] bytes){
+		Input input = new Input(bytes);
+		return kryo.readObject(input, Tensor.class);
+	}
+	
+	@Test
+	public void testStream() {
+		Tensor t = new Tensor(5, 7);
+		t.randn();
+		
+		byte[] bytes = writeStream(t);
+		Tensor r = readStream(bytes);
+		Assert.assertArrayEquals(t.dims(), r.dims());
+		Assert.assertArrayEquals(t.get(), r.get(), 0.0f);
+	}
+	
+	@Test
+	public void testGrowing() {
+		Tensor t = new Tensor(3, 11);
+		t.randn();
+		
+		byte[] bytes = writeGrowing(t);
+		Assert.assertArrayEquals(bytes, writeStream(t));
+		
+		Tensor r = readBuffer(bytes);
+		Assert.assertArrayEquals(t.dims(), r.dims());
+		Assert.assertArrayEquals(t.get(), r.get(), 0.0f);
+		
+		r = readStream(bytes);
+		Assert.assertArrayEquals(t.get(), r.get(), 0.0f);
+	}
+	
+	@Test
+	public void testNarrowed() {
+		Tensor t = new Tensor(6, 9);
+		t.randn();
+		Tensor n = t.narrow(1, 2, 5);
+		
+		Tensor r = readStream(writeStream(n));
+		Assert.assertArrayEquals(new int[]{6, 5}, r.dims());
+		Assert.assertArrayEquals(n.get(), r.get(), 0.0f);
+	}
+	
+	@Test
+	public void testEmpty() {
+		Tensor t = new Tensor(0);
+		
+		Tensor r = readStream(writeStream(t));
+		Assert.assertArrayEquals(t.dims(), r.dims());
+		Assert.assertEquals(0, r.size());
+	}
+	
+	@Test
+	public void testDestination() {
+		Tensor t = new Tensor(4, 10);
+		t.randn();
+		Tensor d = new Tensor(4, 10);
+		
+		TensorDestination.set(d);
+		try {
+			Tensor r = readStream(writeStream(t));
+			Assert.assertSame(d, r);
+			Assert.assertArrayEquals(t.get(), d.get(), 0.0f);
+		} finally {
+			TensorDestination.clear();
+		}
+	}
+	
+	@Test(expected=KryoException.class)
+	public void testOldFormat() {
+		// the old big endian format started with the number of dims
+		Output output = new Output(BUFFER_SIZE, -1);
+		output.writeInt(2);
+		output.writeInts(new int[]{2, 2});
+		output.writeInt(4);
+		output.writeFloats(new float[]{1, 2, 3, 4});
+		
+		readStream(output.toBytes());
+	}
+}